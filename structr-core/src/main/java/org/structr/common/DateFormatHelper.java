@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Utility class for date formatting and parsing. SimpleDateFormat is
+ * expensive to create and not thread-safe, so this class keeps one
+ * instance per pattern, locale and time zone in each thread.
+ *
+ * @author Christian Morgner
+ */
+public class DateFormatHelper {
+
+	private static final ThreadLocal<Map<String, SimpleDateFormat>> formats = new ThreadLocal<Map<String, SimpleDateFormat>>() {
+
+		@Override
+		protected Map<String, SimpleDateFormat> initialValue() {
+			return new HashMap<>();
+		}
+	};
+
+	/**
+	 * Returns a date format for the given pattern in the default locale
+	 * and time zone. The returned instance is shared within the current
+	 * thread, so it must neither be modified nor passed to other threads.
+	 *
+	 * @param pattern
+	 * @return the date format
+	 */
+	public static SimpleDateFormat getFormat(final String pattern) {
+		return getFormat(pattern, Locale.getDefault(), TimeZone.getDefault());
+	}
+
+	/**
+	 * Returns a date format for the given pattern, locale and time zone.
+	 * The returned instance is shared within the current thread, so it
+	 * must neither be modified nor passed to other threads.
+	 *
+	 * @param pattern
+	 * @param locale
+	 * @param timeZone
+	 * @return the date format
+	 */
+	public static SimpleDateFormat getFormat(final String pattern, final Locale locale, final TimeZone timeZone) {
+
+		final Map<String, SimpleDateFormat> cache = formats.get();
+		final String key                          = pattern.concat("|").concat(locale.toString()).concat("|").concat(timeZone.getID());
+		SimpleDateFormat format                   = cache.get(key);
+
+		if (format == null) {
+
+			format = new SimpleDateFormat(pattern, locale);
+			format.setTimeZone(timeZone);
+
+			cache.put(key, format);
+		}
+
+		return format;
+	}
+
+	public static String format(final Date date, final String pattern) {
+		return getFormat(pattern).format(date);
+	}
+
+	public static Date parse(final String source, final String pattern) throws ParseException {
+		return getFormat(pattern).parse(source);
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermRangeQuery;
+import org.neo4j.graphdb.PropertyContainer;
+import org.structr.core.GraphObject;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * An opaque, stable cursor for keyset pagination. A cursor stores the
+ * sort key, the sort order and the sort value and UUID of the last
+ * element of a page. The next page is fetched with an index range query
+ * that starts after this element, so the cost of fetching a page does
+ * not depend on its position in the result.
+ *
+ * Results are ordered by the sort key first and by UUID second, so that
+ * elements with equal sort values have a stable order.
+ *
+ * Cursors are only available for the UUID order and for int and long
+ * sort keys that are indexed when empty. String keys are sorted with a
+ * collator, and a collated range query has to visit every term of the
+ * field on each page. Elements without a value would not be matched by
+ * the range query, unless they are indexed with the minimum value of the
+ * type, which sorts them to the start (ascending) or end (descending) of
+ * the result. Other sort keys can only be paged by page number.
+ *
+ * The range query is part of the search, so the result count of a page
+ * that was fetched with a cursor is the number of elements after the
+ * cursor, not the size of the whole result. The page count is computed
+ * from this number as well.
+ *
+ * @author Christian Morgner
+ */
+public class PagingCursor {
+
+	private static final Charset UTF8   = Charset.forName("UTF-8");
+	private static final String HEADER  = "structr-cursor";
+	private static final char SEPARATOR = '\t';
+
+	private String sortKey     = null;
+	private boolean descending = false;
+	private char valueType     = 's';
+	private String uuid        = null;
+	private String value       = null;
+
+	private PagingCursor(final String sortKey, final boolean descending, final char valueType, final String uuid, final String value) {
+
+		this.sortKey    = sortKey;
+		this.descending = descending;
+		this.valueType  = valueType;
+		this.uuid       = uuid;
+		this.value      = value;
+	}
+
+	/**
+	 * Creates a cursor that points after the given object, or returns
+	 * null if no cursor can be created for the given sort key (see
+	 * {@link #isSupported(PropertyKey)}).
+	 *
+	 * @param sortKey the sort key, or null if the result is ordered by UUID
+	 * @param descending
+	 * @param obj the last object of a page
+	 * @return the cursor or null
+	 */
+	public static PagingCursor create(final PropertyKey sortKey, final boolean descending, final GraphObject obj) {
+
+		final String uuid = obj.getUuid();
+		if (uuid == null || !isSupported(sortKey)) {
+
+			return null;
+		}
+
+		if (sortKey == null || GraphObject.id.equals(sortKey)) {
+
+			return new PagingCursor("", descending, 's', uuid, uuid);
+		}
+
+		final PropertyContainer propertyContainer = obj.getPropertyContainer();
+		final boolean isInt                       = sortKey.getSortType() == SortField.INT;
+		Object rawValue                           = propertyContainer.getProperty(sortKey.dbName(), null);
+
+		if (rawValue == null) {
+
+			// empty fields are indexed with the minimum value
+			rawValue = isInt ? Integer.MIN_VALUE : Long.MIN_VALUE;
+		}
+
+		if (!(rawValue instanceof Number)) {
+			return null;
+		}
+
+		return new PagingCursor(sortKey.dbName(), descending, isInt ? 'i' : 'l', uuid, rawValue.toString());
+	}
+
+	/**
+	 * Indicates whether cursors can be used with the given sort key.
+	 *
+	 * @param sortKey the sort key, or null if the result is ordered by UUID
+	 * @return whether cursors are supported
+	 */
+	public static boolean isSupported(final PropertyKey sortKey) {
+
+		if (sortKey == null || GraphObject.id.equals(sortKey)) {
+			return true;
+		}
+
+		final Integer sortType = sortKey.getSortType();
+
+		return sortType != null && (sortType == SortField.INT || sortType == SortField.LONG) && sortKey.isIndexedWhenEmpty();
+	}
+
+	/**
+	 * Decodes the given string into a cursor, or returns null if the
+	 * string is not a valid cursor.
+	 *
+	 * @param source
+	 * @return the cursor or null
+	 */
+	public static PagingCursor parse(final String source) {
+
+		if (source == null || source.length() <= 32 || !Base64.isBase64(source)) {
+
+			return null;
+		}
+
+		final String decoded = new String(Base64.decodeBase64(source), UTF8);
+		final String[] parts = decoded.split(String.valueOf(SEPARATOR), 6);
+
+		if (parts.length != 6 || !HEADER.equals(parts[0]) || parts[3].length() != 1) {
+
+			return null;
+		}
+
+		// string values are only used for the UUID order
+		final char valueType = parts[3].charAt(0);
+		if ("il".indexOf(valueType) < 0 && !(valueType == 's' && parts[1].isEmpty())) {
+
+			return null;
+		}
+
+		return new PagingCursor(parts[1], "desc".equals(parts[2]), valueType, parts[4], parts[5]);
+	}
+
+	@Override
+	public String toString() {
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append(HEADER).append(SEPARATOR);
+		buf.append(sortKey).append(SEPARATOR);
+		buf.append(descending ? "desc" : "asc").append(SEPARATOR);
+		buf.append(valueType).append(SEPARATOR);
+		buf.append(uuid).append(SEPARATOR);
+		buf.append(value);
+
+		return Base64.encodeBase64URLSafeString(buf.toString().getBytes(UTF8));
+	}
+
+	/**
+	 * Indicates whether this cursor was created for the given sort
+	 * parameters.
+	 *
+	 * @param key
+	 * @param sortDescending
+	 * @return whether this cursor matches the given sort parameters
+	 */
+	public boolean matches(final PropertyKey key, final boolean sortDescending) {
+
+		final String keyName = (key == null || GraphObject.id.equals(key)) ? "" : key.dbName();
+
+		return sortKey.equals(keyName) && descending == sortDescending;
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * Returns the sort order for the given sort parameters, with the UUID
+	 * as a secondary sort field so that the order is stable.
+	 *
+	 * @param key the sort key, or null to sort by UUID only
+	 * @param sortDescending
+	 * @return the sort order
+	 */
+	public static Sort getSort(final PropertyKey key, final boolean sortDescending) {
+
+		final SortField uuidField = new SortField(GraphObject.id.dbName(), SortField.STRING, sortDescending);
+
+		if (key == null || GraphObject.id.equals(key)) {
+
+			return new Sort(uuidField);
+		}
+
+		final Integer sortType = key.getSortType();
+		if (sortType != null) {
+
+			return new Sort(new SortField(key.dbName(), sortType, sortDescending), uuidField);
+		}
+
+		return new Sort(new SortField(key.dbName(), Locale.getDefault(), sortDescending), uuidField);
+	}
+
+	/**
+	 * Returns a query that matches all elements after this cursor.
+	 *
+	 * @return the query
+	 */
+	public Query getQuery() {
+
+		final Query afterUuid = new TermRangeQuery(GraphObject.id.dbName(), descending ? null : uuid, descending ? uuid : null, false, false);
+
+		if (sortKey.isEmpty()) {
+
+			return afterUuid;
+		}
+
+		final BooleanQuery sameValue = new BooleanQuery();
+
+		sameValue.add(getValueQuery(true), Occur.MUST);
+		sameValue.add(afterUuid, Occur.MUST);
+
+		final BooleanQuery query = new BooleanQuery();
+
+		query.add(getValueQuery(false), Occur.SHOULD);
+		query.add(sameValue, Occur.SHOULD);
+
+		if (descending && !isEmptyValue()) {
+
+			// the placeholder for empty values is indexed with full
+			// precision only, so an open range does not match it
+			query.add(getEmptyValueQuery(), Occur.SHOULD);
+		}
+
+		return query;
+	}
+
+	// ----- private methods -----
+	private Query getValueQuery(final boolean equal) {
+
+		final boolean asc = !descending;
+
+		switch (valueType) {
+
+			case 'i': {
+				final Integer v = Integer.valueOf(value);
+				return equal ? NumericRangeQuery.newIntRange(sortKey, v, v, true, true) : NumericRangeQuery.newIntRange(sortKey, asc ? v : null, asc ? null : v, false, false);
+			}
+
+			case 'l': {
+				final Long v = Long.valueOf(value);
+				return equal ? NumericRangeQuery.newLongRange(sortKey, v, v, true, true) : NumericRangeQuery.newLongRange(sortKey, asc ? v : null, asc ? null : v, false, false);
+			}
+
+			default:
+				throw new IllegalStateException("Unsupported cursor value type " + valueType);
+		}
+	}
+
+	private Query getEmptyValueQuery() {
+
+		if (valueType == 'i') {
+			return NumericRangeQuery.newIntRange(sortKey, Integer.MIN_VALUE, Integer.MIN_VALUE, true, true);
+		}
+
+		return NumericRangeQuery.newLongRange(sortKey, Long.MIN_VALUE, Long.MIN_VALUE, true, true);
+	}
+
+	private boolean isEmptyValue() {
+		return valueType == 'i' ? Integer.MIN_VALUE == Integer.valueOf(value) : Long.MIN_VALUE == Long.valueOf(value);
+	}
+}
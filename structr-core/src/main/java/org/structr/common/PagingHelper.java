@@ -44,6 +44,8 @@ public class PagingHelper {
 
 	/**
 	 * Return a single page of the list with the given paging parameters.
+	 * The offsetId may also be a {@link PagingCursor}, in which case the
+	 * page starts after the element the cursor points to.
 	 *
 	 * @param list
 	 * @param pageSize
@@ -58,10 +60,36 @@ public class PagingHelper {
 			return Collections.EMPTY_LIST;
 		}
 
-		int size        = list.size();
+		final PagingCursor cursor = PagingCursor.parse(offsetId);
+		int size                  = list.size();
 		int fromIndex;
 		int toIndex;
-		if (StringUtils.isNotBlank(offsetId)) {
+
+		if (cursor != null) {
+
+			// in-memory lists are not sorted by the cursor's sort key,
+			// so the page starts after the element the cursor points to
+			final String uuid = cursor.getUuid();
+			int i             = 0;
+			fromIndex         = -1;
+
+			for (GraphObject obj : list) {
+
+				if (uuid.equals(obj.getUuid())) {
+
+					fromIndex = i + 1;
+					break;
+				}
+
+				i++;
+			}
+
+			if (fromIndex < 0) {
+
+				return Collections.EMPTY_LIST;
+			}
+
+		} else if (StringUtils.isNotBlank(offsetId)) {
 
 			int offsetIndex = 0;
 			int i=0;
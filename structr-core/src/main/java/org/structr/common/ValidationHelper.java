@@ -25,11 +25,8 @@ import org.apache.commons.lang.StringUtils;
 import org.structr.common.error.*;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.GraphObject;
-import org.structr.core.Result;
 import org.structr.core.app.StructrApp;
-import org.structr.core.entity.AbstractNode;
-import org.structr.core.graph.NodeInterface;
-import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.search.CheckUniquenessCommand;
 
 /**
  * Defines helper methods for property validation.
@@ -503,23 +500,12 @@ public class ValidationHelper {
 
 		if (key != null) {
 
-			final Object value         = object.getProperty(key);
-			Result<GraphObject> result = null;
-			boolean exists             = false;
-			String id                  = null;
+			final Object value = object.getProperty(key);
+			String id          = null;
 
 			try {
 
-				if (object instanceof NodeInterface) {
-					
-					result = StructrApp.getInstance().nodeQuery(((NodeInterface)object).getClass()).and(key, value).getResult();
-					
-				} else {
-					
-					result = StructrApp.getInstance().relationshipQuery(((RelationshipInterface)object).getClass()).and(key, value).getResult();
-					
-				}
-				exists = !result.isEmpty();
+				id = StructrApp.getInstance().command(CheckUniquenessCommand.class).execute(object, object.getClass(), key, value);
 
 			} catch (FrameworkException fex) {
 
@@ -527,17 +513,11 @@ public class ValidationHelper {
 
 			}
 
-			if (exists) {
-
-				GraphObject foundNode = result.get(0);
-				if (foundNode.getId() != object.getId()) {
+			if (id != null) {
 
-					id = ((AbstractNode) result.get(0)).getUuid();
+				errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
 
-					errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
-
-					return true;
-				}
+				return true;
 			}
 		}
 
@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common.geo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Location;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * In-memory grid index over the coordinates of all nodes that have both a
+ * latitude and a longitude value. The index is built from the database on
+ * first use and kept current from committed transactions afterwards.
+ *
+ * Queries do not take any locks, so concurrent distance searches do not
+ * block each other. Set {@link #SPATIAL_INDEX_IN_MEMORY} to false to use
+ * the neo4j-spatial layer index instead.
+ *
+ * @author Axel Morgner
+ */
+public class SpatialGridIndex implements StructrTransactionListener {
+
+	private static final Logger logger                  = Logger.getLogger(SpatialGridIndex.class.getName());
+
+	public static final String SPATIAL_INDEX_IN_MEMORY  = "spatial.index.inmemory";
+
+	private static final double EARTH_RADIUS_KM         = 6371.0;
+	private static final double KM_PER_DEGREE           = Math.PI * EARTH_RADIUS_KM / 180.0;
+	private static final double CELL_SIZE               = 0.1;	// degrees, approx. 11 km
+	private static SpatialGridIndex instance            = null;
+
+	private final Map<Long, Set<Long>> cells            = new ConcurrentHashMap<>();
+	private final Map<Long, double[]> positions         = new ConcurrentHashMap<>();
+	private final String latitudeKey                    = Location.latitude.dbName();
+	private final String longitudeKey                   = Location.longitude.dbName();
+	private volatile GraphDatabaseService graphDb       = null;
+	private volatile boolean initialized                = false;
+
+	private SpatialGridIndex() {}
+
+	public static synchronized SpatialGridIndex getInstance() {
+
+		if (instance == null) {
+
+			instance = new SpatialGridIndex();
+			TransactionCommand.registerTransactionListener(instance);
+		}
+
+		return instance;
+	}
+
+	public static boolean isEnabled() {
+		return !"false".equals(StructrApp.getConfigurationValue(SPATIAL_INDEX_IN_MEMORY, "true"));
+	}
+
+	/**
+	 * Builds the index from the given database if that has not been done
+	 * yet. The index is rebuilt if the database has changed, e.g. after a
+	 * restart of the service layer.
+	 *
+	 * @param graphDb
+	 */
+	public void initialize(final GraphDatabaseService graphDb) {
+
+		if (!initialized || this.graphDb != graphDb) {
+
+			synchronized (this) {
+
+				if (!initialized || this.graphDb != graphDb) {
+
+					long count = 0L;
+
+					initialized = false;
+					cells.clear();
+					positions.clear();
+
+					for (final Node node : GlobalGraphOperations.at(graphDb).getAllNodes()) {
+
+						if (updateFromContainer(node.getId(), node)) {
+							count++;
+						}
+					}
+
+					logger.log(Level.INFO, "Spatial grid index initialized with {0} locations", count);
+
+					this.graphDb = graphDb;
+					initialized  = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores or updates the position of the node with the given id.
+	 */
+	public synchronized void update(final long nodeId, final double latitude, final double longitude) {
+
+		final double[] previous = positions.put(nodeId, new double[] { latitude, longitude });
+		final long cellKey      = cellKey(latitude, longitude);
+
+		if (previous != null) {
+
+			final long previousCellKey = cellKey(previous[0], previous[1]);
+			if (previousCellKey == cellKey) {
+
+				return;
+			}
+
+			removeFromCell(previousCellKey, nodeId);
+		}
+
+		Set<Long> cell = cells.get(cellKey);
+		if (cell == null) {
+
+			cell = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+			cells.put(cellKey, cell);
+		}
+
+		cell.add(nodeId);
+	}
+
+	/**
+	 * Removes the node with the given id from the index.
+	 */
+	public synchronized void remove(final long nodeId) {
+
+		final double[] previous = positions.remove(nodeId);
+		if (previous != null) {
+
+			removeFromCell(cellKey(previous[0], previous[1]), nodeId);
+		}
+	}
+
+	/**
+	 * Returns the ids of all nodes within the given distance of the given
+	 * point, ordered by ascending distance.
+	 *
+	 * @param latitude
+	 * @param longitude
+	 * @param distanceInKm
+	 * @return a list of node ids
+	 */
+	public List<Long> withinDistance(final double latitude, final double longitude, final double distanceInKm) {
+
+		final List<Hit> hits = collect(latitude, longitude, distanceInKm);
+		final List<Long> ids = new ArrayList<>(hits.size());
+
+		Collections.sort(hits, HIT_COMPARATOR);
+
+		for (final Hit hit : hits) {
+			ids.add(hit.nodeId);
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Returns the ids of the k nearest nodes within the given maximum
+	 * distance of the given point, ordered by ascending distance.
+	 *
+	 * @param latitude
+	 * @param longitude
+	 * @param k
+	 * @param maxDistanceInKm
+	 * @return a list of at most k node ids
+	 */
+	public List<Long> nearest(final double latitude, final double longitude, final int k, final double maxDistanceInKm) {
+
+		// start with one cell and widen the search radius until
+		// enough hits are found or the maximum distance is reached
+		double radius        = Math.min(CELL_SIZE * KM_PER_DEGREE, maxDistanceInKm);
+		List<Hit> hits       = collect(latitude, longitude, radius);
+
+		while (hits.size() < k && radius < maxDistanceInKm && radius < Math.PI * EARTH_RADIUS_KM) {
+
+			radius = Math.min(radius * 2.0, maxDistanceInKm);
+			hits   = collect(latitude, longitude, radius);
+		}
+
+		Collections.sort(hits, HIT_COMPARATOR);
+
+		final int size       = Math.min(k, hits.size());
+		final List<Long> ids = new ArrayList<>(size);
+
+		for (int i=0; i<size; i++) {
+			ids.add(hits.get(i).nodeId);
+		}
+
+		return ids;
+	}
+
+	public int size() {
+		return positions.size();
+	}
+
+	/**
+	 * Returns the great-circle distance in km between the given points.
+	 */
+	public static double distance(final double lat1, final double lon1, final double lat2, final double lon2) {
+
+		final double dLat = Math.toRadians(lat2 - lat1);
+		final double dLon = Math.toRadians(lon2 - lon1);
+		final double a    = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+		return 2.0 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+		if (!initialized) {
+
+			// index will be built from the database on first use
+			return;
+		}
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			if (event.isNode()) {
+
+				final GraphObject obj = event.getGraphObject();
+				if (event.isDeleted()) {
+
+					remove(obj.getId());
+
+				} else {
+
+					try {
+						if (!updateFromContainer(obj.getId(), obj.getPropertyContainer())) {
+
+							// coordinates may have been removed
+							remove(obj.getId());
+						}
+
+					} catch (Throwable t) {
+
+						logger.log(Level.WARNING, "Unable to update spatial grid index for node {0}: {1}", new Object[] { obj.getId(), t.getMessage() });
+					}
+				}
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private boolean updateFromContainer(final long nodeId, final PropertyContainer container) {
+
+		if (container.hasProperty(latitudeKey) && container.hasProperty(longitudeKey)) {
+
+			final Object lat = container.getProperty(latitudeKey);
+			final Object lon = container.getProperty(longitudeKey);
+
+			if (lat instanceof Double && lon instanceof Double && !((Double)lat).isNaN() && !((Double)lon).isNaN()) {
+
+				update(nodeId, (Double)lat, (Double)lon);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private List<Hit> collect(final double latitude, final double longitude, final double distanceInKm) {
+
+		final List<Hit> hits      = new ArrayList<>();
+		final double latDelta     = distanceInKm / KM_PER_DEGREE;
+		final double cosLat       = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude) + latDelta)));
+		final double lonDelta     = Math.min(180.0, distanceInKm / (KM_PER_DEGREE * Math.max(cosLat, 0.01)));
+		final long minLatCell     = cell(Math.max(-90.0, latitude - latDelta));
+		final long maxLatCell     = cell(Math.min(90.0, latitude + latDelta));
+		final long minLonCell     = cell(longitude - lonDelta);
+		final long maxLonCell     = cell(longitude + lonDelta);
+		final long lonCellCount   = Math.round(360.0 / CELL_SIZE);
+
+		for (long latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+
+			for (long lonCell = minLonCell; lonCell <= maxLonCell && lonCell - minLonCell < lonCellCount; lonCell++) {
+
+				final Set<Long> cell = cells.get(key(latCell, wrap(lonCell, lonCellCount)));
+				if (cell != null) {
+
+					for (final Long nodeId : cell) {
+
+						final double[] position = positions.get(nodeId);
+						if (position != null) {
+
+							final double dist = distance(latitude, longitude, position[0], position[1]);
+							if (dist <= distanceInKm) {
+
+								hits.add(new Hit(nodeId, dist));
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return hits;
+	}
+
+	private void removeFromCell(final long cellKey, final long nodeId) {
+
+		final Set<Long> cell = cells.get(cellKey);
+		if (cell != null) {
+
+			cell.remove(nodeId);
+
+			if (cell.isEmpty()) {
+				cells.remove(cellKey);
+			}
+		}
+	}
+
+	private static long cell(final double degrees) {
+		return (long)Math.floor(degrees / CELL_SIZE);
+	}
+
+	private static long wrap(final long lonCell, final long lonCellCount) {
+
+		final long offset = lonCellCount / 2;
+
+		return ((lonCell + offset) % lonCellCount + lonCellCount) % lonCellCount - offset;
+	}
+
+	private static long cellKey(final double latitude, final double longitude) {
+		return key(cell(latitude), wrap(cell(longitude), Math.round(360.0 / CELL_SIZE)));
+	}
+
+	private static long key(final long latCell, final long lonCell) {
+		return (latCell << 32) ^ (lonCell & 0xffffffffL);
+	}
+
+	// ----- nested classes -----
+	private static final Comparator<Hit> HIT_COMPARATOR = new Comparator<Hit>() {
+
+		@Override
+		public int compare(final Hit o1, final Hit o2) {
+			return Double.compare(o1.distance, o2.distance);
+		}
+	};
+
+	private static class Hit {
+
+		private long nodeId     = 0L;
+		private double distance = 0.0;
+
+		public Hit(final long nodeId, final double distance) {
+
+			this.nodeId   = nodeId;
+			this.distance = distance;
+		}
+	}
+}
@@ -42,6 +42,7 @@ public class Result<T extends GraphObject> {
 	private String queryTime          = null;
 	private String sortOrder          = null;
 	private String sortKey            = null;
+	private String nextPageCursor     = null;
       
 	private Integer resultCount       = null;
 	private Integer pageCount         = null;
@@ -105,6 +106,14 @@ public class Result<T extends GraphObject> {
 		this.sortKey = sortKey;
 	}
 
+	public String getNextPageCursor() {
+		return nextPageCursor;
+	}
+
+	public void setNextPageCursor(final String nextPageCursor) {
+		this.nextPageCursor = nextPageCursor;
+	}
+
 	public Integer getRawResultCount() {
 		
 		if (resultCount != null) {
@@ -96,6 +96,11 @@ public class Services {
 	public static final String TMP_PATH                      = "tmp.path";
 	public static final String UDP_PORT                      = "udp.port";
 	public static final String JSON_INDENTATION              = "json.indentation";
+	public static final String JSON_PREFETCH_THREADS         = "json.prefetch.threads";
+	public static final String JSON_PREFETCH_BUDGET          = "json.prefetch.budget";
+	public static final String CSV_IMPORT_BATCH_SIZE         = "csv.import.batchsize";
+	public static final String CSV_EXPORT_PAGE_SIZE          = "csv.export.pagesize";
+	public static final String BULK_OPERATION_THREADS        = "bulk.operation.threads";
 	public static final String GEOCODING_PROVIDER            = "geocoding.provider";
 	public static final String GEOCODING_LANGUAGE            = "geocoding.language";
 	public static final String GEOCODING_APIKEY              = "geocoding.apikey";
@@ -18,6 +18,7 @@
  */
 package org.structr.core.app;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -58,6 +59,7 @@ public interface App {
 	public void delete(final RelationshipInterface relationship) throws FrameworkException;
 
 	public GraphObject get(final String uuid) throws FrameworkException;
+	public Map<String, NodeInterface> get(final Collection<String> uuids) throws FrameworkException;
 	public <T extends GraphObject> List<T> get(final Class<T> type) throws FrameworkException;
 	public <T extends GraphObject> T get(final Class<T> type, final String uuid) throws FrameworkException;
 
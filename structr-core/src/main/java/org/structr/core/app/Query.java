@@ -61,6 +61,8 @@ public interface Query<T extends GraphObject> {
 	public Query<T> location(final String street, final String postalCode, final String city, final String country, final double distance);
 	public Query<T> location(final String street, final String postalCode, final String city, final String state, final String country, final double distance);
 	public Query<T> location(final String street, final String house, final String postalCode, final String city, final String state, final String country, final double distance);
+	public Query<T> location(final double latitude, final double longitude, final double distance);
+	public Query<T> nearest(final int count);
 	public <P> Query<T> and(final PropertyKey<P> key, final P value);
 	public <P> Query<T> and(final PropertyKey<P> key, final P value, final boolean inexact);
 	public <P> Query<T> and(final PropertyMap attributes);
@@ -18,11 +18,15 @@
  */
 package org.structr.core.app;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.structr.common.SecurityContext;
@@ -60,7 +64,8 @@ import org.structr.schema.ConfigurationProvider;
  */
 public class StructrApp implements App {
 
-	private static final Logger logger = Logger.getLogger(StructrApp.class.getName());
+	private static final Logger logger      = Logger.getLogger(StructrApp.class.getName());
+	private static final int UUID_BATCH_SIZE = 500;
 	
 	private Map<Class<? extends Command>, Command> commandCache = new LinkedHashMap<>();
 	private SecurityContext securityContext                     = null;
@@ -128,6 +133,46 @@ public class StructrApp implements App {
 		return query.uuid(uuid).includeDeletedAndHidden().getFirst();
 	}
 
+	/**
+	 * Fetches the nodes with the given UUIDs using as few queries as
+	 * possible. UUIDs that can not be found or are not visible in the
+	 * current security context are not contained in the result.
+	 * 
+	 * @param uuids
+	 * @return a map of UUID to node
+	 * @throws FrameworkException 
+	 */
+	@Override
+	public Map<String, NodeInterface> get(final Collection<String> uuids) throws FrameworkException {
+
+		final Class<? extends SearchCommand> searchType = SearchNodeCommand.class;
+		final Map<String, NodeInterface> nodes          = new LinkedHashMap<>();
+		final Set<String> uuidSet                       = new LinkedHashSet<>(uuids);
+
+		// null values can not be searched for
+		uuidSet.remove(null);
+
+		final List<String> distinctUuids = new ArrayList<>(uuidSet);
+
+		// stay well below the maximum number of clauses of a boolean query
+		for (int i=0; i<distinctUuids.size(); i+=UUID_BATCH_SIZE) {
+
+			final Query<NodeInterface> query = new StructrQuery<>(securityContext, searchType);
+
+			query.includeDeletedAndHidden().and();
+
+			for (final String uuid : distinctUuids.subList(i, Math.min(i + UUID_BATCH_SIZE, distinctUuids.size()))) {
+				query.or(GraphObject.id, uuid);
+			}
+
+			for (final NodeInterface node : query.getAsList()) {
+				nodes.put(node.getUuid(), node);
+			}
+		}
+
+		return nodes;
+	}
+
 	@Override
 	public <T extends GraphObject> T get(final Class<T> type, final String uuid) throws FrameworkException {
 
@@ -223,6 +223,25 @@ public class StructrQuery<T extends GraphObject> implements Query<T> {
 		return this;
 	}
 	
+	@Override
+	public Query<T> location(final double latitude, final double longitude, final double distance) {
+		currentGroup.getSearchAttributes().add(new DistanceSearchAttribute(latitude, longitude, distance, BooleanClause.Occur.MUST));
+		return this;
+	}
+	
+	@Override
+	public Query<T> nearest(final int count) {
+
+		for (final SearchAttribute attr : currentGroup.getSearchAttributes()) {
+
+			if (attr instanceof DistanceSearchAttribute) {
+				((DistanceSearchAttribute)attr).setNearest(count);
+			}
+		}
+
+		return this;
+	}
+	
 	@Override
 	public <P> Query<T> and(final PropertyKey<P> key, final P value) {
 		currentGroup.getSearchAttributes().add(Search.andExactProperty(securityContext, key, value));
@@ -169,13 +169,31 @@ public class AuthHelper {
 	}
 
 	/**
-	 * Find a {@link Principal} for the given session id
+	 * Find a {@link Principal} for the given session id, using the
+	 * {@link SessionPrincipalCache} to avoid an index query per request.
 	 * 
 	 * @param sessionId
 	 * @return 
 	 */
 	public static Principal getPrincipalForSessionId(final String sessionId) {
-		return getPrincipalForCredential(Principal.sessionId, sessionId);
+
+		if (StringUtils.isEmpty(sessionId)) {
+			return getPrincipalForCredential(Principal.sessionId, sessionId);
+		}
+
+		final SessionPrincipalCache cache = SessionPrincipalCache.getInstance();
+		Principal principal               = cache.get(sessionId);
+
+		if (principal == null) {
+
+			principal = getPrincipalForCredential(Principal.sessionId, sessionId);
+			if (principal != null) {
+
+				cache.put(sessionId, principal);
+			}
+		}
+
+		return principal;
 	}
 
 	public static String getHash(final String password, final String salt) {
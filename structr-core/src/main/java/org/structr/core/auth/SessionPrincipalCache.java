@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.auth;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.collections.map.LRUMap;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * A bounded cache that maps session ids to the database node of the
+ * {@link Principal} that owns the session, so that authenticating a
+ * request does not need an index query.
+ *
+ * Entries are removed when a principal is deleted or its session id,
+ * password or blocked flag is modified, and when a session is destroyed.
+ * In addition, every cache hit is verified against the current session
+ * id of the cached node, so a revoked session is never authenticated
+ * from the cache, even before the transaction listener has run.
+ *
+ * @author Christian Morgner
+ */
+public class SessionPrincipalCache implements StructrTransactionListener {
+
+	private static final Logger logger          = Logger.getLogger(SessionPrincipalCache.class.getName());
+
+	public static final String CACHE_SIZE       = "session.cache.size";
+
+	private static SessionPrincipalCache instance = null;
+
+	private Map<String, CacheEntry> cache       = null;
+
+	private SessionPrincipalCache() {
+
+		final int size = Integer.parseInt(StructrApp.getConfigurationValue(CACHE_SIZE, "10000"));
+
+		this.cache = Collections.synchronizedMap(new LRUMap(size));
+	}
+
+	public static synchronized SessionPrincipalCache getInstance() {
+
+		if (instance == null) {
+
+			instance = new SessionPrincipalCache();
+			TransactionCommand.registerTransactionListener(instance);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Returns the principal for the given session id, or null if the
+	 * session id is not cached or no longer belongs to the cached
+	 * principal.
+	 *
+	 * @param sessionId
+	 * @return the principal or null
+	 */
+	public Principal get(final String sessionId) {
+
+		final CacheEntry entry = cache.get(sessionId);
+		if (entry != null) {
+
+			try {
+				final Node node = StructrApp.getInstance().getGraphDatabaseService().getNodeById(entry.nodeId);
+
+				if (entry.uuid.equals(node.getProperty(GraphObject.id.dbName(), null)) && sessionId.equals(node.getProperty(Principal.sessionId.dbName(), null))) {
+
+					final NodeFactory nodeFactory = new NodeFactory(SecurityContext.getSuperUserInstance());
+					final Object principal        = nodeFactory.instantiate(node);
+
+					if (principal instanceof Principal) {
+
+						return (Principal)principal;
+					}
+				}
+
+			} catch (NotFoundException nfex) {
+
+				// node was deleted
+
+			} catch (FrameworkException fex) {
+
+				logger.log(Level.WARNING, "Unable to instantiate cached principal: {0}", fex.getMessage());
+			}
+
+			cache.remove(sessionId);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Stores the given principal for the given session id. Results of
+	 * uncommitted transactions are not cached.
+	 *
+	 * @param sessionId
+	 * @param principal
+	 */
+	public void put(final String sessionId, final Principal principal) {
+
+		final Node node = principal.getNode();
+		if (node != null && principal.getUuid() != null && !TransactionCommand.inTransaction()) {
+
+			cache.put(sessionId, new CacheEntry(node.getId(), principal.getUuid()));
+		}
+	}
+
+	/**
+	 * Removes the given session id from the cache.
+	 *
+	 * @param sessionId
+	 */
+	public void invalidate(final String sessionId) {
+
+		if (sessionId != null) {
+			cache.remove(sessionId);
+		}
+	}
+
+	/**
+	 * Removes all cached sessions.
+	 */
+	public void invalidate() {
+		cache.clear();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+		final Set<String> uuids = new LinkedHashSet<>();
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			if (event.isNode() && !event.isCreated()) {
+
+				final PropertyMap modifiedProperties = event.getModifiedProperties();
+
+				if (event.isDeleted() && (event.getGraphObject() instanceof Principal || event.getRemovedProperties().containsKey(Principal.sessionId))) {
+
+					uuids.add(event.getUuid());
+
+				} else if (modifiedProperties.containsKey(Principal.sessionId) || modifiedProperties.containsKey(Principal.password) || modifiedProperties.containsKey(Principal.blocked)) {
+
+					uuids.add(event.getUuid());
+				}
+			}
+		}
+
+		if (!uuids.isEmpty()) {
+
+			synchronized (cache) {
+
+				final Iterator<CacheEntry> iterator = cache.values().iterator();
+				while (iterator.hasNext()) {
+
+					if (uuids.contains(iterator.next().uuid)) {
+						iterator.remove();
+					}
+				}
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class CacheEntry {
+
+		private long nodeId = -1L;
+		private String uuid = null;
+
+		public CacheEntry(final long nodeId, final String uuid) {
+
+			this.nodeId = nodeId;
+			this.uuid   = uuid;
+		}
+	}
+}
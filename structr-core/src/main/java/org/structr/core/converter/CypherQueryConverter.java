@@ -24,14 +24,14 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.neo4j.cypher.javacompat.ExecutionEngine;
-import org.neo4j.graphdb.GraphDatabaseService;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
-import org.structr.core.app.StructrApp;
+import org.structr.core.Services;
+import org.structr.core.cypher.CypherQueryCache;
 import org.structr.core.cypher.CypherQueryHandler;
 import org.structr.core.entity.AbstractNode;
-import org.structr.core.graph.GraphDatabaseCommand;
+import org.structr.core.graph.NodeService;
 
 /**
  * Executes the given {@link CypherQueryConverter} on the current node and
@@ -43,7 +43,6 @@ public class CypherQueryConverter extends PropertyConverter {
 
 	private static final Logger logger = Logger.getLogger(CypherQueryConverter.class.getName());
 	
-	private GraphDatabaseService graphDb    = null;
 	private ExecutionEngine engine          = null;
 	private CypherQueryHandler handler      = null;
 
@@ -53,13 +52,16 @@ public class CypherQueryConverter extends PropertyConverter {
 		
 		this.handler = handler;
 		
-		try {
-			graphDb = (GraphDatabaseService)StructrApp.getInstance().command(GraphDatabaseCommand.class).execute();
-			engine  = new ExecutionEngine(graphDb);
+		// use the shared execution engine so that query plans are cached
+		final NodeService nodeService = Services.getInstance().getService(NodeService.class);
+		if (nodeService != null) {
 
-		} catch(Throwable t) {
+			engine = nodeService.getCypherExecutionEngine();
+		}
+		
+		if (engine == null) {
 			
-			logger.log(Level.WARNING, "Unable to create cypher execution engine.");
+			logger.log(Level.WARNING, "Unable to obtain cypher execution engine.");
 		}
 	}
 	
@@ -88,7 +90,7 @@ public class CypherQueryConverter extends PropertyConverter {
 
 			try {
 
-				List<AbstractNode> nodes = (List<AbstractNode>)handler.handleQueryResults(engine.execute(query, parameters));
+				List<AbstractNode> nodes = (List<AbstractNode>)handler.handleQueryResults(CypherQueryCache.getInstance().execute(engine, securityContext, query, parameters));
 
 				return nodes;
 
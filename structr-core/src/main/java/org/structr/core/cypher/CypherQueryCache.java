@@ -0,0 +1,318 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.cypher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.apache.commons.collections.map.LRUMap;
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.neo4j.cypher.javacompat.ExecutionResult;
+import org.structr.common.SecurityContext;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.PropertyReadCache;
+import org.structr.core.graph.TransactionCommand;
+
+/**
+ * Executes Cypher queries on the shared execution engine and optionally
+ * caches the raw result rows, keyed by query, parameters and principal.
+ *
+ * Cached results expire after a configurable time and are invalidated as
+ * a whole when a structr transaction commits modifications or a Cypher
+ * query modifies the database. Queries with write clauses are never
+ * answered from the cache. The result cache is disabled by default, set
+ * {@link #CACHE_TTL} to a positive number of seconds to enable it.
+ *
+ * Neo4j caches execution plans by query text, so plans are only reused if
+ * variable values are passed as parameters instead of being inserted into
+ * the query text. The statistics of this class count how many executions
+ * used a query text that was seen before (and can thus use a cached plan).
+ *
+ * @author Christian Morgner
+ */
+public class CypherQueryCache implements StructrTransactionListener {
+
+	public static final String CACHE_TTL                  = "cypher.resultcache.ttl";
+	public static final String CACHE_SIZE                 = "cypher.resultcache.size";
+
+	private static final Pattern WRITE_CLAUSE             = Pattern.compile("\\b(CREATE|MERGE|SET|DELETE|REMOVE|FOREACH)\\b", Pattern.CASE_INSENSITIVE);
+
+	private static CypherQueryCache instance              = null;
+
+	private final AtomicLong generation                   = new AtomicLong(0L);
+	private final AtomicLong cacheHits                    = new AtomicLong(0L);
+	private final AtomicLong cacheMisses                  = new AtomicLong(0L);
+	private final AtomicLong writeQueries                 = new AtomicLong(0L);
+	private final AtomicLong executions                   = new AtomicLong(0L);
+	private final AtomicLong repeatedQueries              = new AtomicLong(0L);
+	private final AtomicLong firstExecutionTime           = new AtomicLong(0L);
+	private final AtomicLong repeatedExecutionTime        = new AtomicLong(0L);
+	private Map<String, Boolean> knownQueries             = null;
+	private Map<CacheKey, CacheEntry> cache               = null;
+	private volatile long ttl                             = 0L;
+
+	private CypherQueryCache() {
+
+		final int size = Integer.parseInt(StructrApp.getConfigurationValue(CACHE_SIZE, "1000"));
+
+		this.ttl          = Long.parseLong(StructrApp.getConfigurationValue(CACHE_TTL, "0")) * 1000L;
+		this.cache        = Collections.synchronizedMap(new LRUMap(size));
+		this.knownQueries = Collections.synchronizedMap(new LRUMap(size));
+	}
+
+	public static synchronized CypherQueryCache getInstance() {
+
+		if (instance == null) {
+
+			instance = new CypherQueryCache();
+			TransactionCommand.registerTransactionListener(instance);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Executes the given query with the given parameters and returns the
+	 * result rows, from the cache if possible.
+	 *
+	 * @param engine
+	 * @param securityContext
+	 * @param query
+	 * @param parameters
+	 * @return the result rows
+	 */
+	public List<Map<String, Object>> execute(final ExecutionEngine engine, final SecurityContext securityContext, final String query, final Map<String, Object> parameters) {
+
+		// results of uncommitted transactions and of write queries must not be cached
+		final boolean isWrite  = isWriteQuery(query);
+		final boolean useCache = ttl > 0 && !isWrite && !TransactionCommand.inTransaction();
+		CacheKey key           = useCache ? new CacheKey(query, parameters, securityContext) : null;
+
+		if (key != null) {
+
+			final CacheEntry entry = cache.get(key);
+			if (entry != null && entry.isValid(generation.get())) {
+
+				cacheHits.incrementAndGet();
+				return entry.rows;
+			}
+
+			cacheMisses.incrementAndGet();
+		}
+
+		// store generation before execution so a concurrent commit invalidates our result
+		final long currentGeneration = generation.get();
+		final boolean repeated       = knownQueries.put(query, Boolean.TRUE) != null;
+		final long t0                = System.nanoTime();
+		ExecutionResult result       = null;
+
+		if (parameters != null) {
+
+			result = engine.execute(query, parameters);
+
+		} else {
+
+			result = engine.execute(query);
+		}
+
+		final List<Map<String, Object>> rows = new ArrayList<>();
+		for (final Map<String, Object> row : result) {
+
+			rows.add(new LinkedHashMap<>(row));
+		}
+
+		final long time = System.nanoTime() - t0;
+
+		executions.incrementAndGet();
+
+		if (isWrite || result.getQueryStatistics().containsUpdates()) {
+
+			writeQueries.incrementAndGet();
+
+			// modifications by Cypher do not pass the transaction listener
+			// or the modification queue
+			invalidate();
+			PropertyReadCache.clearCurrent();
+			key = null;
+		}
+
+		if (repeated) {
+
+			repeatedQueries.incrementAndGet();
+			repeatedExecutionTime.addAndGet(time);
+
+		} else {
+
+			firstExecutionTime.addAndGet(time);
+		}
+
+		if (key != null) {
+			cache.put(key, new CacheEntry(Collections.unmodifiableList(rows), currentGeneration, System.currentTimeMillis() + ttl));
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Sets the time in seconds after which cached results expire, a
+	 * value of 0 disables the cache.
+	 *
+	 * @param seconds
+	 */
+	public void setTimeToLive(final long seconds) {
+
+		this.ttl = seconds * 1000L;
+		invalidate();
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public void invalidate() {
+
+		generation.incrementAndGet();
+		cache.clear();
+	}
+
+	/**
+	 * Returns a snapshot of the cache and execution statistics. Execution
+	 * times are given in nanoseconds, the difference between first and
+	 * repeated average execution time approximates the planning overhead.
+	 *
+	 * @return a map with statistic values
+	 */
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> statistics = new LinkedHashMap<>();
+
+		statistics.put("cacheEnabled",          ttl > 0);
+		statistics.put("cacheSize",             cache.size());
+		statistics.put("cacheHits",             cacheHits.get());
+		statistics.put("cacheMisses",           cacheMisses.get());
+		statistics.put("writeQueries",          writeQueries.get());
+		statistics.put("executions",            executions.get());
+		statistics.put("repeatedQueries",       repeatedQueries.get());
+		statistics.put("firstExecutionTime",    firstExecutionTime.get());
+		statistics.put("repeatedExecutionTime", repeatedExecutionTime.get());
+
+		return statistics;
+	}
+
+	/**
+	 * Returns true if the given query contains a clause that can modify
+	 * the database. This check is conservative, a query that contains one
+	 * of the keywords in a string literal is treated as a write query.
+	 *
+	 * @param query
+	 * @return whether the query can modify the database
+	 */
+	public static boolean isWriteQuery(final String query) {
+		return query != null && WRITE_CLAUSE.matcher(query).find();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+		if (!modificationEvents.isEmpty()) {
+			invalidate();
+		}
+	}
+
+	// ----- nested classes -----
+	private static class CacheEntry {
+
+		private List<Map<String, Object>> rows = null;
+		private long generation                = 0L;
+		private long expires                   = 0L;
+
+		public CacheEntry(final List<Map<String, Object>> rows, final long generation, final long expires) {
+
+			this.rows       = rows;
+			this.generation = generation;
+			this.expires    = expires;
+		}
+
+		public boolean isValid(final long currentGeneration) {
+			return generation == currentGeneration && System.currentTimeMillis() < expires;
+		}
+	}
+
+	private static class CacheKey {
+
+		private Map<String, Object> parameters = null;
+		private String principalId             = null;
+		private String query                   = null;
+
+		public CacheKey(final String query, final Map<String, Object> parameters, final SecurityContext securityContext) {
+
+			this.query      = query;
+			this.parameters = parameters != null ? new LinkedHashMap<>(parameters) : null;
+
+			if (securityContext != null) {
+
+				final Principal user = securityContext.getUser(false);
+				if (user != null) {
+
+					this.principalId = user.getUuid();
+				}
+			}
+		}
+
+		@Override
+		public int hashCode() {
+
+			int hashCode = query.hashCode();
+
+			if (parameters != null) {
+				hashCode = 31 * hashCode + parameters.hashCode();
+			}
+
+			if (principalId != null) {
+				hashCode = 31 * hashCode + principalId.hashCode();
+			}
+
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (obj instanceof CacheKey) {
+
+				final CacheKey other = (CacheKey)obj;
+
+				return query.equals(other.query) && equal(parameters, other.parameters) && equal(principalId, other.principalId);
+			}
+
+			return false;
+		}
+
+		private static boolean equal(final Object a, final Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+}
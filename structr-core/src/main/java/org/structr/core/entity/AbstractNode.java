@@ -1096,12 +1096,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 	@Override
 	public void addToIndex() {
 
-		for (PropertyKey key : StructrApp.getConfiguration().getPropertySet(entityType, PropertyView.All)) {
-			
-			if (key.isIndexed()) {
-				
-				key.index(this, this.getPropertyForIndexing(key));
-			}
+		for (PropertyKey key : StructrApp.getConfiguration().getIndexedPropertyKeys(entityType)) {
+			key.index(this, this.getPropertyForIndexing(key));
 		}
 	}
 	
@@ -1138,12 +1134,8 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable
 	@Override
 	public void indexPassiveProperties() {
 		
-		for (PropertyKey key : StructrApp.getConfiguration().getPropertySet(entityType, PropertyView.All)) {
-			
-			if (key.isPassivelyIndexed()) {
-				
-				key.index(this, this.getPropertyForIndexing(key));
-			}
+		for (PropertyKey key : StructrApp.getConfiguration().getPassivelyIndexedPropertyKeys(entityType)) {
+			key.index(this, this.getPropertyForIndexing(key));
 		}
 	}
 	
@@ -615,12 +615,8 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 	@Override
 	public void addToIndex() {
 
-		for (PropertyKey key : StructrApp.getConfiguration().getPropertySet(entityType, PropertyView.All)) {
-			
-			if (key.isIndexed()) {
-				
-				key.index(this, this.getPropertyForIndexing(key));
-			}
+		for (PropertyKey key : StructrApp.getConfiguration().getIndexedPropertyKeys(entityType)) {
+			key.index(this, this.getPropertyForIndexing(key));
 		}
 	}
 	
@@ -657,12 +653,8 @@ public abstract class AbstractRelationship<S extends NodeInterface, T extends No
 	@Override
 	public void indexPassiveProperties() {
 
-		for (PropertyKey key : StructrApp.getConfiguration().getPropertySet(entityType, PropertyView.All)) {
-			
-			if (key.isPassivelyIndexed()) {
-				
-				key.index(this, this.getPropertyForIndexing(key));
-			}
+		for (PropertyKey key : StructrApp.getConfiguration().getPassivelyIndexedPropertyKeys(entityType)) {
+			key.index(this, this.getPropertyForIndexing(key));
 		}
 		
 	}
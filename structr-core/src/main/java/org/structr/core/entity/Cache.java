@@ -18,45 +18,420 @@
  */
 package org.structr.core.entity;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import org.structr.core.property.Property;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
+import org.structr.common.View;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.PropertyReadCache;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.IntProperty;
+import org.structr.core.property.Property;
+import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
+import org.structr.schema.SchemaHelper;
 
 /**
- * A cache entity. This is only used in tests right now.
+ * A persistent, bounded list of the first <i>size</i> nodes of a given type,
+ * sorted by a given property (descending by default). The list is kept
+ * up to date incrementally when nodes of the cached type are created,
+ * modified or deleted, see {@link org.structr.core.graph.CacheRegistry}.
+ *
+ * The cached node ids are stored on the cache node itself, so reading the
+ * list only requires <i>size</i> node lookups and no index query. The sort
+ * key must be an indexed property, because the list is rebuilt with a
+ * sorted search if nodes have left it that cannot be replaced otherwise.
  *
  * @author Christian Morgner
  */
 public class Cache extends AbstractNode {
 
-	public static final Property<String>  sortKey = new StringProperty("sortKey");
-	public static final Property<Integer> size    = new IntProperty("size");
-	
-	private int internalSize = 0;
-	
-	public List<AbstractNode> getCachedList(SecurityContext securityContext, int numResults) {
-		
-		return Collections.emptyList();
+	private static final Logger logger               = Logger.getLogger(Cache.class.getName());
+
+	public static final Property<String>  cachedType = new StringProperty("cachedType");
+	public static final Property<String>  sortKey    = new StringProperty("sortKey");
+	public static final Property<String>  sortOrder  = new StringProperty("sortOrder");
+	public static final Property<Integer> size       = new IntProperty("size");
+
+	public static final View publicView = new View(Cache.class, PropertyView.Public,
+		cachedType, sortKey, sortOrder, size
+	);
+
+	private static final String CACHED_IDS_KEY       = "cachedIds";
+	private static final String COMPLETE_KEY         = "cacheComplete";
+
+	/**
+	 * Returns the first numResults cached nodes that are visible in the
+	 * given security context.
+	 *
+	 * @param securityContext
+	 * @param numResults
+	 * @return the cached nodes
+	 */
+	public List<AbstractNode> getCachedList(final SecurityContext securityContext, final int numResults) {
+
+		final List<AbstractNode> nodes     = new ArrayList<>();
+		final NodeFactory factory          = new NodeFactory(securityContext);
+		final GraphDatabaseService graphDb = dbNode.getGraphDatabase();
+
+		for (final long id : getCachedIds()) {
+
+			if (nodes.size() >= numResults) {
+				break;
+			}
+
+			try {
+				final AbstractNode node = (AbstractNode)factory.instantiate(graphDb.getNodeById(id));
+				if (node != null) {
+
+					nodes.add(node);
+				}
+
+			} catch (NotFoundException nfex) {
+
+				// node was deleted concurrently
+
+			} catch (FrameworkException fex) {
+
+				logger.log(Level.WARNING, "Unable to instantiate cached node {0}: {1}", new Object[] { id, fex.getMessage() } );
+			}
+		}
+
+		return nodes;
 	}
-	
-	public void insertNode(AbstractNode node) {
-		
+
+	/**
+	 * Inserts the given node or updates its position, according to its
+	 * current sort value. Must be called in a transaction.
+	 *
+	 * @param node
+	 * @throws FrameworkException
+	 */
+	public void insertNode(final AbstractNode node) throws FrameworkException {
+		update(Collections.<NodeInterface>singletonList(node), Collections.<Long>emptyList());
 	}
-	
-	public void removeNode(AbstractNode node) {
-		
+
+	/**
+	 * Removes the given node from this cache. Must be called in a
+	 * transaction.
+	 *
+	 * @param node
+	 * @throws FrameworkException
+	 */
+	public void removeNode(final AbstractNode node) throws FrameworkException {
+		update(Collections.<NodeInterface>emptyList(), Collections.singletonList(node.getId()));
 	}
-	
+
+	/**
+	 * Applies the given modifications to this cache. The cache node is
+	 * write-locked for the rest of the transaction, so concurrent updates
+	 * of the same cache are serialized.
+	 *
+	 * @param modifiedNodes nodes that were created or whose sort value changed
+	 * @param deletedIds ids of nodes that were deleted
+	 * @throws FrameworkException
+	 */
+	public void update(final Iterable<NodeInterface> modifiedNodes, final Iterable<Long> deletedIds) throws FrameworkException {
+
+		final PropertyKey key = getSortKey();
+		if (key == null || getCachedType() == null) {
+			return;
+		}
+
+		TransactionCommand.acquireWriteLock(dbNode);
+
+		if (!dbNode.hasProperty(CACHED_IDS_KEY)) {
+
+			rebuild();
+			return;
+		}
+
+		final CacheState state = loadState(key);
+
+		for (final Long id : deletedIds) {
+
+			if (state.remove(id) && !state.complete) {
+
+				state.rebuild = true;
+			}
+		}
+
+		for (final NodeInterface node : modifiedNodes) {
+
+			if (state.rebuild) {
+				break;
+			}
+
+			state.apply(node, key);
+		}
+
+		if (state.rebuild) {
+
+			rebuild();
+
+		} else {
+
+			storeState(state);
+		}
+	}
+
+	/**
+	 * Rebuilds this cache from a sorted search. Must be called in a
+	 * transaction.
+	 *
+	 * @throws FrameworkException
+	 */
+	public void rebuild() throws FrameworkException {
+
+		final Class type      = getCachedType();
+		final PropertyKey key = getSortKey();
+
+		if (type == null || key == null) {
+			return;
+		}
+
+		TransactionCommand.acquireWriteLock(dbNode);
+
+		final CacheState state = new CacheState(getCapacity(), isDescending());
+		final int pageSize     = state.capacity + 1;
+		List<NodeInterface> page = null;
+		int pageNumber           = 1;
+
+		// nodes without a sort value are sorted first in descending order, skip them
+		do {
+			page = StructrApp.getInstance(SecurityContext.getSuperUserInstance()).nodeQuery(type).sort(key).order(state.descending).pageSize(pageSize).page(pageNumber++).getAsList();
+
+			for (final NodeInterface node : page) {
+
+				final Comparable value = node.getComparableProperty(key);
+				if (value != null && state.entries.size() < pageSize) {
+
+					state.entries.add(new CacheEntry(node.getId(), node.getUuid(), value));
+				}
+			}
+
+		} while (state.entries.size() < pageSize && page.size() == pageSize);
+
+		state.complete = state.entries.size() <= state.capacity;
+
+		while (state.entries.size() > state.capacity) {
+			state.entries.remove(state.entries.size() - 1);
+		}
+
+		storeState(state);
+	}
+
 	public int size() {
-		return internalSize;
-	}
-	
-	@Override
-	public void onNodeInstantiation() {
-		Integer _size = getProperty(Cache.size);
-		this.internalSize = _size != null ? _size : 0;
-	}	
+		return getCapacity();
+	}
+
+	public Class getCachedType() {
+
+		final String typeName = getProperty(Cache.cachedType);
+		if (typeName != null) {
+
+			return SchemaHelper.getEntityClassForRawType(typeName);
+		}
+
+		return null;
+	}
+
+	public PropertyKey getSortKey() {
+
+		final String keyName = getProperty(Cache.sortKey);
+		final Class type     = getCachedType();
+
+		if (keyName != null && type != null) {
+
+			return StructrApp.getConfiguration().getPropertyKeyForJSONName(type, keyName);
+		}
+
+		return null;
+	}
+
+	public boolean isDescending() {
+		return !"asc".equalsIgnoreCase(getProperty(Cache.sortOrder));
+	}
+
+	// ----- private methods -----
+	private int getCapacity() {
+
+		final Integer _size = getProperty(Cache.size);
+		return _size != null && _size > 0 ? _size : 10;
+	}
+
+	private long[] getCachedIds() {
+
+		if (dbNode.hasProperty(CACHED_IDS_KEY)) {
+
+			return (long[])dbNode.getProperty(CACHED_IDS_KEY);
+		}
+
+		return new long[0];
+	}
+
+	private CacheState loadState(final PropertyKey key) {
+
+		final CacheState state             = new CacheState(getCapacity(), isDescending());
+		final GraphDatabaseService graphDb = dbNode.getGraphDatabase();
+		final NodeFactory factory          = new NodeFactory(SecurityContext.getSuperUserInstance());
+
+		state.complete = Boolean.TRUE.equals(dbNode.getProperty(COMPLETE_KEY, Boolean.FALSE));
+
+		for (final long id : getCachedIds()) {
+
+			try {
+				final Node node         = graphDb.getNodeById(id);
+				final NodeInterface obj = (NodeInterface)factory.instantiate(node);
+				final Comparable value  = obj != null ? obj.getComparableProperty(key) : null;
+
+				if (value != null) {
+
+					state.entries.add(new CacheEntry(id, obj.getUuid(), value));
+
+				} else {
+
+					state.rebuild |= !state.complete;
+				}
+
+			} catch (NotFoundException | FrameworkException ex) {
+
+				state.rebuild |= !state.complete;
+			}
+		}
+
+		// sort values may have been changed without notifying this cache
+		Collections.sort(state.entries, state.comparator);
+
+		return state;
+	}
+
+	private void storeState(final CacheState state) {
+
+		final long[] ids = new long[state.entries.size()];
+		int i            = 0;
+
+		for (final CacheEntry entry : state.entries) {
+			ids[i++] = entry.id;
+		}
+
+		dbNode.setProperty(CACHED_IDS_KEY, ids);
+		dbNode.setProperty(COMPLETE_KEY, state.complete);
+
+		PropertyReadCache.evictCurrent(dbNode);
+	}
+
+	// ----- nested classes -----
+	private static class CacheEntry {
+
+		private Comparable value = null;
+		private String uuid      = null;
+		private long id          = -1L;
+
+		public CacheEntry(final long id, final String uuid, final Comparable value) {
+
+			this.id    = id;
+			this.uuid  = uuid;
+			this.value = value;
+		}
+	}
+
+	private static class CacheState {
+
+		private final List<CacheEntry> entries = new ArrayList<>();
+		private Comparator<CacheEntry> comparator = null;
+		private boolean descending             = true;
+		private boolean complete               = false;
+		private boolean rebuild                = false;
+		private int capacity                   = 0;
+
+		public CacheState(final int capacity, final boolean descending) {
+
+			this.capacity   = capacity;
+			this.descending = descending;
+			this.comparator = new Comparator<CacheEntry>() {
+
+				@Override
+				public int compare(final CacheEntry e1, final CacheEntry e2) {
+
+					int result = e1.value.compareTo(e2.value);
+					if (result == 0 && e1.uuid != null && e2.uuid != null) {
+
+						// same secondary order as the sorted search
+						result = e1.uuid.compareTo(e2.uuid);
+					}
+
+					return CacheState.this.descending ? -result : result;
+				}
+			};
+		}
+
+		public boolean remove(final long id) {
+
+			for (int i=0; i<entries.size(); i++) {
+
+				if (entries.get(i).id == id) {
+
+					entries.remove(i);
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		public void apply(final NodeInterface node, final PropertyKey key) {
+
+			final boolean wasMember = remove(node.getId());
+			final Comparable value  = node.getComparableProperty(key);
+
+			if (value == null) {
+
+				// node left the cache, nodes outside of the cache may be next
+				rebuild |= wasMember && !complete;
+				return;
+			}
+
+			final CacheEntry entry = new CacheEntry(node.getId(), node.getUuid(), value);
+			int position           = Collections.binarySearch(entries, entry, comparator);
+
+			if (position < 0) {
+				position = -position - 1;
+			}
+
+			if (position >= capacity) {
+
+				complete = false;
+				rebuild |= wasMember;
+				return;
+			}
+
+			// a member that moved to the end of an incomplete cache may
+			// have been overtaken by nodes that are not in the cache
+			if (wasMember && !complete && position == entries.size()) {
+
+				rebuild = true;
+				return;
+			}
+
+			entries.add(position, entry);
+
+			if (entries.size() > capacity) {
+
+				entries.remove(entries.size() - 1);
+				complete = false;
+			}
+		}
+	}
 }
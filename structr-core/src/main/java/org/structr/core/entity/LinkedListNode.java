@@ -18,6 +18,9 @@
  */
 package org.structr.core.entity;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.neo4j.graphdb.Node;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
@@ -229,6 +232,71 @@ public abstract class LinkedListNode<R extends AbstractListSiblings<T, T>, T ext
 		}
 	}
 	
+	/**
+	 * Links the given elements in the given order, so that they form the
+	 * complete list defined by this LinkedListManager. Sibling links that
+	 * already match the new order are kept, so reordering or inserting
+	 * elements only changes the links that differ. Links to elements that
+	 * are not contained in the given list are removed.
+	 *
+	 * @param elements the elements in their new order
+	 */
+	public void listSetElements(final List<T> elements) throws FrameworkException {
+
+		final App app                = StructrApp.getInstance(securityContext);
+		final Set<T> elementSet      = new HashSet<>(elements);
+		final Set<T> correctlyLinked = new HashSet<>();
+
+		if (elementSet.size() != elements.size()) {
+			throw new IllegalStateException("Cannot link a node to itself!");
+		}
+
+		try {
+			app.beginTx();
+
+			for (int i=0; i<elements.size(); i++) {
+
+				final T element = elements.get(i);
+				final T next    = i < elements.size() - 1 ? elements.get(i+1) : null;
+
+				final R outgoing = element.getOutgoingRelationship(getSiblingLinkType());
+				if (outgoing != null) {
+
+					if (outgoing.getTargetNode().equals(next)) {
+
+						correctlyLinked.add(element);
+
+					} else {
+
+						app.delete(outgoing);
+					}
+				}
+
+				// links from outside of the list, links from inside are handled above
+				final R incoming = element.getIncomingRelationship(getSiblingLinkType());
+				if (incoming != null && !elementSet.contains(incoming.getSourceNode())) {
+
+					app.delete(incoming);
+				}
+			}
+
+			for (int i=0; i<elements.size() - 1; i++) {
+
+				final T element = elements.get(i);
+
+				if (!correctlyLinked.contains(element)) {
+					linkNodes(getSiblingLinkType(), element, elements.get(i+1));
+				}
+			}
+
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
 	public <R extends Relation<T, T, ?, ?>> void linkNodes(final Class<R> linkType, final T startNode, final T endNode) throws FrameworkException {
 		linkNodes(linkType, startNode, endNode, null);
 	}
@@ -248,6 +316,38 @@ public abstract class LinkedListNode<R extends AbstractListSiblings<T, T>, T ext
 		}
 	}
 	
+	/**
+	 * Removes all sibling links of the given element without linking its
+	 * neighbours. Use this method to remove several elements from a list
+	 * before calling {@link #listSetElements(java.util.List)}.
+	 *
+	 * @param element the element to unlink
+	 */
+	protected void listUnlink(final T element) throws FrameworkException {
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		try {
+			app.beginTx();
+
+			final R outgoing = element.getOutgoingRelationship(getSiblingLinkType());
+			if (outgoing != null) {
+				app.delete(outgoing);
+			}
+
+			final R incoming = element.getIncomingRelationship(getSiblingLinkType());
+			if (incoming != null) {
+				app.delete(incoming);
+			}
+
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
 	private void unlinkNodes(final Class<R> linkType, final T startNode, final T endNode) throws FrameworkException {
 		
 		final App app = StructrApp.getInstance(securityContext);
@@ -21,13 +21,27 @@ package org.structr.core.entity;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.commons.collections.map.LRUMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.collection.Iterables;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.relationship.AbstractChildren;
 import org.structr.core.entity.relationship.AbstractListSiblings;
+import org.structr.core.graph.GraphDatabaseCommand;
+import org.structr.core.graph.PropertyReadCache;
+import org.structr.core.graph.RelationshipFactory;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.property.IntProperty;
 import org.structr.core.property.PropertyKey;
@@ -44,6 +58,11 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 	// this is not used for the node itself but for the relationship(s) this node maintains
 	public static final PropertyKey<Integer> positionProperty = new IntProperty("position");
 
+	// the version of the child list is stored in the parent node and changed on every modification
+	private static final String CHILD_LIST_VERSION_KEY            = "childListVersion";
+	private static final int POSITION_INDEX_CACHE_SIZE            = 1000;
+	private static final Map<String, PositionIndex> positionIndex = Collections.synchronizedMap(new LRUMap(POSITION_INDEX_CACHE_SIZE));
+
 	public abstract Class<R> getChildLinkType();
 	
 	public T treeGetParent() {
@@ -116,6 +135,8 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 			// insert new node in linked list
 			LinkedTreeNode.super.listInsertBefore(refChild, newChild);
 
+			childListModified(getNode());
+
 			app.commitTx();
 
 		} finally {
@@ -156,6 +177,8 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 			// insert new node in linked list
 			LinkedTreeNode.super.listInsertAfter(refChild, newChild);
 
+			childListModified(getNode());
+
 			app.commitTx();
 
 		} finally {
@@ -217,6 +240,111 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 		}
 	}
 	
+	/**
+	 * Replaces the children of this node with the given nodes, in the given
+	 * order, in a single transaction. Child and sibling relationships that
+	 * already exist are kept wherever possible, so that reordering or
+	 * inserting many children only changes the positions and the sibling
+	 * links that actually differ. Nodes that are children of a different
+	 * parent are moved to this node, with a single update of the child
+	 * list of each old parent.
+	 *
+	 * @param children the new children of this node
+	 */
+	public void treeSetChildren(final List<T> children) throws FrameworkException {
+
+		final App app                 = StructrApp.getInstance(securityContext);
+		final Map<T, R> existing      = new LinkedHashMap<>();
+		final Map<T, Set<T>> moved    = new LinkedHashMap<>();
+		final Set<T> childSet         = new HashSet<>(children);
+
+		if (childSet.size() != children.size()) {
+			throw new IllegalStateException("Cannot add a node twice!");
+		}
+
+		try {
+			app.beginTx();
+
+			for (final R rel : getOutgoingRelationships(getChildLinkType())) {
+				existing.put((T)rel.getTargetNode(), rel);
+			}
+
+			// remove children that are not contained in the new list
+			for (final Entry<T, R> entry : existing.entrySet()) {
+
+				if (!childSet.contains(entry.getKey())) {
+
+					LinkedTreeNode.super.listUnlink(entry.getKey());
+					app.delete(entry.getValue());
+				}
+			}
+
+			// collect nodes that must be moved from their old parents
+			for (final T child : children) {
+
+				if (!existing.containsKey(child)) {
+
+					final T oldParent = (T)child.treeGetParent();
+					if (oldParent != null) {
+
+						Set<T> movedChildren = moved.get(oldParent);
+						if (movedChildren == null) {
+
+							movedChildren = new HashSet<>();
+							moved.put(oldParent, movedChildren);
+						}
+
+						movedChildren.add(child);
+					}
+				}
+			}
+
+			// remove moved nodes from their old parents, one pass per parent
+			for (final Entry<T, Set<T>> entry : moved.entrySet()) {
+
+				final List<T> remaining = entry.getKey().treeGetChildren();
+
+				remaining.removeAll(entry.getValue());
+				entry.getKey().treeSetChildren(remaining);
+			}
+
+			int position = 0;
+
+			for (final T child : children) {
+
+				final R rel = existing.get(child);
+				if (rel != null) {
+
+					final Integer oldPosition = rel.getProperty(positionProperty);
+					if (oldPosition == null || oldPosition.intValue() != position) {
+
+						rel.setProperty(positionProperty, position);
+					}
+
+				} else {
+
+					final PropertyMap properties = new PropertyMap();
+					properties.put(positionProperty, position);
+
+					linkNodes(getChildLinkType(), (T)LinkedTreeNode.this, child, properties);
+				}
+
+				position++;
+			}
+
+			// link siblings, existing links in the correct order are kept
+			LinkedTreeNode.super.listSetElements(children);
+
+			childListModified(getNode());
+
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
 	public T treeGetFirstChild() {
 		return treeGetChild(0);
 	}
@@ -233,18 +361,32 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 	}
 	
 	public T treeGetChild(final int position) {
-		
-		for (R rel : getOutgoingRelationships(getChildLinkType())) {
-			
-			Integer pos = rel.getProperty(positionProperty);
-			
-			if (pos != null && pos.intValue() == position) {
-				
+
+		final PositionIndex index = getPositionIndex();
+		final Long relId          = index.getRelationshipId(position);
+
+		if (relId != null) {
+
+			final R rel = instantiateRelationship(relId);
+			if (rel != null) {
+
 				return (T)rel.getTargetNode();
 			}
+
+			// index is outdated
+			positionIndex.remove(getUuid());
+
+			for (R childRel : getOutgoingRelationships(getChildLinkType())) {
+
+				Integer pos = childRel.getProperty(positionProperty);
+
+				if (pos != null && pos.intValue() == position) {
+
+					return (T)childRel.getTargetNode();
+				}
+			}
 		}
 
-		
 		return null;
 	}
 	
@@ -276,10 +418,43 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 	}
 	
 	public int treeGetChildCount() {
-		return (int)Iterables.count(getOutgoingRelationships(getChildLinkType()));
+		return getPositionIndex().size();
 	}
 	
 	public List<R> treeGetChildRelationships() {
+
+		final List<R> childRels = new ArrayList<>();
+
+		for (final Long relId : getPositionIndex().getRelationshipIds()) {
+
+			final R rel = instantiateRelationship(relId);
+			if (rel == null) {
+
+				// index is outdated
+				positionIndex.remove(getUuid());
+
+				return sortChildRelationships();
+			}
+
+			childRels.add(rel);
+		}
+
+		return childRels;
+	}
+
+	/**
+	 * Changes the version of the child list of the given node, which
+	 * invalidates the cached position index of the node. Must be called
+	 * in the same transaction as the modification of the child list.
+	 *
+	 * @param parentNode the parent node
+	 */
+	public static void childListModified(final Node parentNode) {
+		parentNode.setProperty(CHILD_LIST_VERSION_KEY, UUID.randomUUID().toString());
+		PropertyReadCache.evictCurrent(parentNode);
+	}
+
+	private List<R> sortChildRelationships() {
 		
 		// fetch all relationships
 		List<R> childRels = Iterables.toList(getOutgoingRelationships(getChildLinkType()));
@@ -331,6 +506,8 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 				childRel.setProperty(positionProperty, position++);
 			}
 
+			childListModified(getNode());
+
 			app.commitTx();
 
 		} finally {
@@ -360,4 +537,88 @@ public abstract class LinkedTreeNode<R extends AbstractChildren<T, T>, S extends
 			app.finishTx();
 		}
 	}
+
+	/**
+	 * Returns the position index of the children of this node. The index
+	 * is cached per node and rebuilt when the child list version of the
+	 * node changes, so that it is never used after a modification, even
+	 * if the modifying transaction was rolled back.
+	 */
+	private PositionIndex getPositionIndex() {
+
+		final String uuid    = getUuid();
+		final Object version = getNode().getProperty(CHILD_LIST_VERSION_KEY, null);
+
+		PositionIndex index = uuid != null ? positionIndex.get(uuid) : null;
+		if (index == null || !index.hasVersion(version)) {
+
+			index = new PositionIndex(version, sortChildRelationships());
+
+			if (uuid != null) {
+				positionIndex.put(uuid, index);
+			}
+		}
+
+		return index;
+	}
+
+	private R instantiateRelationship(final long relId) {
+
+		try {
+			final GraphDatabaseService graphDb = StructrApp.getInstance().command(GraphDatabaseCommand.class).execute();
+			final Relationship rel             = graphDb.getRelationshipById(relId);
+
+			if (rel.getStartNode().equals(getNode())) {
+
+				return new RelationshipFactory<R>(securityContext).adapt(rel);
+			}
+
+		} catch (NotFoundException nfex) {
+
+			// relationship was deleted
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	private static class PositionIndex {
+
+		private final Map<Integer, Long> byPosition = new LinkedHashMap<>();
+		private final List<Long> relIds             = new ArrayList<>();
+		private Object version                      = null;
+
+		public PositionIndex(final Object version, final List<? extends RelationshipInterface> sortedRels) {
+
+			this.version = version;
+
+			for (final RelationshipInterface rel : sortedRels) {
+
+				final Integer pos = rel.getProperty(positionProperty);
+				final long id     = rel.getId();
+
+				if (pos != null && !byPosition.containsKey(pos)) {
+					byPosition.put(pos, id);
+				}
+
+				relIds.add(id);
+			}
+		}
+
+		public boolean hasVersion(final Object otherVersion) {
+			return version == null ? otherVersion == null : version.equals(otherVersion);
+		}
+
+		public Long getRelationshipId(final int position) {
+			return byPosition.get(position);
+		}
+
+		public List<Long> getRelationshipIds() {
+			return relIds;
+		}
+
+		public int size() {
+			return relIds.size();
+		}
+	}
 }
@@ -26,6 +26,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.DegreeCounter;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.notion.Notion;
 import org.structr.core.notion.RelationshipNotion;
@@ -68,7 +69,8 @@ public abstract class ManyToOne<S extends NodeInterface, T extends NodeInterface
 		final Class<? extends ManyToOne> clazz = this.getClass();
 		final Class<T> targetType              = getTargetType();
 
-		if (sourceNode != null) {
+		// no need to scan the relationships if the degree counters say that there are none
+		if (sourceNode != null && DegreeCounter.mayHaveRelationships(sourceNode.getNode(), this, Direction.OUTGOING)) {
 
 			// check existing relationships
 			final Relation<?, T, ?, ?> outgoingRel = sourceNode.getOutgoingRelationship(clazz);
@@ -26,6 +26,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.DegreeCounter;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.notion.Notion;
 import org.structr.core.notion.RelationshipNotion;
@@ -68,7 +69,8 @@ public abstract class OneToMany<S extends NodeInterface, T extends NodeInterface
 		final Class<? extends OneToMany> clazz = this.getClass();
 		final Class<S> sourceType              = getSourceType();
 
-		if (targetNode != null) {
+		// no need to scan the relationships if the degree counters say that there are none
+		if (targetNode != null && DegreeCounter.mayHaveRelationships(targetNode.getNode(), this, Direction.INCOMING)) {
 
 			// check existing relationships
 			final Relation<?, T, ?, ?> incomingRel = targetNode.getIncomingRelationship(clazz);
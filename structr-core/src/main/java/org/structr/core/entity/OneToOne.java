@@ -26,6 +26,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.DegreeCounter;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.notion.Notion;
 import org.structr.core.notion.RelationshipNotion;
@@ -69,7 +70,8 @@ public abstract class OneToOne<S extends NodeInterface, T extends NodeInterface>
 		final Class<S> sourceType             = getSourceType();
 		final Class<T> targetType             = getTargetType();
 
-		if (sourceNode != null) {
+		// no need to scan the relationships if the degree counters say that there are none
+		if (sourceNode != null && DegreeCounter.mayHaveRelationships(sourceNode.getNode(), this, Direction.OUTGOING)) {
 
 			// check existing relationships
 			final Relation<S, ?, ?, ?> outgoingRel = sourceNode.getOutgoingRelationship(clazz);
@@ -80,7 +82,7 @@ public abstract class OneToOne<S extends NodeInterface, T extends NodeInterface>
 			}
 		}
 
-		if (targetNode != null) {
+		if (targetNode != null && DegreeCounter.mayHaveRelationships(targetNode.getNode(), this, Direction.INCOMING)) {
 
 			// check existing relationships
 			final Relation<?, T, ?, ?> incomingRel = targetNode.getIncomingRelationship(clazz);
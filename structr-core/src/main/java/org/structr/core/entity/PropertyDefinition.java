@@ -375,6 +375,16 @@ public class PropertyDefinition<T> extends AbstractNode implements PropertyKey<T
 		return getProperty(PropertyDefinition.indexedWhenEmptyProperty);
 	}
 
+	@Override
+	public boolean isSubstringIndexed() {
+		
+		if (delegate != null) {
+			return delegate.isSubstringIndexed();
+		}
+		
+		return false;
+	}
+
 	@Override
 	public boolean isCollection() {
 		
@@ -607,4 +617,14 @@ public class PropertyDefinition<T> extends AbstractNode implements PropertyKey<T
 		
 		return null;
 	}
+
+	@Override
+	public Property<T> substringIndexed() {
+		
+		if (delegate != null) {
+			return delegate.substringIndexed();
+		}
+		
+		return null;
+	}
 }
@@ -18,6 +18,9 @@
  */
 package org.structr.core.entity.relationship;
 
+import org.structr.common.SecurityContext;
+import org.structr.common.error.ErrorBuffer;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.LinkedTreeNode;
 import org.structr.core.entity.OneToMany;
 import org.structr.core.property.IntProperty;
@@ -35,4 +38,23 @@ public abstract class AbstractChildren<S extends LinkedTreeNode, T extends Linke
 	public String name() {
 		return "CONTAINS";
 	}
+
+	@Override
+	public void onRelationshipCreation() {
+		LinkedTreeNode.childListModified(getRelationship().getStartNode());
+	}
+
+	@Override
+	public void onRelationshipDeletion() {
+		LinkedTreeNode.childListModified(getRelationship().getStartNode());
+	}
+
+	@Override
+	public boolean onModification(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
+
+		// positions may have been changed
+		LinkedTreeNode.childListModified(getRelationship().getStartNode());
+
+		return super.onModification(securityContext, errorBuffer);
+	}
 }
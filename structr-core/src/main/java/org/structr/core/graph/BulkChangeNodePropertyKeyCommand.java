@@ -19,13 +19,12 @@
 package org.structr.core.graph;
 
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.tooling.GlobalGraphOperations;
 
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.Result;
 import org.structr.core.Services;
 import org.structr.core.entity.AbstractNode;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Level;
@@ -62,28 +61,31 @@ public class BulkChangeNodePropertyKeyCommand extends NodeServiceCommand impleme
 		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
 		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
 		
+		final int threads	= getBulkThreads(properties);
+		final boolean resume	= getBulkResume(properties);
+		final Map<String, Object> parameters	= new LinkedHashMap<>(properties);
 		String type		= null;
 		final String oldKey	= (String) properties.get("oldKey");
 		final String newKey	= (String) properties.get("newKey");
 		
 		if (graphDb != null && StringUtils.isNotBlank(oldKey) && StringUtils.isNotBlank(newKey)) {
 
-			Result<AbstractNode> nodes = null;
+			Iterable<AbstractNode> nodes = null;
 
 			if (properties.containsKey(AbstractNode.type.dbName())) {
 
 				type = (String) properties.get(AbstractNode.type.dbName());
 
-				nodes = StructrApp.getInstance(securityContext).nodeQuery(SchemaHelper.getEntityClassForRawType(type)).getResult();
+				nodes = StructrApp.getInstance(securityContext).nodeQuery(SchemaHelper.getEntityClassForRawType(type)).getAsList();
 
 				properties.remove(AbstractNode.type.dbName());
 
 			} else {
 
-				nodes = nodeFactory.instantiateAll(GlobalGraphOperations.at(graphDb).getAllNodes());
+				nodes = streamAllNodes(graphDb, nodeFactory);
 			}
 
-			long nodeCount = bulkGraphOperation(securityContext, nodes.getResults(), 1000, "ChangeNodePropertyKey", new BulkGraphOperation<AbstractNode>() {
+			long nodeCount = bulkGraphOperation(securityContext, nodes, 1000, "ChangeNodePropertyKey", new BulkGraphOperation<AbstractNode>() {
 
 				@Override
 				public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
@@ -128,7 +130,7 @@ public class BulkChangeNodePropertyKeyCommand extends NodeServiceCommand impleme
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.log(Level.WARNING, "Unable to set node properties: {0}", t.getMessage() );
 				}
-			});
+			}, true, threads, resume, parameters);
 
 
 			logger.log(Level.INFO, "Fixed {0} nodes ...", nodeCount);
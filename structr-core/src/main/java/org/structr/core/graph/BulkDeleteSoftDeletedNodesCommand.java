@@ -19,12 +19,11 @@
 package org.structr.core.graph;
 
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.tooling.GlobalGraphOperations;
 
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -53,7 +52,10 @@ public class BulkDeleteSoftDeletedNodesCommand extends NodeServiceCommand implem
 		
 		if (graphDb != null) {
 
-			Result<AbstractNode> nodes = nodeFactory.instantiateAll(GlobalGraphOperations.at(graphDb).getAllNodes());
+			final Iterable<AbstractNode> nodes   = streamAllNodes(graphDb, nodeFactory);
+			final int threads                    = getBulkThreads(properties);
+			final boolean resume                 = getBulkResume(properties);
+			final Map<String, Object> parameters = new LinkedHashMap<>(properties);
 
 			final boolean erase;
 			
@@ -63,7 +65,7 @@ public class BulkDeleteSoftDeletedNodesCommand extends NodeServiceCommand implem
 				erase = false;
 			}
 			
-			bulkGraphOperation(securityContext, nodes.getResults(), 1000, "DeleteSoftDeletedNodes", new BulkGraphOperation<AbstractNode>() {
+			bulkGraphOperation(securityContext, nodes, 1000, "DeleteSoftDeletedNodes", new BulkGraphOperation<AbstractNode>() {
 
 				@Override
 				public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
@@ -93,7 +95,7 @@ public class BulkDeleteSoftDeletedNodesCommand extends NodeServiceCommand implem
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.log(Level.WARNING, "Unable to set node properties: {0}", t.getMessage() );
 				}
-			});
+			}, true, threads, resume, parameters);
 
 		}
 
@@ -19,6 +19,7 @@
 package org.structr.core.graph;
 
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,8 +47,11 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 	@Override
 	public void execute(Map<String, Object> attributes) throws FrameworkException {
 
-		final String propertyName   = (String)attributes.get("name");
-		final String entityTypeName = (String)attributes.get("type");
+		final String propertyName            = (String)attributes.get("name");
+		final String entityTypeName          = (String)attributes.get("type");
+		final int threads                    = getBulkThreads(attributes);
+		final boolean resume                 = getBulkResume(attributes);
+		final Map<String, Object> parameters = new LinkedHashMap<>(attributes);
 
 		if (entityTypeName != null) {
 
@@ -145,7 +149,7 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 						public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 							t.printStackTrace();
 						}
-					});
+					}, true, threads, resume, parameters);
 					
 					logger.log(Level.INFO, "Fixed {0} nodes", nodeCount);
 					
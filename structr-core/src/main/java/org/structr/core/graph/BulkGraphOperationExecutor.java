@@ -0,0 +1,395 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.structr.common.SecurityContext;
+import org.structr.core.GraphObject;
+import org.structr.core.Services;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * Executes a {@link BulkGraphOperation} on a stream of graph objects.
+ *
+ * The input is read in chunks of commitCount objects, each chunk is
+ * processed in its own transaction. If more than one thread is configured
+ * and there is no surrounding transaction, the chunks are distributed
+ * across a pool of worker threads. The ids of all objects in committed
+ * chunks are recorded in a checkpoint file, so that an interrupted run can
+ * be resumed by skipping them. This does not depend on the order of the
+ * input, or on objects that were removed from the input in the meantime.
+ * The checkpoint file is specific to the description and the parameters
+ * of the operation.
+ *
+ * Node factories cache every instantiated node in their security context,
+ * so these caches are cleared after each chunk to keep the memory usage
+ * independent of the size of the input. Null objects, e.g. nodes that the
+ * factory could not instantiate, are skipped.
+ *
+ * @author Christian Morgner
+ */
+public class BulkGraphOperationExecutor<T extends GraphObject> {
+
+	private static final Logger logger                                  = Logger.getLogger(BulkGraphOperationExecutor.class.getName());
+	private static final List<BulkOperationProgress> runningOperations = new CopyOnWriteArrayList<>();
+
+	private Map<String, Object> parameters  = null;
+	private BulkGraphOperation<T> operation = null;
+	private SecurityContext securityContext = null;
+	private BulkOperationProgress progress  = null;
+	private String description              = null;
+	private boolean validation              = true;
+	private boolean resume                  = false;
+	private long commitCount                = 1000L;
+	private int threadCount                 = 1;
+
+	public BulkGraphOperationExecutor(final SecurityContext securityContext, final long commitCount, final String description, final BulkGraphOperation<T> operation, final boolean validation, final int threadCount, final boolean resume) {
+		this(securityContext, commitCount, description, operation, validation, threadCount, resume, null);
+	}
+
+	public BulkGraphOperationExecutor(final SecurityContext securityContext, final long commitCount, final String description, final BulkGraphOperation<T> operation, final boolean validation, final int threadCount, final boolean resume, final Map<String, Object> parameters) {
+
+		this.securityContext = securityContext;
+		this.commitCount     = Math.max(1L, commitCount);
+		this.description     = description;
+		this.operation       = operation;
+		this.validation      = validation;
+		this.threadCount     = Math.max(1, threadCount);
+		this.resume          = resume;
+		this.parameters      = parameters;
+	}
+
+	/**
+	 * Returns the progress of all bulk operations that are currently running.
+	 *
+	 * @return the progress of the running operations
+	 */
+	public static Collection<BulkOperationProgress> getRunningOperations() {
+		return new LinkedList<>(runningOperations);
+	}
+
+	/**
+	 * Executes the operation on the given objects.
+	 *
+	 * @param objects the objects to operate on
+	 * @return the number of objects processed
+	 */
+	public long execute(final Iterable<T> objects) {
+
+		final boolean parallel     = threadCount > 1 && !TransactionCommand.inTransaction();
+		final Iterator<T> iterator = objects.iterator();
+		final Set<Long> processed  = resume ? readCheckpoint() : new HashSet<Long>();
+		long skipped               = 0L;
+
+		progress = new BulkOperationProgress(description, parallel ? threadCount : 1);
+
+		if (!resume) {
+
+			// start over
+			deleteCheckpoint();
+		}
+
+		if (!processed.isEmpty()) {
+			logger.log(Level.INFO, "{0}: resuming, skipping {1} objects processed in a previous run", new Object[] { description, processed.size() } );
+		}
+
+		progress.setResumedFrom(processed.size());
+		runningOperations.add(progress);
+
+		final ExecutorService executor = parallel ? Executors.newFixedThreadPool(threadCount) : null;
+		final Semaphore pendingChunks  = new Semaphore(threadCount * 2);
+
+		try {
+
+			while (iterator.hasNext()) {
+
+				final List<T> chunk = new ArrayList<>((int)Math.min(commitCount, 10000L));
+
+				while (iterator.hasNext() && chunk.size() < commitCount) {
+
+					final T obj = iterator.next();
+
+					// factories return null for nodes they can't instantiate
+					if (obj == null) {
+						continue;
+					}
+
+					// skip the objects that were processed in a previous run
+					if (processed.contains(obj.getId())) {
+
+						skipped++;
+						continue;
+					}
+
+					chunk.add(obj);
+				}
+
+				if (chunk.isEmpty()) {
+					continue;
+				}
+
+				if (parallel) {
+
+					// limit the number of chunks read ahead of the workers
+					pendingChunks.acquireUninterruptibly();
+
+					executor.submit(new Runnable() {
+
+						@Override
+						public void run() {
+
+							try {
+								processChunk(chunk);
+
+							} finally {
+
+								pendingChunks.release();
+							}
+						}
+					});
+
+				} else {
+
+					processChunk(chunk);
+				}
+			}
+
+		} finally {
+
+			if (executor != null) {
+
+				executor.shutdown();
+
+				try {
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+				} catch (InterruptedException iex) {
+
+					logger.log(Level.WARNING, "{0}: interrupted while waiting for workers", description);
+				}
+			}
+
+			runningOperations.remove(progress);
+		}
+
+		if (skipped > 0) {
+			logger.log(Level.INFO, "{0}: skipped {1} objects", new Object[] { description, skipped } );
+		}
+
+		if (progress.getFailedTransactionCount() == 0) {
+
+			deleteCheckpoint();
+
+		} else {
+
+			logger.log(Level.WARNING, "{0}: {1} transactions failed, resume possible with {2} committed objects", new Object[] { description, progress.getFailedTransactionCount(), progress.getCheckpoint() } );
+		}
+
+		return progress.getProcessedCount();
+	}
+
+	// ----- private methods -----
+	private void processChunk(final List<T> chunk) {
+
+		final App app   = StructrApp.getInstance(securityContext);
+		boolean success = false;
+
+		try {
+
+			app.beginTx();
+
+			for (final T obj : chunk) {
+
+				try {
+
+					operation.handleGraphObject(securityContext, obj);
+
+				} catch (Throwable t) {
+
+					operation.handleThrowable(securityContext, t, obj);
+				}
+			}
+
+			app.commitTx(validation);
+			success = true;
+
+		} catch (Throwable t) {
+
+			// bulk transaction failed, what to do?
+			operation.handleTransactionFailure(securityContext, t);
+
+		} finally {
+
+			app.finishTx();
+		}
+
+		chunkFinished(chunk, success);
+		releaseChunk(chunk);
+	}
+
+	/**
+	 * Removes the objects of the given chunk from the node caches of the
+	 * security contexts they were instantiated with.
+	 *
+	 * @param chunk
+	 */
+	private void releaseChunk(final List<T> chunk) {
+
+		final Set<SecurityContext> contexts = Collections.newSetFromMap(new IdentityHashMap<SecurityContext, Boolean>());
+
+		contexts.add(securityContext);
+
+		for (final T obj : chunk) {
+
+			if (obj instanceof AbstractNode) {
+
+				contexts.add(((AbstractNode)obj).getSecurityContext());
+			}
+		}
+
+		for (final SecurityContext context : contexts) {
+
+			if (context != null) {
+
+				context.cleanUp();
+			}
+		}
+	}
+
+	private synchronized void chunkFinished(final List<T> chunk, final boolean success) {
+
+		final long processed = progress.addProcessed(chunk.size());
+
+		if (success) {
+
+			progress.setCheckpoint(progress.getCheckpoint() + chunk.size());
+			writeCheckpoint(chunk);
+
+		} else {
+
+			progress.addFailedTransaction();
+		}
+
+		if (description != null) {
+			logger.log(Level.INFO, "{0}: {1} objects processed, {2} objects/s", new Object[] { description, processed, Math.round(progress.getThroughput()) } );
+		}
+	}
+
+	private File getCheckpointFile() {
+
+		final String basePath = Services.getInstance().getConfigurationValue(Services.BASE_PATH);
+
+		if (description != null && basePath != null) {
+
+			final StringBuilder name = new StringBuilder(description.replaceAll("[^a-zA-Z0-9_\\-]+", "_"));
+
+			// runs with different parameters must not share a checkpoint
+			if (parameters != null && !parameters.isEmpty()) {
+				name.append("-").append(DigestUtils.md5Hex(new TreeMap<>(parameters).toString()));
+			}
+
+			return new File(basePath + "/checkpoints/" + name.toString() + ".checkpoint");
+		}
+
+		return null;
+	}
+
+	private Set<Long> readCheckpoint() {
+
+		final Set<Long> processed = new HashSet<>();
+		final File file           = getCheckpointFile();
+
+		if (file != null && file.exists()) {
+
+			try {
+				for (final String line : FileUtils.readLines(file, "UTF-8")) {
+
+					final String value = line.trim();
+					if (StringUtils.isNotBlank(value) && StringUtils.isNumeric(value)) {
+
+						processed.add(Long.parseLong(value));
+					}
+				}
+
+			} catch (IOException | NumberFormatException ex) {
+
+				logger.log(Level.WARNING, "Unable to read checkpoint file {0}: {1}", new Object[] { file, ex.getMessage() } );
+			}
+		}
+
+		return processed;
+	}
+
+	private void writeCheckpoint(final List<T> chunk) {
+
+		final File file = getCheckpointFile();
+
+		if (file != null) {
+
+			final List<String> ids = new ArrayList<>(chunk.size());
+			for (final T obj : chunk) {
+
+				ids.add(Long.toString(obj.getId()));
+			}
+
+			try {
+				// append the ids of the committed objects
+				FileUtils.writeLines(file, "UTF-8", ids, true);
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to write checkpoint file {0}: {1}", new Object[] { file, ioex.getMessage() } );
+			}
+		}
+	}
+
+	private void deleteCheckpoint() {
+
+		final File file = getCheckpointFile();
+
+		if (file != null && file.exists()) {
+
+			file.delete();
+		}
+	}
+}
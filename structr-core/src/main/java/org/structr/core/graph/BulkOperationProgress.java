@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress information of a running bulk graph operation.
+ *
+ * @author Christian Morgner
+ */
+public class BulkOperationProgress {
+
+	private final AtomicLong processedCount    = new AtomicLong(0L);
+	private final AtomicLong failedCount       = new AtomicLong(0L);
+	private final long startTime               = System.currentTimeMillis();
+	private String description                  = null;
+	private int threadCount                    = 1;
+	private long resumedFrom                   = 0L;
+	private volatile long checkpoint           = 0L;
+
+	public BulkOperationProgress(final String description, final int threadCount) {
+
+		this.description = description;
+		this.threadCount = threadCount;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the number of objects that a previous run of this operation
+	 * had already processed. These objects are skipped in this run.
+	 *
+	 * @return the number of skipped objects
+	 */
+	public long getResumedFrom() {
+		return resumedFrom;
+	}
+
+	/**
+	 * Returns the number of objects processed in this run.
+	 *
+	 * @return the number of processed objects
+	 */
+	public long getProcessedCount() {
+		return processedCount.get();
+	}
+
+	/**
+	 * Returns the number of transactions that failed in this run.
+	 *
+	 * @return the number of failed transactions
+	 */
+	public long getFailedTransactionCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Returns the number of objects whose transactions have been committed
+	 * successfully, including those of previous runs.
+	 *
+	 * @return the checkpoint
+	 */
+	public long getCheckpoint() {
+		return checkpoint;
+	}
+
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * Returns the throughput of this run in objects per second.
+	 *
+	 * @return the throughput
+	 */
+	public double getThroughput() {
+
+		final long elapsed = getElapsedTime();
+
+		return elapsed > 0 ? (processedCount.get() * 1000.0) / elapsed : 0.0;
+	}
+
+	@Override
+	public String toString() {
+		return description + ": " + processedCount.get() + " objects processed, " + Math.round(getThroughput()) + " objects/s";
+	}
+
+	// ----- package-private methods -----
+	void setResumedFrom(final long resumedFrom) {
+		this.resumedFrom = resumedFrom;
+		this.checkpoint  = resumedFrom;
+	}
+
+	void setCheckpoint(final long checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	long addProcessed(final int count) {
+		return processedCount.addAndGet(count);
+	}
+
+	void addFailedTransaction() {
+		failedCount.incrementAndGet();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+
+/**
+ * Recounts the relationships of all nodes and (re-)enables the
+ * {@link DegreeCounter} properties on them. Use this command to repair
+ * the counters or to enable them on nodes that were created before
+ * the counters were introduced.
+ *
+ * @author Christian Morgner
+ */
+public class BulkRebuildDegreeCountersCommand extends NodeServiceCommand implements MaintenanceCommand {
+
+	private static final Logger logger = Logger.getLogger(BulkRebuildDegreeCountersCommand.class.getName());
+
+	@Override
+	public void execute(final Map<String, Object> attributes) throws FrameworkException {
+
+		final GraphDatabaseService graphDb     = (GraphDatabaseService) arguments.get("graphDb");
+		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
+		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
+		final int threads                      = getBulkThreads(attributes);
+		final boolean resume                   = getBulkResume(attributes);
+		final Map<String, Object> parameters   = new LinkedHashMap<>(attributes);
+
+		if (graphDb != null) {
+
+			final Iterable<AbstractNode> nodes = streamAllNodes(graphDb, nodeFactory);
+
+			logger.log(Level.INFO, "Start rebuilding relationship degree counters of all nodes");
+
+			long count = bulkGraphOperation(securityContext, nodes, 1000, "RebuildDegreeCounters", new BulkGraphOperation<AbstractNode>() {
+
+				@Override
+				public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
+
+					DegreeCounter.rebuild(node.getNode());
+				}
+
+				@Override
+				public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractNode node) {
+
+					logger.log(Level.WARNING, "Unable to rebuild degree counters of node {0}: {1}", new Object[] { node, t.getMessage() });
+				}
+
+				@Override
+				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to rebuild degree counters: {0}", t.getMessage());
+				}
+
+			}, false, threads, resume, parameters);
+
+			logger.log(Level.INFO, "Done with rebuilding degree counters of {0} nodes", count);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.helpers.Predicate;
+import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.Result;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.AbstractAggregateProperty;
+
+/**
+ * Re-computes the values of all materialized aggregate properties from
+ * scratch.
+ *
+ * @author Christian Morgner
+ */
+public class BulkRefreshMaterializedPropertiesCommand extends NodeServiceCommand implements MaintenanceCommand {
+
+	private static final Logger logger = Logger.getLogger(BulkRefreshMaterializedPropertiesCommand.class.getName());
+	private static final String idName = GraphObject.id.dbName();
+
+	@Override
+	public void execute(Map<String, Object> attributes) throws FrameworkException {
+
+		if (AbstractAggregateProperty.getMaterializedProperties().isEmpty()) {
+
+			logger.log(Level.INFO, "No materialized properties found, nothing to do.");
+			return;
+		}
+
+		final GraphDatabaseService graphDb     = (GraphDatabaseService) arguments.get("graphDb");
+		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
+		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
+		final Result<AbstractNode> result      = nodeFactory.instantiateAll(Iterables.filter(new NodeIdPredicate(), GlobalGraphOperations.at(graphDb).getAllNodes()));
+
+		logger.log(Level.INFO, "Starting refresh of materialized properties");
+
+		final long count = bulkGraphOperation(securityContext, result.getResults(), 1000, "RefreshMaterializedProperties", new BulkGraphOperation<AbstractNode>() {
+
+			@Override
+			public void handleGraphObject(SecurityContext securityContext, AbstractNode node) throws FrameworkException {
+
+				for (final AbstractAggregateProperty property : AbstractAggregateProperty.getMaterializedProperties()) {
+
+					final Class declaringClass = property.getDeclaringClass();
+					if (declaringClass != null && declaringClass.isAssignableFrom(node.getClass())) {
+
+						property.refresh(node);
+					}
+				}
+			}
+
+			@Override
+			public void handleThrowable(SecurityContext securityContext, Throwable t, AbstractNode node) {
+
+				logger.log(Level.WARNING, "Unable to refresh materialized properties of node {0}: {1}", new Object[]{node, t.getMessage()});
+
+			}
+
+			@Override
+			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to refresh materialized properties: {0}", t.getMessage());
+
+			}
+		});
+
+		logger.log(Level.INFO, "Done with refreshing materialized properties of {0} nodes", count);
+	}
+
+	private static class NodeIdPredicate implements Predicate<Node> {
+
+		@Override
+		public boolean accept(final Node node) {
+			return node.hasProperty(idName) && node.getProperty(idName) instanceof String;
+		}
+	}
+}
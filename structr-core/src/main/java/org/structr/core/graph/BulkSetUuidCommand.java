@@ -19,17 +19,15 @@
 package org.structr.core.graph;
 
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.tooling.GlobalGraphOperations;
 
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
 
 //~--- JDK imports ------------------------------------------------------------
 
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -60,6 +58,9 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 		final SecurityContext superUserContext = SecurityContext.getSuperUserInstance();
 		final NodeFactory nodeFactory          = new NodeFactory(superUserContext);
 		final RelationshipFactory relFactory   = new RelationshipFactory(superUserContext);
+		final int threads                      = getBulkThreads(attributes);
+		final boolean resume                   = getBulkResume(attributes);
+		final Map<String, Object> parameters   = new LinkedHashMap<>(attributes);
 
 		if (entityType != null) {
 
@@ -68,12 +69,11 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 			if (type != null) {
 
 				// final Result<AbstractNode> result = StructrApp.getInstance(securityContext).command(SearchNodeCommand.class).execute(true, false, Search.andExactType(type.getSimpleName()));
-				final Result<AbstractNode> result = nodeFactory.instantiateAll(GlobalGraphOperations.at(graphDb).getAllNodes());
-				final List<AbstractNode> nodes    = result.getResults();
+				final Iterable<AbstractNode> nodes = streamAllNodes(graphDb, nodeFactory);
 
 				logger.log(Level.INFO, "Start setting UUID on all nodes of type {0}", new Object[] { type.getSimpleName() });
 
-				long count = bulkGraphOperation(securityContext, nodes, 1000, "SetNodeProperties", new BulkGraphOperation<AbstractNode>() {
+				long count = bulkGraphOperation(securityContext, nodes, 1000, "SetNodeUuid", new BulkGraphOperation<AbstractNode>() {
 
 					@Override
 					public void handleGraphObject(SecurityContext securityContext, AbstractNode node) {
@@ -107,7 +107,7 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 					}
 
-				});
+				}, true, threads, resume, parameters);
 
 				logger.log(Level.INFO, "Done with setting UUID on {0} nodes", count);
 
@@ -117,7 +117,7 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 		} else if (relType != null) {
 
 			// final Result<AbstractNode> result = StructrApp.getInstance(securityContext).command(SearchNodeCommand.class).execute(true, false, Search.andExactType(type.getSimpleName()));
-			final List<AbstractRelationship> rels = relFactory.instantiate(GlobalGraphOperations.at(graphDb).getAllRelationships());
+			final Iterable<AbstractRelationship> rels = streamAllRelationships(graphDb, relFactory);
 
 			logger.log(Level.INFO, "Start setting UUID on all rels of type {0}", new Object[] { relType });
 
@@ -155,7 +155,7 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 
 				}
 
-			});
+			}, true, threads, resume, parameters);
 
 			logger.log(Level.INFO, "Done with setting UUID on {0} relationships", count);
 
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Cache;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Keeps all {@link Cache} entities up to date with the modifications of
+ * each transaction. The list of existing caches is loaded once and
+ * reloaded after a cache was created, modified or deleted.
+ *
+ * @author Christian Morgner
+ */
+public class CacheRegistry implements StructrTransactionListener {
+
+	private static CacheRegistry instance                = null;
+
+	private final AtomicLong generation                  = new AtomicLong(0L);
+	private volatile Map<Long, CacheInfo> caches         = null;
+
+	private CacheRegistry() {}
+
+	public static synchronized CacheRegistry getInstance() {
+
+		if (instance == null) {
+
+			instance = new CacheRegistry();
+			TransactionCommand.registerTransactionListener(instance);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Applies the given modification events to all affected caches. Must
+	 * be called in a transaction, after the modifications were indexed.
+	 *
+	 * @param events
+	 * @throws FrameworkException
+	 */
+	public void update(final Iterable<? extends ModificationEvent> events) throws FrameworkException {
+
+		final Set<Long> changedCaches = new TreeSet<>();
+
+		for (final ModificationEvent event : events) {
+
+			final GraphObject obj = event.getGraphObject();
+			if (obj instanceof Cache) {
+
+				// the set of caches or their configuration changed
+				invalidate();
+
+				if (!event.isDeleted()) {
+					changedCaches.add(((Cache)obj).getId());
+				}
+			}
+		}
+
+		final Map<Long, CacheInfo> registry = getCaches();
+		if (registry.isEmpty()) {
+			return;
+		}
+
+		final Map<Long, List<NodeInterface>> modifiedNodes = new TreeMap<>();
+		final Map<Long, List<Long>> deletedNodes           = new TreeMap<>();
+
+		for (final ModificationEvent event : events) {
+
+			final GraphObject obj = event.getGraphObject();
+
+			if (!event.isNode() || obj instanceof Cache || (event.isCreated() && event.isDeleted())) {
+				continue;
+			}
+
+			final NodeInterface node = (NodeInterface)obj;
+
+			for (final Map.Entry<Long, CacheInfo> entry : registry.entrySet()) {
+
+				final CacheInfo info = entry.getValue();
+				final Long cacheId   = entry.getKey();
+
+				if (!info.type.isAssignableFrom(node.getClass())) {
+					continue;
+				}
+
+				if (event.isDeleted()) {
+
+					getList(deletedNodes, cacheId).add(node.getId());
+
+				} else if (event.isCreated() || info.affectedBy(event)) {
+
+					getList(modifiedNodes, cacheId).add(node);
+				}
+			}
+		}
+
+		final Set<Long> affectedCaches = new TreeSet<>();
+		affectedCaches.addAll(modifiedNodes.keySet());
+		affectedCaches.addAll(deletedNodes.keySet());
+		affectedCaches.addAll(changedCaches);
+
+		if (affectedCaches.isEmpty()) {
+			return;
+		}
+
+		final GraphDatabaseService graphDb = StructrApp.getInstance().command(GraphDatabaseCommand.class).execute();
+		final NodeFactory factory          = new NodeFactory(SecurityContext.getSuperUserInstance());
+
+		// update caches in ascending id order to avoid deadlocks between concurrent transactions
+		for (final Long cacheId : affectedCaches) {
+
+			try {
+				final Cache cache = (Cache)factory.instantiate(graphDb.getNodeById(cacheId));
+				if (cache != null) {
+
+					if (changedCaches.contains(cacheId)) {
+
+						cache.rebuild();
+
+					} else {
+
+						cache.update(getList(modifiedNodes, cacheId), getList(deletedNodes, cacheId));
+					}
+				}
+
+			} catch (NotFoundException nfex) {
+
+				// cache was deleted concurrently
+				invalidate();
+			}
+		}
+	}
+
+	/**
+	 * Discards the list of known caches.
+	 */
+	public void invalidate() {
+
+		generation.incrementAndGet();
+		caches = null;
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void transactionCommited(final SecurityContext securityContext, final List<ModificationEvent> modificationEvents) {
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			if (event.getGraphObject() instanceof Cache) {
+
+				// caches loaded during the transaction may not contain the new state
+				invalidate();
+				return;
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private Map<Long, CacheInfo> getCaches() throws FrameworkException {
+
+		Map<Long, CacheInfo> current = caches;
+		if (current == null) {
+
+			final long currentGeneration = generation.get();
+
+			current = new LinkedHashMap<>();
+
+			for (final Cache cache : StructrApp.getInstance(SecurityContext.getSuperUserInstance()).nodeQuery(Cache.class).getAsList()) {
+
+				final Class type      = cache.getCachedType();
+				final PropertyKey key = cache.getSortKey();
+
+				if (type != null && key != null) {
+
+					current.put(cache.getId(), new CacheInfo(type, key));
+				}
+			}
+
+			current = Collections.unmodifiableMap(current);
+
+			// do not store a list that was invalidated while loading
+			if (generation.get() == currentGeneration) {
+				caches = current;
+			}
+		}
+
+		return current;
+	}
+
+	private static <T> List<T> getList(final Map<Long, List<T>> map, final Long key) {
+
+		List<T> list = map.get(key);
+		if (list == null) {
+
+			list = new ArrayList<>();
+			map.put(key, list);
+		}
+
+		return list;
+	}
+
+	// ----- nested classes -----
+	private static class CacheInfo {
+
+		private PropertyKey sortKey = null;
+		private Class type          = null;
+
+		public CacheInfo(final Class type, final PropertyKey sortKey) {
+
+			this.type    = type;
+			this.sortKey = sortKey;
+		}
+
+		public boolean affectedBy(final ModificationEvent event) {
+			return contains(event.getModifiedProperties()) || contains(event.getRemovedProperties());
+		}
+
+		private boolean contains(final PropertyMap properties) {
+			return properties != null && properties.containsKey(sortKey);
+		}
+	}
+}
@@ -19,6 +19,7 @@
 package org.structr.core.graph;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
 
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -94,8 +95,11 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 			NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
 			boolean isCreation         = true;
 
-			// Create node with type
-			node = (T) nodeFactory.instantiateWithType(graphDb.createNode(), nodeType, isCreation);
+			// Create node with type, new nodes have no relationships so degree counters can be maintained right away
+			final Node dbNode = graphDb.createNode();
+			DegreeCounter.initialize(dbNode);
+
+			node = (T) nodeFactory.instantiateWithType(dbNode, nodeType, isCreation);
 			if(node != null) {
 				
 				TransactionCommand.nodeCreated(node);
@@ -75,6 +75,9 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 		final R newRel                       = factory.instantiate(rel);
 		final Date now                       = new Date();
 
+		// maintain relationship counters of both nodes
+		DegreeCounter.relationshipCreated(rel);
+
 		// logger.log(Level.INFO, "CREATING relationship {0}-[{1}]->{2}", new Object[] {  fromNode.getType(), newRel.getRelType(), toNode.getType() } );
 
 		if (newRel != null) {
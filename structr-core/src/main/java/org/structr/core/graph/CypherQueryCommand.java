@@ -19,7 +19,6 @@
 package org.structr.core.graph;
 
 import org.neo4j.cypher.javacompat.ExecutionEngine;
-import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 
@@ -34,13 +33,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
 import org.structr.core.GraphObjectMap;
+import org.structr.core.cypher.CypherQueryCache;
 import org.structr.core.property.GenericProperty;
 
 //~--- classes ----------------------------------------------------------------
 
 /**
  * Executes the given Cypher query and tries to convert the result in a List
- * of {@link GraphObject}s.
+ * of {@link GraphObject}s. Pass variable values as parameters instead of
+ * inserting them into the query string, so that the execution plan of the
+ * query can be reused, see {@link CypherQueryCache}.
  *
  * @author Christian Morgner
  */
@@ -70,17 +72,8 @@ public class CypherQueryCommand extends NodeServiceCommand {
 		RelationshipFactory relFactory  = new RelationshipFactory(securityContext);
 		NodeFactory nodeFactory         = new NodeFactory(securityContext);
 
-		List<GraphObject> resultList = new LinkedList<>();
-		ExecutionResult result       = null;
-
-		if (parameters != null) {
-
-			result = engine.execute(query, parameters);
-			
-		} else {
-			
-			result = engine.execute(query);
-		}
+		List<GraphObject> resultList     = new LinkedList<>();
+		List<Map<String, Object>> result = CypherQueryCache.getInstance().execute(engine, securityContext, query, parameters);
 
 		for (Map<String, Object> row : result) {
 
@@ -0,0 +1,397 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+/**
+ * Maintains per-node, per-type relationship counters in raw database
+ * properties of the nodes. Counters are only maintained for nodes that
+ * were created with counters enabled or have been repaired with
+ * {@link BulkRebuildDegreeCountersCommand}, all other nodes report
+ * unknown degrees and must be scanned.
+ * 
+ * Structr commands update the counters immediately, so they are accurate
+ * within the transaction that creates or deletes a relationship. The
+ * {@link TransactionHandler} registered with the database repairs the
+ * counters of relationships that were written directly (e.g. by Cypher
+ * queries) when their transaction commits, and recounts nodes without
+ * counters as soon as their relationships change. This makes the counters
+ * authoritative for cardinality enforcement, see
+ * {@link #mayHaveRelationships(Node, RelationshipType, Direction)}. Direct
+ * writes are only counted at commit, and deletions of relationships that
+ * can no longer be resolved there are not subtracted; both cases can only
+ * cause a counter to be too high, which makes enforcement scan instead of
+ * skipping a relationship.
+ *
+ * @author Christian Morgner
+ */
+public class DegreeCounter {
+
+	private static final Logger logger = Logger.getLogger(DegreeCounter.class.getName());
+
+	// keys must not start with an underscore, those are reserved for schema properties
+	public static final String COUNTED_KEY      = "degree:counted";
+	private static final String PREFIX          = "degree:";
+	private static final String OUTGOING_PREFIX = PREFIX.concat("out:");
+	private static final String INCOMING_PREFIX = PREFIX.concat("in:");
+	private static final String LOCK_KEY        = PREFIX.concat("lock");
+
+	// ids of the relationships counted by structr commands in the current transaction
+	private static final ThreadLocal<Set<Long>> countedRelationships = new ThreadLocal<>();
+
+	/**
+	 * Enables degree counters on a node that has no relationships yet.
+	 * 
+	 * @param node 
+	 */
+	public static void initialize(final Node node) {
+
+		node.setProperty(COUNTED_KEY, true);
+		PropertyReadCache.evictCurrent(node);
+	}
+
+	public static boolean isCounted(final Node node) {
+		return node.hasProperty(COUNTED_KEY);
+	}
+
+	public static boolean isCounterProperty(final String key) {
+		return key != null && key.startsWith(PREFIX);
+	}
+
+	public static void relationshipCreated(final Relationship rel) {
+		update(rel, 1);
+	}
+
+	public static void relationshipDeleted(final Relationship rel) {
+		update(rel, -1);
+	}
+
+	/**
+	 * Forgets the relationships counted in the current thread. Must be
+	 * called when a new toplevel transaction is started.
+	 */
+	public static void clearTransactionState() {
+		countedRelationships.remove();
+	}
+
+	/**
+	 * Returns false if the degree counters of the given node show that it
+	 * has no relationships of the given type and direction, true if it has
+	 * some or if the node has no counters.
+	 * 
+	 * @param node
+	 * @param relType
+	 * @param direction
+	 * @return whether the node needs to be scanned for relationships
+	 */
+	public static boolean mayHaveRelationships(final Node node, final RelationshipType relType, final Direction direction) {
+
+		final Long degree = getDegree(node, relType, direction);
+
+		return degree == null || degree > 0;
+	}
+
+	/**
+	 * Returns the number of relationships of the given type and direction,
+	 * or null if the node has no degree counters.
+	 * 
+	 * @param node
+	 * @param relType
+	 * @param direction
+	 * @return the degree or null
+	 */
+	public static Long getDegree(final Node node, final RelationshipType relType, final Direction direction) {
+
+		if (!isCounted(node)) {
+			return null;
+		}
+
+		final String typeName = relType.name();
+
+		switch (direction) {
+
+			case OUTGOING:
+				return getCount(node, OUTGOING_PREFIX.concat(typeName));
+
+			case INCOMING:
+				return getCount(node, INCOMING_PREFIX.concat(typeName));
+
+			default:
+				return getCount(node, OUTGOING_PREFIX.concat(typeName)) + getCount(node, INCOMING_PREFIX.concat(typeName));
+		}
+	}
+
+	/**
+	 * Returns the relationship counts per type for the given direction (or
+	 * both directions if direction is null), or null if the node has no
+	 * degree counters.
+	 * 
+	 * @param node
+	 * @param direction
+	 * @return the relationship counts or null
+	 */
+	public static Map<RelationshipType, Long> getStatistics(final Node node, final Direction direction) {
+
+		if (!isCounted(node)) {
+			return null;
+		}
+
+		final Map<String, Long> counts = new LinkedHashMap<>();
+
+		for (final String key : node.getPropertyKeys()) {
+
+			String typeName = null;
+
+			if (key.startsWith(OUTGOING_PREFIX) && !Direction.INCOMING.equals(direction)) {
+
+				typeName = key.substring(OUTGOING_PREFIX.length());
+
+			} else if (key.startsWith(INCOMING_PREFIX) && !Direction.OUTGOING.equals(direction)) {
+
+				typeName = key.substring(INCOMING_PREFIX.length());
+			}
+
+			if (typeName != null) {
+
+				final Long count = counts.get(typeName);
+				counts.put(typeName, (count != null ? count : 0L) + getCount(node, key));
+			}
+		}
+
+		final Map<RelationshipType, Long> statistics = new LinkedHashMap<>();
+		for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+
+			statistics.put(DynamicRelationshipType.withName(entry.getKey()), entry.getValue());
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Recounts all relationships of the given node and enables degree
+	 * counters on it.
+	 * 
+	 * @param node 
+	 */
+	public static void rebuild(final Node node) {
+
+		final Map<String, Long> counts = new LinkedHashMap<>();
+
+		for (final Relationship rel : node.getRelationships()) {
+
+			final String typeName = rel.getType().name();
+
+			if (node.equals(rel.getStartNode())) {
+				increment(counts, OUTGOING_PREFIX.concat(typeName));
+			}
+
+			if (node.equals(rel.getEndNode())) {
+				increment(counts, INCOMING_PREFIX.concat(typeName));
+			}
+		}
+
+		lock(node);
+
+		for (final String key : node.getPropertyKeys()) {
+
+			if (key.startsWith(PREFIX) && !COUNTED_KEY.equals(key) && !counts.containsKey(key)) {
+				node.removeProperty(key);
+			}
+		}
+
+		for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+			node.setProperty(entry.getKey(), entry.getValue());
+		}
+
+		initialize(node);
+	}
+
+	// ----- private methods -----
+	private static void update(final Relationship rel, final long delta) {
+
+		Set<Long> counted = countedRelationships.get();
+		if (counted == null) {
+
+			counted = new HashSet<>();
+			countedRelationships.set(counted);
+		}
+
+		counted.add(rel.getId());
+
+		apply(rel, delta);
+	}
+
+	private static void apply(final Relationship rel, final long delta) {
+
+		final String typeName = rel.getType().name();
+
+		add(rel.getStartNode(), OUTGOING_PREFIX.concat(typeName), delta);
+		add(rel.getEndNode(),   INCOMING_PREFIX.concat(typeName), delta);
+	}
+
+	private static void add(final Node node, final String key, final long delta) {
+
+		if (isCounted(node)) {
+
+			// lock before reading to prevent lost updates
+			lock(node);
+
+			final long value = getCount(node, key) + delta;
+			if (value > 0) {
+
+				node.setProperty(key, value);
+
+			} else if (node.hasProperty(key)) {
+
+				node.removeProperty(key);
+			}
+
+			PropertyReadCache.evictCurrent(node);
+		}
+	}
+
+	private static void lock(final Node node) {
+
+		if (TransactionCommand.inTransaction()) {
+
+			TransactionCommand.acquireWriteLock(node);
+
+		} else {
+
+			// the transaction is already being committed, removing
+			// a property acquires the write lock of the node
+			node.removeProperty(LOCK_KEY);
+		}
+	}
+
+	private static long getCount(final Node node, final String key) {
+
+		final Object value = node.getProperty(key, null);
+		if (value instanceof Number) {
+
+			return ((Number)value).longValue();
+		}
+
+		return 0L;
+	}
+
+	private static void increment(final Map<String, Long> counts, final String key) {
+
+		final Long count = counts.get(key);
+		counts.put(key, count != null ? count + 1 : 1L);
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Repairs the degree counters of all nodes whose relationships were
+	 * changed without a structr command, and recounts nodes without
+	 * counters whose relationships were changed.
+	 */
+	public static class TransactionHandler implements TransactionEventHandler<Object> {
+
+		@Override
+		public Object beforeCommit(final TransactionData data) throws Exception {
+
+			final Set<Long> counted      = countedRelationships.get();
+			final Set<Long> deletedNodes = new HashSet<>();
+			final Set<Node> uncounted    = new LinkedHashSet<>();
+
+			for (final Node node : data.deletedNodes()) {
+				deletedNodes.add(node.getId());
+			}
+
+			for (final Relationship rel : data.createdRelationships()) {
+
+				final boolean isCounted = counted != null && counted.contains(rel.getId());
+
+				for (final Node node : rel.getNodes()) {
+
+					if (!deletedNodes.contains(node.getId()) && !isCounted(node)) {
+						uncounted.add(node);
+					}
+				}
+
+				if (!isCounted) {
+					apply(rel, deletedNodes, 1);
+				}
+			}
+
+			for (final Relationship rel : data.deletedRelationships()) {
+
+				if (counted == null || !counted.contains(rel.getId())) {
+
+					try {
+
+						apply(rel, deletedNodes, -1);
+
+					} catch (RuntimeException rex) {
+
+						logger.log(Level.FINE, "Unable to resolve deleted relationship {0}, counters may be too high until rebuilt.", rel.getId());
+					}
+				}
+			}
+
+			// rebuild after applying the deltas, the recount includes all changes
+			for (final Node node : uncounted) {
+				rebuild(node);
+			}
+
+			return null;
+		}
+
+		@Override
+		public void afterCommit(final TransactionData data, final Object state) {
+			clearTransactionState();
+		}
+
+		@Override
+		public void afterRollback(final TransactionData data, final Object state) {
+			clearTransactionState();
+		}
+
+		private void apply(final Relationship rel, final Set<Long> deletedNodes, final long delta) {
+
+			final String typeName = rel.getType().name();
+			final Node startNode  = rel.getStartNode();
+			final Node endNode    = rel.getEndNode();
+
+			if (!deletedNodes.contains(startNode.getId())) {
+				add(startNode, OUTGOING_PREFIX.concat(typeName), delta);
+			}
+
+			if (!deletedNodes.contains(endNode.getId())) {
+				add(endNode, INCOMING_PREFIX.concat(typeName), delta);
+			}
+		}
+	}
+}
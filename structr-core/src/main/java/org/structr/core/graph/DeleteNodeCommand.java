@@ -19,144 +19,247 @@
 package org.structr.core.graph;
 
 import org.structr.common.error.FrameworkException;
-import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.entity.Relation;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.Index;
 import org.structr.common.error.ErrorBuffer;
+import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 
 //~--- classes ----------------------------------------------------------------
 
 /**
- * Deletes a node.
+ * Deletes a node and its deletion cascade.
+ *
+ * The cascade is computed iteratively, following the cascading delete
+ * flags of the relationships ({@link Relation#SOURCE_TO_TARGET} and
+ * {@link Relation#TARGET_TO_SOURCE}), and deleted in reverse order of
+ * discovery, so that cascaded nodes are deleted before the nodes that
+ * reference them. Nodes connected by {@link Relation#CONSTRAINT_BASED}
+ * relationships are checked after deletion and deleted as well if they
+ * are no longer valid.
  *
  * @author Axel Morgner
  */
 public class DeleteNodeCommand extends NodeServiceCommand {
 
-	private static final Logger logger            = Logger.getLogger(DeleteNodeCommand.class.getName());
-	
-	
-	private Set<NodeInterface> deletedNodes = new LinkedHashSet<>();
+	private static final Logger logger          = Logger.getLogger(DeleteNodeCommand.class.getName());
+	private static final int INDEX_BATCH_SIZE   = 1000;
 
 	//~--- methods --------------------------------------------------------
 
-	public void execute(NodeInterface node) throws FrameworkException {
+	public void execute(final NodeInterface node) throws FrameworkException {
+		execute(node, 0);
+	}
 
-		doDeleteNode(node);
-		deletedNodes.clear();
+	/**
+	 * Deletes the given node and its deletion cascade. If chunkSize is
+	 * positive and there is no surrounding transaction, the cascade is
+	 * deleted in chunks of at most chunkSize nodes, each in its own
+	 * transaction. The given node is always deleted last, so an
+	 * interrupted deletion can be resumed by deleting the same node
+	 * again.
+	 *
+	 * @param node the node to delete
+	 * @param chunkSize the maximum number of nodes per transaction, or 0
+	 * @throws FrameworkException
+	 */
+	public void execute(final NodeInterface node, final int chunkSize) throws FrameworkException {
+
+		if (node.getUuid() == null) {
 
-	}
+			logger.log(Level.WARNING, "Will not delete node which has no UUID");
 
-	private AbstractNode doDeleteNode(final NodeInterface node) throws FrameworkException {
+			return;
+		}
 
-		if (!deletedNodes.contains(node) && node.getUuid() == null) {
+		final boolean chunked       = chunkSize > 0 && !TransactionCommand.inTransaction();
+		final int batchSize         = chunked ? chunkSize : INDEX_BATCH_SIZE;
+		final Set<Long> visited     = new HashSet<>();
+		List<NodeInterface> roots   = Collections.singletonList(node);
 
-			logger.log(Level.WARNING, "Will not delete node which has no UUID");
+		while (!roots.isEmpty()) {
+
+			final Set<NodeInterface> nodesToCheckAfterDeletion = new LinkedHashSet<>();
+			final List<NodeInterface> deleteSet                = collectDeleteSet(roots, visited, nodesToCheckAfterDeletion);
+			final int size                                     = deleteSet.size();
+
+			// delete in reverse order of discovery
+			Collections.reverse(deleteSet);
+
+			for (int from = 0; from < size; from += batchSize) {
+
+				final List<NodeInterface> batch = deleteSet.subList(from, Math.min(from + batchSize, size));
+
+				if (chunked) {
+
+					final App app = StructrApp.getInstance(securityContext);
+
+					try {
+						app.beginTx();
+						deleteNodes(batch);
+						app.commitTx();
+
+					} finally {
+
+						app.finishTx();
+					}
+
+				} else {
+
+					deleteNodes(batch);
+				}
+			}
+
+			// now check the nodes connected by constraint-based relationships,
+			// nodes that are no longer valid are the roots of the next cascade
+			roots = new ArrayList<>();
+
+			for (final NodeInterface nodeToCheck : nodesToCheckAfterDeletion) {
+
+				if (!visited.contains(nodeToCheck.getId()) && !nodeToCheck.isValid(new ErrorBuffer())) {
+
+					roots.add(nodeToCheck);
+				}
+			}
+		}
+	}
 
-			return null;
+	/**
+	 * Collects the deletion cascade of the given root nodes in order of
+	 * discovery, without recursion.
+	 */
+	private List<NodeInterface> collectDeleteSet(final List<NodeInterface> roots, final Set<Long> visited, final Set<NodeInterface> nodesToCheckAfterDeletion) {
 
+		final List<NodeInterface> deleteSet = new ArrayList<>();
+		final Deque<NodeInterface> stack    = new ArrayDeque<>();
+
+		for (final NodeInterface root : roots) {
+
+			if (visited.add(root.getId())) {
+				stack.push(root);
+			}
 		}
 
-		deletedNodes.add(node);
-		
-		App app = StructrApp.getInstance(securityContext);
-		
-		try {
+		while (!stack.isEmpty()) {
+
+			final NodeInterface node = stack.pop();
 
-			List<NodeInterface> nodesToCheckAfterDeletion = new LinkedList<>();
+			deleteSet.add(node);
 
-			// Delete all end nodes of outgoing relationships which are connected
-			// by relationships which are marked with DELETE_OUTGOING
+			// end nodes of outgoing relationships which are marked with DELETE_OUTGOING
 			for (AbstractRelationship rel : node.getOutgoingRelationships()) {
 
-				int cascadeDelete     = rel.cascadeDelete();
-				NodeInterface endNode = rel.getTargetNode();
+				final int cascadeDelete     = rel.cascadeDelete();
+				final NodeInterface endNode = rel.getTargetNode();
 
 				if ((cascadeDelete & Relation.CONSTRAINT_BASED) == Relation.CONSTRAINT_BASED) {
 
 					nodesToCheckAfterDeletion.add(endNode);
 				}
 
-				if (!deletedNodes.contains(endNode) && ((cascadeDelete & Relation.SOURCE_TO_TARGET) == Relation.SOURCE_TO_TARGET)) {
+				if (((cascadeDelete & Relation.SOURCE_TO_TARGET) == Relation.SOURCE_TO_TARGET) && visited.add(endNode.getId())) {
 
-					// remove end node from index
-					endNode.removeFromIndex();
-					doDeleteNode(endNode);
+					stack.push(endNode);
 				}
-
 			}
 
-			// Delete all start nodes of incoming relationships which are connected
-			// by relationships which are marked with DELETE_INCOMING
+			// start nodes of incoming relationships which are marked with DELETE_INCOMING
 			for (AbstractRelationship rel : node.getIncomingRelationships()) {
 
-				int cascadeDelete       = rel.cascadeDelete();
-				NodeInterface startNode = rel.getSourceNode();
+				final int cascadeDelete       = rel.cascadeDelete();
+				final NodeInterface startNode = rel.getSourceNode();
 
 				if ((cascadeDelete & Relation.CONSTRAINT_BASED) == Relation.CONSTRAINT_BASED) {
 
 					nodesToCheckAfterDeletion.add(startNode);
 				}
 
-				if (!deletedNodes.contains(startNode) && ((cascadeDelete & Relation.TARGET_TO_SOURCE) == Relation.TARGET_TO_SOURCE)) {
+				if (((cascadeDelete & Relation.TARGET_TO_SOURCE) == Relation.TARGET_TO_SOURCE) && visited.add(startNode.getId())) {
 
-					// remove start node from index
-					startNode.removeFromIndex();
-					doDeleteNode(startNode);
+					stack.push(startNode);
 				}
-
 			}
+		}
 
-			// deletion callback, must not prevent node deletion!
-			node.onNodeDeletion();
+		return deleteSet;
+	}
 
-			// Delete any relationship (this is PASSIVE DELETION)
-			for (AbstractRelationship r : node.getRelationships()) {
+	private void deleteNodes(final List<NodeInterface> batch) {
 
-				app.delete(r);
-			}
+		final App app = StructrApp.getInstance(securityContext);
+
+		for (final NodeInterface node : batch) {
+
+			try {
 
-			// remove node from index
-			node.removeFromIndex();
+				// deletion callback, must not prevent node deletion!
+				node.onNodeDeletion();
 
-			// mark node as deleted in transaction
-			TransactionCommand.nodeDeleted(node);
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Exception while deleting node: {0}", t);
+			}
+		}
 
-			// delete node in database
-			node.getNode().delete();
+		// remove all nodes of this batch from the index, one index at a time
+		removeFromIndex(batch);
 
-			// now check again the deletion cascade for violated constraints
-			// Check all end nodes of outgoing relationships which are connected if they are
-			// still valid after node deletion
-			for (NodeInterface nodeToCheck : nodesToCheckAfterDeletion) {
+		for (final NodeInterface node : batch) {
 
-				ErrorBuffer errorBuffer = new ErrorBuffer();
+			try {
 
-				if (!deletedNodes.contains(nodeToCheck) && !nodeToCheck.isValid(errorBuffer)) {
+				// Delete any relationship (this is PASSIVE DELETION)
+				for (AbstractRelationship r : node.getRelationships()) {
 
-					// remove end node from index
-					nodeToCheck.removeFromIndex();
-					doDeleteNode(nodeToCheck);
+					app.delete(r);
 				}
-			}
 
-		} catch (Throwable t) {
+				// mark node as deleted in transaction
+				TransactionCommand.nodeDeleted(node);
+
+				// delete node in database
+				node.getNode().delete();
 
-			logger.log(Level.WARNING, "Exception while deleting node: {0}", t);
+			} catch (Throwable t) {
 
+				logger.log(Level.WARNING, "Exception while deleting node: {0}", t);
+			}
 		}
+	}
+
+	private void removeFromIndex(final List<NodeInterface> batch) {
+
+		for (final Index<Node> index : Services.getInstance().getService(NodeService.class).getNodeIndices()) {
+
+			synchronized (index) {
 
-		return null;
+				for (final NodeInterface node : batch) {
+
+					try {
+						index.remove(node.getNode());
+
+					} catch (Throwable t) {
+
+						logger.log(Level.WARNING, "Exception while removing node from index: {0}", t);
+					}
+				}
+			}
+		}
 	}
 }
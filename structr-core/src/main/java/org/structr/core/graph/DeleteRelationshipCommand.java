@@ -81,6 +81,9 @@ public class DeleteRelationshipCommand extends NodeServiceCommand {
 			// remove object from index
 			finalRel.removeFromIndex();
 
+			// maintain relationship counters of both nodes
+			DegreeCounter.relationshipDeleted(relToDelete);
+
 			// delete node in database
 			relToDelete.delete();
 		}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global per-type node counters. A counter is initialized from the index
+ * the first time a type is counted, and it is updated by every transaction
+ * that creates or deletes nodes of that type, after the transaction was
+ * committed.
+ * 
+ * Counters are only initialized while no counted transaction is being
+ * committed, so that an index count can never include changes that will
+ * be added to the counter later.
+ *
+ * @author Christian Morgner
+ */
+public class EntityCountCache {
+
+	private static final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+	private static final AtomicInteger pendingCommits   = new AtomicInteger();
+	private static final AtomicLong generation          = new AtomicLong();
+	private static final Object lock                    = new Object();
+
+	/**
+	 * Returns the cached number of nodes of the given type, or null if
+	 * the counter for the given type was not initialized yet.
+	 * 
+	 * @param type
+	 * @return the number of nodes or null
+	 */
+	public static Long get(final String type) {
+
+		final AtomicLong count = counts.get(type);
+		if (count != null) {
+
+			return count.get();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the current generation of the counters, or -1 if a counted
+	 * transaction is being committed.
+	 * 
+	 * @return the generation or -1
+	 */
+	public static long getGeneration() {
+
+		if (pendingCommits.get() > 0) {
+			return -1L;
+		}
+
+		return generation.get();
+	}
+
+	/**
+	 * Initializes the counter for the given type with a value obtained
+	 * from the index, if no transaction changed the counters since the
+	 * given generation was obtained.
+	 * 
+	 * @param type
+	 * @param count
+	 * @param expectedGeneration 
+	 */
+	public static void initialize(final String type, final long count, final long expectedGeneration) {
+
+		synchronized (lock) {
+
+			if (expectedGeneration >= 0 && pendingCommits.get() == 0 && generation.get() == expectedGeneration) {
+
+				counts.put(type, new AtomicLong(count));
+			}
+		}
+	}
+
+	/**
+	 * Marks the beginning of a commit that creates or deletes nodes.
+	 */
+	public static void beginCommit() {
+
+		synchronized (lock) {
+
+			pendingCommits.incrementAndGet();
+			generation.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Marks the end of a commit that was started with {@link #beginCommit},
+	 * and applies the given deltas if the commit was successful.
+	 * 
+	 * @param deltas the deltas to apply, or null to discard all counters
+	 * @param successful
+	 */
+	public static void endCommit(final Map<String, Integer> deltas, final boolean successful) {
+
+		synchronized (lock) {
+
+			if (successful) {
+
+				if (deltas != null) {
+
+					for (final Map.Entry<String, Integer> entry : deltas.entrySet()) {
+
+						final AtomicLong count = counts.get(entry.getKey());
+						if (count != null) {
+
+							count.addAndGet(entry.getValue());
+						}
+					}
+
+				} else {
+
+					counts.clear();
+				}
+			}
+
+			generation.incrementAndGet();
+			pendingCommits.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Discards all counters, e.g. after bulk operations that modify the
+	 * database without notifying the transaction command.
+	 */
+	public static void invalidate() {
+
+		synchronized (lock) {
+
+			counts.clear();
+			generation.incrementAndGet();
+		}
+	}
+}
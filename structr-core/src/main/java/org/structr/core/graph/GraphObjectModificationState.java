@@ -30,6 +30,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.PropertyValidator;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.AbstractAggregateProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -53,7 +54,10 @@ public class GraphObjectModificationState implements ModificationEvent {
 	
 	private PropertyMap modifiedProperties = new PropertyMap();
 	private PropertyMap removedProperties  = new PropertyMap();
+	private PropertyMap originalProperties = new PropertyMap();
 	private RelationshipType relType       = null;
+	private NodeInterface sourceNode       = null;
+	private NodeInterface targetNode       = null;
 	private boolean isNode                 = false;
 	private boolean modified               = false;
 	private GraphObject object             = null;
@@ -66,7 +70,18 @@ public class GraphObjectModificationState implements ModificationEvent {
 		this.isNode = (object instanceof NodeInterface);
 		
 		if (!isNode) {
-			this.relType = ((RelationshipInterface)object).getRelType();
+
+			final RelationshipInterface relationship = (RelationshipInterface)object;
+
+			this.relType = relationship.getRelType();
+
+			// end nodes are only needed to maintain materialized aggregates,
+			// store them here because they are not accessible after deletion
+			if (AbstractAggregateProperty.isMaterializedOnEndNodes(relationship)) {
+
+				this.sourceNode = relationship.getSourceNode();
+				this.targetNode = relationship.getTargetNode();
+			}
 		}
 		
 		// store uuid for later use
@@ -143,6 +158,11 @@ public class GraphObjectModificationState implements ModificationEvent {
 		if (key != null) {
 			removedProperties.put(key, previousValue);
 		}
+
+		// store value from before the transaction for materialized aggregates
+		if (key != null && !originalProperties.containsKey(key) && AbstractAggregateProperty.hasMaterializedProperties()) {
+			originalProperties.put(key, previousValue);
+		}
 		
 		if (status != statusBefore) {
 			if (key != null) {
@@ -439,6 +459,37 @@ public class GraphObjectModificationState implements ModificationEvent {
 	public RelationshipType getRelationshipType() {
 		return relType;
 	}
+
+	/**
+	 * Returns the values of the modified properties from before the
+	 * current transaction. The values are only recorded if there are
+	 * materialized aggregate properties.
+	 *
+	 * @return the values from before the transaction
+	 */
+	public PropertyMap getOriginalProperties() {
+		return originalProperties;
+	}
+
+	/**
+	 * Returns the source node of a relationship, which is only recorded
+	 * if a materialized aggregate property may be declared on one of the
+	 * end nodes.
+	 *
+	 * @return the source node or null
+	 */
+	public NodeInterface getSourceNode() {
+		return sourceNode;
+	}
+
+	/**
+	 * Returns the target node of a relationship, see {@link #getSourceNode()}.
+	 *
+	 * @return the target node or null
+	 */
+	public NodeInterface getTargetNode() {
+		return targetNode;
+	}
 	
 	// ----- private methods -----
 	/**
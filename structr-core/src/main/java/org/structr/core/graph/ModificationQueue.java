@@ -18,6 +18,7 @@
  */
 package org.structr.core.graph;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -34,6 +35,9 @@ import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.property.AbstractAggregateProperty;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -49,6 +53,7 @@ public class ModificationQueue {
 	private Map<String, TransactionPostProcess> postProcesses                         = new LinkedHashMap<>();
 	private Set<String> alreadyPropagated                                             = new LinkedHashSet<>();
 	private Set<String> synchronizationKeys                                           = new TreeSet<>();
+	private PropertyReadCache propertyReadCache                                       = new PropertyReadCache();
 	
 	/**
 	 * Returns a set containing the different entity types of
@@ -110,6 +115,72 @@ public class ModificationQueue {
 		return valid;
 	}
 	
+	public void updateMaterializedProperties() throws FrameworkException {
+		AbstractAggregateProperty.updateMaterializedProperties(modifications.values());
+	}
+
+	public void updateCaches() throws FrameworkException {
+		CacheRegistry.getInstance().update(modifications.values());
+	}
+
+	/**
+	 * Returns the number of nodes created minus the number of nodes
+	 * deleted in this queue, grouped by type, or null if the type of
+	 * an existing node was changed.
+	 * 
+	 * @return the node count deltas or null
+	 */
+	public Map<String, Integer> getNodeCountDeltas() {
+
+		final Map<String, Integer> deltas = new HashMap<>();
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+
+			if (!state.isNode()) {
+				continue;
+			}
+
+			final boolean created = state.isCreated();
+			final boolean deleted = state.isDeleted();
+
+			if (created && deleted) {
+
+				// nothing to count
+				continue;
+			}
+
+			if (!created && !deleted) {
+
+				if (state.getModifiedProperties().containsKey(AbstractNode.type)) {
+					return null;
+				}
+
+				continue;
+			}
+
+			final GraphObject obj = state.getGraphObject();
+			String type           = null;
+
+			if (deleted) {
+
+				type = state.getRemovedProperties().get(AbstractNode.type);
+
+			} else {
+
+				type = obj.getType();
+			}
+
+			if (type == null) {
+				type = obj.getClass().getSimpleName();
+			}
+
+			final Integer delta = deltas.get(type);
+			deltas.put(type, (delta != null ? delta : 0) + (created ? 1 : -1));
+		}
+
+		return deltas;
+	}
+
 	public boolean doPostProcessing(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
 		
 		boolean valid = true;
@@ -146,6 +217,29 @@ public class ModificationQueue {
 		// clear collections afterwards
 		alreadyPropagated.clear();
 		modifications.clear();
+		propertyReadCache.clear();
+	}
+
+	/**
+	 * Returns the property read cache of this transaction. Entities are
+	 * evicted from it as soon as they enter this queue.
+	 *
+	 * @return the property read cache
+	 */
+	public PropertyReadCache getPropertyReadCache() {
+		return propertyReadCache;
+	}
+
+	/**
+	 * Evicts all entities of this queue from the given cache.
+	 *
+	 * @param cache
+	 */
+	public void evictFrom(final PropertyReadCache cache) {
+
+		for (final GraphObjectModificationState state : modifications.values()) {
+			cache.evict(state.getGraphObject().getPropertyContainer());
+		}
 	}
 
 	public void create(NodeInterface node) {
@@ -279,6 +373,8 @@ public class ModificationQueue {
 		String hash = hash(node);
 		GraphObjectModificationState state = modifications.get(hash);
 
+		propertyReadCache.evict(node.getPropertyContainer());
+
 		if (state == null && !(checkPropagation && alreadyPropagated.contains(hash))) {
 
 			state = new GraphObjectModificationState(node);
@@ -293,6 +389,8 @@ public class ModificationQueue {
 		String hash = hash(rel);
 		GraphObjectModificationState state = modifications.get(hash);
 
+		propertyReadCache.evict(rel.getPropertyContainer());
+
 		if (state == null) {
 
 			state = new GraphObjectModificationState(rel);
@@ -200,18 +200,31 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 	}
 	
 	private Result resultFromSpatialRecords(final SpatialRecordHits spatialRecordHits) throws FrameworkException {
+		return instantiateLocations(spatialRecordHits, spatialRecordHits.size());
+	}
+
+	/**
+	 * Instantiates the given location nodes and all nodes that are located
+	 * at them.
+	 *
+	 * @param locationNodes
+	 * @param size the number of location nodes
+	 * @return a result with the location nodes and the nodes located there
+	 * @throws FrameworkException 
+	 */
+	public Result instantiateLocations(final Iterable<Node> locationNodes, final int size) throws FrameworkException {
 
 		final int pageSize                    = factoryProfile.getPageSize();
 		final SecurityContext securityContext = factoryProfile.getSecurityContext();
 		final boolean includeDeletedAndHidden = factoryProfile.includeDeletedAndHidden();
 		final boolean publicOnly              = factoryProfile.publicOnly();
 		List<T> nodes                         = new LinkedList<>();
-		int size                              = spatialRecordHits.size();
+		int resultSize                        = size;
 		int position                          = 0;
 		int count                             = 0;
 		int offset                            = 0;
 
-		for (Node node : spatialRecordHits) {
+		for (Node node : locationNodes) {
 
 			Node realNode = node;
 			if (realNode != null) {
@@ -226,7 +239,7 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 
 					List<T> nodesAt = (List<T>)getNodesAt(n);
 
-					size += nodesAt.size();
+					resultSize += nodesAt.size();
 
 					for (T nodeAt : nodesAt) {
 
@@ -237,7 +250,7 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 								// stop if we got enough nodes
 								if (++count > pageSize) {
 
-									return new Result(nodes, size, true, false);
+									return new Result(nodes, resultSize, true, false);
 								}
 
 								nodes.add((T)nodeAt);
@@ -253,7 +266,7 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 
 		}
 
-		return new Result(nodes, size, true, false);
+		return new Result(nodes, resultSize, true, false);
 
 	}
 
@@ -265,18 +278,31 @@ public class NodeFactory<T extends NodeInterface & AccessControllable> extends F
 	 */
 	protected List<NodeInterface> getNodesAt(final NodeInterface locationNode) {
 
-		final List<NodeInterface> nodes = new LinkedList<>();
+		final List<NodeInterface> nodes          = new LinkedList<>();
+		final Set<NodeInterface> visited         = new HashSet<>();
+		final LinkedList<NodeInterface> queue    = new LinkedList<>();
+
+		queue.add(locationNode);
+		visited.add(locationNode);
 
-		// FIXME this was getRelationships before..
-//		for(RelationshipInterface rel : locationNode.getRelationships(NodeHasLocation.class)) {
-		for(RelationshipInterface rel : locationNode.getIncomingRelationships(NodeHasLocation.class)) {
+		// iterative breadth-first walk, nodes can be "at" other nodes
+		while (!queue.isEmpty()) {
 
-			NodeInterface startNode = rel.getSourceNode();
+			final NodeInterface current = queue.removeFirst();
 
-			nodes.add(startNode);
+			// FIXME this was getRelationships before..
+			for(RelationshipInterface rel : current.getIncomingRelationships(NodeHasLocation.class)) {
 
-			// add more nodes which are "at" this one
-			nodes.addAll(getNodesAt(startNode));
+				NodeInterface startNode = rel.getSourceNode();
+
+				if (startNode != null && visited.add(startNode)) {
+
+					nodes.add(startNode);
+
+					// add more nodes which are "at" this one
+					queue.add(startNode);
+				}
+			}
 		}
 
 		return nodes;
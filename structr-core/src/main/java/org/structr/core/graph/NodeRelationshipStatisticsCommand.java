@@ -37,7 +37,9 @@ import org.structr.common.error.FrameworkException;
 //~--- classes ----------------------------------------------------------------
 
 /**
- * Returns an aggregated Map of relationship counts for the given node.
+ * Returns an aggregated Map of relationship counts for the given node. The
+ * counts are read from the {@link DegreeCounter} properties of the node if
+ * available.
  *
  * @param one or more AbstractNode instances to collect the properties from.
  * @return a list of relationships for the given nodes
@@ -60,6 +62,13 @@ public class NodeRelationshipStatisticsCommand extends NodeServiceCommand {
 		Iterable<Relationship> rels            = null;
 		Node node                              = sNode.getNode();
 
+		// use degree counters if available to avoid scanning all relationships
+		Map<RelationshipType, Long> counted    = DegreeCounter.getStatistics(node, dir);
+		if (counted != null) {
+
+			return counted;
+		}
+
 		if (dir != null) {
 			
 			rels = node.getRelationships(dir);
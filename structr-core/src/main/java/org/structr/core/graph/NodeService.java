@@ -248,6 +248,10 @@ public class NodeService implements SingletonService {
 		logger.log(Level.FINE, "Initializing relationship factory...");
 
 		logger.log(Level.FINE, "Relationship factory ready.");
+
+		// repair degree counters of relationships written directly to the database
+		graphDb.registerTransactionEventHandler(new DegreeCounter.TransactionHandler());
+
 		cypherExecutionEngine = new ExecutionEngine(graphDb);
 		
 		logger.log(Level.FINE, "Cypher execution engine ready.");
@@ -269,6 +273,9 @@ public class NodeService implements SingletonService {
 			waitFor(registeredServices.isEmpty());
 			graphDb.shutdown();
 
+			// counters refer to the database that was shut down
+			EntityCountCache.invalidate();
+
 			graphDb       = null;
 			isInitialized = false;
 
@@ -335,6 +342,10 @@ public class NodeService implements SingletonService {
 		return graphDb;
 	}
 	
+	public ExecutionEngine getCypherExecutionEngine() {
+		return cypherExecutionEngine;
+	}
+	
 	@Override
 	public boolean isRunning() {
 
@@ -18,20 +18,29 @@
  */
 package org.structr.core.graph;
 
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang.StringUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.tooling.GlobalGraphOperations;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Command;
 import org.structr.core.GraphObject;
+import org.structr.core.IterableAdapter;
 import org.structr.core.Predicate;
+import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
 
 /**
  * Abstract base class for all graph service commands.
@@ -42,6 +51,9 @@ public abstract class NodeServiceCommand extends Command {
 	
 	private static final Logger logger                        = Logger.getLogger(NodeServiceCommand.class.getName());
 	private static final ArrayBlockingQueue<String> uuidQueue = new ArrayBlockingQueue<>(1000);
+
+	public static final String BULK_THREADS_KEY               = "threads";
+	public static final String BULK_RESUME_KEY                = "resume";
 	
 	@Override
 	public Class getServiceClass()	{
@@ -61,8 +73,10 @@ public abstract class NodeServiceCommand extends Command {
 	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation) throws FrameworkException {
 		return bulkGraphOperation(securityContext, nodes, commitCount, description, operation, true);
 	}
+
 	/**
-	 * Executes the given operation on all nodes in the given list.
+	 * Executes the given operation on all nodes in the given list, in a
+	 * single thread.
 	 * 
 	 * @param <T>
 	 * @param securityContext
@@ -72,54 +86,136 @@ public abstract class NodeServiceCommand extends Command {
 	 * @throws FrameworkException 
 	 */
 	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation) throws FrameworkException {
+		return bulkGraphOperation(securityContext, nodes, commitCount, description, operation, validation, 1, false);
+	}
 
-		final App app              = StructrApp.getInstance(securityContext);
-		final Iterator<T> iterator = nodes.iterator();
-		long objectCount           = 0L;
+	/**
+	 * Executes the given operation on all nodes in the given list. The
+	 * nodes are read lazily and processed in transactions of commitCount
+	 * nodes, distributed across the given number of worker threads. If
+	 * resume is true, the nodes that were processed by an earlier,
+	 * interrupted run with the same description are skipped.
+	 * 
+	 * @param <T>
+	 * @param securityContext
+	 * @param nodes the nodes to operate on
+	 * @param operation the operation to execute
+	 * @param threads the number of worker threads
+	 * @param resume whether to resume an interrupted run
+	 * @return the number of nodes processed
+	 * @throws FrameworkException 
+	 */
+	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation, final int threads, final boolean resume) throws FrameworkException {
+		return bulkGraphOperation(securityContext, nodes, commitCount, description, operation, validation, threads, resume, null);
+	}
+
+	/**
+	 * Executes the given operation on all nodes in the given list, see
+	 * above. The given parameters identify the run, an interrupted run can
+	 * only be resumed by a run with the same description and parameters.
+	 * 
+	 * @param <T>
+	 * @param securityContext
+	 * @param nodes the nodes to operate on
+	 * @param operation the operation to execute
+	 * @param threads the number of worker threads
+	 * @param resume whether to resume an interrupted run
+	 * @param parameters the parameters of the operation
+	 * @return the number of nodes processed
+	 * @throws FrameworkException 
+	 */
+	public static <T extends GraphObject> long bulkGraphOperation(final SecurityContext securityContext, final Iterable<T> nodes, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation, final int threads, final boolean resume, final Map<String, Object> parameters) throws FrameworkException {
+
+		final long objectCount = new BulkGraphOperationExecutor<>(securityContext, commitCount, description, operation, validation, threads, resume, parameters).execute(nodes);
+
+		// bulk operations may modify types and indexes directly
+		EntityCountCache.invalidate();
 		
-		while (iterator.hasNext()) {
+		return objectCount;
+	}
 
-			try {
+	/**
+	 * Returns the progress of all bulk graph operations that are currently
+	 * running.
+	 * 
+	 * @return the progress of the running bulk operations
+	 */
+	public static Collection<BulkOperationProgress> getRunningBulkOperations() {
+		return BulkGraphOperationExecutor.getRunningOperations();
+	}
 
-				app.beginTx();
-				
-				while (iterator.hasNext()) {
+	/**
+	 * Returns a lazy Iterable over all nodes in the database.
+	 * 
+	 * @param graphDb the database
+	 * @param nodeFactory the factory to instantiate the nodes with
+	 * @return all nodes
+	 */
+	protected static Iterable<AbstractNode> streamAllNodes(final GraphDatabaseService graphDb, final NodeFactory nodeFactory) {
+		return new IterableAdapter<Node, AbstractNode>(GlobalGraphOperations.at(graphDb).getAllNodes(), nodeFactory);
+	}
 
-					T node = iterator.next();
+	/**
+	 * Returns a lazy Iterable over all relationships in the database.
+	 * 
+	 * @param graphDb the database
+	 * @param relFactory the factory to instantiate the relationships with
+	 * @return all relationships
+	 */
+	protected static Iterable<AbstractRelationship> streamAllRelationships(final GraphDatabaseService graphDb, final RelationshipFactory relFactory) {
+		return new IterableAdapter<Relationship, AbstractRelationship>(GlobalGraphOperations.at(graphDb).getAllRelationships(), relFactory);
+	}
 
-					try {
+	/**
+	 * Removes the bulk execution parameter "threads" from the given
+	 * maintenance command attributes and returns the number of worker
+	 * threads. Without the parameter, the number of threads configured
+	 * with bulk.operation.threads is used (default 1).
+	 * 
+	 * @param attributes the maintenance command attributes
+	 * @return the number of worker threads
+	 */
+	protected static int getBulkThreads(final Map<String, Object> attributes) {
 
-						operation.handleGraphObject(securityContext, node);
+		final Object value = attributes.remove(BULK_THREADS_KEY);
 
-					} catch (Throwable t) {
+		if (value != null) {
 
-						operation.handleThrowable(securityContext, t, node);
-					}
+			try {
+				return Integer.parseInt(value.toString());
 
-					// commit transaction after commitCount
-					if ((++objectCount % commitCount) == 0) {
-						break;
-					}
-				}
-				
-				app.commitTx();
+			} catch (NumberFormatException nfex) {
 
-			} catch (Throwable t) {
-				
-				// bulk transaction failed, what to do?
-				operation.handleTransactionFailure(securityContext, t);
-				
-			} finally {
-				
-				app.finishTx();
-			}
-			
-			if (description != null) {
-				logger.log(Level.INFO, "{0}: {1} objects processed", new Object[] { description, objectCount } );
+				logger.log(Level.WARNING, "Invalid number of threads {0}, using default", value);
 			}
 		}
-		
-		return objectCount;
+
+		return getConfiguredBulkThreads();
+	}
+
+	/**
+	 * Removes the bulk execution parameter "resume" from the given
+	 * maintenance command attributes and returns its value.
+	 * 
+	 * @param attributes the maintenance command attributes
+	 * @return whether to resume an interrupted run
+	 */
+	protected static boolean getBulkResume(final Map<String, Object> attributes) {
+
+		final Object value = attributes.remove(BULK_RESUME_KEY);
+
+		return value != null && "true".equals(value.toString());
+	}
+
+	private static int getConfiguredBulkThreads() {
+
+		try {
+			return Integer.parseInt(StructrApp.getConfigurationValue(Services.BULK_OPERATION_THREADS, "1"));
+
+		} catch (NumberFormatException nfex) {
+
+			return 1;
+		}
 	}
 	
 	/**
@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.neo4j.graphdb.PropertyContainer;
+
+/**
+ * A cache of raw database property values, keyed by the underlying node
+ * or relationship, that lives for a single transaction or request.
+ *
+ * Inside a transaction, the cache belongs to the transaction's
+ * modification queue, and every entity that enters the queue is evicted
+ * from it. Outside of transactions, a cache is only available between
+ * {@link #beginRequest()} and {@link #endRequest()}, so values are never
+ * shared between threads or requests. The entities modified by a
+ * transaction are evicted from the request cache of the same thread
+ * when the transaction is finished. Writes that bypass the modification
+ * queue must call {@link #evictCurrent(PropertyContainer)} for the entity
+ * they write, or {@link #clearCurrent()} if the written entities are not
+ * known (e.g. Cypher).
+ *
+ * @author Christian Morgner
+ */
+public class PropertyReadCache {
+
+	private static final ThreadLocal<PropertyReadCache> requestCaches = new ThreadLocal<>();
+	private static final int MAX_CACHED_ENTITIES                      = 10000;
+
+	private final Map<PropertyContainer, Map<String, Object>> values = new HashMap<>();
+
+	PropertyReadCache() {}
+
+	/**
+	 * Returns the property read cache of the current transaction, or of
+	 * the current request if the thread is outside of a transaction, or
+	 * null if neither exists.
+	 *
+	 * @return the cache or null
+	 */
+	public static PropertyReadCache getInstance() {
+
+		if (TransactionCommand.inTransaction()) {
+			return TransactionCommand.getPropertyReadCache();
+		}
+
+		return requestCaches.get();
+	}
+
+	/**
+	 * Starts a new request-scoped cache for the current thread.
+	 */
+	public static void beginRequest() {
+		requestCaches.set(new PropertyReadCache());
+	}
+
+	/**
+	 * Discards the request-scoped cache of the current thread.
+	 */
+	public static void endRequest() {
+		requestCaches.remove();
+	}
+
+	/**
+	 * Discards all values cached by the current thread, in both the
+	 * transaction and the request cache.
+	 */
+	public static void clearCurrent() {
+
+		final PropertyReadCache transactionCache = TransactionCommand.getPropertyReadCache();
+		if (transactionCache != null) {
+
+			transactionCache.clear();
+		}
+
+		final PropertyReadCache requestCache = requestCaches.get();
+		if (requestCache != null) {
+
+			requestCache.clear();
+		}
+	}
+
+	/**
+	 * Evicts the given entity from the transaction and the request cache
+	 * of the current thread. Must be called after writing raw properties
+	 * of an entity directly.
+	 *
+	 * @param propertyContainer
+	 */
+	public static void evictCurrent(final PropertyContainer propertyContainer) {
+
+		final PropertyReadCache transactionCache = TransactionCommand.getPropertyReadCache();
+		if (transactionCache != null) {
+
+			transactionCache.evict(propertyContainer);
+		}
+
+		final PropertyReadCache requestCache = requestCaches.get();
+		if (requestCache != null) {
+
+			requestCache.evict(propertyContainer);
+		}
+	}
+
+	/**
+	 * Evicts the entities of the given modification queue from the request
+	 * cache of the current thread.
+	 *
+	 * @param modificationQueue
+	 */
+	static void evictFromRequest(final ModificationQueue modificationQueue) {
+
+		final PropertyReadCache requestCache = requestCaches.get();
+		if (requestCache != null) {
+
+			modificationQueue.evictFrom(requestCache);
+		}
+	}
+
+	public boolean contains(final PropertyContainer propertyContainer, final String key) {
+
+		final Map<String, Object> properties = values.get(propertyContainer);
+
+		return properties != null && properties.containsKey(key);
+	}
+
+	public Object get(final PropertyContainer propertyContainer, final String key) {
+
+		final Map<String, Object> properties = values.get(propertyContainer);
+		if (properties != null) {
+
+			return properties.get(key);
+		}
+
+		return null;
+	}
+
+	public void put(final PropertyContainer propertyContainer, final String key, final Object value) {
+
+		Map<String, Object> properties = values.get(propertyContainer);
+		if (properties == null) {
+
+			if (values.size() >= MAX_CACHED_ENTITIES) {
+				values.clear();
+			}
+
+			properties = new HashMap<>();
+			values.put(propertyContainer, properties);
+		}
+
+		properties.put(key, value);
+	}
+
+	public void evict(final PropertyContainer propertyContainer) {
+		values.remove(propertyContainer);
+	}
+
+	public void clear() {
+		values.clear();
+	}
+}
@@ -46,6 +46,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -66,6 +67,10 @@ import org.structr.core.Value;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.sync.BinarySyncReader;
+import org.structr.core.graph.sync.BinarySyncWriter;
+import org.structr.core.graph.sync.SyncRecord;
+import org.structr.core.graph.sync.SyncRecordHandler;
 
 /**
  *
@@ -75,6 +80,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 	private static final Logger logger                 = Logger.getLogger(SyncCommand.class.getName());
 	private static final String STRUCTR_ZIP_DB_NAME    = "db";
+	private static final String STRUCTR_ZIP_BIN_NAME   = "db.bin";
 	
 	private static final Map<Class, String> typeMap    = new LinkedHashMap<>();
 	private static final Map<Class, Method> methodMap  = new LinkedHashMap<>();
@@ -115,6 +121,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		String mode                  = (String)attributes.get("mode");
 		String fileName              = (String)attributes.get("file");
 		String validate              = (String)attributes.get("validate");
+		String format                = (String)attributes.get("format");
 		boolean doValidation         = true;
 
 		// should we validate imported nodes?
@@ -137,7 +144,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		
 		if ("export".equals(mode)) {
 			
-			exportToFile(graphDb, fileName);
+			exportToFile(graphDb, fileName, !"legacy".equals(format));
 			
 		} else if ("import".equals(mode)) {
 			
@@ -157,6 +164,19 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException 
 	 */
 	public static void exportToFile(GraphDatabaseService graphDb, String fileName) throws FrameworkException {
+		exportToFile(graphDb, fileName, true);
+	}
+	
+	/**
+	 * Exports the whole structr database to a file with the given name,
+	 * using either the binary or the legacy text format.
+	 * 
+	 * @param graphDb
+	 * @param fileName
+	 * @param binary
+	 * @throws FrameworkException 
+	 */
+	public static void exportToFile(GraphDatabaseService graphDb, String fileName, boolean binary) throws FrameworkException {
 		
 		try {
 			
@@ -164,7 +184,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			Iterable<Relationship> rels = ggop.getAllRelationships();
 			Iterable<Node> nodes        = ggop.getAllNodes();
 			
-			exportToStream(new FileOutputStream(fileName), nodes, rels, null);
+			exportToStream(new FileOutputStream(fileName), nodes, rels, null, binary);
 
 		} catch (Throwable t) {
 			
@@ -204,6 +224,22 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 	 * @throws FrameworkException 
 	 */
 	public static void exportToStream(OutputStream outputStream, Iterable<Node> nodes, Iterable<Relationship> relationships, Iterable<String> filePaths) throws FrameworkException {
+		exportToStream(outputStream, nodes, relationships, filePaths, true);
+	}
+	
+	/**
+	 * Exports the given part of the structr database to the given output stream,
+	 * using either the binary or the legacy text format. Both formats can be
+	 * read by {@link #importFromStream}.
+	 * 
+	 * @param outputStream
+	 * @param nodes
+	 * @param relationships
+	 * @param filePaths
+	 * @param binary
+	 * @throws FrameworkException 
+	 */
+	public static void exportToStream(OutputStream outputStream, Iterable<Node> nodes, Iterable<Relationship> relationships, Iterable<String> filePaths, boolean binary) throws FrameworkException {
 	
 		try {
 			
@@ -227,7 +263,14 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			exportDirectory(zos, new File("files"), "", filesToInclude.isEmpty() ? null : filesToInclude);
 
 			// export database
-			exportDatabase(zos, writer, nodes, relationships);
+			if (binary) {
+				
+				exportBinaryDatabase(zos, nodes, relationships);
+				
+			} else {
+				
+				exportDatabase(zos, writer, nodes, relationships);
+			}
 			
 			// finish ZIP file
 			zos.finish();
@@ -266,6 +309,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 					importDatabase(graphDb, securityContext, zis, doValidation);
 
+				} else if (STRUCTR_ZIP_BIN_NAME.equals(entry.getName())) {
+
+					importBinaryDatabase(graphDb, securityContext, zis, doValidation);
+
 				} else {
 					
 					// store other files in "files" dir..
@@ -554,6 +601,40 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		logger.log(Level.INFO, "Exported {0} nodes and {1} rels", new Object[] { nodeCount, relCount } );
 	}
 	
+	private static void exportBinaryDatabase(ZipOutputStream zos, Iterable<Node> nodes, Iterable<Relationship> relationships) throws IOException {
+		
+		// blocks are compressed individually, so the ZIP entry itself is not
+		final ZipEntry dbEntry = new ZipEntry(STRUCTR_ZIP_BIN_NAME);
+		
+		zos.setLevel(Deflater.NO_COMPRESSION);
+		zos.putNextEntry(dbEntry);
+
+		final BinarySyncWriter syncWriter = new BinarySyncWriter(zos);
+		long nodeCount                    = 0L;
+		long relCount                     = 0L;
+
+		try {
+
+			syncWriter.writeHeader();
+
+			nodeCount = syncWriter.writeNodes(nodes);
+			relCount  = syncWriter.writeRelationships(relationships);
+
+			syncWriter.finish();
+
+		} finally {
+
+			// stop worker threads if writing failed
+			syncWriter.close();
+		}
+
+		// finish db entry
+		zos.closeEntry();
+		zos.setLevel(6);
+
+		logger.log(Level.INFO, "Exported {0} nodes and {1} rels", new Object[] { nodeCount, relCount } );
+	}
+	
 	private static void importDirectory(ZipInputStream zis, ZipEntry entry) throws IOException {
 		
 		if (entry.isDirectory()) {
@@ -655,6 +736,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 
 								RelationshipType relType = DynamicRelationshipType.withName(relTypeName);
 								currentObject = startNode.createRelationshipTo(endNode, relType);
+								DegreeCounter.relationshipCreated((Relationship)currentObject);
 
 								// store for later use
 								rels.add((Relationship)currentObject);
@@ -683,8 +765,10 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 										uuidMap.put(uuid, (Node)currentObject);
 									}
 
-									// store object in DB
-									currentObject.setProperty(currentKey, obj);
+									// store object in DB, degree counters of the source database are not valid here
+									if (!DegreeCounter.isCounterProperty(currentKey)) {
+										currentObject.setProperty(currentKey, obj);
+									}
 
 									currentKey = null;
 
@@ -711,22 +795,7 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 			relCountValue.set(securityContext, relCount);
 
 			// make nodes visible in transaction context
-			RelationshipFactory relFactory     = new RelationshipFactory(securityContext);
-			NodeFactory nodeFactory            = new NodeFactory(securityContext);
-
-			for (Node node : nodes) {
-
-				NodeInterface entity = nodeFactory.instantiate(node);
-				TransactionCommand.nodeCreated(entity);
-				entity.addToIndex();
-			}
-
-			for (Relationship rel : rels) {
-
-				RelationshipInterface entity = relFactory.instantiate(rel);
-				TransactionCommand.relationshipCreated(entity);
-				entity.addToIndex();
-			}
+			indexImportedObjects(securityContext, nodes, rels);
 			
 			app.commitTx();
 			
@@ -745,4 +814,112 @@ public class SyncCommand extends NodeServiceCommand implements MaintenanceComman
 		DecimalFormat decimalFormat  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 		logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
 	}
+	
+	private static void importBinaryDatabase(final GraphDatabaseService graphDb, final SecurityContext securityContext, final ZipInputStream zis, final boolean doValidation) throws FrameworkException {
+	
+		final App app                   = StructrApp.getInstance();
+		final String uuidPropertyName   = GraphObject.id.dbName();
+		final Map<String, Node> uuidMap = new LinkedHashMap<>();
+		final List<Relationship> rels   = new LinkedList<>();
+		final List<Node> nodes          = new LinkedList<>();
+		double t0                       = System.nanoTime();
+		
+		try {
+			
+			app.beginTx();
+
+			// blocks are decoded in parallel, but records arrive here in stream order
+			new BinarySyncReader(zis).read(new SyncRecordHandler() {
+
+				@Override
+				public void handleRecord(final SyncRecord record) {
+
+					PropertyContainer currentObject = null;
+
+					if (record.isNode()) {
+
+						final Node node   = graphDb.createNode();
+						final Object uuid = record.getProperties().get(uuidPropertyName);
+
+						if (uuid instanceof String) {
+							uuidMap.put((String)uuid, node);
+						}
+
+						// store for later use
+						nodes.add(node);
+						currentObject = node;
+
+					} else if (record.isRelationship()) {
+
+						final Node startNode = uuidMap.get(record.getStartNodeId());
+						final Node endNode   = uuidMap.get(record.getEndNodeId());
+
+						if (startNode != null && endNode != null) {
+
+							final RelationshipType relType = DynamicRelationshipType.withName(record.getRelationshipType());
+							final Relationship rel         = startNode.createRelationshipTo(endNode, relType);
+							DegreeCounter.relationshipCreated(rel);
+
+							// store for later use
+							rels.add(rel);
+							currentObject = rel;
+						}
+					}
+
+					if (currentObject != null) {
+
+						for (final Entry<String, Object> entry : record.getProperties().entrySet()) {
+
+							final Object value = entry.getValue();
+							if (value != null && !DegreeCounter.isCounterProperty(entry.getKey())) {
+
+								currentObject.setProperty(entry.getKey(), value);
+							}
+						}
+					}
+				}
+			});
+
+			logger.log(Level.INFO, "Imported {0} nodes and {1} rels, committing transaction..", new Object[] { nodes.size(), rels.size() } );
+
+			// make nodes visible in transaction context
+			indexImportedObjects(securityContext, nodes, rels);
+
+			app.commitTx(doValidation);
+
+		} catch (IOException ioex) {
+
+			throw new FrameworkException(500, ioex.getMessage());
+
+		} finally {
+			
+			app.finishTx();
+		}
+		
+		double t1   = System.nanoTime();
+		double time = ((t1 - t0) / 1000000000.0);
+
+		DecimalFormat decimalFormat  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		logger.log(Level.INFO, "Import done in {0} s", decimalFormat.format(time));
+	}
+	
+	private static void indexImportedObjects(final SecurityContext securityContext, final List<Node> nodes, final List<Relationship> rels) throws FrameworkException {
+		
+		RelationshipFactory relFactory     = new RelationshipFactory(securityContext);
+		NodeFactory nodeFactory            = new NodeFactory(securityContext);
+
+		for (Node node : nodes) {
+
+			NodeInterface entity = nodeFactory.instantiate(node);
+			TransactionCommand.nodeCreated(entity);
+			entity.addToIndex();
+		}
+
+		for (Relationship rel : rels) {
+
+			RelationshipInterface entity = relFactory.instantiate(rel);
+			TransactionCommand.relationshipCreated(entity);
+			entity.addToIndex();
+		}
+	}
 }
@@ -19,11 +19,13 @@
 package org.structr.core.graph;
 
 
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
 
 //~--- JDK imports ------------------------------------------------------------
 
@@ -55,7 +57,7 @@ import org.structr.core.property.PropertyKey;
 public class TransactionCommand extends NodeServiceCommand {
 
 	private static final Logger logger                                  = Logger.getLogger(TransactionCommand.class.getName());
-	private static final Set<StructrTransactionListener> listeners      = new LinkedHashSet<>();
+	private static final Set<StructrTransactionListener> listeners      = new CopyOnWriteArraySet<>();
 	private static final ThreadLocal<TransactionCommand> currentCommand = new ThreadLocal<>();
 	private static final ThreadLocal<TransactionReference> transactions = new ThreadLocal<>();
 	private static final MultiSemaphore                    semaphore    = new MultiSemaphore();
@@ -74,6 +76,9 @@ public class TransactionCommand extends NodeServiceCommand {
 			this.modificationQueue = new ModificationQueue();
 			this.errorBuffer       = new ErrorBuffer();
 			tx                     = new TransactionReference(graphDb.beginTx());
+
+			// forget relationships counted by an earlier transaction of this thread
+			DegreeCounter.clearTransactionState();
 			
 			transactions.set(tx);
 			currentCommand.set(this);
@@ -104,6 +109,9 @@ public class TransactionCommand extends NodeServiceCommand {
 				}
 			}
 			
+			// 1.2: update materialized aggregate properties of affected nodes
+			modificationQueue.updateMaterializedProperties();
+
 			// 1.5: execute validatable post-transaction action
 			if (doValidation && !modificationQueue.doPostProcessing(securityContext, errorBuffer)) {
 
@@ -132,6 +140,20 @@ public class TransactionCommand extends NodeServiceCommand {
 				throw new FrameworkException(422, errorBuffer);
 			}
 
+			// 4. update cache entities, after indexing so that rebuilds see the changes of this transaction
+			try {
+				modificationQueue.updateCaches();
+
+			} catch (FrameworkException | RuntimeException ex) {
+
+				tx.failure();
+
+				// release semaphores as the transaction is now finished
+				semaphore.release(synchronizationKeys);
+
+				throw ex;
+			}
+
 			try {
 				tx.success();
 
@@ -155,15 +177,37 @@ public class TransactionCommand extends NodeServiceCommand {
 			
 			if (tx.isToplevel()) {
 
+				// collect node count changes while the transaction is still open
+				final boolean countable                = modificationQueue != null && tx.isSuccessful();
+				final Map<String, Integer> countDeltas = countable ? modificationQueue.getNodeCountDeltas() : null;
+				final boolean updateCounts             = countable && (countDeltas == null || !countDeltas.isEmpty());
+				boolean committed                      = false;
+
 				// cleanup
 				currentCommand.remove();
 				transactions.remove();
 
+				if (updateCounts) {
+					EntityCountCache.beginCommit();
+				}
+
 				try {
 					tx.finish();
+					committed = tx.isSuccessful();
 					
 				} catch (Throwable t) {
 					t.printStackTrace();
+
+				} finally {
+
+					if (updateCounts) {
+						EntityCountCache.endCommit(countDeltas, committed);
+					}
+				}
+
+				// evict modified entities from the request cache of this thread
+				if (modificationQueue != null) {
+					PropertyReadCache.evictFromRequest(modificationQueue);
 				}
 
 				if (doCallbacks && modificationQueue != null && tx.isSuccessful()) {
@@ -348,6 +392,42 @@ public class TransactionCommand extends NodeServiceCommand {
 		return currentCommand.get() != null;
 	}
 
+	/**
+	 * Returns the property read cache of the current transaction, or null
+	 * if the current thread is outside of a transaction.
+	 *
+	 * @return the property read cache or null
+	 */
+	public static PropertyReadCache getPropertyReadCache() {
+
+		final TransactionCommand command = currentCommand.get();
+		if (command != null && command.getModificationQueue() != null) {
+
+			return command.getModificationQueue().getPropertyReadCache();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Acquires a write lock on the given entity that is held until the
+	 * current transaction is finished.
+	 * 
+	 * @param entity the entity to lock
+	 */
+	public static void acquireWriteLock(final PropertyContainer entity) {
+
+		final TransactionReference tx = transactions.get();
+		if (tx != null) {
+
+			tx.acquireWriteLock(entity);
+
+		} else {
+
+			logger.log(Level.SEVERE, "Trying to acquire write lock while outside of transaction!");
+		}
+	}
+
 	private ModificationQueue getModificationQueue() {
 		return modificationQueue;
 	}
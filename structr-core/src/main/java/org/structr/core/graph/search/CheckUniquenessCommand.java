@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeService.NodeIndex;
+import org.structr.core.graph.NodeService.RelationshipIndex;
+import org.structr.core.graph.NodeServiceCommand;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * Checks whether another entity of a given type already holds a given
+ * property value, using a single exact query on the keyword index.
+ * 
+ * The index query includes the changes of the current transaction, so
+ * entities created or modified earlier in the same transaction are found
+ * as well. Index hits are not instantiated, the first hit that is not the
+ * entity itself and not deleted or hidden ends the search.
+ *
+ * @author Christian Morgner
+ */
+public class CheckUniquenessCommand extends NodeServiceCommand {
+
+	private static final Logger logger = Logger.getLogger(CheckUniquenessCommand.class.getName());
+
+	/**
+	 * Returns the UUID of an entity of the given type (or one of its
+	 * subtypes) that has the given value in the given property and is not
+	 * the given entity, or null if there is no such entity.
+	 * 
+	 * @param entity the entity to check
+	 * @param type the type to search in, or null to search in all types
+	 * @param key the property key
+	 * @param value the value
+	 * @return the UUID of the conflicting entity or null
+	 * @throws FrameworkException 
+	 */
+	public <T> String execute(final GraphObject entity, final Class type, final PropertyKey<T> key, final T value) throws FrameworkException {
+
+		final SearchAttribute<T> valueAttribute = Search.andExactProperty(securityContext, key, value);
+		final Query valueQuery                  = valueAttribute.getQuery();
+
+		if (valueQuery == null) {
+
+			// value can not be looked up in the index
+			return executeQuery(entity, type, key, value);
+		}
+
+		final BooleanQuery query = new BooleanQuery();
+
+		query.add(valueQuery, Occur.MUST);
+
+		if (type != null) {
+			query.add(Search.andExactTypeAndSubtypes(type).getQuery(), Occur.MUST);
+		}
+
+		final Index<? extends PropertyContainer> index = getKeywordIndex(entity);
+		final long entityId                            = entity.getId();
+		IndexHits<? extends PropertyContainer> hits    = null;
+
+		synchronized (index) {
+			hits = index.query(query);
+		}
+
+		try {
+
+			for (final PropertyContainer hit : hits) {
+
+				// deleted and hidden entities are ignored, like in a node query
+				if (getId(hit) != entityId && !isDeletedOrHidden(hit)) {
+
+					return (String)hit.getProperty(GraphObject.id.dbName(), null);
+				}
+			}
+
+		} catch (IllegalStateException ise) {
+
+			logger.log(Level.FINE, "Index hit was deleted concurrently, falling back to query", ise);
+
+			return executeQuery(entity, type, key, value);
+
+		} finally {
+
+			hits.close();
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private <T> String executeQuery(final GraphObject entity, final Class type, final PropertyKey<T> key, final T value) throws FrameworkException {
+
+		final App app            = StructrApp.getInstance(securityContext);
+		List<GraphObject> result = null;
+
+		if (entity instanceof NodeInterface) {
+
+			result = app.nodeQuery(type != null ? type : AbstractNode.class).and(key, value).getAsList();
+
+		} else {
+
+			result = app.relationshipQuery(type != null ? type : AbstractRelationship.class).and(key, value).getAsList();
+		}
+
+		for (final GraphObject obj : result) {
+
+			if (obj.getId() != entity.getId()) {
+
+				return obj.getUuid();
+			}
+		}
+
+		return null;
+	}
+
+	private Index<? extends PropertyContainer> getKeywordIndex(final GraphObject entity) {
+
+		if (entity instanceof RelationshipInterface) {
+
+			return (Index<? extends PropertyContainer>)arguments.get(RelationshipIndex.rel_keyword.name());
+		}
+
+		return (Index<? extends PropertyContainer>)arguments.get(NodeIndex.keyword.name());
+	}
+
+	private boolean isDeletedOrHidden(final PropertyContainer propertyContainer) {
+
+		return Boolean.TRUE.equals(propertyContainer.getProperty(AbstractNode.deleted.dbName(), null))
+			|| Boolean.TRUE.equals(propertyContainer.getProperty(AbstractNode.hidden.dbName(), null));
+	}
+
+	private long getId(final PropertyContainer propertyContainer) {
+
+		if (propertyContainer instanceof Node) {
+
+			return ((Node)propertyContainer).getId();
+		}
+
+		return ((Relationship)propertyContainer).getId();
+	}
+}
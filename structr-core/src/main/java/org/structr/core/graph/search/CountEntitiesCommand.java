@@ -18,6 +18,8 @@
  */
 package org.structr.core.graph.search;
 
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.index.Term;
@@ -30,13 +32,28 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.EntityCountCache;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeService;
 import org.structr.core.graph.NodeServiceCommand;
+import org.structr.core.graph.TransactionCommand;
 
 /**
- * A special command that uses a Lucene index lookup to count the number of
- * entities between a lower and an upper search term. This is used for range
- * queries.
+ * A special command that counts entities without instantiating them.
+ * 
+ * Plain type counts are served from the per-type counters maintained by
+ * {@link EntityCountCache}, filtered counts use the number of index hits
+ * of the corresponding Lucene query. Note that no security checks are
+ * applied, so the results are only accurate in superuser context.
+ *
+ * Nodes marked as deleted or hidden are counted unless the caller asks to
+ * exclude them, which matches the result count of a query that doesn't
+ * include deleted and hidden nodes.
+ *
+ * Earlier versions started counting at -1, so the result was one less
+ * than the number of matching nodes. The count is now exact.
  *
  * @author Christian Morgner
  */
@@ -47,22 +64,63 @@ public class CountEntitiesCommand extends NodeServiceCommand {
 	public int execute(Class entityType) throws FrameworkException {
 		return execute(entityType, null, null);
 	}
+
+	/**
+	 * Counts the nodes of the given type and, optionally, of all its
+	 * subtypes.
+	 * 
+	 * @param entityType
+	 * @param includeSubtypes
+	 * @return the number of nodes
+	 * @throws FrameworkException 
+	 */
+	public int execute(final Class entityType, final boolean includeSubtypes) throws FrameworkException {
+		return execute(entityType, includeSubtypes, true);
+	}
+
+	/**
+	 * Counts the nodes of the given type and, optionally, of all its
+	 * subtypes, excluding deleted and hidden nodes if requested.
+	 *
+	 * @param entityType
+	 * @param includeSubtypes
+	 * @param includeDeletedAndHidden
+	 * @return the number of nodes
+	 * @throws FrameworkException
+	 */
+	public int execute(final Class entityType, final boolean includeSubtypes, final boolean includeDeletedAndHidden) throws FrameworkException {
+
+		if (!includeSubtypes) {
+			return countType(entityType.getSimpleName(), includeDeletedAndHidden);
+		}
+
+		final Map<String, Class<? extends NodeInterface>> nodeEntities = StructrApp.getConfiguration().getNodeEntities();
+		int count                                                     = 0;
+
+		for (final Class<? extends NodeInterface> type : nodeEntities.values()) {
+
+			if (entityType.isAssignableFrom(type)) {
+
+				count += countType(type.getSimpleName(), includeDeletedAndHidden);
+			}
+		}
+
+		return count;
+	}
 	
 	public int execute(Class entityType, String lowerTerm, String upperTerm) throws FrameworkException {
 		
-		Index<Node> index = (Index<Node>)arguments.get(NodeService.NodeIndex.keyword.name());
-		String type       = entityType.getSimpleName();
-		int count = -1;
+		String type = entityType.getSimpleName();
+		int count   = 0;
 
 		if(type != null) {
 
-			// create type query first
-			Query typeQuery = new TermQuery(new Term("type", type));
-			Query actualQuery = null;
-
 			// if date terms are set, create date query
 			if(lowerTerm != null && upperTerm != null) {
 
+				// create type query first
+				Query typeQuery = new TermQuery(new Term(AbstractNode.type.dbName(), type));
+
 				// do range query, including start value, excluding end value!
 				Query dateQuery = new TermRangeQuery("createdDate", lowerTerm, upperTerm, true, false);
 				
@@ -70,31 +128,162 @@ public class CountEntitiesCommand extends NodeServiceCommand {
 				booleanQuery.add(dateQuery, BooleanClause.Occur.MUST);
 				booleanQuery.add(typeQuery, BooleanClause.Occur.MUST);
 				
-				actualQuery = booleanQuery;
+				count = countHits(getKeywordIndex(), booleanQuery);
 				
 			} else {
 				
-				actualQuery  = typeQuery;
-				
+				count = countType(type, true);
+			}
+		}
+		
+		return count;
+	}
+
+	/**
+	 * Counts the index hits of the query built from the given search
+	 * attributes, in the same way {@link SearchCommand} builds it. Returns
+	 * -1 if the result of the given attributes can not be determined from
+	 * the index alone, e.g. for distance searches or attributes that need
+	 * result filtering.
+	 * 
+	 * @param searchAttributes
+	 * @return the number of index hits, or -1
+	 * @throws FrameworkException 
+	 */
+	public int execute(final List<SearchAttribute> searchAttributes) throws FrameworkException {
+		return execute(searchAttributes, true);
+	}
+
+	/**
+	 * Counts the index hits of the query built from the given search
+	 * attributes, excluding deleted and hidden nodes if requested, see
+	 * {@link #execute(List)}.
+	 *
+	 * @param searchAttributes
+	 * @param includeDeletedAndHidden
+	 * @return the number of index hits, or -1
+	 * @throws FrameworkException
+	 */
+	public int execute(final List<SearchAttribute> searchAttributes, final boolean includeDeletedAndHidden) throws FrameworkException {
+
+		final BooleanQuery query = new BooleanQuery();
+		boolean allExactMatch    = true;
+
+		for (final SearchAttribute attr : searchAttributes) {
+
+			if (attr instanceof DistanceSearchAttribute || attr instanceof SourceSearchAttribute || attr instanceof EmptySearchAttribute) {
+				return -1;
 			}
 
-			long start = System.currentTimeMillis();
+			final Query queryElement = attr.getQuery();
+			if (queryElement != null) {
 
-			IndexHits hits = index.query(actualQuery);
-			for (Object hit : hits) {
-				count++;
+				query.add(queryElement, attr.getOccur());
 			}
-			
-			// this is not accurate
-			// count = hits.size();
 
-			long end = System.currentTimeMillis();
+			allExactMatch &= attr.isExactMatch();
+		}
+
+		if (!includeDeletedAndHidden) {
+			query.add(deletedOrHidden(), BooleanClause.Occur.MUST_NOT);
+		}
+
+		return countHits(allExactMatch ? getKeywordIndex() : getFulltextIndex(), query);
+	}
+
+	// ----- private methods -----
+	private int countType(final String type, final boolean includeDeletedAndHidden) {
+
+		final Query typeQuery = new TermQuery(new Term(AbstractNode.type.dbName(), type));
+		final int total       = countType(type, typeQuery);
+
+		if (includeDeletedAndHidden || total == 0) {
+			return total;
+		}
+
+		// counters include deleted and hidden nodes, there are usually only a few of them
+		final BooleanQuery excludedQuery = new BooleanQuery();
+		excludedQuery.add(typeQuery, BooleanClause.Occur.MUST);
+		excludedQuery.add(deletedOrHidden(), BooleanClause.Occur.MUST);
+
+		return total - countHits(getKeywordIndex(), excludedQuery);
+	}
+
+	private int countType(final String type, final Query typeQuery) {
+
+		// counters don't include the changes of the current transaction
+		if (TransactionCommand.inTransaction()) {
+			return countHits(getKeywordIndex(), typeQuery);
+		}
+
+		final Long cachedCount = EntityCountCache.get(type);
+		if (cachedCount != null) {
+
+			return cachedCount.intValue();
+		}
+
+		final long generation = EntityCountCache.getGeneration();
+		final int count       = countHits(getKeywordIndex(), typeQuery);
+
+		EntityCountCache.initialize(type, count, generation);
+
+		return count;
+	}
+
+	private int countHits(final Index<Node> index, final Query query) {
+
+		long start = System.currentTimeMillis();
+		IndexHits hits = null;
+		int count      = 0;
+
+		synchronized (index) {
+			hits = index.query(query);
+		}
+
+		try {
+
+			if (TransactionCommand.inTransaction()) {
 
-			logger.log(Level.FINE, "Counted {0} entities in {1} ms.", new Object[] { count, (end-start) } );
+				// IndexHits#size() is not accurate when transaction
+				// state has to be merged into the result
+				while (hits.hasNext()) {
+
+					hits.next();
+					count++;
+				}
+
+			} else {
+
+				count = hits.size();
+			}
+
+		} finally {
 
 			hits.close();
 		}
-		
+
+		long end = System.currentTimeMillis();
+
+		logger.log(Level.FINE, "Counted {0} entities in {1} ms.", new Object[] { count, (end-start) } );
+
 		return count;
 	}
+
+	private Query deletedOrHidden() {
+
+		final BooleanQuery query = new BooleanQuery();
+
+		query.add(new TermQuery(new Term(AbstractNode.deleted.dbName(), Boolean.TRUE.toString())), BooleanClause.Occur.SHOULD);
+		query.add(new TermQuery(new Term(AbstractNode.hidden.dbName(),  Boolean.TRUE.toString())), BooleanClause.Occur.SHOULD);
+
+		return query;
+	}
+
+	private Index<Node> getKeywordIndex() {
+		return (Index<Node>)arguments.get(NodeService.NodeIndex.keyword.name());
+	}
+
+	private Index<Node> getFulltextIndex() {
+		return (Index<Node>)arguments.get(NodeService.NodeIndex.fulltext.name());
+	}
 }
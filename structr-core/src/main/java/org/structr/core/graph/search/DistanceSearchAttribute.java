@@ -26,6 +26,9 @@ import org.structr.core.GraphObject;
  * Represents a distance search.
  *
  * Here, the key is a search string to be passed to geocoding, and value is a distance in km.
+ * Alternatively, the coordinates of the center can be given directly. If a
+ * number of nearest results is set, only that many results, ordered by
+ * ascending distance, are returned.
  *
  * <p> Used in {
  *
@@ -42,6 +45,9 @@ public class DistanceSearchAttribute extends SearchAttribute {
 	private String city = null;
 	private String state = null;
 	private String country = null;
+	private Double latitude = null;
+	private Double longitude = null;
+	private Integer nearest = null;
 
 	public DistanceSearchAttribute(final String street, final String house, final String postalCode, final String city, final String state, final String country, final Double distance, final Occur occur) {
 
@@ -57,6 +63,16 @@ public class DistanceSearchAttribute extends SearchAttribute {
 		this.distance = distance;
 	}
 
+	public DistanceSearchAttribute(final Double latitude, final Double longitude, final Double distance, final Occur occur) {
+
+		super(occur);
+
+		this.latitude = latitude;
+		this.longitude = longitude;
+
+		this.distance = distance;
+	}
+
 	@Override
 	public Double getValue() {
 		return distance;
@@ -118,6 +134,26 @@ public class DistanceSearchAttribute extends SearchAttribute {
 		this.country = country;
 	}
 
+	public Double getLatitude() {
+		return latitude;
+	}
+
+	public Double getLongitude() {
+		return longitude;
+	}
+
+	public boolean hasCoordinates() {
+		return latitude != null && longitude != null;
+	}
+
+	public Integer getNearest() {
+		return nearest;
+	}
+
+	public void setNearest(Integer nearest) {
+		this.nearest = nearest;
+	}
+
 	@Override
 	public Query getQuery() {
 		return null;
@@ -24,11 +24,13 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
 import org.structr.core.GraphObject;
 import org.structr.core.property.AbstractPrimitiveProperty;
+import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 
 /**
@@ -100,6 +102,16 @@ public class PropertySearchAttribute<T> extends SearchAttribute<T> {
 			
 			for (String word : words) {
 
+				// substring-indexed properties store all suffixes of each word,
+				// so a prefix query on the suffix field finds infix matches
+				// without enumerating all terms for a leading wildcard; the
+				// suffixes are cut off, so longer words need the wildcard
+				if (getKey().isSubstringIndexed() && !containsWildcard(word) && word.length() <= Property.SUBSTRING_INDEX_MAX_LENGTH) {
+
+					query.add(new PrefixQuery(new Term(Property.getSubstringIndexKey(getKey().dbName()), word)), Occur.SHOULD);
+					continue;
+				}
+				
 				query.add(new WildcardQuery(new Term(getKey().dbName(), word)), Occur.SHOULD);
 
 				word = "*" + Search.escapeForLucene(word) + "*";
@@ -186,6 +198,10 @@ public class PropertySearchAttribute<T> extends SearchAttribute<T> {
 		return 0;
 	}
 
+	private boolean containsWildcard(final String word) {
+		return word.indexOf('*') >= 0 || word.indexOf('?') >= 0;
+	}
+
 	@Override
 	public String getValueForEmptyField() {
 		return AbstractPrimitiveProperty.STRING_EMPTY_FIELD_VALUE;
@@ -63,6 +63,7 @@ public abstract class Search {
 	public static final String CITY_SEARCH_KEYWORD        = "city";
 	public static final String STATE_SEARCH_KEYWORD       = "state";
 	public static final String COUNTRY_SEARCH_KEYWORD     = "country";
+	public static final String NEAREST_SEARCH_KEYWORD     = "nearest";
 	
 	private static final Logger logger                    = Logger.getLogger(Search.class.getName());
 	private static final Set<Character> specialCharsExact = new LinkedHashSet<Character>();
@@ -25,26 +25,29 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Sort;
-import org.apache.lucene.search.SortField;
 import org.neo4j.gis.spatial.indexprovider.LayerNodeIndex;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.index.lucene.QueryContext;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.PagingCursor;
 import org.structr.common.PagingHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.geo.GeoCodingResult;
 import org.structr.common.geo.GeoHelper;
+import org.structr.common.geo.SpatialGridIndex;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.entity.AbstractNode;
@@ -160,7 +163,19 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			return Result.EMPTY_RESULT;
 		}
 
-		Factory<S, T> factory        = getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page, offsetId);
+		final PagingCursor cursor    = PagingCursor.parse(offsetId);
+		if (cursor != null && !PagingCursor.isSupported(sortKey)) {
+
+			throw new FrameworkException(400, "Paging cursors are only supported for int and long sort keys that are indexed when empty");
+		}
+
+		if (cursor != null && !cursor.matches(sortKey, sortDescending)) {
+
+			throw new FrameworkException(400, "Paging cursor does not match sort key and order of this query");
+		}
+
+		// a cursor replaces page number and offset id
+		Factory<S, T> factory        = cursor != null ? getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, 1, null) : getFactory(securityContext, includeDeletedAndHidden, publicOnly, pageSize, page, offsetId);
 		boolean filterResults        = true;
 		final Index<S> index;
 		
@@ -174,8 +189,9 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		List<SourceSearchAttribute> sources    = new ArrayList<>();
 		boolean hasEmptySearchFields           = false;
 		DistanceSearchAttribute distanceSearch = null;
-		GeoCodingResult coords                 = null;
+		Double[] point                         = null;
 		Double dist                            = null;
+		Integer nearest                        = null;
 
 
 		/**
@@ -214,8 +230,21 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			if (attr instanceof DistanceSearchAttribute) {
 
 				distanceSearch = (DistanceSearchAttribute) attr;
-				coords         = GeoHelper.geocode(distanceSearch);
 				dist           = distanceSearch.getValue();
+				nearest        = distanceSearch.getNearest();
+
+				if (distanceSearch.hasCoordinates()) {
+
+					point = new Double[] { distanceSearch.getLatitude(), distanceSearch.getLongitude() };
+
+				} else {
+
+					final GeoCodingResult coords = GeoHelper.geocode(distanceSearch);
+					if (coords != null) {
+
+						point = coords.toArray();
+					}
+				}
 
 				// remove attribute from filter list
 				it.remove();
@@ -239,6 +268,11 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
+		if (cursor != null && (distanceSearch != null || !sources.isEmpty())) {
+
+			throw new FrameworkException(400, "Paging cursors are not supported for distance and related node searches");
+		}
+
 		if (distanceSearch == null && !sources.isEmpty()) {
 
 			intermediateResult = new Result(new ArrayList<AbstractNode>(), null, false, false);
@@ -260,30 +294,68 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				allExactMatch &= attr.isExactMatch();
 			}
 
+			// start after the last element of the previous page, the
+			// result count only includes the elements after the cursor
+			if (cursor != null) {
+				query.add(cursor.getQuery(), Occur.MUST);
+			}
+
 			QueryContext queryContext = new QueryContext(query);
 			IndexHits hits            = null;
 
-			if (sortKey != null) {
+			if (sortKey != null || cursor != null) {
 
-				Integer sortType = sortKey.getSortType();
-				if (sortType != null) {
+				// sort by UUID second to make the order stable
+				queryContext.sort(PagingCursor.getSort(sortKey, sortDescending));
+			}
+
+			if (distanceSearch != null && SpatialGridIndex.isEnabled()) {
+
+				final GraphDatabaseService graphDb = (GraphDatabaseService)arguments.get("graphDb");
+				final SpatialGridIndex gridIndex   = SpatialGridIndex.getInstance();
+
+				if (point != null && dist != null) {
+
+					gridIndex.initialize(graphDb);
+
+					if (nearest != null) {
+
+						// lock-free k-nearest lookup, widened until enough
+						// results pass the filters or no more locations are
+						// within the given distance
+						int count = Math.max(1, nearest);
+
+						while (true) {
+
+							final List<Long> nodeIds = gridIndex.nearest(point[0], point[1], count, dist);
+
+							intermediateResult = instantiateLocations(graphDb, gridIndex, nodeIds);
 
-					queryContext.sort(new Sort(new SortField(sortKey.dbName(), sortType, sortDescending)));
+							if (nodeIds.size() < count || count == Integer.MAX_VALUE || countMatches(intermediateResult, searchAttrs) >= nearest) {
+								break;
+							}
+
+							count = count > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : count * 2;
+						}
+
+					} else {
+
+						// lock-free lookup, results are ordered by distance
+						intermediateResult = instantiateLocations(graphDb, gridIndex, gridIndex.withinDistance(point[0], point[1], dist));
+					}
 
 				} else {
 
-					queryContext.sort(new Sort(new SortField(sortKey.dbName(), Locale.getDefault(), sortDescending)));
+					intermediateResult = instantiateLocations(graphDb, gridIndex, Collections.<Long>emptyList());
 				}
 
-			}
-
-			if (distanceSearch != null) {
+			} else if (distanceSearch != null) {
 
-				if (coords != null) {
+				if (point != null) {
 
 					Map<String, Object> params = new HashMap<>();
 
-					params.put(LayerNodeIndex.POINT_PARAMETER, coords.toArray());
+					params.put(LayerNodeIndex.POINT_PARAMETER, point);
 					params.put(LayerNodeIndex.DISTANCE_IN_KM_PARAMETER, dist);
 
 					LayerNodeIndex spatialIndex = this.getSpatialIndex();
@@ -392,19 +464,100 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 				}
 			}
 
+			// distance search results are ordered by distance,
+			// keep only the given number of nearest results
+			if (nearest != null && finalResult.size() > nearest) {
+
+				finalResult = new LinkedList<>(finalResult.subList(0, Math.max(0, nearest)));
+				resultCount = finalResult.size();
+			}
+
 			// sort list
 			Collections.sort(finalResult, new GraphObjectComparator(sortKey, sortDescending));
 			
 			// return paged final result
-			return new Result(PagingHelper.subList(finalResult, pageSize, page, offsetId), resultCount, true, false);
+			return addNextPageCursor(new Result(PagingHelper.subList(finalResult, pageSize, cursor != null ? 1 : page, cursor != null ? null : offsetId), resultCount, true, false), cursor, sortKey, sortDescending, pageSize, page);
 
 		} else {
 
 			// no filtering
-			return intermediateResult;
+			return addNextPageCursor(intermediateResult, cursor, sortKey, sortDescending, pageSize, page);
 		}
 	}
+
+	/**
+	 * Adds a cursor that points to the next page to the given result, if
+	 * the result is sorted and there may be more results. Fails if cursor
+	 * paging can not be continued because the last element of the page
+	 * has no value for the sort key.
+	 */
+	private Result addNextPageCursor(final Result result, final PagingCursor cursor, final PropertyKey sortKey, final boolean sortDescending, final int pageSize, final int page) throws FrameworkException {
+
+		final List<GraphObject> results = result.getResults();
+
+		if ((sortKey != null || cursor != null) && page > 0 && pageSize < Integer.MAX_VALUE && results != null && !results.isEmpty() && results.size() >= pageSize) {
+
+			final GraphObject last        = results.get(results.size() - 1);
+			final PagingCursor nextCursor = PagingCursor.create(sortKey, sortDescending, last);
+
+			if (nextCursor != null) {
+
+				result.setNextPageCursor(nextCursor.toString());
+
+			} else if (cursor != null && sortKey != null) {
+
+				throw new FrameworkException(400, "Unable to continue cursor paging, element " + last.getUuid() + " has no numeric value for sort key " + sortKey.jsonName());
+			}
+		}
+
+		return result;
+	}
 	
+	/**
+	 * Instantiates the location nodes with the given ids and the nodes
+	 * located at them, in the order of the given ids.
+	 */
+	private Result instantiateLocations(final GraphDatabaseService graphDb, final SpatialGridIndex gridIndex, final List<Long> nodeIds) throws FrameworkException {
+
+		final List<Node> locations = new LinkedList<>();
+
+		for (final Long nodeId : nodeIds) {
+
+			try {
+				locations.add(graphDb.getNodeById(nodeId));
+
+			} catch (NotFoundException nfex) {
+
+				// node was deleted concurrently
+				gridIndex.remove(nodeId);
+			}
+		}
+
+		// instantiate spatial search results without paging,
+		// as the results must be filtered by type anyway
+		return new NodeFactory(securityContext).instantiateLocations(locations, locations.size());
+	}
+
+	private int countMatches(final Result result, final List<SearchAttribute<?>> searchAttrs) {
+
+		int count = 0;
+
+		for (final Object obj : new LinkedHashSet<>(result.getResults())) {
+
+			boolean matches = true;
+
+			for (final SearchAttribute attr : searchAttrs) {
+				matches &= attr.includeInResult((GraphObject)obj);
+			}
+
+			if (matches) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
 	private Set<GraphObject> mergeSources(List<SourceSearchAttribute> sources) {
 		
 		Set<GraphObject> mergedResult = new LinkedHashSet<>();
@@ -0,0 +1,408 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import static org.structr.core.graph.sync.SyncFormat.*;
+
+/**
+ * Reads a binary sync stream written by {@link BinarySyncWriter}. Blocks
+ * are decompressed and decoded by a pool of worker threads, the decoded
+ * records are handed to a {@link SyncRecordHandler} in stream order.
+ *
+ * The stream is not trusted: block lengths are checked against the format
+ * limits before any buffer is allocated, and the block index and trailer
+ * are checked against the blocks actually read, so truncated or corrupt
+ * streams fail with an {@link IOException}.
+ *
+ * @author Christian Morgner
+ */
+public class BinarySyncReader {
+
+	private final LinkedList<Future<List<SyncRecord>>> pending = new LinkedList<>();
+	private final List<long[]> blockIndex                      = new ArrayList<>();
+	private ExecutorService executor                           = null;
+	private CountingInputStream in                             = null;
+	private int maxPending                                     = 0;
+
+	public BinarySyncReader(final InputStream in) {
+		this(in, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BinarySyncReader(final InputStream in, final int threadCount) {
+
+		this.in         = new CountingInputStream(in);
+		this.executor   = Executors.newFixedThreadPool(Math.max(1, threadCount));
+		this.maxPending = Math.max(1, threadCount) * 2;
+	}
+
+	/**
+	 * Reads the whole stream and hands all records to the given handler.
+	 * Returns the number of records read.
+	 */
+	public long read(final SyncRecordHandler handler) throws IOException {
+
+		try {
+
+			readHeader();
+
+			long recordCount = 0L;
+			boolean finished = false;
+
+			while (!finished) {
+
+				final long offset = in.getCount();
+				final int marker  = in.read();
+
+				switch (marker) {
+
+					case BLOCK:
+						submit(readBlock(offset));
+						recordCount += drain(handler, maxPending);
+						break;
+
+					case INDEX:
+						recordCount += drain(handler, 0);
+						readIndex(offset);
+						finished = true;
+						break;
+
+					case -1:
+						throw new IOException("Unexpected end of sync stream, block index missing");
+
+					default:
+						throw new IOException("Invalid block marker " + marker + " in sync stream");
+				}
+			}
+
+			return recordCount;
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+	}
+
+	// ----- private methods -----
+	private void readHeader() throws IOException {
+
+		final byte[] buf = new byte[MAGIC.length + 1];
+
+		SyncInput.readFully(in, buf, buf.length);
+
+		for (int i=0; i<MAGIC.length; i++) {
+
+			if (buf[i] != MAGIC[i]) {
+				throw new IOException("Not a binary sync stream");
+			}
+		}
+
+		final int version = buf[MAGIC.length] & 0xff;
+		if (version > VERSION) {
+			throw new IOException("Unsupported sync format version " + version);
+		}
+	}
+
+	private Callable<List<SyncRecord>> readBlock(final long offset) throws IOException {
+
+		final int codec       = in.read();
+		final int recordCount = readLength(Integer.MAX_VALUE);
+		final int rawLength   = readLength(MAX_BLOCK_LENGTH);
+		final int dataLength  = readLength(MAX_BLOCK_LENGTH);
+
+		if (codec < 0) {
+			throw new IOException("Truncated block header in sync stream");
+		}
+
+		// every record takes at least one byte, and compressed data
+		// can not expand beyond the maximum ratio of the codec
+		if (recordCount > rawLength || (codec == CODEC_NONE && rawLength != dataLength) || (codec == CODEC_DEFLATE && rawLength > (long)dataLength * MAX_DEFLATE_RATIO)) {
+			throw new IOException("Corrupt block header in sync stream");
+		}
+
+		blockIndex.add(new long[] { offset, recordCount, rawLength });
+
+		return new BlockDecoder(codec, recordCount, rawLength, readData(dataLength));
+	}
+
+	private void readIndex(final long indexOffset) throws IOException {
+
+		final long blockCount = SyncInput.readVarInt(in);
+		if (blockCount != blockIndex.size()) {
+			throw new IOException("Block index of sync stream does not match, expected " + blockIndex.size() + " blocks, found " + blockCount);
+		}
+
+		for (final long[] entry : blockIndex) {
+
+			// offset, recordCount and rawLength of each block
+			for (int i=0; i<entry.length; i++) {
+
+				if (SyncInput.readVarInt(in) != entry[i]) {
+					throw new IOException("Block index of sync stream does not match the blocks read");
+				}
+			}
+		}
+
+		final byte[] trailer = new byte[8 + MAGIC.length];
+		SyncInput.readFully(in, trailer, trailer.length);
+
+		final SyncInput trailerInput = new SyncInput(trailer, trailer.length);
+		if (trailerInput.readFixedLong() != indexOffset) {
+			throw new IOException("Index offset of sync stream does not match");
+		}
+
+		for (int i=0; i<MAGIC.length; i++) {
+
+			if (trailerInput.readByte() != (MAGIC[i] & 0xff)) {
+				throw new IOException("Invalid trailer in sync stream");
+			}
+		}
+	}
+
+	private int readLength(final int maxLength) throws IOException {
+
+		final long length = SyncInput.readVarInt(in);
+
+		if (length < 0) {
+			throw new IOException("Truncated block header in sync stream");
+		}
+
+		if (length > maxLength) {
+			throw new IOException("Block length " + length + " in sync stream exceeds the maximum of " + maxLength);
+		}
+
+		return (int)length;
+	}
+
+	/**
+	 * Reads the given number of bytes in chunks, so that a wrong length
+	 * in a truncated stream fails before a large buffer is allocated.
+	 */
+	private byte[] readData(final int length) throws IOException {
+
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream(Math.min(length, 65536));
+		final byte[] chunk              = new byte[Math.min(length, 65536)];
+		int remaining                   = length;
+
+		while (remaining > 0) {
+
+			final int count = Math.min(remaining, chunk.length);
+
+			SyncInput.readFully(in, chunk, count);
+			buf.write(chunk, 0, count);
+
+			remaining -= count;
+		}
+
+		return buf.toByteArray();
+	}
+
+	private void submit(final Callable<List<SyncRecord>> decoder) {
+		pending.add(executor.submit(decoder));
+	}
+
+	private long drain(final SyncRecordHandler handler, final int maxRemaining) throws IOException {
+
+		long count = 0L;
+
+		while (pending.size() > maxRemaining) {
+
+			try {
+				for (final SyncRecord record : pending.removeFirst().get()) {
+
+					handler.handleRecord(record);
+					count++;
+				}
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				throw new IOException(iex);
+
+			} catch (ExecutionException eex) {
+
+				throw new IOException(eex.getCause());
+			}
+		}
+
+		return count;
+	}
+
+	// ----- nested classes -----
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count = 0L;
+
+		public CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		@Override
+		public int read() throws IOException {
+
+			final int value = super.read();
+			if (value >= 0) {
+				count++;
+			}
+
+			return value;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+
+			final int value = super.read(buffer, offset, length);
+			if (value > 0) {
+				count += value;
+			}
+
+			return value;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+
+			final long value = super.skip(n);
+			count += value;
+
+			return value;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
+	private static class BlockDecoder implements Callable<List<SyncRecord>> {
+
+		private int codec       = 0;
+		private int recordCount = 0;
+		private int rawLength   = 0;
+		private byte[] data     = null;
+
+		public BlockDecoder(final int codec, final int recordCount, final int rawLength, final byte[] data) {
+
+			this.codec       = codec;
+			this.recordCount = recordCount;
+			this.rawLength   = rawLength;
+			this.data        = data;
+		}
+
+		@Override
+		public List<SyncRecord> call() throws Exception {
+
+			final List<SyncRecord> records = new ArrayList<>(recordCount);
+			final SyncInput input          = new SyncInput(decompress(), rawLength);
+
+			for (int i=0; i<recordCount; i++) {
+
+				final int type          = input.readByte();
+				final SyncRecord record = new SyncRecord(type);
+
+				switch (type) {
+
+					case NODE:
+						break;
+
+					case RELATIONSHIP:
+						record.setStartNodeId(input.readString());
+						record.setEndNodeId(input.readString());
+						record.setRelationshipType(input.readString());
+						break;
+
+					default:
+						throw new IOException("Invalid record type " + type + " in sync stream");
+				}
+
+				final Map<String, Object> properties = record.getProperties();
+				final int propertyCount              = (int)input.readVarInt();
+
+				for (int j=0; j<propertyCount; j++) {
+
+					final String key = input.readString();
+					properties.put(key, input.readValue());
+				}
+
+				records.add(record);
+			}
+
+			return records;
+		}
+
+		private byte[] decompress() throws IOException, DataFormatException {
+
+			switch (codec) {
+
+				case CODEC_NONE:
+					return data;
+
+				case CODEC_DEFLATE:
+
+					final Inflater inflater = new Inflater();
+					final byte[] buffer     = new byte[rawLength];
+
+					try {
+						inflater.setInput(data);
+
+						int length = 0;
+						while (length < rawLength && !inflater.finished()) {
+
+							final int count = inflater.inflate(buffer, length, rawLength - length);
+							if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+								break;
+							}
+
+							length += count;
+						}
+
+						if (length != rawLength) {
+							throw new IOException("Corrupt block in sync stream");
+						}
+
+					} finally {
+
+						inflater.end();
+					}
+
+					return buffer;
+			}
+
+			throw new IOException("Unsupported block codec " + codec + " in sync stream");
+		}
+	}
+}
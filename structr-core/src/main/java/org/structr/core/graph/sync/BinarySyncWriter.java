@@ -0,0 +1,399 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.structr.core.GraphObject;
+import static org.structr.core.graph.sync.SyncFormat.*;
+
+/**
+ * Writes nodes and relationships in the binary sync format. The input is
+ * partitioned into blocks of a fixed number of records, and each block is
+ * encoded and compressed by a pool of worker threads. Blocks are written
+ * to the underlying stream in input order, followed by a block index.
+ *
+ * @author Christian Morgner
+ */
+public class BinarySyncWriter {
+
+	private final List<long[]> blockIndex                  = new ArrayList<>();
+	private final LinkedList<Future<EncodedBlock>> pending = new LinkedList<>();
+	private final SyncOutput header                        = new SyncOutput(64);
+	private final String uuidPropertyName                  = GraphObject.id.dbName();
+	private ExecutorService executor                       = null;
+	private OutputStream out                               = null;
+	private int recordsPerBlock                            = DEFAULT_RECORDS_PER_BLOCK;
+	private int compressionLevel                           = DEFAULT_COMPRESSION_LEVEL;
+	private int maxPending                                 = 0;
+	private long offset                                    = 0L;
+
+	public BinarySyncWriter(final OutputStream out) {
+		this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_RECORDS_PER_BLOCK, DEFAULT_COMPRESSION_LEVEL);
+	}
+
+	public BinarySyncWriter(final OutputStream out, final int threadCount, final int recordsPerBlock, final int compressionLevel) {
+
+		this.out              = out;
+		this.recordsPerBlock  = Math.max(1, recordsPerBlock);
+		this.compressionLevel = compressionLevel;
+		this.executor         = Executors.newFixedThreadPool(Math.max(1, threadCount));
+		this.maxPending       = Math.max(1, threadCount) * 2;
+	}
+
+	public void writeHeader() throws IOException {
+
+		header.write(MAGIC, 0, MAGIC.length);
+		header.writeByte(VERSION);
+
+		writeRaw(header);
+		header.reset();
+	}
+
+	/**
+	 * Writes all structr nodes of the given iterable, returns the number of
+	 * nodes written.
+	 */
+	public long writeNodes(final Iterable<Node> nodes) throws IOException {
+
+		long count             = 0L;
+		List<Node> currentList = new ArrayList<>(recordsPerBlock);
+
+		for (final Node node : nodes) {
+
+			currentList.add(node);
+
+			if (currentList.size() == recordsPerBlock) {
+
+				count += submit(new NodeEncoder(currentList));
+				currentList = new ArrayList<>(recordsPerBlock);
+			}
+		}
+
+		if (!currentList.isEmpty()) {
+			count += submit(new NodeEncoder(currentList));
+		}
+
+		return count + drain(0);
+	}
+
+	/**
+	 * Writes all structr relationships of the given iterable, returns the
+	 * number of relationships written.
+	 */
+	public long writeRelationships(final Iterable<Relationship> relationships) throws IOException {
+
+		long count                     = 0L;
+		List<Relationship> currentList = new ArrayList<>(recordsPerBlock);
+
+		for (final Relationship rel : relationships) {
+
+			currentList.add(rel);
+
+			if (currentList.size() == recordsPerBlock) {
+
+				count += submit(new RelationshipEncoder(currentList));
+				currentList = new ArrayList<>(recordsPerBlock);
+			}
+		}
+
+		if (!currentList.isEmpty()) {
+			count += submit(new RelationshipEncoder(currentList));
+		}
+
+		return count + drain(0);
+	}
+
+	/**
+	 * Writes the block index and the trailer and stops the worker threads.
+	 * The underlying stream is not closed. Call {@link #close()} in a
+	 * finally block, so the worker threads are stopped if writing fails.
+	 */
+	public void finish() throws IOException {
+
+		try {
+
+			drain(0);
+
+			final long indexOffset = offset;
+
+			header.writeByte(INDEX);
+			header.writeVarInt(blockIndex.size());
+
+			for (final long[] entry : blockIndex) {
+
+				header.writeVarInt(entry[0]);
+				header.writeVarInt(entry[1]);
+				header.writeVarInt(entry[2]);
+			}
+
+			header.writeFixedLong(indexOffset);
+			header.write(MAGIC, 0, MAGIC.length);
+
+			writeRaw(header);
+			header.reset();
+
+			out.flush();
+
+		} finally {
+
+			close();
+		}
+	}
+
+	/**
+	 * Stops the worker threads without writing the block index. Has no
+	 * effect if the writer is already finished.
+	 */
+	public void close() {
+
+		pending.clear();
+		executor.shutdownNow();
+	}
+
+	// ----- private methods -----
+	private long submit(final Callable<EncodedBlock> encoder) throws IOException {
+
+		pending.add(executor.submit(encoder));
+
+		return drain(maxPending);
+	}
+
+	/**
+	 * Writes finished blocks (in submission order) until no more than the
+	 * given number of blocks are pending, returns the number of records
+	 * written.
+	 */
+	private long drain(final int maxRemaining) throws IOException {
+
+		long count = 0L;
+
+		while (pending.size() > maxRemaining) {
+
+			try {
+				final EncodedBlock block = pending.removeFirst().get();
+				if (block.recordCount > 0) {
+
+					count += block.recordCount;
+					writeBlock(block);
+				}
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+				throw new IOException(iex);
+
+			} catch (ExecutionException eex) {
+
+				throw new IOException(eex.getCause());
+			}
+		}
+
+		return count;
+	}
+
+	private void writeBlock(final EncodedBlock block) throws IOException {
+
+		blockIndex.add(new long[] { offset, block.recordCount, block.rawLength });
+
+		header.writeByte(BLOCK);
+		header.writeByte(block.codec);
+		header.writeVarInt(block.recordCount);
+		header.writeVarInt(block.rawLength);
+		header.writeVarInt(block.dataLength);
+
+		writeRaw(header);
+		header.reset();
+
+		out.write(block.data, 0, block.dataLength);
+		offset += block.dataLength;
+	}
+
+	private void writeRaw(final SyncOutput buffer) throws IOException {
+
+		buffer.writeTo(out, 0, buffer.size());
+		offset += buffer.size();
+	}
+
+	private static void writeProperties(final SyncOutput output, final PropertyContainer container) {
+
+		final List<String> keys   = new ArrayList<>();
+		final List<Object> values = new ArrayList<>();
+
+		for (final String key : container.getPropertyKeys()) {
+
+			final Object value = container.getProperty(key);
+			if (SyncOutput.isSupported(value)) {
+
+				keys.add(key);
+				values.add(value);
+			}
+		}
+
+		final int size = keys.size();
+
+		output.writeVarInt(size);
+
+		for (int i=0; i<size; i++) {
+
+			output.writeString(keys.get(i));
+			output.writeValue(values.get(i));
+		}
+	}
+
+	private EncodedBlock compress(final SyncOutput raw, final int recordCount) throws IOException {
+
+		final EncodedBlock block = new EncodedBlock();
+		final int rawLength      = raw.size();
+
+		if (rawLength > MAX_BLOCK_LENGTH) {
+			throw new IOException("Block of " + rawLength + " bytes exceeds the maximum block length, use fewer records per block");
+		}
+
+		block.recordCount = recordCount;
+		block.rawLength   = rawLength;
+
+		if (compressionLevel != Deflater.NO_COMPRESSION && rawLength > 0) {
+
+			final Deflater deflater = new Deflater(compressionLevel);
+			final byte[] buffer     = new byte[rawLength];
+
+			try {
+				deflater.setInput(raw.getBuffer(), 0, rawLength);
+				deflater.finish();
+
+				int length = 0;
+				while (!deflater.finished() && length < rawLength) {
+					length += deflater.deflate(buffer, length, rawLength - length);
+				}
+
+				// use compressed data only if it is actually smaller
+				if (deflater.finished() && length < rawLength) {
+
+					block.codec      = CODEC_DEFLATE;
+					block.data       = buffer;
+					block.dataLength = length;
+
+					return block;
+				}
+
+			} finally {
+
+				deflater.end();
+			}
+		}
+
+		block.codec      = CODEC_NONE;
+		block.data       = raw.getBuffer();
+		block.dataLength = rawLength;
+
+		return block;
+	}
+
+	// ----- nested classes -----
+	private static class EncodedBlock {
+
+		private int codec       = CODEC_NONE;
+		private int recordCount = 0;
+		private int rawLength   = 0;
+		private byte[] data     = null;
+		private int dataLength  = 0;
+	}
+
+	private class NodeEncoder implements Callable<EncodedBlock> {
+
+		private List<Node> nodes = null;
+
+		public NodeEncoder(final List<Node> nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public EncodedBlock call() throws Exception {
+
+			final SyncOutput output = new SyncOutput();
+			int count               = 0;
+
+			for (final Node node : nodes) {
+
+				// ignore non-structr nodes
+				if (node.hasProperty(uuidPropertyName)) {
+
+					output.writeByte(NODE);
+					writeProperties(output, node);
+
+					count++;
+				}
+			}
+
+			return compress(output, count);
+		}
+	}
+
+	private class RelationshipEncoder implements Callable<EncodedBlock> {
+
+		private List<Relationship> relationships = null;
+
+		public RelationshipEncoder(final List<Relationship> relationships) {
+			this.relationships = relationships;
+		}
+
+		@Override
+		public EncodedBlock call() throws Exception {
+
+			final SyncOutput output = new SyncOutput();
+			int count               = 0;
+
+			for (final Relationship rel : relationships) {
+
+				// ignore non-structr relationships
+				if (rel.hasProperty(uuidPropertyName)) {
+
+					final Node startNode = rel.getStartNode();
+					final Node endNode   = rel.getEndNode();
+
+					if (startNode.hasProperty(uuidPropertyName) && endNode.hasProperty(uuidPropertyName)) {
+
+						output.writeByte(RELATIONSHIP);
+						output.writeString((String)startNode.getProperty(uuidPropertyName));
+						output.writeString((String)endNode.getProperty(uuidPropertyName));
+						output.writeString(rel.getType().name());
+						writeProperties(output, rel);
+
+						count++;
+					}
+				}
+			}
+
+			return compress(output, count);
+		}
+	}
+}
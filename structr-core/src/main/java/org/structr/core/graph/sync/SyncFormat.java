@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants of the binary sync format. A binary sync stream looks like
+ * this:
+ *
+ * <pre>
+ * header:  magic (4 bytes) version (1 byte)
+ * block*:  'B' codec (1 byte) recordCount (varint) rawLength (varint) dataLength (varint) data
+ * index:   'I' blockCount (varint) { offset (varint) recordCount (varint) rawLength (varint) }*
+ * trailer: indexOffset (8 bytes) magic (4 bytes)
+ * </pre>
+ *
+ * Each block contains a number of node or relationship records, encoded
+ * with {@link SyncOutput}, and is compressed independently of all other
+ * blocks, so blocks can be encoded and decoded in parallel. The offsets in
+ * the block index and the trailer are counted from the start of the
+ * header, readers use them to verify that the stream is complete.
+ *
+ * @author Christian Morgner
+ */
+public class SyncFormat {
+
+	public static final Charset UTF8                   = Charset.forName("UTF-8");
+	public static final byte[] MAGIC                   = new byte[] { 'S', 'T', 'R', 'B' };
+	public static final int VERSION                    = 1;
+
+	// block markers
+	public static final int BLOCK                      = 'B';
+	public static final int INDEX                      = 'I';
+
+	// block codecs
+	public static final int CODEC_NONE                 = 0;
+	public static final int CODEC_DEFLATE              = 1;
+
+	// record types
+	public static final int NODE                       = 'N';
+	public static final int RELATIONSHIP               = 'R';
+
+	// value types, combined with the array flags below
+	public static final int TYPE_NULL                  = 0;
+	public static final int TYPE_BYTE                  = 1;
+	public static final int TYPE_SHORT                 = 2;
+	public static final int TYPE_INTEGER               = 3;
+	public static final int TYPE_LONG                  = 4;
+	public static final int TYPE_FLOAT                 = 5;
+	public static final int TYPE_DOUBLE                = 6;
+	public static final int TYPE_CHARACTER             = 7;
+	public static final int TYPE_STRING                = 8;
+	public static final int TYPE_BOOLEAN               = 9;
+
+	public static final int FLAG_BOXED_ARRAY           = 0x40;
+	public static final int FLAG_PRIMITIVE_ARRAY       = 0x80;
+	public static final int TYPE_MASK                  = 0x3f;
+
+	// defaults
+	public static final int DEFAULT_RECORDS_PER_BLOCK  = 1000;
+	public static final int DEFAULT_COMPRESSION_LEVEL  = 6;
+
+	// limits, block headers that exceed them are rejected as corrupt
+	public static final int MAX_BLOCK_LENGTH           = 1 << 30;	// raw or compressed, in bytes
+	public static final int MAX_DEFLATE_RATIO          = 1032;		// the maximum compression ratio of deflate
+}
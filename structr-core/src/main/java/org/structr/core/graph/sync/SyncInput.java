@@ -0,0 +1,296 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import static org.structr.core.graph.sync.SyncFormat.*;
+
+/**
+ * Decoder for values written with {@link SyncOutput}.
+ *
+ * @author Christian Morgner
+ */
+public class SyncInput {
+
+	private byte[] data = null;
+	private int limit   = 0;
+	private int pos     = 0;
+
+	public SyncInput(final byte[] data, final int length) {
+
+		this.data  = data;
+		this.limit = length;
+	}
+
+	public boolean hasMore() {
+		return pos < limit;
+	}
+
+	public int readByte() throws IOException {
+
+		if (pos >= limit) {
+			throw new EOFException();
+		}
+
+		return data[pos++] & 0xff;
+	}
+
+	public long readVarInt() throws IOException {
+
+		long result = 0L;
+		int shift   = 0;
+		int b       = 0;
+
+		do {
+
+			if (shift > 63) {
+				throw new IOException("Malformed varint in sync stream");
+			}
+
+			b       = readByte();
+			result |= (long)(b & 0x7f) << shift;
+			shift  += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return result;
+	}
+
+	public long readSignedVarInt() throws IOException {
+
+		final long raw = readVarInt();
+
+		return (raw >>> 1) ^ -(raw & 1);
+	}
+
+	public long readFixedLong() throws IOException {
+
+		long result = 0L;
+
+		for (int i=0; i<8; i++) {
+			result = (result << 8) | readByte();
+		}
+
+		return result;
+	}
+
+	public String readString() throws IOException {
+
+		final int length = readLength();
+
+		final String value = new String(data, pos, length, UTF8);
+		pos += length;
+
+		return value;
+	}
+
+	public Object readValue() throws IOException {
+
+		final int tag  = readByte();
+		final int type = tag & TYPE_MASK;
+
+		if ((tag & FLAG_PRIMITIVE_ARRAY) != 0) {
+
+			return readPrimitiveArray(type);
+		}
+
+		if ((tag & FLAG_BOXED_ARRAY) != 0) {
+
+			final int length     = readLength();
+			final Object[] array = (Object[])Array.newInstance(boxedType(type), length);
+
+			for (int i=0; i<length; i++) {
+				array[i] = readValue();
+			}
+
+			return array;
+		}
+
+		return readScalar(type);
+	}
+
+	// ----- public static methods -----
+	/**
+	 * Reads exactly <code>length</code> bytes from the given stream into
+	 * the given buffer, or throws an {@link EOFException}.
+	 */
+	public static void readFully(final InputStream in, final byte[] buffer, final int length) throws IOException {
+
+		int offset = 0;
+
+		while (offset < length) {
+
+			final int count = in.read(buffer, offset, length - offset);
+			if (count < 0) {
+
+				throw new EOFException();
+			}
+
+			offset += count;
+		}
+	}
+
+	/**
+	 * Reads a single varint from the given stream, returns -1 if the stream
+	 * ended before the first byte of the value.
+	 */
+	public static long readVarInt(final InputStream in) throws IOException {
+
+		long result = 0L;
+		int shift   = 0;
+		int b       = 0;
+
+		do {
+
+			b = in.read();
+			if (b < 0) {
+
+				if (shift == 0) {
+					return -1L;
+				}
+
+				throw new EOFException();
+			}
+
+			result |= (long)(b & 0x7f) << shift;
+			shift  += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return result;
+	}
+
+	// ----- private methods -----
+	/**
+	 * Reads the length of a string or an array. Every element takes at
+	 * least one byte, so the length can not exceed the remaining data,
+	 * which bounds the size of the buffers allocated for corrupt input.
+	 */
+	private int readLength() throws IOException {
+
+		final long length = readVarInt();
+
+		if (length < 0 || length > limit - pos) {
+			throw new EOFException();
+		}
+
+		return (int)length;
+	}
+
+	private Object readScalar(final int type) throws IOException {
+
+		switch (type) {
+
+			case TYPE_NULL:      return null;
+			case TYPE_BYTE:      return (byte)readSignedVarInt();
+			case TYPE_SHORT:     return (short)readSignedVarInt();
+			case TYPE_INTEGER:   return (int)readSignedVarInt();
+			case TYPE_LONG:      return readSignedVarInt();
+			case TYPE_FLOAT:     return Float.intBitsToFloat((int)readVarInt());
+			case TYPE_DOUBLE:    return Double.longBitsToDouble(readFixedLong());
+			case TYPE_CHARACTER: return (char)readVarInt();
+			case TYPE_STRING:    return readString();
+			case TYPE_BOOLEAN:   return readByte() != 0;
+		}
+
+		throw new IOException("Unsupported type " + type + " in sync stream");
+	}
+
+	private Object readPrimitiveArray(final int type) throws IOException {
+
+		final int length = readLength();
+
+		switch (type) {
+
+			case TYPE_BYTE: {
+
+				final byte[] array = new byte[length];
+				System.arraycopy(data, pos, array, 0, length);
+				pos += length;
+
+				return array;
+			}
+
+			case TYPE_SHORT: {
+				final short[] array = new short[length];
+				for (int i=0; i<length; i++) { array[i] = (short)readSignedVarInt(); }
+				return array;
+			}
+
+			case TYPE_INTEGER: {
+				final int[] array = new int[length];
+				for (int i=0; i<length; i++) { array[i] = (int)readSignedVarInt(); }
+				return array;
+			}
+
+			case TYPE_LONG: {
+				final long[] array = new long[length];
+				for (int i=0; i<length; i++) { array[i] = readSignedVarInt(); }
+				return array;
+			}
+
+			case TYPE_FLOAT: {
+				final float[] array = new float[length];
+				for (int i=0; i<length; i++) { array[i] = Float.intBitsToFloat((int)readVarInt()); }
+				return array;
+			}
+
+			case TYPE_DOUBLE: {
+				final double[] array = new double[length];
+				for (int i=0; i<length; i++) { array[i] = Double.longBitsToDouble(readFixedLong()); }
+				return array;
+			}
+
+			case TYPE_CHARACTER: {
+				final char[] array = new char[length];
+				for (int i=0; i<length; i++) { array[i] = (char)readVarInt(); }
+				return array;
+			}
+
+			case TYPE_BOOLEAN: {
+				final boolean[] array = new boolean[length];
+				for (int i=0; i<length; i++) { array[i] = readByte() != 0; }
+				return array;
+			}
+		}
+
+		throw new IOException("Unsupported array type " + type + " in sync stream");
+	}
+
+	private static Class boxedType(final int type) throws IOException {
+
+		switch (type) {
+
+			case TYPE_BYTE:      return Byte.class;
+			case TYPE_SHORT:     return Short.class;
+			case TYPE_INTEGER:   return Integer.class;
+			case TYPE_LONG:      return Long.class;
+			case TYPE_FLOAT:     return Float.class;
+			case TYPE_DOUBLE:    return Double.class;
+			case TYPE_CHARACTER: return Character.class;
+			case TYPE_STRING:    return String.class;
+			case TYPE_BOOLEAN:   return Boolean.class;
+		}
+
+		throw new IOException("Unsupported array type " + type + " in sync stream");
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.structr.core.graph.sync.SyncFormat.*;
+
+/**
+ * Growable byte buffer with typed varint encoding for the binary sync
+ * format. Integral values are written as zig-zag encoded varints, so
+ * small values (which are by far the most common ones) take up only one
+ * or two bytes.
+ *
+ * @author Christian Morgner
+ */
+public class SyncOutput extends ByteArrayOutputStream {
+
+	private static final Logger logger = Logger.getLogger(SyncOutput.class.getName());
+
+	public SyncOutput() {
+		super(8192);
+	}
+
+	public SyncOutput(final int initialSize) {
+		super(initialSize);
+	}
+
+	public void writeByte(final int value) {
+		write(value & 0xff);
+	}
+
+	public void writeVarInt(final long value) {
+
+		long v = value;
+
+		while ((v & ~0x7fL) != 0) {
+
+			write((int)((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+
+		write((int)v);
+	}
+
+	public void writeSignedVarInt(final long value) {
+		writeVarInt((value << 1) ^ (value >> 63));
+	}
+
+	public void writeFixedLong(final long value) {
+
+		for (int i=56; i>=0; i-=8) {
+			write((int)(value >>> i) & 0xff);
+		}
+	}
+
+	public void writeString(final String value) {
+
+		final byte[] data = value.getBytes(UTF8);
+
+		writeVarInt(data.length);
+		write(data, 0, data.length);
+	}
+
+	/**
+	 * Writes the given value with a leading type tag. Returns false if the
+	 * type of the given value is not supported, in which case nothing has
+	 * been written.
+	 *
+	 * @param value
+	 * @return whether the value could be written
+	 */
+	public boolean writeValue(final Object value) {
+
+		if (value == null) {
+
+			writeByte(TYPE_NULL);
+			return true;
+		}
+
+		final Class type = value.getClass();
+
+		if (type.isArray()) {
+
+			final Class componentType = type.getComponentType();
+			final int elementType     = typeOf(componentType);
+
+			if (elementType < 0) {
+
+				logger.log(Level.WARNING, "Unable to serialize object of type {0}, type not supported", type);
+				return false;
+			}
+
+			if (componentType.isPrimitive()) {
+
+				writeByte(elementType | FLAG_PRIMITIVE_ARRAY);
+				writePrimitiveArray(elementType, value);
+
+			} else {
+
+				final Object[] array = (Object[])value;
+
+				writeByte(elementType | FLAG_BOXED_ARRAY);
+				writeVarInt(array.length);
+
+				for (final Object element : array) {
+					writeValue(element);
+				}
+			}
+
+			return true;
+		}
+
+		final int valueType = typeOf(type);
+		if (valueType < 0) {
+
+			logger.log(Level.WARNING, "Unable to serialize object of type {0}, type not supported", type);
+			return false;
+		}
+
+		writeByte(valueType);
+		writeScalar(valueType, value);
+
+		return true;
+	}
+
+	/**
+	 * Indicates whether the given value can be written by this class.
+	 *
+	 * @param value
+	 * @return whether the value is supported
+	 */
+	public static boolean isSupported(final Object value) {
+
+		if (value == null) {
+			return true;
+		}
+
+		final Class type = value.getClass();
+		if (type.isArray()) {
+
+			return typeOf(type.getComponentType()) >= 0;
+		}
+
+		return typeOf(type) >= 0;
+	}
+
+	public void writeTo(final OutputStream out, final int offset, final int length) throws IOException {
+		out.write(buf, offset, length);
+	}
+
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	// ----- private methods -----
+	private void writeScalar(final int valueType, final Object value) {
+
+		switch (valueType) {
+
+			case TYPE_BYTE:
+			case TYPE_SHORT:
+			case TYPE_INTEGER:
+			case TYPE_LONG:
+				writeSignedVarInt(((Number)value).longValue());
+				break;
+
+			case TYPE_FLOAT:
+				writeVarInt(Float.floatToIntBits((Float)value) & 0xffffffffL);
+				break;
+
+			case TYPE_DOUBLE:
+				writeFixedLong(Double.doubleToLongBits((Double)value));
+				break;
+
+			case TYPE_CHARACTER:
+				writeVarInt((Character)value);
+				break;
+
+			case TYPE_STRING:
+				writeString((String)value);
+				break;
+
+			case TYPE_BOOLEAN:
+				writeByte(((Boolean)value) ? 1 : 0);
+				break;
+		}
+	}
+
+	private void writePrimitiveArray(final int elementType, final Object array) {
+
+		switch (elementType) {
+
+			case TYPE_BYTE: {
+				final byte[] data = (byte[])array;
+				writeVarInt(data.length);
+				write(data, 0, data.length);
+				break;
+			}
+
+			case TYPE_SHORT: {
+				final short[] data = (short[])array;
+				writeVarInt(data.length);
+				for (final short v : data) { writeSignedVarInt(v); }
+				break;
+			}
+
+			case TYPE_INTEGER: {
+				final int[] data = (int[])array;
+				writeVarInt(data.length);
+				for (final int v : data) { writeSignedVarInt(v); }
+				break;
+			}
+
+			case TYPE_LONG: {
+				final long[] data = (long[])array;
+				writeVarInt(data.length);
+				for (final long v : data) { writeSignedVarInt(v); }
+				break;
+			}
+
+			case TYPE_FLOAT: {
+				final float[] data = (float[])array;
+				writeVarInt(data.length);
+				for (final float v : data) { writeVarInt(Float.floatToIntBits(v) & 0xffffffffL); }
+				break;
+			}
+
+			case TYPE_DOUBLE: {
+				final double[] data = (double[])array;
+				writeVarInt(data.length);
+				for (final double v : data) { writeFixedLong(Double.doubleToLongBits(v)); }
+				break;
+			}
+
+			case TYPE_CHARACTER: {
+				final char[] data = (char[])array;
+				writeVarInt(data.length);
+				for (final char v : data) { writeVarInt(v); }
+				break;
+			}
+
+			case TYPE_BOOLEAN: {
+				final boolean[] data = (boolean[])array;
+				writeVarInt(data.length);
+				for (final boolean v : data) { writeByte(v ? 1 : 0); }
+				break;
+			}
+		}
+	}
+
+	private static int typeOf(final Class type) {
+
+		if (String.class.equals(type))                               { return TYPE_STRING;    }
+		if (Long.class.equals(type)      || Long.TYPE.equals(type))      { return TYPE_LONG;      }
+		if (Integer.class.equals(type)   || Integer.TYPE.equals(type))   { return TYPE_INTEGER;   }
+		if (Boolean.class.equals(type)   || Boolean.TYPE.equals(type))   { return TYPE_BOOLEAN;   }
+		if (Double.class.equals(type)    || Double.TYPE.equals(type))    { return TYPE_DOUBLE;    }
+		if (Float.class.equals(type)     || Float.TYPE.equals(type))     { return TYPE_FLOAT;     }
+		if (Short.class.equals(type)     || Short.TYPE.equals(type))     { return TYPE_SHORT;     }
+		if (Byte.class.equals(type)      || Byte.TYPE.equals(type))      { return TYPE_BYTE;      }
+		if (Character.class.equals(type) || Character.TYPE.equals(type)) { return TYPE_CHARACTER; }
+
+		return -1;
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.sync;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A single node or relationship record read from a binary sync stream.
+ *
+ * @author Christian Morgner
+ */
+public class SyncRecord {
+
+	private final Map<String, Object> properties = new LinkedHashMap<>();
+	private int type                             = 0;
+	private String startNodeId                   = null;
+	private String endNodeId                     = null;
+	private String relationshipType              = null;
+
+	public SyncRecord(final int type) {
+		this.type = type;
+	}
+
+	public boolean isNode() {
+		return type == SyncFormat.NODE;
+	}
+
+	public boolean isRelationship() {
+		return type == SyncFormat.RELATIONSHIP;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+
+	public String getStartNodeId() {
+		return startNodeId;
+	}
+
+	public void setStartNodeId(final String startNodeId) {
+		this.startNodeId = startNodeId;
+	}
+
+	public String getEndNodeId() {
+		return endNodeId;
+	}
+
+	public void setEndNodeId(final String endNodeId) {
+		this.endNodeId = endNodeId;
+	}
+
+	public String getRelationshipType() {
+		return relationshipType;
+	}
+
+	public void setRelationshipType(final String relationshipType) {
+		this.relationshipType = relationshipType;
+	}
+}
@@ -51,6 +51,7 @@ public class LogService implements SingletonService {
 
 	private TxPageFileFactory logDbFactory	= null;
 	private TxPageFile logDb		= null;
+	private LogWriter logWriter		= null;
 
 	/** Dependent services */
 	private Set<RunnableService> registeredServices = new HashSet<>();
@@ -65,6 +66,7 @@ public class LogService implements SingletonService {
 		if (command != null) {
 
 			command.setArgument("logDb", logDb);
+			command.setArgument("logWriter", logWriter);
 		}
 
 	}
@@ -96,6 +98,10 @@ public class LogService implements SingletonService {
 
 				logDb = logDbFactory.getTxPageFile();
 
+				// entries are written asynchronously in batches
+				logWriter = new LogWriter(logDb);
+				logWriter.start();
+
 			} catch (Throwable t) {
 
 				logger.log(Level.INFO, "Log Database could not be started", logDbPath);
@@ -127,6 +133,13 @@ public class LogService implements SingletonService {
 			// Wait for all registered services to end
 			waitFor(registeredServices.isEmpty());
 
+			// write all pending log entries
+			if (logWriter != null) {
+
+				logWriter.shutdown();
+				logWriter = null;
+			}
+
 			try {
 
 				logDbFactory.close();
@@ -0,0 +1,413 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.fusesource.hawtdb.api.BTreeIndexFactory;
+import org.fusesource.hawtdb.api.IndexFactory;
+import org.fusesource.hawtdb.api.MultiIndexFactory;
+import org.fusesource.hawtdb.api.SortedIndex;
+import org.fusesource.hawtdb.api.Transaction;
+import org.fusesource.hawtdb.api.TxPageFile;
+
+/**
+ * Background writer for the log database. Log entries are put into a
+ * queue by the calling thread and are committed in groups by this
+ * thread, so that a log call never waits for a durable commit.
+ *
+ * The queue is bounded. If it is full, a log call waits for up to the
+ * offer timeout and then drops the entry; dropped entries are counted
+ * and reported with a warning. A batch whose commit fails is rolled back
+ * and retried a few times before its entries are counted as failed.
+ * Only committed entries are counted as written.
+ *
+ * Entry keys are time-ordered: the first 16 hex digits contain the
+ * creation time in milliseconds, the last 16 hex digits a global
+ * sequence number. Keys therefore sort in creation order, which allows
+ * reading the entries of a given time range. Entries written by older
+ * versions are keyed by random UUIDs. They are not migrated: they sort
+ * after all time-ordered entries in no particular order, and
+ * {@link #getTimestamp(String)} returns -1 for them.
+ *
+ * @author Christian Morgner
+ */
+public class LogWriter extends Thread {
+
+	private static final Logger logger              = Logger.getLogger(LogWriter.class.getName());
+	private static final AtomicLong sequence        = new AtomicLong(0);
+	private static final int MAX_BATCH_SIZE         = 1000;
+	private static final int MAX_RETRIES            = 3;
+	private static final long POLL_INTERVAL         = 100;
+	private static final long MAX_TIMESTAMP         = 1L << 44;	// approx. year 2527
+
+	public static final int DEFAULT_QUEUE_CAPACITY  = 100000;
+	public static final long DEFAULT_OFFER_TIMEOUT  = 1000;
+
+	private final ReadWriteLock acceptLock          = new ReentrantReadWriteLock();
+	private final AtomicLong submitted              = new AtomicLong(0);
+	private final AtomicLong dropped                = new AtomicLong(0);
+	private final Object writeLock                  = new Object();
+	private BlockingQueue<LogEntry> queue           = null;
+	private TxPageFile logDb                        = null;
+	private volatile boolean accepting              = true;
+	private volatile boolean doRun                  = true;
+	private long offerTimeout                       = DEFAULT_OFFER_TIMEOUT;
+	private long committed                          = 0;
+	private long failed                             = 0;
+
+	public LogWriter(final TxPageFile logDb) {
+		this(logDb, DEFAULT_QUEUE_CAPACITY, DEFAULT_OFFER_TIMEOUT);
+	}
+
+	/**
+	 * @param logDb the log database
+	 * @param queueCapacity the maximum number of entries waiting to be written
+	 * @param offerTimeout the time in milliseconds a log call waits for
+	 * space in a full queue before the entry is dropped
+	 */
+	public LogWriter(final TxPageFile logDb, final int queueCapacity, final long offerTimeout) {
+
+		super("LogWriter");
+
+		this.queue        = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.offerTimeout = offerTimeout;
+		this.logDb        = logDb;
+
+		setDaemon(true);
+	}
+
+	@Override
+	public void run() {
+
+		final List<LogEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+		while (doRun || !queue.isEmpty()) {
+
+			try {
+
+				final LogEntry first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (first != null) {
+
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+					writeWithRetry(batch);
+				}
+
+			} catch (InterruptedException iex) {
+
+				// check run flag
+
+			} finally {
+
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Adds a log entry to the write queue. Waits for up to the offer
+	 * timeout if the queue is full.
+	 *
+	 * @param key the log page key
+	 * @param values the values to store
+	 * @return false if the entry was dropped because the queue is full,
+	 * or rejected because this writer is shut down
+	 */
+	public boolean enqueue(final String key, final String[] values) {
+
+		acceptLock.readLock().lock();
+		try {
+
+			if (!accepting) {
+
+				logger.log(Level.WARNING, "Log writer is shut down, rejecting log entry for key {0}", key);
+				return false;
+			}
+
+			// count before adding to the queue, see flush()
+			submitted.incrementAndGet();
+
+			try {
+
+				if (queue.offer(new LogEntry(key, createEntryKey(System.currentTimeMillis()), values), offerTimeout, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+
+			} catch (InterruptedException iex) {
+
+				Thread.currentThread().interrupt();
+			}
+
+			// log the first and then every 10000th dropped entry
+			if (dropped.getAndIncrement() % 10000 == 0) {
+				logger.log(Level.WARNING, "Log queue is full, dropped {0} log entries so far", dropped.get());
+			}
+
+			synchronized (writeLock) {
+
+				failed++;
+				writeLock.notifyAll();
+			}
+
+			return false;
+
+		} finally {
+
+			acceptLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Waits until all entries that were enqueued before this call are
+	 * committed to the log database, or have failed.
+	 *
+	 * @return false if entries were dropped or could not be committed
+	 * while waiting
+	 */
+	public boolean flush() {
+
+		final long target = submitted.get();
+
+		synchronized (writeLock) {
+
+			final long failedBefore = failed;
+
+			while (committed + failed < target && isAlive()) {
+
+				try { writeLock.wait(POLL_INTERVAL); } catch (InterruptedException iex) { return false; }
+			}
+
+			return failed == failedBefore && committed + failed >= target;
+		}
+	}
+
+	/**
+	 * Stops this writer after all pending entries are written. Entries
+	 * enqueued after this call are rejected.
+	 */
+	public void shutdown() {
+
+		acceptLock.writeLock().lock();
+		try {
+
+			accepting = false;
+
+		} finally {
+
+			acceptLock.writeLock().unlock();
+		}
+
+		doRun = false;
+
+		try { join(); } catch (InterruptedException iex) { }
+	}
+
+	public boolean isAccepting() {
+		return accepting;
+	}
+
+	/**
+	 * @return the number of entries committed to the log database
+	 */
+	public long getCommittedCount() {
+
+		synchronized (writeLock) {
+			return committed;
+		}
+	}
+
+	/**
+	 * @return the number of entries that were dropped or could not be
+	 * committed
+	 */
+	public long getFailedCount() {
+
+		synchronized (writeLock) {
+			return failed;
+		}
+	}
+
+	/**
+	 * Returns the smallest possible entry key for the given timestamp.
+	 *
+	 * @param timestamp the time in milliseconds
+	 * @return the entry key
+	 */
+	public static String getFirstEntryKey(final long timestamp) {
+		return String.format("%016x%016x", timestamp, 0);
+	}
+
+	/**
+	 * Returns the creation time of the given time-ordered entry key,
+	 * or -1 if the key was not created by this writer, e.g. the UUID
+	 * key of an entry written by an older version.
+	 *
+	 * @param entryKey the entry key
+	 * @return the creation time in milliseconds
+	 */
+	public static long getTimestamp(final String entryKey) {
+
+		if (entryKey != null && entryKey.length() == 32) {
+
+			try {
+
+				final long timestamp = Long.parseLong(entryKey.substring(0, 16), 16);
+				if (timestamp >= 0 && timestamp < MAX_TIMESTAMP) {
+
+					return timestamp;
+				}
+
+			} catch (Throwable t) {}
+		}
+
+		return -1;
+	}
+
+	// ----- private methods -----
+	private static String createEntryKey(final long timestamp) {
+		return String.format("%016x%016x", timestamp, sequence.incrementAndGet());
+	}
+
+	private void writeWithRetry(final List<LogEntry> batch) {
+
+		for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+
+			try {
+
+				write(batch);
+
+				synchronized (writeLock) {
+
+					committed += batch.size();
+					writeLock.notifyAll();
+				}
+
+				return;
+
+			} catch (Throwable t) {
+
+				logger.log(Level.WARNING, "Unable to write {0} log entries (attempt {1} of {2}): {3}", new Object[] { batch.size(), attempt, MAX_RETRIES, t.getMessage() });
+
+				if (attempt < MAX_RETRIES) {
+
+					try { Thread.sleep(POLL_INTERVAL * attempt); } catch (InterruptedException iex) { }
+				}
+			}
+		}
+
+		logger.log(Level.SEVERE, "Giving up, {0} log entries are lost", batch.size());
+
+		synchronized (writeLock) {
+
+			failed += batch.size();
+			writeLock.notifyAll();
+		}
+	}
+
+	private void write(final List<LogEntry> batch) {
+
+		final Map<String, List<LogEntry>> entriesByKey = new LinkedHashMap<>();
+
+		for (final LogEntry entry : batch) {
+
+			List<LogEntry> entries = entriesByKey.get(entry.key);
+			if (entries == null) {
+
+				entries = new LinkedList<>();
+				entriesByKey.put(entry.key, entries);
+			}
+
+			entries.add(entry);
+		}
+
+		synchronized (logDb) {
+
+			final Transaction tx                            = logDb.tx();
+			final MultiIndexFactory multiIndexFactory       = new MultiIndexFactory(tx);
+			final IndexFactory<String, Object> indexFactory = new BTreeIndexFactory<>();
+			boolean success                                 = false;
+
+			try {
+
+				for (final Entry<String, List<LogEntry>> entry : entriesByKey.entrySet()) {
+
+					final String key                  = entry.getKey();
+					SortedIndex<String, Object> index = null;
+
+					try {
+
+						index = (SortedIndex<String, Object>) multiIndexFactory.openOrCreate(key, indexFactory);
+
+					} catch (Throwable t) {
+
+						logger.log(Level.WARNING, "Could not open or create log db page for key {0}", key);
+
+						index = (SortedIndex<String, Object>) multiIndexFactory.create(key, indexFactory);
+					}
+
+					for (final LogEntry logEntry : entry.getValue()) {
+						index.put(logEntry.entryKey, logEntry.values);
+					}
+				}
+
+				// one durable commit for the whole batch
+				tx.commit();
+				logDb.flush();
+
+				success = true;
+
+			} finally {
+
+				if (!success) {
+
+					try { tx.rollback(); } catch (Throwable t) { }
+				}
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	private static class LogEntry {
+
+		private String[] values = null;
+		private String entryKey = null;
+		private String key      = null;
+
+		public LogEntry(final String key, final String entryKey, final String[] values) {
+
+			this.entryKey = entryKey;
+			this.values   = values;
+			this.key      = key;
+		}
+	}
+}
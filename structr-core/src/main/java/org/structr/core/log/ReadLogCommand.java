@@ -18,7 +18,7 @@
  */
 package org.structr.core.log;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import org.fusesource.hawtdb.api.BTreeIndexFactory;
 import org.fusesource.hawtdb.api.IndexFactory;
 import org.fusesource.hawtdb.api.MultiIndexFactory;
@@ -40,7 +40,7 @@ import java.util.logging.Logger;
 
 /**
  * Returns the values previously stored under the given key with the
- * {@link WriteLogCommand}.
+ * {@link WriteLogCommand}, in the order they were written.
  *
  * @author Axel Morgner
  */
@@ -51,12 +51,37 @@ public class ReadLogCommand extends LogServiceCommand {
 	//~--- methods --------------------------------------------------------
 
 	public Map<String, Object> execute(String key) throws FrameworkException {
+		return read(key, null, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns at most <code>limit</code> values stored under the given key
+	 * that were written in the given time range.
+	 *
+	 * @param key the log page key
+	 * @param from the start of the time range in milliseconds (inclusive)
+	 * @param to the end of the time range in milliseconds (exclusive)
+	 * @param limit the maximum number of entries to return
+	 * @return the entries, in the order they were written
+	 * @throws FrameworkException
+	 */
+	public Map<String, Object> execute(String key, long from, long to, int limit) throws FrameworkException {
+		return read(key, LogWriter.getFirstEntryKey(from), LogWriter.getFirstEntryKey(to), limit);
+	}
+
+	private Map<String, Object> read(String key, String fromKey, String toKey, int limit) throws FrameworkException {
 
 		TxPageFile logDb           = (TxPageFile) arguments.get("logDb");
-		Map<String, Object> result = new HashMap<>();
+		LogWriter logWriter        = (LogWriter) arguments.get("logWriter");
+		Map<String, Object> result = new LinkedHashMap<>();
 
 		if (logDb != null) {
 
+			// make entries that are still queued visible to the caller
+			if (logWriter != null) {
+				logWriter.flush();
+			}
+
 			Transaction tx                            = logDb.tx();
 			MultiIndexFactory multiIndexFactory       = new MultiIndexFactory(tx);
 			IndexFactory<String, Object> indexFactory = new BTreeIndexFactory<>();
@@ -64,12 +89,17 @@ public class ReadLogCommand extends LogServiceCommand {
 			try {
 
 				SortedIndex<String, Object> index  = (SortedIndex<String, Object>) multiIndexFactory.openOrCreate(key, indexFactory);
-				Iterator<Entry<String, Object>> it = index.iterator();
+				Iterator<Entry<String, Object>> it = fromKey != null ? index.iterator(fromKey) : index.iterator();
 
-				while (it.hasNext()) {
+				while (it.hasNext() && result.size() < limit) {
 
 					Entry<String, Object> entry = it.next();
 
+					// keys are time-ordered, so we can stop at the end of the range
+					if (toKey != null && entry.getKey().compareTo(toKey) >= 0) {
+						break;
+					}
+
 					result.put(entry.getKey(), entry.getValue());
 
 				}
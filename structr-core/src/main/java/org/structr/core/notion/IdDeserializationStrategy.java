@@ -26,6 +26,9 @@ import org.structr.core.entity.AbstractNode;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.structr.core.GraphObject;
@@ -43,7 +46,7 @@ import org.structr.core.graph.NodeInterface;
  *
  * @author Christian Morgner
  */
-public class IdDeserializationStrategy<S, T extends NodeInterface> implements DeserializationStrategy<S, T> {
+public class IdDeserializationStrategy<S, T extends NodeInterface> implements BatchDeserializationStrategy<S, T> {
 
 	private static final Logger logger = Logger.getLogger(IdDeserializationStrategy.class.getName());
 
@@ -153,4 +156,69 @@ public class IdDeserializationStrategy<S, T extends NodeInterface> implements De
 
 		return null;
 	}
+
+	@Override
+	public List<T> deserializeAll(final SecurityContext securityContext, final Class<T> type, final List<S> sources) throws FrameworkException {
+
+		final App app            = StructrApp.getInstance(securityContext);
+		final List<String> uuids = new ArrayList<>(sources.size());
+		final List<T> result     = new ArrayList<>(sources.size());
+
+		for (final S source : sources) {
+			uuids.add(getUuid(securityContext, type, source));
+		}
+
+		// fetch all referenced nodes with a single query
+		final Map<String, NodeInterface> nodes = app.get(uuids);
+		int i                                  = 0;
+
+		for (final S source : sources) {
+
+			final String uuid = uuids.get(i++);
+			if (uuid != null) {
+
+				result.add((T)nodes.get(uuid));
+
+			} else {
+
+				// sources that can not be resolved by UUID are handled individually
+				result.add(deserialize(securityContext, type, source));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the UUID the given source object refers to, or null if the
+	 * source can not be resolved by a simple UUID lookup.
+	 */
+	private String getUuid(final SecurityContext securityContext, final Class<T> type, final S source) throws FrameworkException {
+
+		if (source == null) {
+			return null;
+		}
+
+		if (source instanceof JsonInput) {
+
+			final PropertyMap map = PropertyMap.inputTypeToJavaType(securityContext, type, ((JsonInput)source).getAttributes());
+			return map.get(GraphObject.id);
+		}
+
+		if (source instanceof GraphObject) {
+
+			if (propertyKey != null) {
+				return null;
+			}
+
+			final GraphObject obj = (GraphObject)source;
+
+			// fetch property key for "id", may be different for AbstractNode and AbstractRelationship!
+			final PropertyKey<String> idProperty = StructrApp.getConfiguration().getPropertyKeyForDatabaseName(obj.getClass(), GraphObject.id.dbName());
+
+			return obj.getProperty(idProperty);
+		}
+
+		return source.toString();
+	}
 }
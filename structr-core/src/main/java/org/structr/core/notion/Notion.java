@@ -129,6 +129,11 @@ public abstract class Notion<S extends NodeInterface, T> {
 					return Collections.EMPTY_LIST;
 				}
 
+				// resolve all references at once if possible
+				if (deserializationStrategy instanceof BatchDeserializationStrategy) {
+					return new LinkedList<>(((BatchDeserializationStrategy<T, S>)deserializationStrategy).deserializeAll(securityContext, type, s));
+				}
+
 				List<S> list = new LinkedList<>();
 				for (T t : s) {
 
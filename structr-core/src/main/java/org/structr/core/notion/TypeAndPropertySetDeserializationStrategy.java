@@ -45,7 +45,7 @@ import org.structr.core.graph.NodeInterface;
  *
  * @author Christian Morgner
  */
-public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterface> implements DeserializationStrategy<S, T> {
+public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterface> implements BatchDeserializationStrategy<S, T> {
 
 	private static final Logger logger = Logger.getLogger(TypeAndPropertySetDeserializationStrategy.class.getName());
 	
@@ -68,18 +68,59 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 	@Override
 	public T deserialize(SecurityContext securityContext, Class<T> type, S source) throws FrameworkException {
 
+		return deserialize(securityContext, type, getAttributes(securityContext, type, source));
+	}
+
+	@Override
+	public List<T> deserializeAll(final SecurityContext securityContext, final Class<T> type, final List<S> sources) throws FrameworkException {
+
+		final App app                      = StructrApp.getInstance(securityContext);
+		final List<PropertyMap> attributes = new ArrayList<>(sources.size());
+		final List<String> uuids           = new ArrayList<>();
+		final List<T> result               = new ArrayList<>(sources.size());
+
+		for (final S source : sources) {
+
+			final PropertyMap map = getAttributes(securityContext, type, source);
+			if (map != null && map.containsKey(GraphObject.id)) {
+
+				uuids.add(map.get(GraphObject.id));
+			}
+
+			attributes.add(map);
+		}
+
+		// fetch all nodes that are referenced by UUID with a single query
+		final Map<String, NodeInterface> nodes = app.get(uuids);
+
+		for (final PropertyMap map : attributes) {
+
+			if (map != null && map.containsKey(GraphObject.id)) {
+
+				result.add(handleResult(app, type, map, getResult((T)nodes.get(map.get(GraphObject.id)))));
+
+			} else {
+
+				// property set lookups are handled individually
+				result.add(deserialize(securityContext, type, map));
+			}
+		}
+
+		return result;
+	}
+
+	private PropertyMap getAttributes(final SecurityContext securityContext, final Class<T> type, final S source) throws FrameworkException {
+
 		if (source instanceof JsonInput) {
-			
-			PropertyMap attributes = PropertyMap.inputTypeToJavaType(securityContext, type, ((JsonInput)source).getAttributes());
-			return deserialize(securityContext, type, attributes);
+
+			return PropertyMap.inputTypeToJavaType(securityContext, type, ((JsonInput)source).getAttributes());
 		}
-		
+
 		if (source instanceof Map) {
-			
-			PropertyMap attributes = PropertyMap.inputTypeToJavaType(securityContext, type, (Map)source);
-			return deserialize(securityContext, type, attributes);
+
+			return PropertyMap.inputTypeToJavaType(securityContext, type, (Map)source);
 		}
-		
+
 		return null;
 	}
 
@@ -94,7 +135,7 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 			// Check if properties contain the UUID attribute
 			if (attributes.containsKey(GraphObject.id)) {
 
-				result = new Result(app.get(attributes.get(GraphObject.id)), false);
+				result = getResult((T)app.get(attributes.get(GraphObject.id)));
 				
 			} else {
 
@@ -113,39 +154,50 @@ public class TypeAndPropertySetDeserializationStrategy<S, T extends NodeInterfac
 				}
 			}
 
-			// just check for existance
-			final int size = result.size();
-			switch (size) {
+			return handleResult(app, type, attributes, result);
+		}
+		
+		return null;
+	}
+
+	private T handleResult(final App app, final Class<T> type, final PropertyMap attributes, final Result<T> result) throws FrameworkException {
 
-				case 0:
+		// just check for existance
+		final int size = result.size();
+		switch (size) {
 
-					if (createIfNotExisting) {
+			case 0:
 
-						// create node and return it
-						T newNode = app.create(type, attributes);
-						if (newNode != null) {
+				if (createIfNotExisting) {
 
-							return newNode;
-						}						
-					}
+					// create node and return it
+					T newNode = app.create(type, attributes);
+					if (newNode != null) {
 
-					break;
+						return newNode;
+					}						
+				}
 
-				case 1:
-					return getTypedResult(result, type);
+				break;
 
-				default:
+			case 1:
+				return getTypedResult(result, type);
 
-					logger.log(Level.SEVERE, "Found {0} nodes for given type and properties, property set is ambiguous!\n"
-						+ "This is often due to wrong modeling, or you should consider creating a uniquness constraint for " + type.getName(), size);
+			default:
 
-					break;
-			}
+				logger.log(Level.SEVERE, "Found {0} nodes for given type and properties, property set is ambiguous!\n"
+					+ "This is often due to wrong modeling, or you should consider creating a uniquness constraint for " + type.getName(), size);
 
-			throw new FrameworkException(type.getSimpleName(), new PropertiesNotFoundToken(AbstractNode.base, attributes));
+				break;
 		}
-		
-		return null;
+
+		throw new FrameworkException(type.getSimpleName(), new PropertiesNotFoundToken(AbstractNode.base, attributes));
+	}
+
+	private Result<T> getResult(final T node) {
+
+		// a UUID that can not be found must not produce a result with a null element
+		return node != null ? new Result(node, false) : Result.EMPTY_RESULT;
 	}
 	
 	private T getTypedResult(Result<T> result, Class<T> type) throws FrameworkException {
@@ -34,6 +34,7 @@ import java.util.logging.Logger;
 import org.structr.common.error.TypeToken;
 import org.structr.core.*;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyMap;
@@ -45,9 +46,10 @@ import org.structr.core.property.PropertyMap;
  *
  * @author Christian Morgner
  */
-public class TypeAndValueDeserializationStrategy<S, T extends NodeInterface> implements DeserializationStrategy<S, T> {
+public class TypeAndValueDeserializationStrategy<S, T extends NodeInterface> implements BatchDeserializationStrategy<S, T> {
 
-	private static final Logger logger = Logger.getLogger(TypeAndValueDeserializationStrategy.class.getName());
+	private static final Logger logger   = Logger.getLogger(TypeAndValueDeserializationStrategy.class.getName());
+	private static final int BATCH_SIZE = 500;
 
 	//~--- fields ---------------------------------------------------------
 
@@ -78,13 +80,8 @@ public class TypeAndValueDeserializationStrategy<S, T extends NodeInterface> imp
 		Result<T> result = Result.EMPTY_RESULT;
 		
 		
-		// create and fill input map with source object
-		Map<String, Object> sourceMap = new LinkedHashMap<>();
-		sourceMap.put(propertyKey.jsonName(), source);
-
 		// try to convert input type to java type in order to create object correctly
-		PropertyMap convertedSourceMap = PropertyMap.inputTypeToJavaType(securityContext, type, sourceMap);
-		Object convertedSource = convertedSourceMap.get(propertyKey);
+		Object convertedSource = convert(securityContext, type, source);
 		
 		if (convertedSource != null) {
 
@@ -123,6 +120,97 @@ public class TypeAndValueDeserializationStrategy<S, T extends NodeInterface> imp
 			}
 		}
 
+		return handleResult(app, type, convertedSource, result);
+	}
+
+	@Override
+	public List<T> deserializeAll(final SecurityContext securityContext, final Class<T> type, final List<S> sources) throws FrameworkException {
+
+		final App app                             = StructrApp.getInstance(securityContext);
+		final List<Object> convertedSources       = new ArrayList<>(sources.size());
+		final Set<Object> values                  = new LinkedHashSet<>();
+		final Map<Object, List<T>> resultsByValue = new LinkedHashMap<>();
+		final List<T> result                      = new ArrayList<>(sources.size());
+
+		for (final S source : sources) {
+
+			final Object convertedSource = convert(securityContext, type, source);
+			if (isPlainValue(convertedSource)) {
+
+				values.add(convertedSource);
+			}
+
+			convertedSources.add(convertedSource);
+		}
+
+		// fetch the nodes for all plain values in as few queries as possible
+		final List<Object> distinctValues = new ArrayList<>(values);
+		for (int i=0; i<distinctValues.size(); i+=BATCH_SIZE) {
+
+			final Query<T> query = app.nodeQuery(type).and();
+
+			for (final Object value : distinctValues.subList(i, Math.min(i + BATCH_SIZE, distinctValues.size()))) {
+				query.or(propertyKey, value);
+			}
+
+			for (final T node : query.getAsList()) {
+
+				final Object value = node.getProperty(propertyKey);
+				List<T> nodes      = resultsByValue.get(value);
+
+				if (nodes == null) {
+
+					nodes = new LinkedList<>();
+					resultsByValue.put(value, nodes);
+				}
+
+				nodes.add(node);
+			}
+		}
+
+		int i = 0;
+		for (final S source : sources) {
+
+			final Object convertedSource = convertedSources.get(i++);
+			final List<T> nodes          = isPlainValue(convertedSource) ? resultsByValue.get(convertedSource) : null;
+
+			if (nodes != null) {
+
+				result.add(handleResult(app, type, convertedSource, new Result(nodes, nodes.size(), true, false)));
+
+			} else {
+
+				// sources that were not found by value are handled individually, so that
+				// newly created nodes and errors are exactly the same as without batching
+				final T node = deserialize(securityContext, type, source);
+				if (node != null && isPlainValue(convertedSource)) {
+
+					// re-use newly created nodes for duplicate values
+					resultsByValue.put(convertedSource, Arrays.asList(node));
+				}
+
+				result.add(node);
+			}
+		}
+
+		return result;
+	}
+
+	private Object convert(final SecurityContext securityContext, final Class<T> type, final S source) throws FrameworkException {
+
+		// create and fill input map with source object
+		Map<String, Object> sourceMap = new LinkedHashMap<>();
+		sourceMap.put(propertyKey.jsonName(), source);
+
+		PropertyMap convertedSourceMap = PropertyMap.inputTypeToJavaType(securityContext, type, sourceMap);
+		return convertedSourceMap.get(propertyKey);
+	}
+
+	private boolean isPlainValue(final Object convertedSource) {
+		return convertedSource != null && !(convertedSource instanceof JsonInput) && !(convertedSource instanceof GraphObject);
+	}
+
+	private T handleResult(final App app, final Class<T> type, final Object convertedSource, final Result<T> result) throws FrameworkException {
 
 		// just check for existance
 		int resultCount = result.size();
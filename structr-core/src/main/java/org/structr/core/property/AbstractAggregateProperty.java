@@ -0,0 +1,567 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.property;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.helpers.Predicate;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.Relation;
+import org.structr.core.graph.GraphObjectModificationState;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.PropertyReadCache;
+import org.structr.core.graph.RelationshipInterface;
+
+/**
+ * Abstract base class for read-only properties that aggregate values of
+ * other properties or related nodes.
+ *
+ * In materialized mode (see {@link #materialized()}), the aggregated value
+ * is stored on the owning node and maintained at the end of each
+ * transaction from the deltas in the modification queue. Owners whose
+ * change cannot be derived from the deltas are recomputed.
+ *
+ * Materialized values are computed in superuser context and returned to
+ * every caller. Properties whose value must reflect the caller's view of
+ * the related nodes can be declared visibility-dependent (see
+ * {@link #visibilityDependent()}), their stored value is only returned to
+ * superusers, all other callers get a value computed in their own
+ * security context.
+ *
+ * @author Christian Morgner
+ */
+public abstract class AbstractAggregateProperty<T> extends AbstractReadOnlyProperty<T> {
+
+	private static final Logger logger                                          = Logger.getLogger(AbstractAggregateProperty.class.getName());
+	private static final Set<AbstractAggregateProperty> materializedProperties = new CopyOnWriteArraySet<>();
+
+	private boolean materialized        = false;
+	private boolean visibilityDependent = false;
+
+	public AbstractAggregateProperty(final String name) {
+		super(name);
+	}
+
+	/**
+	 * Computes the aggregated value for the given object.
+	 *
+	 * @param securityContext
+	 * @param obj
+	 * @return the aggregated value
+	 */
+	public abstract T computeValue(final SecurityContext securityContext, final GraphObject obj);
+
+	/**
+	 * Returns the nodes whose aggregated value depends on the given node,
+	 * which was modified in the current transaction. The owning node itself
+	 * does not need to be returned here, it is always updated.
+	 *
+	 * @param node
+	 * @return the dependent owner nodes
+	 */
+	protected Iterable<NodeInterface> getDependentOwners(final NodeInterface node) throws FrameworkException {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Indicates whether the aggregated value depends on the visibility of
+	 * other nodes. Values of such properties are computed in the caller's
+	 * security context unless the caller is a superuser.
+	 *
+	 * @return whether the value depends on visibility
+	 */
+	public boolean isVisibilityDependent() {
+		return visibilityDependent;
+	}
+
+	/**
+	 * Records the changes of materialized values caused by the given
+	 * modification event. The default implementation recomputes the value
+	 * of each modified owner and of its dependent owners, subclasses
+	 * override this method to record numeric deltas instead.
+	 *
+	 * @param event
+	 * @param changes
+	 * @throws FrameworkException
+	 */
+	protected void collectChanges(final GraphObjectModificationState event, final MaterializedChanges changes) throws FrameworkException {
+
+		if (event.isNode() && !event.isDeleted()) {
+
+			final NodeInterface node = (NodeInterface)event.getGraphObject();
+
+			if (isOwner(node)) {
+				changes.recompute(node);
+			}
+
+			for (final NodeInterface owner : getDependentOwners(node)) {
+				changes.recompute(owner);
+			}
+		}
+	}
+
+	/**
+	 * Enables materialized mode for this property.
+	 *
+	 * @return this
+	 */
+	public AbstractAggregateProperty<T> materialized() {
+
+		this.materialized = true;
+		materializedProperties.add(this);
+
+		return this;
+	}
+
+	/**
+	 * Declares that the aggregated value depends on the visibility of the
+	 * related nodes, so the materialized value is only returned to
+	 * superusers.
+	 *
+	 * @return this
+	 */
+	public AbstractAggregateProperty<T> visibilityDependent() {
+
+		this.visibilityDependent = true;
+
+		return this;
+	}
+
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+	@Override
+	public T getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
+		return getProperty(securityContext, obj, applyConverter, null);
+	}
+
+	@Override
+	public T getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final Predicate<GraphObject> predicate) {
+
+		if (materialized && obj != null && (!isVisibilityDependent() || (securityContext != null && securityContext.isSuperUser()))) {
+
+			final PropertyContainer propertyContainer = obj.getPropertyContainer();
+			if (propertyContainer != null) {
+
+				try {
+
+					final Object value = propertyContainer.getProperty(dbName(), null);
+					if (value != null) {
+
+						return (T)value;
+					}
+
+				} catch (NotFoundException nfex) {
+
+					// node has probably been deleted
+					return null;
+				}
+			}
+		}
+
+		// not materialized, not computed yet or not visible to the caller
+		return computeValue(securityContext, obj);
+	}
+
+	/**
+	 * Re-computes and stores the materialized value of this property on
+	 * the given node.
+	 *
+	 * @param node
+	 * @throws FrameworkException
+	 */
+	public void refresh(final NodeInterface node) throws FrameworkException {
+
+		// use a fresh instance to compute the value in superuser context
+		final NodeInterface owner = (NodeInterface)new NodeFactory(SecurityContext.getSuperUserInstance()).instantiate(node.getNode());
+		if (owner == null) {
+			return;
+		}
+
+		try {
+
+			store(owner, computeValue(SecurityContext.getSuperUserInstance(), owner));
+
+		} catch (NotFoundException | IllegalStateException ex) {
+
+			// owner has been deleted in this transaction
+			logger.log(Level.FINE, "Unable to update materialized property {0} of node {1}: {2}", new Object[] { jsonName(), node.getId(), ex.getMessage() });
+		}
+	}
+
+	/**
+	 * Updates the materialized aggregate properties affected by the given
+	 * modification events. Numeric deltas are added to the stored values,
+	 * all other affected values are recomputed once.
+	 *
+	 * @param events
+	 * @throws FrameworkException
+	 */
+	public static void updateMaterializedProperties(final Collection<GraphObjectModificationState> events) throws FrameworkException {
+
+		if (materializedProperties.isEmpty()) {
+			return;
+		}
+
+		final Map<Long, GraphObjectModificationState> nodeEvents         = new LinkedHashMap<>();
+		final Map<Long, GraphObjectModificationState> relationshipEvents = new LinkedHashMap<>();
+
+		for (final GraphObjectModificationState event : events) {
+
+			if (event.isNode()) {
+
+				nodeEvents.put(((NodeInterface)event.getGraphObject()).getId(), event);
+
+			} else {
+
+				relationshipEvents.put(((RelationshipInterface)event.getGraphObject()).getId(), event);
+			}
+		}
+
+		for (final AbstractAggregateProperty property : materializedProperties) {
+
+			final MaterializedChanges changes = new MaterializedChanges(nodeEvents, relationshipEvents);
+
+			for (final GraphObjectModificationState event : events) {
+				property.collectChanges(event, changes);
+			}
+
+			property.apply(changes);
+		}
+	}
+
+	/**
+	 * Indicates whether there are any properties in materialized mode.
+	 *
+	 * @return whether there are materialized properties
+	 */
+	public static boolean hasMaterializedProperties() {
+		return !materializedProperties.isEmpty();
+	}
+
+	/**
+	 * Indicates whether a materialized property may be declared on one of
+	 * the end nodes of the given relationship, so the end nodes must be
+	 * recorded in the modification queue.
+	 *
+	 * @param relationship
+	 * @return whether the end nodes are needed
+	 */
+	public static boolean isMaterializedOnEndNodes(final RelationshipInterface relationship) {
+
+		if (materializedProperties.isEmpty()) {
+			return false;
+		}
+
+		if (relationship instanceof Relation) {
+
+			final Relation relation = (Relation)relationship;
+
+			return isMaterializedOn(relation.getSourceType()) || isMaterializedOn(relation.getTargetType());
+		}
+
+		// end node types unknown
+		return true;
+	}
+
+	/**
+	 * Returns all properties that are in materialized mode.
+	 *
+	 * @return the materialized properties
+	 */
+	public static Set<AbstractAggregateProperty> getMaterializedProperties() {
+		return Collections.unmodifiableSet(materializedProperties);
+	}
+
+	// ----- protected methods -----
+	protected boolean isOwner(final GraphObject obj) {
+		return obj != null && declaringClass != null && declaringClass.isAssignableFrom(obj.getClass());
+	}
+
+	/**
+	 * Returns the owner node of the given relationship event if the
+	 * relationship belongs to the given relation property, or null.
+	 *
+	 * @param event
+	 * @param relationProperty
+	 * @return the owner node or null
+	 */
+	protected NodeInterface getOwner(final GraphObjectModificationState event, final Property relationProperty) {
+
+		if (!event.isNode() && relationProperty instanceof RelationProperty) {
+
+			final Relation relation = ((RelationProperty)relationProperty).getRelation();
+			final NodeInterface owner;
+			final NodeInterface element;
+			final Class elementType;
+
+			if (relationProperty instanceof EndNodes) {
+
+				owner       = event.getSourceNode();
+				element     = event.getTargetNode();
+				elementType = relation.getTargetType();
+
+			} else {
+
+				owner       = event.getTargetNode();
+				element     = event.getSourceNode();
+				elementType = relation.getSourceType();
+			}
+
+			if (relation.name().equals(event.getRelationshipType().name()) && isOwner(owner) && elementType.isInstance(element)) {
+				return owner;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the element node of the given relationship event, see
+	 * {@link #getOwner(GraphObjectModificationState, Property)}.
+	 *
+	 * @param event
+	 * @param relationProperty
+	 * @return the element node
+	 */
+	protected NodeInterface getElement(final GraphObjectModificationState event, final Property relationProperty) {
+		return relationProperty instanceof EndNodes ? event.getTargetNode() : event.getSourceNode();
+	}
+
+	/**
+	 * Adds the given delta to the given numeric value, or returns null if
+	 * the types are not compatible.
+	 *
+	 * @param value
+	 * @param delta
+	 * @return the sum or null
+	 */
+	protected static Number add(final Object value, final Number delta) {
+
+		if (value == null) {
+			return delta;
+		}
+
+		if (delta == null) {
+			return value instanceof Number ? (Number)value : null;
+		}
+
+		if (value instanceof Integer && delta instanceof Integer) {
+			return (Integer)value + (Integer)delta;
+		}
+
+		if (value instanceof Long && (delta instanceof Long || delta instanceof Integer)) {
+			return (Long)value + delta.longValue();
+		}
+
+		if (value instanceof Double && (delta instanceof Double || delta instanceof Integer)) {
+			return (Double)value + delta.doubleValue();
+		}
+
+		if (value instanceof Float && (delta instanceof Float || delta instanceof Integer)) {
+			return (Float)value + delta.floatValue();
+		}
+
+		// incompatible types, value must be recomputed
+		return null;
+	}
+
+	protected static Number negate(final Object value) {
+
+		if (value instanceof Integer) {
+			return -(Integer)value;
+		}
+
+		if (value instanceof Long) {
+			return -(Long)value;
+		}
+
+		if (value instanceof Double) {
+			return -(Double)value;
+		}
+
+		if (value instanceof Float) {
+			return -(Float)value;
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private static boolean isMaterializedOn(final Class type) {
+
+		if (type == null) {
+			return true;
+		}
+
+		for (final AbstractAggregateProperty property : materializedProperties) {
+
+			final Class declaringClass = property.declaringClass;
+
+			// end node type may be a supertype or a subtype of the owner type
+			if (declaringClass == null || declaringClass.isAssignableFrom(type) || type.isAssignableFrom(declaringClass)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void apply(final MaterializedChanges changes) throws FrameworkException {
+
+		for (final NodeInterface owner : changes.recompute.values()) {
+			refresh(owner);
+		}
+
+		for (final Map.Entry<Long, Number> entry : changes.deltas.entrySet()) {
+
+			final NodeInterface owner = changes.owners.get(entry.getKey());
+
+			try {
+
+				final Object storedValue = owner.getNode().getProperty(dbName(), null);
+				final Number value       = storedValue != null ? add(storedValue, entry.getValue()) : null;
+
+				if (value != null) {
+
+					store(owner, value);
+
+				} else {
+
+					// no stored value yet or incompatible types
+					refresh(owner);
+				}
+
+			} catch (NotFoundException | IllegalStateException ex) {
+
+				logger.log(Level.FINE, "Unable to update materialized property {0} of node {1}: {2}", new Object[] { jsonName(), owner.getId(), ex.getMessage() });
+			}
+		}
+	}
+
+	private void store(final NodeInterface owner, final Object value) {
+
+		final PropertyContainer propertyContainer = owner.getPropertyContainer();
+
+		if (value != null) {
+
+			propertyContainer.setProperty(dbName(), value);
+
+		} else {
+
+			propertyContainer.removeProperty(dbName());
+		}
+
+		PropertyReadCache.evictCurrent(propertyContainer);
+
+		if (isIndexed()) {
+			index(owner, value);
+		}
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The changes of the materialized values of one property, either as
+	 * numeric deltas per owner node or as owners to recompute. Deleted
+	 * owners are ignored, and recomputation supersedes deltas.
+	 */
+	protected static class MaterializedChanges {
+
+		private final Map<Long, NodeInterface> recompute                   = new LinkedHashMap<>();
+		private final Map<Long, NodeInterface> owners                      = new LinkedHashMap<>();
+		private final Map<Long, Number> deltas                             = new LinkedHashMap<>();
+		private Map<Long, GraphObjectModificationState> relationshipEvents = null;
+		private Map<Long, GraphObjectModificationState> nodeEvents         = null;
+
+		private MaterializedChanges(final Map<Long, GraphObjectModificationState> nodeEvents, final Map<Long, GraphObjectModificationState> relationshipEvents) {
+
+			this.nodeEvents         = nodeEvents;
+			this.relationshipEvents = relationshipEvents;
+		}
+
+		/**
+		 * Returns the modification event of the given node in the current
+		 * transaction, or null if the node was not modified.
+		 *
+		 * @param node
+		 * @return the modification event or null
+		 */
+		public GraphObjectModificationState getEvent(final NodeInterface node) {
+			return nodeEvents.get(node.getId());
+		}
+
+		public boolean isCreated(final long relationshipId) {
+
+			final GraphObjectModificationState event = relationshipEvents.get(relationshipId);
+			return event != null && event.isCreated();
+		}
+
+		public boolean isDeleted(final NodeInterface node) {
+
+			final GraphObjectModificationState event = getEvent(node);
+			return event != null && event.isDeleted();
+		}
+
+		public void recompute(final NodeInterface owner) {
+
+			if (owner != null && !isDeleted(owner)) {
+
+				final long id = owner.getId();
+
+				recompute.put(id, owner);
+				owners.remove(id);
+				deltas.remove(id);
+			}
+		}
+
+		public void add(final NodeInterface owner, final Number delta) {
+
+			if (owner == null || delta == null || isDeleted(owner)) {
+				return;
+			}
+
+			final long id = owner.getId();
+			if (!recompute.containsKey(id)) {
+
+				final Number sum = AbstractAggregateProperty.add(deltas.get(id), delta);
+				if (sum != null) {
+
+					owners.put(id, owner);
+					deltas.put(id, sum);
+
+				} else {
+
+					recompute(owner);
+				}
+			}
+		}
+	}
+}
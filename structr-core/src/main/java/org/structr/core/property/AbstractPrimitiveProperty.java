@@ -30,6 +30,7 @@ import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.graph.PropertyReadCache;
 import org.structr.core.graph.TransactionCommand;
 
 
@@ -68,29 +69,38 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 		
 		final PropertyContainer propertyContainer = obj.getPropertyContainer();
 
-		boolean hasProperty = false;
-		
 		if (propertyContainer != null) {
-			
-			try {
-				// this may throw a java.lang.IllegalStateException: Relationship[<id>] has been deleted in this tx
-				hasProperty = propertyContainer.hasProperty(dbName());
 
-			} catch (NotFoundException nfex) {
-				
-				// FIXME: is logging necessary here? Node has probably been deleted
-				return null;
+			// use cached value if possible (only available inside of a transaction or request)
+			final PropertyReadCache cache = PropertyReadCache.getInstance();
+			if (cache != null && cache.contains(propertyContainer, dbName())) {
 
-			} catch (IllegalStateException ise) {
+				value = cache.get(propertyContainer, dbName());
 
-				logger.log(Level.WARNING, "Could not determine property " + dbName + " of the requested graph object", ise);
+			} else {
 
-			}
+				boolean cacheable = true;
+
+				try {
+					// single lookup instead of hasProperty() and getProperty()
+					// this may throw a java.lang.IllegalStateException: Relationship[<id>] has been deleted in this tx
+					value = propertyContainer.getProperty(dbName(), null);
 
-			if (hasProperty) {
+				} catch (NotFoundException nfex) {
 
-				value = propertyContainer.getProperty(dbName());
+					// FIXME: is logging necessary here? Node has probably been deleted
+					return null;
 
+				} catch (IllegalStateException ise) {
+
+					logger.log(Level.WARNING, "Could not determine property " + dbName + " of the requested graph object", ise);
+					cacheable = false;
+				}
+
+				// arrays are mutable, so we don't cache them
+				if (cache != null && cacheable && (value == null || !value.getClass().isArray())) {
+					cache.put(propertyContainer, dbName(), value);
+				}
 			}
 		}
 
@@ -176,6 +186,12 @@ public abstract class AbstractPrimitiveProperty<T> extends Property<T> {
 			// catch all sorts of errors and wrap them in a FrameworkException
 			try {
 				
+				// unvalidated writes don't enter the modification queue
+				final PropertyReadCache cache = PropertyReadCache.getInstance();
+				if (cache != null) {
+					cache.evict(propertyContainer);
+				}
+
 				// save space
 				if (convertedValue == null) {
 
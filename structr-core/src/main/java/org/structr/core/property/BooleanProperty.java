@@ -39,6 +39,8 @@ public class BooleanProperty extends AbstractPrimitiveProperty<Boolean> {
 	private static final Logger logger = Logger.getLogger(BooleanProperty.class.getName());
 	private static final Set<String> TRUE_VALUES = new LinkedHashSet<>(Arrays.asList(new String[] { "true", "1", "on" }));
 
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null);
+
 	public BooleanProperty(String name) {
 		this(name, name, null);
 	}
@@ -89,7 +91,7 @@ public class BooleanProperty extends AbstractPrimitiveProperty<Boolean> {
 
 	@Override
 	public PropertyConverter<Boolean, ?> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext);
+		return databaseConverter;
 	}
 
 	@Override
@@ -18,19 +18,26 @@
  */
 package org.structr.core.property;
 
+import java.util.LinkedList;
 import java.util.List;
 import org.apache.lucene.search.SortField;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.helpers.Predicate;
 import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.entity.Relation;
+import org.structr.core.graph.GraphObjectModificationState;
+import org.structr.core.graph.NodeFactory;
 import org.structr.core.graph.NodeInterface;
 
 /**
  *
  * @author Axel Morgner
  */
-public class CollectionSumProperty<T extends NodeInterface, S extends Number> extends AbstractReadOnlyProperty<S> {
+public class CollectionSumProperty<T extends NodeInterface, S extends Number> extends AbstractAggregateProperty<S> {
 
 	private Property<List<T>> collectionKey = null;
 	private Property<S> valueKey            = null;
@@ -60,12 +67,7 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 	}
 
 	@Override
-	public S getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
-		return getProperty(securityContext, obj, applyConverter, null);
-	}
-
-	@Override
-	public S getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final Predicate<GraphObject> pred) {
+	public S computeValue(SecurityContext securityContext, GraphObject obj) {
 		
 		Integer intSum    = 0;
 		Long    longSum   = 0L;
@@ -74,7 +76,7 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 		
 		Class cls = Integer.class;
 		
-		for (T collectionObj : obj.getProperty(collectionKey)) {
+		for (T collectionObj : collectionKey.getProperty(securityContext, obj, true)) {
 			
 			if (predicate != null && !predicate.accept(collectionObj)) {
 				continue;
@@ -110,4 +112,150 @@ public class CollectionSumProperty<T extends NodeInterface, S extends Number> ex
 	public boolean isCollection() {
 		return false;
 	}
+
+	/**
+	 * Records the change of each owner's sum from the modification queue:
+	 * the value of a new collection element is added, the value of a
+	 * removed element is subtracted, and a modified element value adds
+	 * the difference to its existing owners. Owners are recomputed if
+	 * a predicate is set (membership may depend on any property), if the
+	 * collection is not a relationship collection, or if an element was
+	 * deleted.
+	 */
+	@Override
+	protected void collectChanges(final GraphObjectModificationState event, final MaterializedChanges changes) throws FrameworkException {
+
+		if (predicate != null || !(collectionKey instanceof RelationProperty)) {
+
+			super.collectChanges(event, changes);
+			return;
+		}
+
+		if (event.isNode()) {
+
+			if (event.isDeleted()) {
+				return;
+			}
+
+			final NodeInterface node = (NodeInterface)event.getGraphObject();
+
+			// initial value of new owners
+			if (event.isCreated() && isOwner(node)) {
+				changes.recompute(node);
+			}
+
+			// elements created in this transaction are added with their relationships
+			if (!event.isCreated() && event.getOriginalProperties().containsKey(valueKey)) {
+
+				final Number delta = add(node.getProperty(valueKey), negate(event.getOriginalProperties().get(valueKey)));
+				if (delta != null) {
+
+					for (final Relationship rel : getExistingRelationships(node, changes)) {
+
+						final NodeInterface owner = (NodeInterface)new NodeFactory(SecurityContext.getSuperUserInstance()).instantiate(rel.getOtherNode(node.getNode()));
+						if (isOwner(owner)) {
+
+							changes.add(owner, delta);
+						}
+					}
+				}
+			}
+
+			return;
+		}
+
+		final NodeInterface owner = getOwner(event, collectionKey);
+		if (owner != null && event.isCreated() != event.isDeleted()) {
+
+			final NodeInterface element = getElement(event, collectionKey);
+
+			if (changes.isDeleted(element)) {
+
+				// value of deleted element is not available any more
+				changes.recompute(owner);
+
+			} else if (event.isCreated()) {
+
+				changes.add(owner, add(null, (Number)element.getProperty(valueKey)));
+
+			} else {
+
+				// subtract the value from before this transaction
+				final GraphObjectModificationState elementEvent = changes.getEvent(element);
+				final Object previousValue;
+
+				if (elementEvent != null && elementEvent.getOriginalProperties().containsKey(valueKey)) {
+
+					previousValue = elementEvent.getOriginalProperties().get(valueKey);
+
+				} else {
+
+					previousValue = element.getProperty(valueKey);
+				}
+
+				changes.add(owner, negate(previousValue));
+			}
+		}
+	}
+
+	/**
+	 * Returns the nodes whose collection contains the given node, so that
+	 * materialized sums are updated when a value of a collection element
+	 * changes.
+	 */
+	@Override
+	protected Iterable<NodeInterface> getDependentOwners(final NodeInterface node) throws FrameworkException {
+
+		final List<NodeInterface> owners = new LinkedList<>();
+
+		if (declaringClass != null && collectionKey instanceof RelationProperty) {
+
+			// owner is the source node for end nodes, and the target node for start nodes
+			final Relation relation   = ((RelationProperty)collectionKey).getRelation();
+			final boolean isEndNodes  = collectionKey instanceof EndNodes;
+			final Class elementType   = isEndNodes ? relation.getTargetType() : relation.getSourceType();
+
+			if (elementType.isAssignableFrom(node.getClass())) {
+
+				final Direction direction = isEndNodes ? Direction.INCOMING : Direction.OUTGOING;
+				final NodeFactory factory = new NodeFactory(SecurityContext.getSuperUserInstance());
+
+				for (final Relationship rel : node.getNode().getRelationships(relation, direction)) {
+
+					final NodeInterface owner = (NodeInterface)factory.instantiate(rel.getOtherNode(node.getNode()));
+					if (owner != null && declaringClass.isAssignableFrom(owner.getClass())) {
+
+						owners.add(owner);
+					}
+				}
+			}
+		}
+
+		return owners;
+	}
+
+	// ----- private methods -----
+	/**
+	 * Returns the relationships of the given element node that belong to
+	 * the collection and were not created in this transaction.
+	 */
+	private Iterable<Relationship> getExistingRelationships(final NodeInterface node, final MaterializedChanges changes) {
+
+		final List<Relationship> rels = new LinkedList<>();
+		final Relation relation       = ((RelationProperty)collectionKey).getRelation();
+		final boolean isEndNodes      = collectionKey instanceof EndNodes;
+		final Class elementType       = isEndNodes ? relation.getTargetType() : relation.getSourceType();
+
+		if (elementType.isAssignableFrom(node.getClass())) {
+
+			for (final Relationship rel : node.getNode().getRelationships(relation, isEndNodes ? Direction.INCOMING : Direction.OUTGOING)) {
+
+				if (!changes.isCreated(rel.getId())) {
+					rels.add(rel);
+				}
+			}
+		}
+
+		return rels;
+	}
 }
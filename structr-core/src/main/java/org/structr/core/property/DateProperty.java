@@ -18,12 +18,12 @@
  */
 package org.structr.core.property;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.NumericUtils;
 import org.neo4j.index.lucene.ValueContext;
+import org.structr.common.DateFormatHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.DateFormatToken;
 import org.structr.common.error.FrameworkException;
@@ -43,7 +43,8 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 	
 	public static final String DATE_EMPTY_FIELD_VALUE = NumericUtils.longToPrefixCoded(Long.MIN_VALUE);
 	
-	protected String pattern = null;
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null, null);
+	protected String pattern                          = null;
 	
 	public DateProperty(String name, String pattern) {
 		super(name);
@@ -80,7 +81,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 
 	@Override
 	public PropertyConverter<Date, Long> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext, entity);
+		return databaseConverter;
 	}
 
 	@Override
@@ -110,7 +111,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 			
 			try {
 				
-				return new SimpleDateFormat(pattern).parse(value.toString()).getTime();
+				return DateFormatHelper.parse(value.toString(), pattern).getTime();
 				
 			} catch (Throwable t) {
 			}
@@ -161,7 +162,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 			if (source != null) {
 
 				try {
-					return new SimpleDateFormat(pattern).parse(source);
+					return DateFormatHelper.parse(source, pattern);
 
 				} catch(Throwable t) {
 
@@ -178,7 +179,7 @@ public class DateProperty extends AbstractPrimitiveProperty<Date> {
 		public String revert(Date source) throws FrameworkException {
 
 			if (source != null) {
-				return new SimpleDateFormat(pattern).format(source);
+				return DateFormatHelper.format(source, pattern);
 			}
 			
 			return null;
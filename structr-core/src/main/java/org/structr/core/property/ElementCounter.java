@@ -28,6 +28,8 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.GraphObjectModificationState;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.search.IntegerSearchAttribute;
 import org.structr.core.graph.search.SearchAttribute;
 import static org.structr.core.property.IntProperty.INT_EMPTY_FIELD_VALUE;
@@ -37,7 +39,7 @@ import static org.structr.core.property.IntProperty.INT_EMPTY_FIELD_VALUE;
  *
  * @author Christian Morgner
  */
-public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
+public class ElementCounter extends AbstractAggregateProperty<Integer> {
 	
 	private Property<? extends Iterable> collectionProperty = null;
 	
@@ -48,18 +50,13 @@ public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
 	}
 
 	@Override
-	public Integer getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
-		return getProperty(securityContext, obj, applyConverter, null);
-	}
-
-	@Override
-	public Integer getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
+	public Integer computeValue(SecurityContext securityContext, GraphObject obj) {
 		
 		int count = 0;
 		
 		if(obj != null) {
 			
-			Object toCount = obj.getProperty(collectionProperty);
+			Object toCount = collectionProperty.getProperty(securityContext, obj, true);
 			if(toCount != null) {
 
 				if (toCount instanceof Collection) {
@@ -83,6 +80,44 @@ public class ElementCounter extends AbstractReadOnlyProperty<Integer> {
 		return count;
 	}
 
+	/**
+	 * Counts created and deleted relationships of the collection property
+	 * as +1 and -1, other collections are recomputed when the owner is
+	 * modified.
+	 */
+	@Override
+	protected void collectChanges(final GraphObjectModificationState event, final MaterializedChanges changes) throws FrameworkException {
+
+		if (!(collectionProperty instanceof RelationProperty)) {
+
+			super.collectChanges(event, changes);
+			return;
+		}
+
+		if (event.isNode()) {
+
+			// initial value of new owners
+			if (event.isCreated() && !event.isDeleted() && isOwner(event.getGraphObject())) {
+				changes.recompute((NodeInterface)event.getGraphObject());
+			}
+
+			return;
+		}
+
+		final NodeInterface owner = getOwner(event, collectionProperty);
+		if (owner != null) {
+
+			if (event.isCreated() && !event.isDeleted()) {
+
+				changes.add(owner, 1);
+
+			} else if (event.isDeleted() && !event.isCreated()) {
+
+				changes.add(owner, -1);
+			}
+		}
+	}
+
 	@Override
 	public Class relatedType() {
 		return null;
@@ -32,7 +32,8 @@ import org.structr.core.converter.PropertyConverter;
  */
 public class EnumProperty<T extends Enum> extends AbstractPrimitiveProperty<T> {
 	
-	private Class<T> enumType = null;
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null, null);
+	private Class<T> enumType                         = null;
 	
 	public EnumProperty(String name, Class<T> enumType, final PropertyValidator<T>... validators) {
 		this(name, enumType, null, validators);
@@ -70,7 +71,7 @@ public class EnumProperty<T extends Enum> extends AbstractPrimitiveProperty<T> {
 	
 	@Override
 	public PropertyConverter<T, String> databaseConverter(SecurityContext securityContext, GraphObject entity) {
-		return new DatabaseConverter(securityContext, entity);
+		return databaseConverter;
 	}
 
 	@Override
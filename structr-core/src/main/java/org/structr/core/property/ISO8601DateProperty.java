@@ -18,7 +18,7 @@
  */
 package org.structr.core.property;
 
-import java.text.SimpleDateFormat;
+import org.structr.common.DateFormatHelper;
 import org.apache.commons.lang.StringUtils;
 
 import org.structr.common.SecurityContext;
@@ -48,6 +48,8 @@ public class ISO8601DateProperty extends DateProperty {
 	
 	public static final String PATTERN = "yyyy-MM-dd'T'HH:mm:ssZ";
 
+	private final DatabaseConverter databaseConverter = new DatabaseConverter(null, null);
+
 	public ISO8601DateProperty(String name) {
 
 		super(name, PATTERN);
@@ -59,7 +61,7 @@ public class ISO8601DateProperty extends DateProperty {
 	@Override
 	public PropertyConverter<Date, Long> databaseConverter(SecurityContext securityContext, GraphObject entity) {
 
-		return new DatabaseConverter(securityContext, entity);
+		return databaseConverter;
 
 	}
 
@@ -132,7 +134,7 @@ public class ISO8601DateProperty extends DateProperty {
 						source = StringUtils.replace(source, "Z", "+0000");
 					}
 
-					return new SimpleDateFormat(pattern).parse(source);
+					return DateFormatHelper.parse(source, pattern);
 					
 				} catch (Throwable t) {
 
@@ -151,7 +153,7 @@ public class ISO8601DateProperty extends DateProperty {
 
 			if (source != null) {
 
-				return new SimpleDateFormat(pattern).format(source);
+				return DateFormatHelper.format(source, pattern);
 			}
 
 			return null;
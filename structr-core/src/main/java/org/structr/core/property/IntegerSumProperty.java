@@ -31,7 +31,7 @@ import org.neo4j.graphdb.Node;
  *
  * @author Christian Morgner
  */
-public class IntegerSumProperty extends AbstractReadOnlyProperty<Integer> {
+public class IntegerSumProperty extends AbstractAggregateProperty<Integer> {
 
 	private List<Property<Integer>> sumProperties = new LinkedList<Property<Integer>>();
 	
@@ -53,12 +53,7 @@ public class IntegerSumProperty extends AbstractReadOnlyProperty<Integer> {
 	}
 
 	@Override
-	public Integer getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter) {
-		return getProperty(securityContext, obj, applyConverter, null);
-	}
-
-	@Override
-	public Integer getProperty(SecurityContext securityContext, GraphObject obj, boolean applyConverter, final org.neo4j.helpers.Predicate<GraphObject> predicate) {
+	public Integer computeValue(SecurityContext securityContext, GraphObject obj) {
 		
 		int sum = 0;
 		
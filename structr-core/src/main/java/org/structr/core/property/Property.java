@@ -61,6 +61,16 @@ public abstract class Property<T> implements PropertyKey<T> {
 
 	private static final Logger logger             = Logger.getLogger(Property.class.getName());
 	private static final Pattern rangeQueryPattern = Pattern.compile("\\[(.+) TO (.+)\\]");
+
+	public static final String SUBSTRING_INDEX_SUFFIX = "_substr";
+
+	/**
+	 * The maximum length of an indexed suffix. Longer suffixes are cut
+	 * off, so a word of length n produces at most n * 32 characters of
+	 * index data instead of n² / 2. Search words that are longer than
+	 * this are matched with a wildcard query instead.
+	 */
+	public static final int SUBSTRING_INDEX_MAX_LENGTH = 32;
 	
 	protected List<PropertyValidator<T>> validators        = new LinkedList<>();
 	protected Class<? extends GraphObject> declaringClass  = null;
@@ -72,6 +82,7 @@ public abstract class Property<T> implements PropertyKey<T> {
 	protected boolean indexedPassively                     = false;
 	protected boolean searchable                           = false;
 	protected boolean indexedWhenEmpty                     = false;
+	protected boolean substringIndexed                     = false;
 	protected String dbName                                = null;
 	protected String jsonName                              = null;
 
@@ -213,6 +224,15 @@ public abstract class Property<T> implements PropertyKey<T> {
 		return this;
 	}
 
+	@Override
+	public Property<T> substringIndexed() {
+		
+		indexed();
+		this.substringIndexed = true;
+		
+		return this;
+	}
+
 	@Override
 	public void addValidator(PropertyValidator<T> validator) {
 		
@@ -354,9 +374,17 @@ public abstract class Property<T> implements PropertyKey<T> {
 		return indexedWhenEmpty;
 	}
 	
+	@Override
+	public boolean isSubstringIndexed() {
+		return substringIndexed;
+	}
+	
 	@Override
 	public void index(GraphObject entity, Object value) {
 
+		// computed up front, the value may be replaced by the empty field value below
+		final String substrings = isSubstringIndexed() ? getSubstringIndexValue(value) : null;
+		
 		if (entity instanceof AbstractNode) {
 
 			NodeService nodeService = Services.getInstance().getService(NodeService.class);
@@ -385,6 +413,17 @@ public abstract class Property<T> implements PropertyKey<T> {
 									index.add(dbNode, dbName, value);
 								}
 							}
+
+							if (isSubstringIndexed() && NodeIndex.fulltext.equals(indexName)) {
+
+								String substringKey = getSubstringIndexKey(dbName);
+
+								index.remove(dbNode, substringKey);
+
+								if (substrings != null) {
+									index.add(dbNode, substringKey, substrings);
+								}
+							}
 						}
 
 					} catch (Throwable t) {
@@ -423,6 +462,17 @@ public abstract class Property<T> implements PropertyKey<T> {
 									index.add(dbRel, dbName, value);
 								}
 							}
+
+							if (isSubstringIndexed() && RelationshipIndex.rel_fulltext.equals(indexName)) {
+
+								String substringKey = getSubstringIndexKey(dbName);
+
+								index.remove(dbRel, substringKey);
+
+								if (substrings != null) {
+									index.add(dbRel, substringKey, substrings);
+								}
+							}
 						}
 
 					} catch (Throwable t) {
@@ -435,6 +485,57 @@ public abstract class Property<T> implements PropertyKey<T> {
 		
 	}
 	
+	/**
+	 * Returns the name of the fulltext index field that contains the
+	 * suffixes of a substring-indexed property with the given dbName.
+	 * 
+	 * @param dbName
+	 * @return the index field name
+	 */
+	public static String getSubstringIndexKey(final String dbName) {
+		return dbName.concat(SUBSTRING_INDEX_SUFFIX);
+	}
+	
+	/**
+	 * Returns all suffixes of the lowercased, whitespace-separated words of
+	 * the given value, joined by a single space so the whitespace analyzer
+	 * of the fulltext index stores each suffix as a separate term. A word
+	 * contains a search string if and only if one of its suffixes starts
+	 * with it, so infix searches can be answered with a prefix query.
+	 * Suffixes are cut off after {@link #SUBSTRING_INDEX_MAX_LENGTH}
+	 * characters.
+	 * 
+	 * @param value
+	 * @return the suffixes, or null if the value is empty
+	 */
+	public static String getSubstringIndexValue(final Object value) {
+
+		if (value == null) {
+			return null;
+		}
+		
+		String[] words = StringUtils.split(value.toString().toLowerCase());
+		if (words == null || words.length == 0) {
+			return null;
+		}
+		
+		StringBuilder buf = new StringBuilder();
+		
+		for (String word : words) {
+
+			for (int i=0; i<word.length(); i++) {
+				
+				if (buf.length() > 0) {
+					buf.append(" ");
+				}
+				
+				buf.append(word.substring(i, Math.min(word.length(), i + SUBSTRING_INDEX_MAX_LENGTH)));
+			}
+		}
+		
+		return buf.toString();
+	}
+	
 	@Override
 	public SearchAttribute getSearchAttribute(SecurityContext securityContext, BooleanClause.Occur occur, T searchValue, boolean exactMatch) {
 		return new PropertySearchAttribute(this, searchValue, occur, exactMatch);
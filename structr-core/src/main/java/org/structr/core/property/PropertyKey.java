@@ -128,6 +128,18 @@ public interface PropertyKey<T> {
 	public Property<T> passivelyIndexed(NodeService.RelationshipIndex relIndex);
 	
 	public Property<T> indexedWhenEmpty();
+
+	/**
+	 * Use this method to mark a property as being indexed for fast
+	 * substring search. In addition to the normal fulltext index entry,
+	 * all suffixes of each word of the value are stored in the fulltext
+	 * index, so that inexact (prefix, suffix and infix) searches can be
+	 * answered with prefix queries instead of leading wildcards. This
+	 * method implies indexed().
+	 * 
+	 * @return the Property to satisfy the builder pattern
+	 */
+	public Property<T> substringIndexed();
 	
 	
 	/**
@@ -233,6 +245,14 @@ public interface PropertyKey<T> {
 	 */
 	public boolean isIndexedWhenEmpty();
 
+	/**
+	 * Indicates whether the suffixes of this property's value are stored
+	 * in the fulltext index to speed up inexact search.
+	 * 
+	 * @return 
+	 */
+	public boolean isSubstringIndexed();
+
 	/**
 	 * Indicates whether this property represents a collection or a single
 	 * value in the JSON output.
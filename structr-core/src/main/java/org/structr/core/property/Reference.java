@@ -173,6 +173,11 @@ public class Reference<T> implements PropertyKey<T> {
 		return propertyKey.isIndexedWhenEmpty();
 	}
 
+	@Override
+	public boolean isSubstringIndexed() {
+		return propertyKey.isSubstringIndexed();
+	}
+
 	@Override
 	public boolean isCollection() {
 		return propertyKey.isCollection();
@@ -280,4 +285,9 @@ public class Reference<T> implements PropertyKey<T> {
 	public Property<T> indexedWhenEmpty() {
 		return propertyKey.indexedWhenEmpty();
 	}
+
+	@Override
+	public Property<T> substringIndexed() {
+		return propertyKey.substringIndexed();
+	}
 }
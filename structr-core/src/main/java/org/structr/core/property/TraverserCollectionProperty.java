@@ -32,6 +32,7 @@ import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.notion.Notion;
+import org.structr.core.traversal.BoundedNodeCollector;
 import org.structr.core.traversal.TraverserInterface;
 
 /**
@@ -85,6 +86,12 @@ public class TraverserCollectionProperty<T extends AbstractNode> extends Abstrac
 
 		// collect results and convert nodes into structr nodes
 		NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
+
+		// let bounded collectors keep only the nodes they need
+		if (traverserInterface instanceof BoundedNodeCollector) {
+			return ((BoundedNodeCollector<T>)traverserInterface).collect(nodeFactory, nodes);
+		}
+
 		List<T> nodeList           = new LinkedList<>();
 
 		for(Node n : nodes) {
@@ -32,6 +32,7 @@ import org.structr.core.converter.PropertyConverter;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.graph.NodeFactory;
 import org.structr.core.notion.Notion;
+import org.structr.core.traversal.BoundedNodeCollector;
 import org.structr.core.traversal.TraverserInterface;
 
 /**
@@ -89,6 +90,12 @@ public class TraverserEntityProperty<T extends AbstractNode> extends AbstractRea
 
 		// collect results and convert nodes into structr nodes
 		NodeFactory<T> nodeFactory = new NodeFactory<T>(securityContext);
+
+		// let bounded collectors keep only the nodes they need
+		if (traverserInterface instanceof BoundedNodeCollector) {
+			return ((BoundedNodeCollector<T>)traverserInterface).collect(nodeFactory, nodes);
+		}
+
 		List<T> nodeList           = new LinkedList<T>();
 
 		for(Node n : nodes) {
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.traversal;
+
+import java.util.List;
+import org.neo4j.graphdb.Node;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeFactory;
+
+/**
+ * A node collector that collects the traversal results itself, keeping only
+ * the nodes that can be part of the final result instead of instantiating
+ * and sorting all of them.
+ *
+ * @author Christian Morgner
+ */
+public interface BoundedNodeCollector<T extends AbstractNode> {
+
+	/**
+	 * Collects the result nodes from the given (lazy) traversal result.
+	 * The returned list is not sorted again by the caller, and
+	 * implementations may stop iterating the traversal result early.
+	 *
+	 * @param nodeFactory the factory to instantiate result nodes with
+	 * @param nodes the traversal result
+	 * @return the collected nodes
+	 */
+	public List<T> collect(final NodeFactory<T> nodeFactory, final Iterable<Node> nodes);
+}
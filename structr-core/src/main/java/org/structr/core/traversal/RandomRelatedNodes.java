@@ -19,11 +19,16 @@
 package org.structr.core.traversal;
 
 import org.structr.core.predicate.TypePredicate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.RelationshipType;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeFactory;
 import org.structr.core.notion.Notion;
 import org.structr.core.notion.ObjectNotion;
 
@@ -32,12 +37,19 @@ import org.structr.core.notion.ObjectNotion;
  * traversal of the given relationship type and direction and randomizes the
  * resulting list.
  *
+ * The nodes are selected with reservoir sampling while the traversal runs.
+ * Each node is checked for visibility before it is drawn, so the sample is
+ * uniform over the visible nodes, and the sample is shuffled before it is
+ * returned, so the order is random even if there are fewer related nodes
+ * than requested.
+ *
  * @author Christian Morgner
  */
-public class RandomRelatedNodes<T extends AbstractNode> extends AbstractNodeCollector<T> {
+public class RandomRelatedNodes<T extends AbstractNode> extends AbstractNodeCollector<T> implements BoundedNodeCollector<T> {
 
-	private Class resultType = null;
-	private int count = 0;
+	private final Random random = new Random();
+	private Class resultType    = null;
+	private int count           = 0;
 	
 	public RandomRelatedNodes(RelationshipType relType, Direction direction, Class resultType, int maxDepth, int count) {
 		this(relType, direction, resultType, new ObjectNotion(), maxDepth, count);
@@ -60,12 +72,54 @@ public class RandomRelatedNodes<T extends AbstractNode> extends AbstractNodeColl
 	public List transformResult(List<T> result) {
 
 		// random ordering
-		Collections.shuffle(result);
+		Collections.shuffle(result, random);
 		
 		// truncate list to length count
 		return result.subList(0, Math.min(result.size(), count));
 	}
 
+	@Override
+	public List<T> collect(final NodeFactory<T> nodeFactory, final Iterable<Node> nodes) {
+
+		final List<T> reservoir = new ArrayList<>();
+		int seen                = 0;
+
+		if (count <= 0) {
+			return reservoir;
+		}
+
+		for (final Node node : nodes) {
+
+			final T obj = instantiate(nodeFactory, node);
+			if (obj == null) {
+
+				// not visible, does not count
+				continue;
+			}
+
+			if (reservoir.size() < count) {
+
+				reservoir.add(obj);
+
+			} else {
+
+				// position of this node in a random permutation of the nodes seen so far
+				final int position = random.nextInt(seen + 1);
+				if (position < count) {
+
+					reservoir.set(position, obj);
+				}
+			}
+
+			seen++;
+		}
+
+		// the reservoir is filled in traversal order
+		Collections.shuffle(reservoir, random);
+
+		return reservoir;
+	}
+
 	@Override
 	public void cleanup() {
 	}
@@ -74,4 +128,15 @@ public class RandomRelatedNodes<T extends AbstractNode> extends AbstractNodeColl
 	public Class getResultType() {
 		return resultType;
 	}
+
+	// ----- private methods -----
+	private T instantiate(final NodeFactory<T> nodeFactory, final Node node) {
+
+		try {
+			return nodeFactory.instantiate(node);
+
+		} catch (FrameworkException fex) {}
+
+		return null;
+	}
 }
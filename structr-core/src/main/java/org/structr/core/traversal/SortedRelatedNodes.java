@@ -18,11 +18,17 @@
  */
 package org.structr.core.traversal;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.RelationshipType;
+import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeFactory;
 import org.structr.core.notion.Notion;
 import org.structr.core.notion.ObjectNotion;
 import org.structr.core.predicate.TypePredicate;
@@ -32,9 +38,13 @@ import org.structr.core.predicate.TypePredicate;
  * traversal of the given relationship type and direction and sorts them
  * using the given Comparator.
  *
+ * Only the first <i>count</i> nodes are kept in a bounded heap while the
+ * traversal runs. Without a Comparator, the traversal stops as soon as
+ * <i>count</i> nodes have been found.
+ *
  * @author Christian Morgner
  */
-public class SortedRelatedNodes<T extends AbstractNode> extends AbstractNodeCollector<T> {
+public class SortedRelatedNodes<T extends AbstractNode> extends AbstractNodeCollector<T> implements BoundedNodeCollector<T> {
 
 	private Class resultType = null;
 	private int count = 0;
@@ -76,6 +86,61 @@ public class SortedRelatedNodes<T extends AbstractNode> extends AbstractNodeColl
 		return result.subList(0, Math.min(result.size(), count));
 	}
 
+	@Override
+	public List<T> collect(final NodeFactory<T> nodeFactory, final Iterable<Node> nodes) {
+
+		final Comparator<T> comparator = getComparator();
+		final List<T> result           = new ArrayList<>();
+
+		if (count <= 0) {
+			return result;
+		}
+
+		if (comparator == null) {
+
+			// traversal order, no need to look any further than count nodes
+			for (final Node node : nodes) {
+
+				final T obj = instantiate(nodeFactory, node);
+				if (obj != null) {
+
+					result.add(obj);
+
+					if (result.size() >= count) {
+						break;
+					}
+				}
+			}
+
+			return result;
+		}
+
+		// heap with the last element of the current top count nodes on top
+		final PriorityQueue<T> heap = new PriorityQueue<>(count + 1, Collections.reverseOrder(comparator));
+
+		for (final Node node : nodes) {
+
+			final T obj = instantiate(nodeFactory, node);
+			if (obj != null) {
+
+				if (heap.size() < count) {
+
+					heap.add(obj);
+
+				} else if (comparator.compare(obj, heap.peek()) < 0) {
+
+					heap.poll();
+					heap.add(obj);
+				}
+			}
+		}
+
+		result.addAll(heap);
+		Collections.sort(result, comparator);
+
+		return result;
+	}
+
 	@Override
 	public void cleanup() {
 	}
@@ -84,4 +149,15 @@ public class SortedRelatedNodes<T extends AbstractNode> extends AbstractNodeColl
 	public Class getResultType() {
 		return resultType;
 	}
+
+	// ----- private methods -----
+	private T instantiate(final NodeFactory<T> nodeFactory, final Node node) {
+
+		try {
+			return nodeFactory.instantiate(node);
+
+		} catch (FrameworkException fex) {}
+
+		return null;
+	}
 }
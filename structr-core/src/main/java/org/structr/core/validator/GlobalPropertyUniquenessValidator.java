@@ -24,11 +24,11 @@ import org.structr.common.error.ErrorBuffer;
 import org.structr.common.error.UniqueToken;
 import org.structr.core.GraphObject;
 import org.structr.core.PropertyValidator;
-import org.structr.core.entity.AbstractNode;
 import java.util.logging.Logger;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.search.CheckUniquenessCommand;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -73,7 +73,7 @@ public class GlobalPropertyUniquenessValidator<T> implements PropertyValidator<T
 					
 				} else {
 					
-					existingNode = StructrApp.getInstance().nodeQuery(AbstractNode.class).and(key, value).getFirst();
+					id = StructrApp.getInstance().command(CheckUniquenessCommand.class).execute(object, null, key, value);
 				}
 
 			} catch (FrameworkException fex) {
@@ -81,17 +81,16 @@ public class GlobalPropertyUniquenessValidator<T> implements PropertyValidator<T
 				// handle error
 			}
 
-			if (existingNode != null) {
+			if (existingNode != null && existingNode.getId() != object.getId()) {
 
-				GraphObject foundNode = existingNode;
-				if (foundNode.getId() != object.getId()) {
+				id = existingNode.getUuid();
+			}
 
-					id = foundNode.getUuid();
+			if (id != null) {
 
-					errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
+				errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
 
-					return false;
-				}
+				return false;
 			}
 		}
 
@@ -25,11 +25,10 @@ import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UniqueToken;
 import org.structr.core.GraphObject;
 import org.structr.core.PropertyValidator;
-import org.structr.core.entity.AbstractNode;
 import java.util.logging.Logger;
 import org.structr.core.property.PropertyKey;
-import org.structr.core.Result;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.search.CheckUniquenessCommand;
 
 //~--- classes ----------------------------------------------------------------
 
@@ -75,15 +74,11 @@ public class TypeUniquenessValidator<T> implements PropertyValidator<T> {
 		
 		if (key != null) {
 
-			boolean nodeExists               = false;
-			String id                        = null;
-
-			Result<AbstractNode> result = null;
+			String id = null;
 
 			try {
 
-				result = StructrApp.getInstance().nodeQuery(type).and(key, value).getResult();
-				nodeExists = !result.isEmpty();
+				id = StructrApp.getInstance().command(CheckUniquenessCommand.class).execute(object, type, key, value);
 
 			} catch (FrameworkException fex) {
 
@@ -91,17 +86,11 @@ public class TypeUniquenessValidator<T> implements PropertyValidator<T> {
 
 			}
 
-			if (nodeExists) {
-
-				AbstractNode foundNode = result.get(0);
-				if (foundNode.getId() != object.getId()) {
-
-					id = ((AbstractNode) result.get(0)).getUuid();
+			if (id != null) {
 
-					errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
+				errorBuffer.add(object.getType(), new UniqueToken(id, key, value));
 
-					return false;
-				}
+				return false;
 			}
 		}
 
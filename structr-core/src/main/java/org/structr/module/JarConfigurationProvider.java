@@ -45,6 +45,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -105,6 +106,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	private final Map<String, Class> reverseInterfaceMap                                           = new LinkedHashMap<>();
 	private final Set<PropertyKey> globalKnownPropertyKeys                                         = new LinkedHashSet<>();
 	private final Set<String> dynamicViews                                                         = new LinkedHashSet<>();
+	private final AtomicLong viewMetadataVersion                                                   = new AtomicLong();
+	private volatile ViewMetadata viewMetadata                                                     = new ViewMetadata(0);
         
 	private FactoryDefinition factoryDefinition                                                    = new DefaultFactoryDefinition();
 
@@ -510,8 +513,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		relationshipEntityClassCache.remove(typeName);
 		relationshipPackages.remove(JarConfigurationProvider.DYNAMIC_TYPES_PACKAGE + typeName);
-		
-		
+
+		invalidateViewMetadata();
 	}
 
 	@Override
@@ -608,6 +611,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		
 		// extract interfaces for later use
 		getInterfacesForType(type);
+
+		invalidateViewMetadata();
 	}
 	
 	/**
@@ -752,37 +757,57 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 	@Override
 	public Set<String> getPropertyViews() {
 
-		Set<String> views = new LinkedHashSet<>();
-		
-		// add all existing views
-		for (Map<String, Set<PropertyKey>> view : globalPropertyViewMap.values()) {
-			views.addAll(view.keySet());
+		final ViewMetadata metadata = viewMetadata;
+		Set<String> views           = metadata.getPropertyViews();
+
+		if (views == null) {
+
+			views = new LinkedHashSet<>();
+
+			// add all existing views
+			for (Map<String, Set<PropertyKey>> view : globalPropertyViewMap.values()) {
+				views.addAll(view.keySet());
+			}
+
+			// merge dynamic views in as well
+			views.addAll(dynamicViews);
+
+			metadata.setPropertyViews(views);
+			views = metadata.getPropertyViews();
 		}
-		
-		// merge dynamic views in as well
-		views.addAll(dynamicViews);
-		
-		return Collections.unmodifiableSet(views);
+
+		return views;
 	}
 	
 	@Override
 	public void registerDynamicViews(final Set<String> dynamicViews) {
+
 		this.dynamicViews.clear();
 		this.dynamicViews.addAll(dynamicViews);
+
+		invalidateViewMetadata();
 	}
 	
 	@Override
 	public Set<PropertyKey> getPropertySet(Class type, String propertyView) {
 
-		Map<String, Set<PropertyKey>> propertyViewMap = getPropertyViewMapForType(type);
-		Set<PropertyKey> properties                   = propertyViewMap.get(propertyView);
-
-		if (properties == null) {
-			properties = new LinkedHashSet<>();
-		}
-		
 		// read-only
-		return Collections.unmodifiableSet(properties);
+		return getTypeMetadata(type).getPropertySet(propertyView);
+	}
+
+	@Override
+	public PropertyKey[] getIndexedPropertyKeys(final Class type) {
+		return getTypeMetadata(type).getIndexedKeys();
+	}
+
+	@Override
+	public PropertyKey[] getPassivelyIndexedPropertyKeys(final Class type) {
+		return getTypeMetadata(type).getPassivelyIndexedKeys();
+	}
+
+	@Override
+	public long getViewMetadataVersion() {
+		return viewMetadata.getVersion();
 	}
 
 	/**
@@ -806,6 +831,8 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 
 		// add all properties from set
 		properties.addAll(Arrays.asList(propertySet));
+
+		invalidateViewMetadata();
 	}
 
 	@Override
@@ -1212,6 +1239,28 @@ public class JarConfigurationProvider implements ConfigurationProvider {
 		}
 	}
 
+	private ViewMetadata.TypeMetadata getTypeMetadata(final Class type) {
+
+		final ViewMetadata metadata            = viewMetadata;
+		final String typeName                  = type.getName();
+		ViewMetadata.TypeMetadata typeMetadata = metadata.getTypeMetadata(typeName);
+
+		if (typeMetadata == null) {
+			typeMetadata = metadata.createTypeMetadata(typeName, globalPropertyViewMap.get(typeName));
+		}
+
+		return typeMetadata;
+	}
+
+	/**
+	 * Replaces the view metadata snapshot. Must be called after every
+	 * modification of the registered views, so that the new snapshot is
+	 * built from the modified registry.
+	 */
+	private void invalidateViewMetadata() {
+		viewMetadata = new ViewMetadata(viewMetadataVersion.incrementAndGet());
+	}
+
 	private Map<String, Set<PropertyKey>> getPropertyViewMapForType(Class type) {
 
 		Map<String, Set<PropertyKey>> propertyViewMap = globalPropertyViewMap.get(type.getName());
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.structr.common.PropertyView;
+import org.structr.core.property.PropertyKey;
+
+/**
+ * An immutable snapshot of the registered property views. The snapshot
+ * is filled lazily, once per type, and is replaced as a whole whenever
+ * the set of registered types, views or property keys changes, so that
+ * readers never see a partially updated snapshot.
+ *
+ * @author Christian Morgner
+ */
+class ViewMetadata {
+
+	private final Map<String, TypeMetadata> typeMetadata = new ConcurrentHashMap<>();
+	private volatile Set<String> propertyViews           = null;
+	private final long version;
+
+	public ViewMetadata(final long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns the version of this snapshot, which is incremented every
+	 * time the snapshot is replaced.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public Set<String> getPropertyViews() {
+		return propertyViews;
+	}
+
+	public void setPropertyViews(final Set<String> views) {
+		this.propertyViews = Collections.unmodifiableSet(new LinkedHashSet<>(views));
+	}
+
+	public TypeMetadata getTypeMetadata(final String typeName) {
+		return typeMetadata.get(typeName);
+	}
+
+	public TypeMetadata createTypeMetadata(final String typeName, final Map<String, Set<PropertyKey>> views) {
+
+		final TypeMetadata metadata = new TypeMetadata(views);
+		typeMetadata.put(typeName, metadata);
+
+		return metadata;
+	}
+
+	/**
+	 * The pre-ordered, read-only property sets of a single type.
+	 */
+	public static class TypeMetadata {
+
+		private final Map<String, Set<PropertyKey>> propertySets = new LinkedHashMap<>();
+		private final PropertyKey[] passivelyIndexedKeys;
+		private final PropertyKey[] indexedKeys;
+
+		private TypeMetadata(final Map<String, Set<PropertyKey>> views) {
+
+			final List<PropertyKey> passivelyIndexed = new ArrayList<>();
+			final List<PropertyKey> indexed          = new ArrayList<>();
+
+			if (views != null) {
+
+				for (final Entry<String, Set<PropertyKey>> entry : views.entrySet()) {
+					propertySets.put(entry.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(entry.getValue())));
+				}
+			}
+
+			for (final PropertyKey key : getPropertySet(PropertyView.All)) {
+
+				if (key.isIndexed()) {
+					indexed.add(key);
+				}
+
+				if (key.isPassivelyIndexed()) {
+					passivelyIndexed.add(key);
+				}
+			}
+
+			this.passivelyIndexedKeys = passivelyIndexed.toArray(new PropertyKey[0]);
+			this.indexedKeys          = indexed.toArray(new PropertyKey[0]);
+		}
+
+		public Set<PropertyKey> getPropertySet(final String view) {
+
+			final Set<PropertyKey> propertySet = propertySets.get(view);
+			if (propertySet != null) {
+
+				return propertySet;
+			}
+
+			return Collections.emptySet();
+		}
+
+		public PropertyKey[] getIndexedKeys() {
+			return indexedKeys;
+		}
+
+		public PropertyKey[] getPassivelyIndexedKeys() {
+			return passivelyIndexedKeys;
+		}
+	}
+}
@@ -82,6 +82,26 @@ public interface ConfigurationProvider {
 	
 	public void registerPropertySet(final Class type, final String propertyView, final PropertyKey... propertyKey);
 	public Set<PropertyKey> getPropertySet(final Class type, final String propertyView);
+
+	/**
+	 * Returns the indexed property keys of the given type, in the order of
+	 * the "all" view. The returned array is shared and must not be modified.
+	 */
+	public PropertyKey[] getIndexedPropertyKeys(final Class type);
+
+	/**
+	 * Returns the passively indexed property keys of the given type, in the
+	 * order of the "all" view. The returned array is shared and must not be
+	 * modified.
+	 */
+	public PropertyKey[] getPassivelyIndexedPropertyKeys(final Class type);
+
+	/**
+	 * Returns the version of the view metadata snapshot, which changes
+	 * whenever the registered types, views or property keys change. Callers
+	 * that cache data derived from views can use it to detect changes.
+	 */
+	public long getViewMetadataVersion();
 	
 	public PropertyKey getPropertyKeyForDatabaseName(final Class type, final String dbName);
 	
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.BulkGraphOperation;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.NodeServiceCommand;
+
+/**
+ * Test parallel and resumable execution of bulk graph operations.
+ *
+ * @author Christian Morgner
+ */
+public class BulkGraphOperationTest extends StructrTest {
+
+	public void testParallelBulkOperation() {
+
+		try {
+
+			final List<NodeInterface> nodes = createTestNodes(TestOne.class, 2000);
+			final long count                = NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ParallelTest", new SetIntOperation(42, -1), true, 4, false);
+
+			assertEquals("All nodes should have been processed", 2000, count);
+
+			for (final TestOne node : app.nodeQuery(TestOne.class).getAsList()) {
+				assertEquals(Integer.valueOf(42), node.getProperty(TestOne.anInt));
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testResumeBulkOperation() {
+
+		try {
+
+			final List<NodeInterface> nodes = createTestNodes(TestOne.class, 1000);
+
+			// first run fails in the sixth transaction
+			NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ResumeTest", new SetIntOperation(23, 550), true, 1, false);
+
+			int unprocessed = 0;
+			for (final TestOne node : app.nodeQuery(TestOne.class).getAsList()) {
+
+				if (node.getProperty(TestOne.anInt) == null) {
+					unprocessed++;
+				}
+			}
+
+			assertEquals("The failed transaction should have been rolled back", 100, unprocessed);
+
+			// second run skips all committed objects, even if the input order changed
+			final List<NodeInterface> reversed = new LinkedList<>(nodes);
+			Collections.reverse(reversed);
+
+			final SetIntOperation operation = new SetIntOperation(23, -1);
+			final long count                = NodeServiceCommand.bulkGraphOperation(securityContext, reversed, 100, "ResumeTest", operation, true, 1, true);
+
+			assertEquals("Resumed run should skip the committed objects", 100, count);
+			assertEquals(100, operation.getCount());
+
+			for (final TestOne node : app.nodeQuery(TestOne.class).getAsList()) {
+				assertEquals(Integer.valueOf(23), node.getProperty(TestOne.anInt));
+			}
+
+			// checkpoint is removed after a successful run
+			final long rerun = NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ResumeTest", new SetIntOperation(23, -1), true, 1, true);
+			assertEquals(1000, rerun);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testCheckpointDependsOnParameters() {
+
+		try {
+
+			final List<NodeInterface> nodes   = createTestNodes(TestOne.class, 300);
+			final Map<String, Object> params1 = new LinkedHashMap<>();
+			final Map<String, Object> params2 = new LinkedHashMap<>();
+
+			params1.put("type", "TestOne");
+			params2.put("type", "TestTwo");
+
+			// first run fails in the second transaction
+			NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ParameterTest", new SetIntOperation(1, 150), true, 1, false, params1);
+
+			// a run with different parameters must not use the checkpoint
+			final long other = NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ParameterTest", new SetIntOperation(1, -1), true, 1, true, params2);
+			assertEquals(300, other);
+
+			// a run with the same parameters resumes
+			final long resumed = NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "ParameterTest", new SetIntOperation(1, -1), true, 1, true, params1);
+			assertEquals(100, resumed);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testDefaultIsSingleThreaded() {
+
+		try {
+
+			final List<NodeInterface> nodes = createTestNodes(TestOne.class, 500);
+			final Set<Thread> threads       = Collections.synchronizedSet(new HashSet<Thread>());
+
+			NodeServiceCommand.bulkGraphOperation(securityContext, nodes, 100, "SingleThreadTest", new SetIntOperation(5, -1) {
+
+				@Override
+				public void handleGraphObject(final SecurityContext securityContext, final NodeInterface obj) throws FrameworkException {
+
+					threads.add(Thread.currentThread());
+					super.handleGraphObject(securityContext, obj);
+				}
+
+			}, true);
+
+			assertEquals(1, threads.size());
+			assertTrue(threads.contains(Thread.currentThread()));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testNullObjectsAndNodeCache() {
+
+		try {
+
+			final List<NodeInterface> nodes     = createTestNodes(TestOne.class, 500);
+			final SecurityContext factoryContext = SecurityContext.getSuperUserInstance();
+			final NodeFactory factory            = new NodeFactory(factoryContext);
+			final List<NodeInterface> input      = new LinkedList<>();
+
+			for (final NodeInterface node : nodes) {
+
+				// the factory caches the node in its security context
+				input.add(factory.instantiate(node.getNode()));
+
+				// adapted iterables pass through null for nodes that can't be instantiated
+				input.add(null);
+			}
+
+			assertNotNull(factoryContext.lookup(nodes.get(0).getId()));
+
+			final SetIntOperation operation = new SetIntOperation(7, -1);
+			final long count                = NodeServiceCommand.bulkGraphOperation(securityContext, input, 100, "NullTest", operation, true, 1, false);
+
+			assertEquals("Null objects should be skipped", 500, count);
+			assertEquals(500, operation.getCount());
+
+			// node caches are cleared after each chunk
+			for (final NodeInterface node : nodes) {
+				assertNull(factoryContext.lookup(node.getId()));
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private static class SetIntOperation implements BulkGraphOperation<NodeInterface> {
+
+		private final AtomicInteger count = new AtomicInteger(0);
+		private int failAt                = -1;
+		private int value                 = 0;
+
+		public SetIntOperation(final int value, final int failAt) {
+
+			this.value  = value;
+			this.failAt = failAt;
+		}
+
+		@Override
+		public void handleGraphObject(final SecurityContext securityContext, final NodeInterface obj) throws FrameworkException {
+
+			if (count.incrementAndGet() == failAt) {
+				throw new FrameworkException(500, "Simulated failure");
+			}
+
+			obj.setProperty(TestOne.anInt, value);
+		}
+
+		@Override
+		public void handleThrowable(final SecurityContext securityContext, final Throwable t, final NodeInterface currentObject) {
+
+			// abort the current transaction
+			throw new RuntimeException(t);
+		}
+
+		@Override
+		public void handleTransactionFailure(final SecurityContext securityContext, final Throwable t) {
+		}
+
+		public int getCount() {
+			return count.get();
+		}
+	}
+}
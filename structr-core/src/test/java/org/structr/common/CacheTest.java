@@ -0,0 +1,251 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Cache;
+import org.structr.core.entity.TestOne;
+import org.structr.core.graph.NodeAttribute;
+
+/**
+ * Test the top-N cache entity.
+ *
+ * @author Christian Morgner
+ */
+public class CacheTest extends StructrTest {
+
+	public void testCacheMaintenance() {
+
+		try {
+
+			final Cache cache = createCache(5);
+
+			for (int i=0; i<20; i++) {
+				createNode(i);
+			}
+
+			assertEquals(toList(19, 18, 17, 16, 15), values(cache));
+			assertCacheMatchesSearch(cache);
+
+			// move the first element to the end
+			setValue(getNode(19), -1);
+			assertEquals(toList(18, 17, 16, 15, 14), values(cache));
+
+			// move an element from outside of the cache to the front
+			setValue(getNode(3), 100);
+			assertEquals(toList(100, 18, 17, 16, 15), values(cache));
+
+			// delete cached elements
+			deleteNodes(100, 17);
+			assertEquals(toList(18, 16, 15, 14, 13), values(cache));
+			assertCacheMatchesSearch(cache);
+
+			// fewer nodes than the cache size
+			deleteNodes(15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 2, 1, 0, -1);
+			assertEquals(toList(18, 16), values(cache));
+
+			createNode(1);
+			assertEquals(toList(18, 16, 1), values(cache));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testConcurrentCacheMaintenance() {
+
+		try {
+
+			final Cache cache                = createCache(10);
+			final AtomicInteger values       = new AtomicInteger(0);
+			final List<Thread> threads       = new ArrayList<>();
+			final List<Throwable> exceptions = new ArrayList<>();
+
+			for (int t=0; t<8; t++) {
+
+				final long seed = t;
+
+				threads.add(new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+
+						final App threadApp = StructrApp.getInstance(securityContext);
+						final Random random = new Random(seed);
+
+						for (int i=0; i<50; i++) {
+
+							try {
+								threadApp.beginTx();
+
+								final List<TestOne> nodes = threadApp.nodeQuery(TestOne.class).getAsList();
+								final int operation       = nodes.isEmpty() ? 0 : random.nextInt(3);
+
+								switch (operation) {
+
+									case 0:
+										threadApp.create(TestOne.class, new NodeAttribute(TestOne.anInt, values.incrementAndGet()));
+										break;
+
+									case 1:
+										nodes.get(random.nextInt(nodes.size())).setProperty(TestOne.anInt, values.incrementAndGet());
+										break;
+
+									case 2:
+										threadApp.delete(nodes.get(random.nextInt(nodes.size())));
+										break;
+								}
+
+								threadApp.commitTx();
+
+							} catch (Throwable t) {
+
+								// concurrent modification of the same node, try again
+								synchronized (exceptions) {
+									exceptions.add(t);
+								}
+
+							} finally {
+
+								threadApp.finishTx();
+							}
+						}
+					}
+				}));
+			}
+
+			for (final Thread thread : threads) {
+				thread.start();
+			}
+
+			for (final Thread thread : threads) {
+
+				try { thread.join(); } catch (InterruptedException iex) {}
+			}
+
+			assertTrue("All transactions failed", exceptions.size() < 400);
+			assertCacheMatchesSearch(cache);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private Cache createCache(final int size) throws FrameworkException {
+
+		try {
+			app.beginTx();
+
+			final Cache cache = app.create(Cache.class,
+				new NodeAttribute(Cache.cachedType, TestOne.class.getSimpleName()),
+				new NodeAttribute(Cache.sortKey, TestOne.anInt.jsonName()),
+				new NodeAttribute(Cache.size, size)
+			);
+
+			app.commitTx();
+
+			return cache;
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private void createNode(final int value) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			app.create(TestOne.class, new NodeAttribute(TestOne.anInt, value));
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private void setValue(final TestOne node, final int value) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			node.setProperty(TestOne.anInt, value);
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private void deleteNodes(final int... values) throws FrameworkException {
+
+		try {
+			app.beginTx();
+
+			for (final int value : values) {
+				app.delete(getNode(value));
+			}
+
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private TestOne getNode(final int value) throws FrameworkException {
+		return app.nodeQuery(TestOne.class).and(TestOne.anInt, value).getFirst();
+	}
+
+	private List<Integer> values(final Cache cache) {
+
+		final List<Integer> values = new ArrayList<>();
+
+		for (final AbstractNode node : cache.getCachedList(securityContext, cache.size())) {
+			values.add(node.getProperty(TestOne.anInt));
+		}
+
+		return values;
+	}
+
+	private void assertCacheMatchesSearch(final Cache cache) throws FrameworkException {
+
+		final List<Integer> expected = new ArrayList<>();
+
+		for (final TestOne node : app.nodeQuery(TestOne.class).sort(TestOne.anInt).order(true).pageSize(cache.size()).getAsList()) {
+			expected.add(node.getProperty(TestOne.anInt));
+		}
+
+		assertEquals(expected, values(cache));
+	}
+}
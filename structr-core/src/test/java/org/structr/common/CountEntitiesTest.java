@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestTwo;
+import org.structr.core.entity.User;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.search.CountEntitiesCommand;
+import org.structr.core.graph.search.Search;
+import org.structr.core.graph.search.SearchAttribute;
+
+/**
+ * Test counting of entities via per-type counters.
+ *
+ * All tests are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class CountEntitiesTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(CountEntitiesTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	public void test01CountCreatedAndDeleted() {
+
+		try {
+
+			final CountEntitiesCommand countCommand = app.command(CountEntitiesCommand.class);
+
+			assertEquals(0, countCommand.execute(TestOne.class));
+
+			final List<NodeInterface> testOnes = createTestNodes(TestOne.class, 10);
+			createTestNodes(TestTwo.class, 3);
+
+			// first call initializes the counter from the index, second call uses the counter
+			assertEquals(10, countCommand.execute(TestOne.class));
+			assertEquals(10, countCommand.execute(TestOne.class));
+			assertEquals(3,  countCommand.execute(TestTwo.class));
+
+			createTestNodes(TestOne.class, 5);
+			assertEquals(15, countCommand.execute(TestOne.class));
+
+			try {
+				app.beginTx();
+
+				app.delete(testOnes.get(0));
+				app.delete(testOnes.get(1));
+
+				// counts inside of a transaction include its own changes
+				assertEquals(13, countCommand.execute(TestOne.class));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(13, countCommand.execute(TestOne.class));
+			assertEquals(3,  countCommand.execute(TestTwo.class));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test02RolledBackTransaction() {
+
+		try {
+
+			final CountEntitiesCommand countCommand = app.command(CountEntitiesCommand.class);
+
+			createTestNodes(TestOne.class, 4);
+			assertEquals(4, countCommand.execute(TestOne.class));
+
+			try {
+				app.beginTx();
+
+				app.create(TestOne.class);
+				app.create(TestOne.class);
+
+				// no commit
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(4, countCommand.execute(TestOne.class));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test03DeletedAndHiddenNodes() {
+
+		try {
+
+			final CountEntitiesCommand countCommand = app.command(CountEntitiesCommand.class);
+			final List<NodeInterface> testOnes      = createTestNodes(TestOne.class, 10);
+			final User admin                        = createTestNode(User.class);
+
+			try {
+				app.beginTx();
+
+				admin.setProperty(Principal.isAdmin, true);
+
+				testOnes.get(0).setProperty(AbstractNode.deleted, true);
+				testOnes.get(1).setProperty(AbstractNode.hidden, true);
+				testOnes.get(2).setProperty(AbstractNode.deleted, true);
+				testOnes.get(2).setProperty(AbstractNode.hidden, true);
+
+				for (int i = 0; i < 10; i++) {
+					testOnes.get(i).setProperty(TestOne.aString, i % 2 == 0 ? "even" : "odd");
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// the counter includes deleted and hidden nodes
+			assertEquals(10, countCommand.execute(TestOne.class, false, true));
+			assertEquals(7,  countCommand.execute(TestOne.class, false, false));
+
+			// count must match the result count of the query path for a regular context
+			final SecurityContext adminContext = SecurityContext.getInstance(admin, AccessMode.Backend);
+			final int resultCount              = StructrApp.getInstance(adminContext).nodeQuery(TestOne.class).getResult().getRawResultCount();
+
+			assertEquals(7, resultCount);
+			assertEquals(resultCount, countCommand.execute(TestOne.class, true, false));
+
+			// filtered counts
+			final List<SearchAttribute> searchAttributes = new LinkedList<>();
+			searchAttributes.add(Search.andExactType(TestOne.class));
+			searchAttributes.add(Search.andExactProperty(adminContext, TestOne.aString, "even"));
+
+			final int filteredResultCount = StructrApp.getInstance(adminContext).nodeQuery(TestOne.class).and(TestOne.aString, "even").getResult().getRawResultCount();
+
+			assertEquals(3, filteredResultCount);
+			assertEquals(filteredResultCount, countCommand.execute(searchAttributes, false));
+			assertEquals(5, countCommand.execute(searchAttributes, true));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+}
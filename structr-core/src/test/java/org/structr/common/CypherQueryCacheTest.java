@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.List;
+import java.util.Map;
+import org.neo4j.cypher.javacompat.ExecutionEngine;
+import org.structr.core.Services;
+import org.structr.core.cypher.CypherQueryCache;
+import org.structr.core.graph.NodeService;
+
+/**
+ * Test the Cypher result cache, cache hits, invalidation and the handling
+ * of write queries.
+ *
+ * @author Christian Morgner
+ */
+public class CypherQueryCacheTest extends StructrTest {
+
+	private static final String countQuery  = "START n=node(*) WHERE HAS(n.cacheTest) RETURN count(n) AS c";
+	private static final String createQuery = "CREATE (n { cacheTest: true }) RETURN n";
+	private static final String deleteQuery = "START n=node(*) WHERE HAS(n.cacheTest) DELETE n";
+
+	private CypherQueryCache cache = null;
+	private ExecutionEngine engine = null;
+
+	@Override
+	protected void setUp() throws Exception {
+
+		super.setUp();
+
+		engine = Services.getInstance().getService(NodeService.class).getCypherExecutionEngine();
+		cache  = CypherQueryCache.getInstance();
+
+		cache.setTimeToLive(60);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+
+		cache.setTimeToLive(0);
+
+		super.tearDown();
+	}
+
+	public void testCacheHits() {
+
+		final long hits = getStatistic("cacheHits");
+
+		assertEquals(0L, count());
+		assertEquals(0L, count());
+
+		assertEquals(hits + 1, getStatistic("cacheHits"));
+
+		// invalidation forces a new execution
+		cache.invalidate();
+
+		assertEquals(0L, count());
+		assertEquals(hits + 1, getStatistic("cacheHits"));
+	}
+
+	public void testWriteQueriesAreNotCached() {
+
+		final long hits = getStatistic("cacheHits");
+
+		// populate the cache
+		assertEquals(0L, count());
+
+		// a repeated write query must be executed each time
+		cache.execute(engine, securityContext, createQuery, null);
+		cache.execute(engine, securityContext, createQuery, null);
+
+		// and must invalidate cached read results
+		assertEquals(2L, count());
+
+		cache.execute(engine, securityContext, deleteQuery, null);
+
+		assertEquals(0L, count());
+		assertEquals(hits, getStatistic("cacheHits"));
+		assertTrue(getStatistic("writeQueries") >= 3);
+	}
+
+	public void testWriteQueryDetection() {
+
+		assertTrue(CypherQueryCache.isWriteQuery(createQuery));
+		assertTrue(CypherQueryCache.isWriteQuery(deleteQuery));
+		assertTrue(CypherQueryCache.isWriteQuery("start n=node(1) set n.name = 'test'"));
+		assertTrue(CypherQueryCache.isWriteQuery("START n=node(1) REMOVE n.name"));
+		assertFalse(CypherQueryCache.isWriteQuery(countQuery));
+		assertFalse(CypherQueryCache.isWriteQuery("START n=node(*) WHERE HAS(n.createdDate) RETURN n"));
+	}
+
+	private long count() {
+
+		final List<Map<String, Object>> rows = cache.execute(engine, securityContext, countQuery, null);
+
+		assertEquals(1, rows.size());
+
+		return ((Number)rows.get(0).get("c")).longValue();
+	}
+
+	private long getStatistic(final String key) {
+		return ((Number)cache.getStatistics().get(key)).longValue();
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.property.ISO8601DateProperty;
+
+/**
+ * Checks that cached date formats give the same results as a new
+ * SimpleDateFormat when used from several threads, and logs the cost per
+ * formatted value of both.
+ *
+ * @author Christian Morgner
+ */
+public class DateFormatHelperTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(DateFormatHelperTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	public void test01ConcurrentFormatting() {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+
+			final List<Future<Boolean>> futures = new LinkedList<>();
+
+			for (int i = 0; i < 8; i++) {
+
+				final long offset = i * 1000000000L;
+
+				futures.add(executor.submit(new Callable<Boolean>() {
+
+					@Override
+					public Boolean call() throws Exception {
+
+						for (int j = 0; j < 10000; j++) {
+
+							// ISO8601 pattern has second precision
+							final Date date   = new Date(((offset + j * 3600000L) / 1000L) * 1000L);
+							final String text = DateFormatHelper.format(date, ISO8601DateProperty.PATTERN);
+
+							if (!text.equals(new SimpleDateFormat(ISO8601DateProperty.PATTERN).format(date))) {
+								return false;
+							}
+
+							if (!date.equals(DateFormatHelper.parse(text, ISO8601DateProperty.PATTERN))) {
+								return false;
+							}
+						}
+
+						return true;
+					}
+				}));
+			}
+
+			for (final Future<Boolean> future : futures) {
+				assertTrue(future.get());
+			}
+
+		} catch (Exception ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			executor.shutdown();
+		}
+	}
+
+	public void test02PerformanceOfDateFormatting() {
+
+		final DecimalFormat decimalFormat = new DecimalFormat("0.000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		final String pattern              = ISO8601DateProperty.PATTERN;
+		final Date date                   = new Date();
+		final int number                  = 100000;
+		int length                        = 0;
+
+		// warm up
+		for (int i = 0; i < number; i++) {
+
+			length += new SimpleDateFormat(pattern).format(date).length();
+			length += DateFormatHelper.format(date, pattern).length();
+		}
+
+		long t0 = System.nanoTime();
+
+		for (int i = 0; i < number; i++) {
+			length += new SimpleDateFormat(pattern).format(date).length();
+		}
+
+		long t1 = System.nanoTime();
+
+		for (int i = 0; i < number; i++) {
+			length += DateFormatHelper.format(date, pattern).length();
+		}
+
+		long t2 = System.nanoTime();
+
+		final double uncached = (double)(t1 - t0) / number;
+		final double cached   = (double)(t2 - t1) / number;
+
+		logger.log(Level.INFO, "Formatted {0} dates: {1} ns per value with a new SimpleDateFormat, {2} ns per value with DateFormatHelper", new Object[] { number, decimalFormat.format(uncached), decimalFormat.format(cached) });
+
+		assertTrue(length > 0);
+	}
+}
@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.entity.SixOneOneToMany;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
+import org.structr.core.graph.BulkRebuildDegreeCountersCommand;
+import org.structr.core.graph.DegreeCounter;
+import org.structr.core.graph.NodeInterface;
+
+/**
+ * Test transactional maintenance and repair of relationship degree counters.
+ *
+ * @author Christian Morgner
+ */
+public class DegreeCounterTest extends StructrTest {
+
+	private static final RelationshipType oneToMany = DynamicRelationshipType.withName("ONE_TO_MANY");
+
+	public void testDegreeCounters() {
+
+		try {
+
+			final TestSix parent1           = createTestNode(TestSix.class);
+			final TestSix parent2           = createTestNode(TestSix.class);
+			final List<TestOne> children    = new LinkedList<>();
+
+			for (final NodeInterface node : createTestNodes(TestOne.class, 5)) {
+				children.add((TestOne)node);
+			}
+
+			setChildren(parent1, children);
+
+			assertEquals(Long.valueOf(5), DegreeCounter.getDegree(parent1.getNode(), oneToMany, Direction.OUTGOING));
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(children.get(0).getNode(), oneToMany, Direction.INCOMING));
+			assertCountersMatch(parent1.getNode());
+
+			final Map<RelationshipType, Long> statistics = parent1.getRelationshipInfo(Direction.OUTGOING);
+			assertEquals(Long.valueOf(5), statistics.get(oneToMany));
+
+			// cardinality enforcement moves the child to the new parent
+			final List<TestOne> moved = new LinkedList<>();
+			moved.add(children.get(0));
+
+			setChildren(parent2, moved);
+
+			assertEquals(Long.valueOf(4), DegreeCounter.getDegree(parent1.getNode(), oneToMany, Direction.OUTGOING));
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(parent2.getNode(), oneToMany, Direction.OUTGOING));
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(children.get(0).getNode(), oneToMany, Direction.INCOMING));
+
+			// deletion of a child decrements the counter of its parent
+			try {
+				app.beginTx();
+				app.delete(children.get(1));
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(Long.valueOf(3), DegreeCounter.getDegree(parent1.getNode(), oneToMany, Direction.OUTGOING));
+			assertCountersMatch(parent1.getNode());
+			assertCountersMatch(parent2.getNode());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testRebuildDegreeCounters() {
+
+		try {
+
+			final TestSix parent         = createTestNode(TestSix.class);
+			final List<TestOne> children = new LinkedList<>();
+
+			for (final NodeInterface node : createTestNodes(TestOne.class, 10)) {
+				children.add((TestOne)node);
+			}
+
+			setChildren(parent, children);
+
+			// simulate a node that was created without counters
+			try {
+				app.beginTx();
+
+				final Node dbNode = parent.getNode();
+				for (final String key : dbNode.getPropertyKeys()) {
+
+					if (DegreeCounter.isCounterProperty(key)) {
+						dbNode.removeProperty(key);
+					}
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertNull(DegreeCounter.getDegree(parent.getNode(), oneToMany, Direction.OUTGOING));
+
+			// statistics fall back to scanning
+			assertEquals(Long.valueOf(10), parent.getRelationshipInfo(Direction.OUTGOING).get(oneToMany));
+
+			app.command(BulkRebuildDegreeCountersCommand.class).execute(new HashMap<String, Object>());
+
+			assertEquals(Long.valueOf(10), DegreeCounter.getDegree(parent.getNode(), oneToMany, Direction.OUTGOING));
+			assertCountersMatch(parent.getNode());
+
+			for (final TestOne child : children) {
+				assertCountersMatch(child.getNode());
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testDirectWritesAreCounted() {
+
+		try {
+
+			final TestSix parent1         = createTestNode(TestSix.class);
+			final TestSix parent2         = createTestNode(TestSix.class);
+			final TestOne child           = createTestNode(TestOne.class);
+			final List<TestOne> children  = new LinkedList<>();
+
+			children.add(child);
+
+			setChildren(parent1, children);
+
+			// delete the relationship and create a new one directly in the database
+			try {
+				app.beginTx();
+
+				for (final Relationship rel : child.getNode().getRelationships(oneToMany, Direction.INCOMING)) {
+					rel.delete();
+				}
+
+				createRawRelationship(parent1.getNode(), child.getNode());
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// the counters must never be lower than the actual number of relationships
+			assertTrue(DegreeCounter.getDegree(parent1.getNode(), oneToMany, Direction.OUTGOING) >= 1);
+			assertTrue(DegreeCounter.getDegree(child.getNode(), oneToMany, Direction.INCOMING) >= 1);
+
+			// a relationship created directly in the database is counted at commit
+			final TestOne other = createTestNode(TestOne.class);
+
+			try {
+				app.beginTx();
+
+				createRawRelationship(parent2.getNode(), other.getNode());
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(parent2.getNode(), oneToMany, Direction.OUTGOING));
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(other.getNode(), oneToMany, Direction.INCOMING));
+			assertCountersMatch(parent2.getNode());
+
+			// cardinality must still be enforced
+			setChildren(parent2, children);
+
+			int count = 0;
+
+			for (final Relationship rel : child.getNode().getRelationships(oneToMany, Direction.INCOMING)) {
+
+				assertEquals(parent2.getNode(), rel.getStartNode());
+				count++;
+			}
+
+			assertEquals(1, count);
+			assertEquals(Long.valueOf(1), DegreeCounter.getDegree(child.getNode(), oneToMany, Direction.INCOMING));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testUncountedNodesAreRecounted() {
+
+		try {
+
+			final TestSix parent         = createTestNode(TestSix.class);
+			final List<TestOne> children = new LinkedList<>();
+
+			for (final NodeInterface node : createTestNodes(TestOne.class, 3)) {
+				children.add((TestOne)node);
+			}
+
+			setChildren(parent, children);
+
+			// simulate a node that was created without counters
+			try {
+				app.beginTx();
+
+				final Node dbNode = parent.getNode();
+				for (final String key : dbNode.getPropertyKeys()) {
+
+					if (DegreeCounter.isCounterProperty(key)) {
+						dbNode.removeProperty(key);
+					}
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertNull(DegreeCounter.getDegree(parent.getNode(), oneToMany, Direction.OUTGOING));
+
+			// a change of its relationships recounts the node
+			children.add(createTestNode(TestOne.class));
+			setChildren(parent, children);
+
+			assertTrue(DegreeCounter.isCounted(parent.getNode()));
+			assertEquals(Long.valueOf(4), DegreeCounter.getDegree(parent.getNode(), oneToMany, Direction.OUTGOING));
+			assertCountersMatch(parent.getNode());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private void setChildren(final TestSix parent, final List<TestOne> children) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			parent.setProperty(TestSix.oneToManyTestOnes, children);
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private void createRawRelationship(final Node parent, final Node child) {
+
+		final Relationship rel = parent.createRelationshipTo(child, oneToMany);
+
+		rel.setProperty(GraphObject.id.dbName(), UUID.randomUUID().toString().replaceAll("[\\-]+", ""));
+		rel.setProperty(GraphObject.type.dbName(), SixOneOneToMany.class.getSimpleName());
+	}
+
+	private void assertCountersMatch(final Node node) {
+
+		final Map<String, Long> scanned = new HashMap<>();
+
+		for (final Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+
+			final String name = rel.getType().name();
+			final Long count  = scanned.get(name);
+
+			scanned.put(name, count != null ? count + 1 : 1L);
+		}
+
+		for (final Map.Entry<String, Long> entry : scanned.entrySet()) {
+			assertEquals(entry.getValue(), DegreeCounter.getDegree(node, DynamicRelationshipType.withName(entry.getKey()), Direction.OUTGOING));
+		}
+
+		assertEquals(scanned.size(), DegreeCounter.getStatistics(node, Direction.OUTGOING).size());
+	}
+}
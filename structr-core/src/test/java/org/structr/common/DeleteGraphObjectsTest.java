@@ -30,6 +30,7 @@ import org.structr.core.entity.TestTwo;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static junit.framework.Assert.assertTrue;
@@ -39,6 +40,7 @@ import org.structr.core.Result;
 import org.structr.core.entity.SixOneOneToOne;
 import org.structr.core.entity.TestSix;
 import org.structr.core.entity.relationship.NodeHasLocation;
+import org.structr.core.graph.DeleteNodeCommand;
 import org.structr.core.graph.NodeInterface;
 
 //~--- classes ----------------------------------------------------------------
@@ -433,6 +435,79 @@ public class DeleteGraphObjectsTest extends StructrTest {
 
 	}
 
+	/**
+	 * A long cascade chain must be deleted completely, without
+	 * recursing on the call stack.
+	 */
+	public void test08CascadeDeleteDeepChain() {
+
+		try {
+
+			final List<NodeInterface> chain = cascadeChain(10000);
+
+			deleteCascade(chain.get(0));
+
+			assertEquals("All nodes of the cascade should have been deleted", 0, app.nodeQuery(TestOne.class).getResult().size());
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * A cascade deleted in chunks of transactions must be deleted
+	 * completely, with the root node deleted last.
+	 */
+	public void test09CascadeDeleteChunked() {
+
+		try {
+
+			final List<NodeInterface> chain = cascadeChain(1000);
+			final String rootId             = chain.get(0).getUuid();
+
+			app.command(DeleteNodeCommand.class).execute(chain.get(0), 100);
+
+			assertNodeNotFound(rootId);
+			assertEquals("All nodes of the cascade should have been deleted", 0, app.nodeQuery(TestOne.class).getResult().size());
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	private List<NodeInterface> cascadeChain(final int length) throws FrameworkException {
+
+		final List<NodeInterface> chain = createTestNodes(TestOne.class, length);
+
+		try {
+			app.beginTx();
+
+			for (int i=1; i<length; i++) {
+
+				final AbstractRelationship rel = app.create(chain.get(i-1), chain.get(i), NodeHasLocation.class);
+				rel.setProperty(AbstractRelationship.cascadeDelete, Relation.SOURCE_TO_TARGET);
+			}
+
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+
+		return chain;
+	}
+
 	private AbstractRelationship cascadeRel(final Class type1, final Class type2, final int cascadeDeleteFlag) throws FrameworkException {
 
 		try {
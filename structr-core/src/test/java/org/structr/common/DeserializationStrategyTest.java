@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.converter.PropertyConverter;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.notion.TypeAndPropertySetDeserializationStrategy;
+import org.structr.core.notion.TypeAndValueDeserializationStrategy;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Test batched resolution of related node references.
+ *
+ * @author Christian Morgner
+ */
+public class DeserializationStrategyTest extends StructrTest {
+
+	public void test01IdDeserialization() {
+
+		try {
+
+			final List<NodeInterface> nodes = createTestNodes(TestOne.class, 5);
+			final List<String> uuids        = new LinkedList<>();
+
+			for (final NodeInterface node : nodes) {
+				uuids.add(node.getUuid());
+			}
+
+			// duplicates and unknown ids
+			uuids.add(nodes.get(0).getUuid());
+			uuids.add("00000000000000000000000000000000");
+
+			final PropertyConverter converter = TestSix.manyToManyTestOnes.inputConverter(securityContext);
+			final List<TestOne> result       = (List<TestOne>)converter.convert(uuids);
+
+			assertEquals(7, result.size());
+
+			for (int i=0; i<5; i++) {
+				assertEquals(nodes.get(i), result.get(i));
+			}
+
+			assertEquals(nodes.get(0), result.get(5));
+			assertNull(result.get(6));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02TypeAndValueDeserialization() {
+
+		try {
+
+			final TypeAndValueDeserializationStrategy<String, TestOne> strategy = new TypeAndValueDeserializationStrategy<>(AbstractNode.name, false);
+			final List<TestOne> nodes                                          = new LinkedList<>();
+
+			for (final String name : Arrays.asList("one", "two", "three")) {
+				nodes.add(createNamedNode(name));
+			}
+
+			final List<TestOne> result = strategy.deserializeAll(securityContext, TestOne.class, Arrays.asList("three", "one", "three"));
+
+			assertEquals(3, result.size());
+			assertEquals(nodes.get(2), result.get(0));
+			assertEquals(nodes.get(0), result.get(1));
+			assertEquals(nodes.get(2), result.get(2));
+
+			try {
+
+				strategy.deserializeAll(securityContext, TestOne.class, Arrays.asList("one", "four"));
+				fail("Unknown values should be reported");
+
+			} catch (FrameworkException expected) {
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03TypeAndValueDeserializationCreatesOnce() {
+
+		try {
+
+			final TypeAndValueDeserializationStrategy<String, TestOne> strategy = new TypeAndValueDeserializationStrategy<>(AbstractNode.name, true);
+			final TestOne existing                                             = createNamedNode("one");
+
+			try {
+				app.beginTx();
+
+				final List<TestOne> result = strategy.deserializeAll(securityContext, TestOne.class, Arrays.asList("one", "two", "two"));
+
+				assertEquals(3, result.size());
+				assertEquals(existing, result.get(0));
+				assertNotNull(result.get(1));
+				assertEquals("two", result.get(1).getProperty(AbstractNode.name));
+				assertEquals(result.get(1), result.get(2));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(2, app.nodeQuery(TestOne.class).getResult().size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test04TypeAndPropertySetDeserialization() {
+
+		try {
+
+			final TypeAndPropertySetDeserializationStrategy<Map<String, Object>, TestOne> strategy = new TypeAndPropertySetDeserializationStrategy<>(AbstractNode.name);
+			final List<NodeInterface> nodes                                                       = createTestNodes(TestOne.class, 3);
+			final List<Map<String, Object>> sources                                               = new LinkedList<>();
+
+			for (final NodeInterface node : nodes) {
+				sources.add(toMap(node.getUuid()));
+			}
+
+			final List<TestOne> result = strategy.deserializeAll(securityContext, TestOne.class, sources);
+
+			assertEquals(3, result.size());
+
+			for (int i=0; i<3; i++) {
+				assertEquals(nodes.get(i), result.get(i));
+			}
+
+			try {
+
+				sources.add(toMap("00000000000000000000000000000000"));
+				strategy.deserializeAll(securityContext, TestOne.class, sources);
+				fail("Unknown ids should be reported");
+
+			} catch (FrameworkException expected) {
+			}
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	private TestOne createNamedNode(final String name) throws FrameworkException {
+
+		final PropertyMap properties = new PropertyMap();
+		properties.put(AbstractNode.name, name);
+
+		return createTestNode(TestOne.class, properties);
+	}
+
+	private Map<String, Object> toMap(final String uuid) {
+
+		final Map<String, Object> map = new LinkedHashMap<>();
+		map.put(GraphObject.id.jsonName(), uuid);
+
+		return map;
+	}
+}
@@ -19,21 +19,27 @@
 package org.structr.common;
 
 import org.apache.commons.lang.StringUtils;
+import org.fusesource.hawtdb.api.TxPageFileFactory;
 
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.log.LogWriter;
 import org.structr.core.log.ReadLogCommand;
 import org.structr.core.log.WriteLogCommand;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -149,4 +155,206 @@ public class LogCommandsTest extends StructrTest {
 
 	}
 
+
+	public void test03TestConcurrentWriteThroughput() {
+
+		try {
+
+			final int numThreads       = 8;
+			final int number           = 1000;
+			final String logPageKey    = "test3";
+			final List<Thread> threads = new LinkedList<>();
+			final AtomicInteger errors = new AtomicInteger(0);
+			long t0                    = System.nanoTime();
+
+			for (int i = 0; i < numThreads; i++) {
+
+				final Thread thread = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+
+						try {
+
+							for (int j = 0; j < number; j++) {
+
+								writeLogCommand.execute(logPageKey, new String[] { "foo" + j, "bar" });
+							}
+
+						} catch (FrameworkException ex) {
+
+							errors.incrementAndGet();
+						}
+					}
+				});
+
+				threads.add(thread);
+				thread.start();
+			}
+
+			for (Thread thread : threads) {
+
+				thread.join();
+			}
+
+			long t1                     = System.nanoTime();
+			DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			Double time                 = (t1 - t0) / 1000000000.0;
+			Double rate                 = (numThreads * number) / ((t1 - t0) / 1000000000.0);
+
+			logger.log(Level.INFO, "{0} threads enqueued {1} log entries in {2} seconds ({3} per s)", new Object[] { numThreads, numThreads * number, decimalFormat.format(time), decimalFormat.format(rate) });
+
+			Map<String, Object> result = (Map<String, Object>) readLogCommand.execute(logPageKey);
+
+			long t2 = System.nanoTime();
+			time    = (t2 - t0) / 1000000000.0;
+			rate    = (numThreads * number) / ((t2 - t0) / 1000000000.0);
+
+			logger.log(Level.INFO, "Committed {0} log entries in {1} seconds ({2} per s)", new Object[] { numThreads * number, decimalFormat.format(time), decimalFormat.format(rate) });
+
+			assertEquals(0, errors.get());
+			assertEquals(numThreads * number, result.size());
+
+		} catch (InterruptedException | FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test04TestTimeRangeRead() {
+
+		try {
+
+			int number        = 100;
+			String logPageKey = "test4";
+			long t0           = System.currentTimeMillis();
+
+			for (int i = 0; i < number; i++) {
+
+				writeLogCommand.execute(logPageKey, new String[] { "foo" + i, "bar" });
+			}
+
+			long t1 = System.currentTimeMillis() + 1;
+
+			// entries are returned in the order they were written
+			Map<String, Object> result = (Map<String, Object>) readLogCommand.execute(logPageKey, t0, t1, 10);
+
+			assertEquals(10, result.size());
+
+			int i = 0;
+			for (Object value : result.values()) {
+
+				assertEquals("foo" + i++, ((String[]) value)[0]);
+			}
+
+			assertEquals(number, readLogCommand.execute(logPageKey, t0, t1, Integer.MAX_VALUE).size());
+			assertTrue(readLogCommand.execute(logPageKey, t1, t1 + 60000, Integer.MAX_VALUE).isEmpty());
+			assertTrue(readLogCommand.execute(logPageKey, 0, t0, Integer.MAX_VALUE).isEmpty());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test05TestBoundedQueue() {
+
+		final TxPageFileFactory factory = openLogDb("bounded");
+
+		try {
+
+			// writer is not started, so the queue is never drained
+			final LogWriter logWriter = new LogWriter(factory.getTxPageFile(), 10, 10);
+
+			for (int i = 0; i < 10; i++) {
+
+				assertTrue(logWriter.enqueue("test5", new String[] { "foo" + i }));
+			}
+
+			// entries that do not fit are dropped and counted as failed
+			assertFalse(logWriter.enqueue("test5", new String[] { "foo" }));
+			assertEquals(1, logWriter.getFailedCount());
+
+			// the queued entries are written after the writer is started
+			logWriter.start();
+
+			assertTrue(logWriter.flush());
+			assertEquals(10, logWriter.getCommittedCount());
+
+			assertTrue(logWriter.enqueue("test5", new String[] { "bar" }));
+			assertTrue(logWriter.flush());
+			assertEquals(11, logWriter.getCommittedCount());
+
+			logWriter.shutdown();
+
+		} finally {
+
+			closeLogDb(factory);
+		}
+	}
+
+	public void test06TestRejectAfterShutdown() {
+
+		final TxPageFileFactory factory = openLogDb("shutdown");
+
+		try {
+
+			final LogWriter logWriter = new LogWriter(factory.getTxPageFile());
+
+			logWriter.start();
+
+			assertTrue(logWriter.enqueue("test6", new String[] { "foo" }));
+
+			logWriter.shutdown();
+
+			assertEquals(1, logWriter.getCommittedCount());
+			assertFalse(logWriter.isAccepting());
+			assertFalse(logWriter.enqueue("test6", new String[] { "bar" }));
+			assertEquals(1, logWriter.getCommittedCount());
+
+		} finally {
+
+			closeLogDb(factory);
+		}
+	}
+
+	public void test07TestLegacyEntryKeys() {
+
+		final long now = System.currentTimeMillis();
+
+		assertEquals(now, LogWriter.getTimestamp(LogWriter.getFirstEntryKey(now)));
+
+		// entries of older versions are keyed by random UUIDs
+		assertEquals(-1, LogWriter.getTimestamp("3f2504e04f8941d39a0c0305e82c3301"));
+		assertEquals(-1, LogWriter.getTimestamp("not a key"));
+	}
+
+	// ----- private methods -----
+	private TxPageFileFactory openLogDb(final String name) {
+
+		final TxPageFileFactory factory = new TxPageFileFactory();
+
+		factory.setFile(new File(basePath + "/logWriter-" + name + ".dat"));
+		factory.open();
+
+		return factory;
+	}
+
+	private void closeLogDb(final TxPageFileFactory factory) {
+
+		try {
+
+			factory.close();
+
+		} catch (IOException ioex) {
+
+			logger.log(Level.WARNING, "Unable to close log db: {0}", ioex.getMessage());
+		}
+	}
 }
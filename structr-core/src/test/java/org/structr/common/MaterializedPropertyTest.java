@@ -0,0 +1,368 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
+import org.structr.core.entity.User;
+import org.structr.core.graph.BulkRefreshMaterializedPropertiesCommand;
+
+/**
+ * Test incremental maintenance and repair of materialized aggregate properties.
+ *
+ * All tests except test03 and test05 are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class MaterializedPropertyTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(MaterializedPropertyTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	public void test01IncrementalMaintenance() {
+
+		try {
+
+			final TestSix testSix        = createTestNode(TestSix.class);
+			final List<TestOne> testOnes = new LinkedList<>();
+
+			assertEquals(0, testSix.getNode().getProperty(TestSix.manyToManyTestOnesCount.dbName()));
+
+			try {
+				app.beginTx();
+
+				for (int i = 1; i <= 3; i++) {
+
+					final TestOne testOne = app.create(TestOne.class, "TestOne-" + i);
+					testOne.setProperty(TestOne.anInt, i);
+
+					testOnes.add(testOne);
+				}
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes);
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// values must be stored on the node
+			assertEquals(3, testSix.getNode().getProperty(TestSix.manyToManyTestOnesCount.dbName()));
+			assertEquals(6, testSix.getNode().getProperty(TestSix.manyToManyTestOnesSum.dbName()));
+			assertEquals((Integer)3, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)6, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+			// modify collection element
+			try {
+				app.beginTx();
+				testOnes.get(0).setProperty(TestOne.anInt, 10);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals((Integer)3, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)15, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+			// delete collection element
+			try {
+				app.beginTx();
+				app.delete(testOnes.get(1));
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals((Integer)2, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)13, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test02Repair() {
+
+		try {
+
+			final TestSix testSix = createTestNode(TestSix.class);
+
+			try {
+				app.beginTx();
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, (List)createTestNodes(TestOne.class, 5));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(5, testSix.getNode().getProperty(TestSix.manyToManyTestOnesCount.dbName()));
+
+			// corrupt the stored value
+			try {
+				app.beginTx();
+				testSix.getNode().setProperty(TestSix.manyToManyTestOnesCount.dbName(), 42);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals((Integer)42, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+
+			app.command(BulkRefreshMaterializedPropertiesCommand.class).execute(Collections.EMPTY_MAP);
+
+			assertEquals((Integer)5, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals(5, testSix.getNode().getProperty(TestSix.manyToManyTestOnesCount.dbName()));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test03VisibilityDependentValues() {
+
+		try {
+
+			final TestSix testSix        = createTestNode(TestSix.class);
+			final List<TestOne> testOnes = new LinkedList<>();
+
+			try {
+				app.beginTx();
+
+				for (int i = 1; i <= 3; i++) {
+
+					final TestOne testOne = app.create(TestOne.class, "TestOne-" + i);
+					testOne.setProperty(TestOne.anInt, i);
+
+					testOnes.add(testOne);
+				}
+
+				testSix.setProperty(AbstractNode.visibleToPublicUsers, true);
+				testOnes.get(1).setProperty(AbstractNode.visibleToPublicUsers, true);
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes);
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// superuser gets the stored values
+			assertEquals((Integer)3, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)6, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+			// public user must only see the aggregate of the visible element
+			final SecurityContext publicContext = SecurityContext.getInstance(null, AccessMode.Frontend);
+			final TestSix publicTestSix         = StructrApp.getInstance(publicContext).get(TestSix.class, testSix.getUuid());
+
+			assertNotNull(publicTestSix);
+			assertEquals((Integer)1, publicTestSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)2, publicTestSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test04MaintenanceUsesDeltas() {
+
+		try {
+
+			final TestSix testSix        = createTestNode(TestSix.class);
+			final List<TestOne> testOnes = new LinkedList<>();
+
+			try {
+				app.beginTx();
+
+				for (int i = 1; i <= 3; i++) {
+
+					final TestOne testOne = app.create(TestOne.class, "TestOne-" + i);
+					testOne.setProperty(TestOne.anInt, i);
+
+					testOnes.add(testOne);
+				}
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes.subList(0, 2));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals((Integer)2, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)3, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+			// offset the stored values so that a full recomputation would be noticed
+			try {
+				app.beginTx();
+				testSix.getNode().setProperty(TestSix.manyToManyTestOnesCount.dbName(), 100);
+				testSix.getNode().setProperty(TestSix.manyToManyTestOnesSum.dbName(), 100);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// add an element and modify an existing element twice
+			try {
+				app.beginTx();
+
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes);
+				testOnes.get(0).setProperty(TestOne.anInt, 5);
+				testOnes.get(0).setProperty(TestOne.anInt, 10);
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// count +1, sum +3 for the new element and +9 for the modified one
+			assertEquals((Integer)101, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)112, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+			// remove an element that was modified in the same transaction
+			try {
+				app.beginTx();
+
+				testOnes.get(1).setProperty(TestOne.anInt, 50);
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes.subList(0, 1));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// count -2, sum -2 and -3 for the removed elements
+			assertEquals((Integer)99, testSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)107, testSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test05StoredValuesForRegularUsers() {
+
+		try {
+
+			final User user              = createTestNode(User.class);
+			final TestSix testSix        = createTestNode(TestSix.class);
+			final List<TestOne> testOnes = new LinkedList<>();
+
+			try {
+				app.beginTx();
+
+				for (int i = 1; i <= 3; i++) {
+
+					final TestOne testOne = app.create(TestOne.class, "TestOne-" + i);
+					testOne.setProperty(TestOne.anInt, i);
+
+					testOnes.add(testOne);
+				}
+
+				testSix.setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+				testOnes.get(2).setProperty(AbstractNode.visibleToAuthenticatedUsers, true);
+				testSix.setProperty(TestSix.manyToManyTestOnes, testOnes);
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(3, testSix.getNode().getProperty(TestSix.manyToManyTestOnesTotalCount.dbName()));
+			assertEquals(6, testSix.getNode().getProperty(TestSix.manyToManyTestOnesTotalSum.dbName()));
+
+			// offset the stored values so that a computed value would be noticed
+			try {
+				app.beginTx();
+				testSix.getNode().setProperty(TestSix.manyToManyTestOnesTotalCount.dbName(), 100);
+				testSix.getNode().setProperty(TestSix.manyToManyTestOnesTotalSum.dbName(), 100);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final SecurityContext userContext = SecurityContext.getInstance(user, AccessMode.Backend);
+			final TestSix userTestSix         = StructrApp.getInstance(userContext).get(TestSix.class, testSix.getUuid());
+
+			assertNotNull(userTestSix);
+
+			// regular user gets the stored values of visibility-independent properties
+			assertEquals((Integer)100, userTestSix.getProperty(TestSix.manyToManyTestOnesTotalCount));
+			assertEquals((Integer)100, userTestSix.getProperty(TestSix.manyToManyTestOnesTotalSum));
+
+			// and the computed values of visibility-dependent properties
+			assertEquals((Integer)1, userTestSix.getProperty(TestSix.manyToManyTestOnesCount));
+			assertEquals((Integer)3, userTestSix.getProperty(TestSix.manyToManyTestOnesSum));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+}
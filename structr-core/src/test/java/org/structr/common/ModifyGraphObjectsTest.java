@@ -25,13 +25,19 @@ import org.structr.common.error.FrameworkException;
 //~--- JDK imports ------------------------------------------------------------
 
 
+import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static junit.framework.Assert.assertTrue;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.GenericNode;
+import org.structr.core.entity.TestOne;
 import org.structr.core.entity.relationship.NodeHasLocation;
+import org.structr.core.graph.CypherQueryCommand;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.PropertyReadCache;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
 
@@ -176,4 +182,197 @@ public class ModifyGraphObjectsTest extends StructrTest {
 
 	}
 
+	/**
+	 * Test that cached property values are refreshed after modifications
+	 * through other instances, in other threads and inside transactions.
+	 */
+	public void test03ModifyCachedProperty() {
+
+		try {
+
+			final TestOne node = createTestNode(TestOne.class);
+
+			try {
+				app.beginTx();
+				node.setProperty(TestOne.aString, "value1");
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// fill cache
+			assertEquals("value1", node.getProperty(TestOne.aString));
+			assertEquals("value1", node.getProperty(TestOne.aString));
+
+			// modify through a different instance
+			final TestOne otherInstance = (TestOne)app.get(node.getUuid());
+
+			try {
+				app.beginTx();
+				otherInstance.setProperty(TestOne.aString, "value2");
+
+				// uncommitted value must be visible inside of the transaction
+				assertEquals("value2", node.getProperty(TestOne.aString));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals("value2", node.getProperty(TestOne.aString));
+
+			// modify in a different thread
+			final Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					final App threadApp = StructrApp.getInstance(securityContext);
+
+					try {
+						threadApp.beginTx();
+						otherInstance.setProperty(TestOne.aString, "value3");
+						threadApp.commitTx();
+
+					} catch (FrameworkException fex) {
+
+						logger.log(Level.WARNING, "Unable to modify node", fex);
+
+					} finally {
+
+						threadApp.finishTx();
+					}
+				}
+			});
+
+			thread.start();
+			thread.join();
+
+			assertEquals("value3", node.getProperty(TestOne.aString));
+
+		} catch (FrameworkException | InterruptedException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	/**
+	 * Test that request-scoped property values are evicted by transactions
+	 * and Cypher writes of the same thread, and are not shared between
+	 * requests.
+	 */
+	public void test04RequestScopedPropertyCache() {
+
+		try {
+
+			final TestOne node = createTestNode(TestOne.class);
+
+			try {
+				app.beginTx();
+				node.setProperty(TestOne.aString, "value1");
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final TestOne otherInstance = (TestOne)app.get(node.getUuid());
+
+			PropertyReadCache.beginRequest();
+
+			try {
+
+				// fill cache
+				assertEquals("value1", node.getProperty(TestOne.aString));
+
+				// modify in a transaction of the same request
+				try {
+					app.beginTx();
+					otherInstance.setProperty(TestOne.aString, "value2");
+					app.commitTx();
+
+				} finally {
+
+					app.finishTx();
+				}
+
+				assertEquals("value2", node.getProperty(TestOne.aString));
+
+				// modify with Cypher, bypassing the modification queue
+				app.command(CypherQueryCommand.class).execute("START n=node({id}) SET n.aString = 'value3'", Collections.singletonMap("id", (Object)node.getId()));
+
+				assertEquals("value3", node.getProperty(TestOne.aString));
+
+				// modify the raw node, bypassing the modification queue
+				try {
+					app.beginTx();
+					node.getNode().setProperty(TestOne.aString.dbName(), "value3a");
+					PropertyReadCache.evictCurrent(node.getNode());
+					app.commitTx();
+
+				} finally {
+
+					app.finishTx();
+				}
+
+				assertEquals("value3a", node.getProperty(TestOne.aString));
+
+			} finally {
+
+				PropertyReadCache.endRequest();
+			}
+
+			// modify in a different thread, outside of any request
+			final Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+
+					final App threadApp = StructrApp.getInstance(securityContext);
+
+					try {
+						threadApp.beginTx();
+						otherInstance.setProperty(TestOne.aString, "value4");
+						threadApp.commitTx();
+
+					} catch (FrameworkException fex) {
+
+						logger.log(Level.WARNING, "Unable to modify node", fex);
+
+					} finally {
+
+						threadApp.finishTx();
+					}
+				}
+			});
+
+			thread.start();
+			thread.join();
+
+			// a new request must not see values of the previous request
+			PropertyReadCache.beginRequest();
+
+			try {
+
+				assertEquals("value4", node.getProperty(TestOne.aString));
+
+			} finally {
+
+				PropertyReadCache.endRequest();
+			}
+
+		} catch (FrameworkException | InterruptedException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
 }
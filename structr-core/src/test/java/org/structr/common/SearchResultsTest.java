@@ -47,6 +47,7 @@ import org.structr.core.entity.TestOne;
 import org.structr.core.entity.TestSeven;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
+import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.StringProperty;
@@ -508,4 +509,108 @@ public class SearchResultsTest extends StructrTest {
 		}
 
 	}	
+
+	public void test14SearchBySubstringIndexedField() {
+
+		try {
+
+			final String[] values = new String[] { "Structr graph Database", "neo4j embedded", "unrelated" };
+
+			for (String value : values) {
+
+				PropertyMap props = new PropertyMap();
+
+				props.put(TestOne.aString, value);
+				props.put(TestOne.aText, value);
+
+				createTestNode(TestOne.class, props);
+			}
+
+			// prefix, infix, suffix and multi-word searches must yield the
+			// same results as the wildcard search on a normally indexed field
+			for (String searchValue : new String[] { "graph", "gra", "tructr", "base", "emb", "e", "DATA", "neo unrel", "xyz" }) {
+
+				Result expected = app.nodeQuery(TestOne.class).and(TestOne.aString, searchValue, true).getResult();
+				Result actual   = app.nodeQuery(TestOne.class).and(TestOne.aText, searchValue, true).getResult();
+
+				assertEquals("Unexpected result for " + searchValue, expected.size(), actual.size());
+			}
+
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, "tructr", true).getResult().size());
+			assertEquals(3, app.nodeQuery(TestOne.class).and(TestOne.aText, "e", true).getResult().size());
+			assertEquals(0, app.nodeQuery(TestOne.class).and(TestOne.aText, "xyz", true).getResult().size());
+
+			// explicit wildcards fall back to a wildcard query
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, "gr*ph", true).getResult().size());
+
+			// exact search is unchanged
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, "neo4j embedded", false).getResult().size());
+			assertEquals(0, app.nodeQuery(TestOne.class).and(TestOne.aText, "neo4j", false).getResult().size());
+
+			// modified values must replace the old suffixes
+			final TestOne node = app.nodeQuery(TestOne.class).and(TestOne.aText, "tructr", true).getFirst();
+
+			try {
+				app.beginTx();
+				node.setProperty(TestOne.aText, "changed");
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(0, app.nodeQuery(TestOne.class).and(TestOne.aText, "tructr", true).getResult().size());
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, "hang", true).getResult().size());
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+			
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
+
+	public void test15SearchLongTokenInSubstringIndexedField() {
+
+		try {
+
+			// a long token without whitespace, like a hash or a base64 string
+			final StringBuilder buf = new StringBuilder();
+
+			for (int i=0; buf.length() < 2000; i++) {
+				buf.append(Integer.toHexString(i * 7919));
+			}
+
+			final String token = buf.toString();
+
+			// the index data grows linearly with the length of the token
+			assertTrue(Property.getSubstringIndexValue(token).length() <= token.length() * (Property.SUBSTRING_INDEX_MAX_LENGTH + 1));
+
+			PropertyMap props = new PropertyMap();
+
+			props.put(TestOne.aText, "prefix " + token);
+			createTestNode(TestOne.class, props);
+
+			// short infix searches use the suffixes
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, token.substring(1500, 1510), true).getResult().size());
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, token.substring(token.length() - Property.SUBSTRING_INDEX_MAX_LENGTH), true).getResult().size());
+
+			// search words longer than the indexed suffixes still match
+			assertEquals(1, app.nodeQuery(TestOne.class).and(TestOne.aText, token.substring(1000, 1100), true).getResult().size());
+			assertEquals(0, app.nodeQuery(TestOne.class).and(TestOne.aText, token.substring(1000, 1100) + "xyz", true).getResult().size());
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+
+	}
 }
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.auth.AuthHelper;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.User;
+import org.structr.core.graph.NodeAttribute;
+
+/**
+ * Test the session-to-principal cache of {@link AuthHelper}.
+ *
+ * All tests are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class SessionPrincipalCacheTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(SessionPrincipalCacheTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	public void test01CachedSessionLookup() {
+
+		try {
+
+			final User user = createUser("tester", "session1");
+
+			assertEquals(user.getUuid(), AuthHelper.getPrincipalForSessionId("session1").getUuid());
+
+			// second lookup is served from the cache
+			assertEquals(user.getUuid(), AuthHelper.getPrincipalForSessionId("session1").getUuid());
+
+			assertNull(AuthHelper.getPrincipalForSessionId("unknown"));
+
+			// session id change
+			setSessionId(user, "session2");
+
+			assertNull(AuthHelper.getPrincipalForSessionId("session1"));
+			assertEquals(user.getUuid(), AuthHelper.getPrincipalForSessionId("session2").getUuid());
+
+			// deletion
+			try {
+				app.beginTx();
+				app.delete(user);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertNull(AuthHelper.getPrincipalForSessionId("session2"));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test02RevokedSessionsStopAuthenticatingImmediately() {
+
+		final int numberOfThreads    = 8;
+		final AtomicBoolean revoked  = new AtomicBoolean(false);
+		final AtomicBoolean running  = new AtomicBoolean(true);
+		final AtomicInteger failures = new AtomicInteger(0);
+		final AtomicInteger lookups  = new AtomicInteger(0);
+		final List<Thread> threads   = new LinkedList<>();
+
+		try {
+
+			final User user = createUser("tester", "session1");
+
+			for (int i = 0; i < numberOfThreads; i++) {
+
+				final Thread thread = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+
+						while (running.get()) {
+
+							// read the flag before the lookup, so that a lookup
+							// that started after the logout must not succeed
+							final boolean wasRevoked    = revoked.get();
+							final Principal principal   = AuthHelper.getPrincipalForSessionId("session1");
+
+							if (wasRevoked && principal != null) {
+								failures.incrementAndGet();
+							}
+
+							if (!wasRevoked && principal != null) {
+								lookups.incrementAndGet();
+							}
+						}
+					}
+				});
+
+				threads.add(thread);
+				thread.start();
+			}
+
+			// let the threads fill the cache
+			Thread.sleep(500);
+
+			// logout
+			setSessionId(user, null);
+			revoked.set(true);
+
+			Thread.sleep(500);
+
+			running.set(false);
+
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+
+			logger.log(Level.INFO, "{0} successful session lookups before logout", lookups.get());
+
+			assertTrue(lookups.get() > 0);
+			assertEquals("Revoked session was authenticated", 0, failures.get());
+			assertNull(AuthHelper.getPrincipalForSessionId("session1"));
+
+		} catch (FrameworkException | InterruptedException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			running.set(false);
+		}
+	}
+
+	private User createUser(final String name, final String sessionId) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			final User user = app.create(User.class, new NodeAttribute(User.name, name), new NodeAttribute(Principal.sessionId, sessionId));
+			app.commitTx();
+
+			return user;
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private void setSessionId(final User user, final String sessionId) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			user.setProperty(Principal.sessionId, sessionId);
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.common.geo.SpatialGridIndex;
+import org.structr.core.Result;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.Location;
+import org.structr.core.entity.TestSeven;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Test distance and nearest neighbour searches on the in-memory spatial
+ * grid index.
+ *
+ * @author Axel Morgner
+ */
+public class SpatialGridIndexTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(SpatialGridIndexTest.class.getName());
+
+	public void test01GridLookup() {
+
+		try {
+
+			final TestSeven center = createLocatedNode("center", 50.0, 8.0);
+			final TestSeven near   = createLocatedNode("near",   50.05, 8.0);	// approx.   5.6 km
+			final TestSeven far    = createLocatedNode("far",    50.2, 8.0);	// approx.  22.2 km
+			final TestSeven other  = createLocatedNode("other",  50.0, 8.1);	// approx.   7.1 km, neighbouring grid cell
+
+			// build the grid from the database
+			final SpatialGridIndex gridIndex = SpatialGridIndex.getInstance();
+			gridIndex.initialize(graphDbCommand.execute());
+
+			final List<Long> ids = gridIndex.withinDistance(50.0, 8.0, 10.0);
+
+			assertEquals(3, ids.size());
+			assertEquals(Long.valueOf(center.getId()), ids.get(0));
+			assertEquals(Long.valueOf(near.getId()), ids.get(1));
+			assertEquals(Long.valueOf(other.getId()), ids.get(2));
+
+			// the grid follows committed modifications
+			try {
+				app.beginTx();
+				far.setProperty(TestSeven.latitude, 50.01);
+				app.delete(center);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final List<Long> modified = gridIndex.withinDistance(50.0, 8.0, 10.0);
+
+			assertEquals(3, modified.size());
+			assertEquals(Long.valueOf(far.getId()), modified.get(0));
+			assertFalse(modified.contains(center.getId()));
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02RadiusFiltering() {
+
+		try {
+
+			createLocatedNode("node-0", 50.0, 8.0);
+			createLocatedNode("node-5", 50.045, 8.0);	// approx.   5.0 km
+			createLocatedNode("node-20", 50.18, 8.0);	// approx.  20.0 km
+			createLocatedNode("node-100", 50.9, 8.0);	// approx. 100.1 km
+
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 1.0).getResult(), "node-0");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 10.0).getResult(), "node-0", "node-5");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 50.0).getResult(), "node-0", "node-5", "node-20");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 200.0).getResult(), "node-0", "node-5", "node-20", "node-100");
+
+			// other search attributes are combined with the distance search
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 50.0).and(AbstractNode.name, "node-5").getResult(), "node-5");
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test03NearestOrdering() {
+
+		try {
+
+			// created in reverse order of distance
+			for (int i=9; i>=0; i--) {
+				createLocatedNode("node-" + i, 50.0 + i * 0.01, 8.0);
+			}
+
+			// locations of another type that are closer than all test nodes
+			// must not reduce the number of nearest results
+			for (int i=0; i<5; i++) {
+				createLocation(50.0 - i * 0.001, 8.0);
+			}
+
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 100.0).nearest(3).getResult(), "node-0", "node-1", "node-2");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.021, 8.0, 100.0).nearest(3).getResult(), "node-2", "node-3", "node-1");
+
+			// the maximum distance limits the nearest results
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 1.5).nearest(5).getResult(), "node-0", "node-1");
+
+			// the result is ordered by distance and can be paged
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 100.0).nearest(8).pageSize(3).page(2).getResult(), "node-3", "node-4", "node-5");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 100.0).nearest(8).pageSize(3).page(3).getResult(), "node-6", "node-7");
+			assertNames(app.nodeQuery(TestSeven.class).location(50.0, 8.0, 100.0).pageSize(4).page(3).getResult(), "node-8", "node-9");
+
+		} catch (FrameworkException ex) {
+
+			ex.printStackTrace();
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private TestSeven createLocatedNode(final String name, final double latitude, final double longitude) throws FrameworkException {
+
+		final PropertyMap props = new PropertyMap();
+
+		props.put(AbstractNode.name, name);
+		props.put(TestSeven.latitude, latitude);
+		props.put(TestSeven.longitude, longitude);
+
+		return createTestNode(TestSeven.class, props);
+	}
+
+	private Location createLocation(final double latitude, final double longitude) throws FrameworkException {
+
+		final PropertyMap props = new PropertyMap();
+
+		props.put(Location.latitude, latitude);
+		props.put(Location.longitude, longitude);
+
+		return createTestNode(Location.class, props);
+	}
+
+	private void assertNames(final Result result, final String... names) {
+
+		assertEquals(names.length, result.size());
+
+		for (int i=0; i<names.length; i++) {
+
+			assertEquals(names[i], result.get(i).getProperty(AbstractNode.name));
+		}
+	}
+}
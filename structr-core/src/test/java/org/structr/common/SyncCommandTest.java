@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSeven;
+import org.structr.core.entity.TestSix;
+import org.structr.core.graph.SyncCommand;
+import org.structr.core.graph.sync.BinarySyncReader;
+import org.structr.core.graph.sync.SyncFormat;
+import org.structr.core.graph.sync.SyncOutput;
+import org.structr.core.graph.sync.SyncRecord;
+import org.structr.core.graph.sync.SyncRecordHandler;
+import org.structr.core.property.PropertyMap;
+
+/**
+ * Tests export and import of the database with {@link SyncCommand}.
+ *
+ * All tests are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class SyncCommandTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(SyncCommandTest.class.getName());
+
+	public void test01BinaryExportImport() {
+		doExportImport(true);
+	}
+
+	public void test02LegacyExportImport() {
+		doExportImport(false);
+	}
+
+	public void test03CorruptBinaryStream() {
+
+		final SyncOutput header = new SyncOutput();
+
+		header.write(SyncFormat.MAGIC, 0, SyncFormat.MAGIC.length);
+		header.writeByte(SyncFormat.VERSION);
+
+		// a block that claims to contain 1 GB of data
+		final SyncOutput hugeBlock = new SyncOutput();
+
+		hugeBlock.write(header.toByteArray(), 0, header.size());
+		hugeBlock.writeByte(SyncFormat.BLOCK);
+		hugeBlock.writeByte(SyncFormat.CODEC_NONE);
+		hugeBlock.writeVarInt(1);
+		hugeBlock.writeVarInt(SyncFormat.MAX_BLOCK_LENGTH);
+		hugeBlock.writeVarInt(SyncFormat.MAX_BLOCK_LENGTH);
+
+		assertReadFails(hugeBlock.toByteArray());
+
+		// a block length that exceeds the limit
+		final SyncOutput tooLarge = new SyncOutput();
+
+		tooLarge.write(header.toByteArray(), 0, header.size());
+		tooLarge.writeByte(SyncFormat.BLOCK);
+		tooLarge.writeByte(SyncFormat.CODEC_NONE);
+		tooLarge.writeVarInt(1);
+		tooLarge.writeVarInt(Long.MAX_VALUE);
+		tooLarge.writeVarInt(Long.MAX_VALUE);
+
+		assertReadFails(tooLarge.toByteArray());
+
+		// a stream without a block index
+		assertReadFails(header.toByteArray());
+
+		// a block index that does not match the blocks
+		final SyncOutput wrongIndex = new SyncOutput();
+
+		wrongIndex.write(header.toByteArray(), 0, header.size());
+		wrongIndex.writeByte(SyncFormat.INDEX);
+		wrongIndex.writeVarInt(1);
+		wrongIndex.writeVarInt(5);
+		wrongIndex.writeVarInt(1);
+		wrongIndex.writeVarInt(1);
+		wrongIndex.writeFixedLong(5);
+		wrongIndex.write(SyncFormat.MAGIC, 0, SyncFormat.MAGIC.length);
+
+		assertReadFails(wrongIndex.toByteArray());
+	}
+
+	public void test04BinaryImportValidation() {
+
+		try {
+
+			final GraphDatabaseService graphDb = graphDbCommand.execute();
+			final PropertyMap properties       = new PropertyMap();
+
+			properties.put(AbstractNode.name, "TestSeven");
+
+			final TestSeven test = createTestNode(TestSeven.class, properties);
+
+			// remove the name without validation, TestSeven requires a name
+			try {
+				app.beginTx();
+				test.getNode().removeProperty(AbstractNode.name.dbName());
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final GlobalGraphOperations ggop         = GlobalGraphOperations.at(graphDb);
+
+			SyncCommand.exportToStream(outputStream, ggop.getAllNodes(), ggop.getAllRelationships(), null, true);
+
+			try {
+				app.beginTx();
+				app.delete(test);
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			try {
+
+				SyncCommand.importFromStream(graphDb, securityContext, new ByteArrayInputStream(outputStream.toByteArray()), true);
+				fail("Import of invalid nodes should fail with validation");
+
+			} catch (FrameworkException expected) {
+			}
+
+			assertEquals(0, app.get(TestSeven.class).size());
+
+			SyncCommand.importFromStream(graphDb, securityContext, new ByteArrayInputStream(outputStream.toByteArray()), false);
+
+			assertEquals(1, app.get(TestSeven.class).size());
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.SEVERE, fex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	private void assertReadFails(final byte[] data) {
+
+		try {
+
+			new BinarySyncReader(new ByteArrayInputStream(data)).read(new SyncRecordHandler() {
+
+				@Override
+				public void handleRecord(final SyncRecord record) {
+				}
+			});
+
+			fail("Corrupt sync stream should not be read");
+
+		} catch (IOException expected) {
+		}
+	}
+
+	private void doExportImport(final boolean binary) {
+
+		try {
+
+			final GraphDatabaseService graphDb      = graphDbCommand.execute();
+			final Map<String, String> names         = new LinkedHashMap<>();
+			final Map<String, Set<String>> children = new LinkedHashMap<>();
+			final List<TestSix> parents             = new ArrayList<>();
+			final int parentCount                   = 50;
+			final int number                        = 2500;
+
+			try {
+				app.beginTx();
+
+				for (int i=0; i<parentCount; i++) {
+
+					final TestSix parent = app.create(TestSix.class);
+
+					children.put(parent.getUuid(), new HashSet<String>());
+					parents.add(parent);
+				}
+
+				for (int i=0; i<number; i++) {
+
+					final PropertyMap properties = new PropertyMap();
+
+					properties.put(TestOne.name, "TestOne" + i);
+					properties.put(TestOne.anInt, i);
+					properties.put(TestOne.aLong, i * 1000000000L);
+					properties.put(TestOne.aDouble, i / 7.0);
+
+					final TestOne test = app.create(TestOne.class, properties);
+					names.put(test.getUuid(), test.getName());
+
+					// more relationships than fit into one block
+					children.get(parents.get(i % parentCount).getUuid()).add(test.getUuid());
+				}
+
+				for (final TestSix parent : parents) {
+
+					final List<TestOne> list = new ArrayList<>();
+
+					for (final String uuid : children.get(parent.getUuid())) {
+						list.add(app.get(TestOne.class, uuid));
+					}
+
+					parent.setProperty(TestSix.oneToManyTestOnes, list);
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final GlobalGraphOperations ggop         = GlobalGraphOperations.at(graphDb);
+
+			SyncCommand.exportToStream(outputStream, ggop.getAllNodes(), ggop.getAllRelationships(), null, binary);
+
+			logger.log(Level.INFO, "Exported {0} nodes to {1} bytes", new Object[] { number, outputStream.size() });
+
+			// delete nodes and re-import them
+			try {
+				app.beginTx();
+
+				for (final TestOne test : app.get(TestOne.class)) {
+					app.delete(test);
+				}
+
+				for (final TestSix parent : app.get(TestSix.class)) {
+					app.delete(parent);
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(0, app.get(TestOne.class).size());
+			assertEquals(0, app.get(TestSix.class).size());
+
+			SyncCommand.importFromStream(graphDb, securityContext, new ByteArrayInputStream(outputStream.toByteArray()), false);
+
+			final List<TestOne> imported = app.get(TestOne.class);
+			assertEquals(number, imported.size());
+
+			for (final TestOne test : imported) {
+
+				final String name = names.get(test.getUuid());
+				final int index   = Integer.valueOf(name.substring(7));
+
+				assertEquals(name, test.getName());
+				assertEquals(Integer.valueOf(index), test.getProperty(TestOne.anInt));
+				assertEquals(Long.valueOf(index * 1000000000L), test.getProperty(TestOne.aLong));
+				assertEquals(Double.valueOf(index / 7.0), test.getProperty(TestOne.aDouble));
+			}
+
+			final List<TestSix> importedParents = app.get(TestSix.class);
+			assertEquals(parentCount, importedParents.size());
+
+			for (final TestSix parent : importedParents) {
+
+				final Set<String> expected = children.get(parent.getUuid());
+				final Set<String> actual   = new HashSet<>();
+
+				for (final TestOne test : parent.getProperty(TestSix.oneToManyTestOnes)) {
+					actual.add(test.getUuid());
+				}
+
+				assertEquals(number / parentCount, actual.size());
+				assertEquals(expected, actual);
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.SEVERE, fex.toString());
+			fail("Unexpected exception");
+		}
+	}
+}
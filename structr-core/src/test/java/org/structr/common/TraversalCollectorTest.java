@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.SixOneOneToMany;
+import org.structr.core.entity.TestOne;
+import org.structr.core.entity.TestSix;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeFactory;
+import org.structr.core.traversal.AbstractNodeCollector;
+import org.structr.core.traversal.BoundedNodeCollector;
+import org.structr.core.traversal.SortedRelatedNodes;
+
+/**
+ * Test the bounded traversal collectors.
+ *
+ * @author Christian Morgner
+ */
+public class TraversalCollectorTest extends StructrTest {
+
+	public void testSortedRelatedNodes() {
+
+		try {
+
+			final TestSix hub = createHub(100);
+			final SortedRelatedNodes<TestOne> collector = new SortedRelatedNodes<TestOne>((Comparator)new GraphObjectComparator(TestOne.anInt, GraphObjectComparator.DESCENDING), DynamicRelationshipType.withName("ONE_TO_MANY"), Direction.OUTGOING, TestOne.class, 1, 5);
+			final List<TestOne> result                  = collector.transformResult(collect(collector, hub));
+
+			assertEquals(5, result.size());
+
+			for (int i=0; i<5; i++) {
+				assertEquals(Integer.valueOf(99 - i), result.get(i).getProperty(TestOne.anInt));
+			}
+
+			// without comparator, the first nodes of the traversal are returned
+			final SortedRelatedNodes<TestOne> unsorted = new SortedRelatedNodes<>(DynamicRelationshipType.withName("ONE_TO_MANY"), Direction.OUTGOING, TestOne.class, 1, 5);
+			assertEquals(5, collect(unsorted, hub).size());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testRandomRelatedNodes() {
+
+		try {
+
+			final TestSix hub         = createHub(100);
+			final Set<Integer> values = new HashSet<>();
+
+			for (int i=0; i<20; i++) {
+
+				final List<TestOne> result = hub.getProperty(TestSix.randomTestOnes);
+				final Set<TestOne> unique  = new HashSet<>(result);
+
+				assertEquals(5, result.size());
+				assertEquals("Sample must not contain duplicates", 5, unique.size());
+
+				for (final TestOne node : result) {
+					values.add(node.getProperty(TestOne.anInt));
+				}
+			}
+
+			// 20 samples of 5 out of 100 nodes should not all be the same
+			assertTrue(values.size() > 5);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testRandomOrderOfSmallCollections() {
+
+		try {
+
+			final TestSix hub               = createHub(3);
+			final Set<List<Integer>> orders = new HashSet<>();
+
+			for (int i=0; i<50; i++) {
+
+				final List<Integer> order = new ArrayList<>();
+
+				for (final TestOne node : hub.getProperty(TestSix.randomTestOnes)) {
+					order.add(node.getProperty(TestOne.anInt));
+				}
+
+				assertEquals(3, order.size());
+				orders.add(order);
+			}
+
+			// fewer nodes than requested must still be returned in random order
+			assertTrue(orders.size() > 1);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	public void testRandomRelatedNodesVisibility() {
+
+		try {
+
+			final TestSix hub = createHub(20);
+
+			try {
+				app.beginTx();
+
+				hub.setProperty(AbstractNode.visibleToPublicUsers, true);
+
+				for (final TestOne node : hub.getProperty(TestSix.oneToManyTestOnes)) {
+
+					if (node.getProperty(TestOne.anInt) % 10 == 0) {
+						node.setProperty(AbstractNode.visibleToPublicUsers, true);
+					}
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final SecurityContext publicContext = SecurityContext.getInstance(null, AccessMode.Frontend);
+			final TestSix publicHub             = StructrApp.getInstance(publicContext).get(TestSix.class, hub.getUuid());
+			final Set<Integer> values           = new HashSet<>();
+
+			for (final TestOne node : publicHub.getProperty(TestSix.randomTestOnes)) {
+				values.add(node.getProperty(TestOne.anInt));
+			}
+
+			// only the two visible nodes may be sampled
+			assertEquals(new HashSet<>(Arrays.asList(0, 10)), values);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	// ----- private methods -----
+	private TestSix createHub(final int size) throws FrameworkException {
+
+		try {
+			app.beginTx();
+
+			final TestSix hub = app.create(TestSix.class);
+
+			for (int i=0; i<size; i++) {
+
+				final TestOne node = app.create(TestOne.class, new NodeAttribute(TestOne.anInt, i));
+				app.create(hub, node, SixOneOneToMany.class);
+			}
+
+			app.commitTx();
+
+			return hub;
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+
+	private <T extends AbstractNodeCollector<TestOne> & BoundedNodeCollector<TestOne>> List<TestOne> collect(final T collector, final TestSix hub) {
+
+		final Iterable<Node> nodes = collector.getTraversalDescription(securityContext).traverse(hub.getNode()).nodes();
+
+		return collector.collect(new NodeFactory<TestOne>(securityContext), nodes);
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.ResourceAccess;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.search.CheckUniquenessCommand;
+
+/**
+ * Test index-backed uniqueness validation.
+ *
+ * All tests are executed in superuser context
+ *
+ * @author Christian Morgner
+ */
+public class UniquenessTest extends StructrTest {
+
+	private static final Logger logger = Logger.getLogger(UniquenessTest.class.getName());
+
+	@Override
+	public void test00DbAvailable() {
+		super.test00DbAvailable();
+	}
+
+	public void test01UniqueInSeparateTransactions() {
+
+		try {
+
+			final ResourceAccess first = createResourceAccess("/test");
+
+			// setting the same value on the same entity again is allowed
+			try {
+				app.beginTx();
+				first.setProperty(ResourceAccess.signature, "/test");
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			try {
+
+				createResourceAccess("/test");
+				fail("Duplicate value in separate transaction should have failed");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals(422, fex.getStatus());
+			}
+
+			// different value is allowed
+			createResourceAccess("/test2");
+
+			assertEquals(first.getUuid(), app.command(CheckUniquenessCommand.class).execute(createResourceAccess("/test3"), ResourceAccess.class, ResourceAccess.signature, "/test"));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test02UniqueInSameTransaction() {
+
+		try {
+
+			app.beginTx();
+
+			app.create(ResourceAccess.class, new NodeAttribute(ResourceAccess.signature, "/same"), new NodeAttribute(ResourceAccess.flags, 0L));
+			app.create(ResourceAccess.class, new NodeAttribute(ResourceAccess.signature, "/same"), new NodeAttribute(ResourceAccess.flags, 0L));
+
+			app.commitTx();
+
+			fail("Duplicate value in same transaction should have failed");
+
+		} catch (FrameworkException fex) {
+
+			assertEquals(422, fex.getStatus());
+
+		} finally {
+
+			app.finishTx();
+		}
+
+		try {
+
+			// nothing must have been created
+			assertEquals(0, app.nodeQuery(ResourceAccess.class).getAsList().size());
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test03SwapValuesInSameTransaction() {
+
+		try {
+
+			final ResourceAccess first  = createResourceAccess("/first");
+			final ResourceAccess second = createResourceAccess("/second");
+
+			try {
+				app.beginTx();
+
+				first.setProperty(ResourceAccess.signature, "/tmp");
+				second.setProperty(ResourceAccess.signature, "/first");
+				first.setProperty(ResourceAccess.signature, "/second");
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals("/second", first.getProperty(ResourceAccess.signature));
+			assertEquals("/first", second.getProperty(ResourceAccess.signature));
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	public void test04DeletedAndHiddenNodesAreIgnored() {
+
+		try {
+
+			final ResourceAccess deleted = createResourceAccess("/deleted");
+			final ResourceAccess hidden  = createResourceAccess("/hidden");
+
+			try {
+				app.beginTx();
+
+				deleted.setProperty(AbstractNode.deleted, true);
+				hidden.setProperty(AbstractNode.hidden, true);
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			// soft-deleted and hidden nodes are not found by a node query, so they don't conflict
+			final ResourceAccess other = createResourceAccess("/other");
+
+			assertNull(app.command(CheckUniquenessCommand.class).execute(other, ResourceAccess.class, ResourceAccess.signature, "/deleted"));
+			assertNull(app.command(CheckUniquenessCommand.class).execute(other, ResourceAccess.class, ResourceAccess.signature, "/hidden"));
+
+			createResourceAccess("/deleted");
+			createResourceAccess("/hidden");
+
+		} catch (FrameworkException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		}
+	}
+
+	// ----- private methods -----
+	private ResourceAccess createResourceAccess(final String signature) throws FrameworkException {
+
+		try {
+			app.beginTx();
+
+			final ResourceAccess resourceAccess = app.create(ResourceAccess.class, new NodeAttribute(ResourceAccess.signature, signature), new NodeAttribute(ResourceAccess.flags, 0L));
+
+			app.commitTx();
+
+			return resourceAccess;
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
+}
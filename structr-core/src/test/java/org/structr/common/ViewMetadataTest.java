@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.common;
+
+import java.util.Arrays;
+import java.util.Set;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.TestOne;
+import org.structr.core.property.PropertyKey;
+import org.structr.schema.ConfigurationProvider;
+
+/**
+ * Test the view metadata snapshot of the configuration provider.
+ *
+ * @author Christian Morgner
+ */
+public class ViewMetadataTest extends StructrTest {
+
+	public void testViewMetadata() {
+
+		final ConfigurationProvider config = StructrApp.getConfiguration();
+		final Set<PropertyKey> publicView  = config.getPropertySet(TestOne.class, PropertyView.Public);
+
+		// the snapshot is re-used between calls
+		assertSame(publicView, config.getPropertySet(TestOne.class, PropertyView.Public));
+		assertSame(config.getPropertyViews(), config.getPropertyViews());
+		assertTrue(config.getPropertyViews().contains(PropertyView.Public));
+
+		// precomputed index keys
+		final PropertyKey[] indexedKeys = config.getIndexedPropertyKeys(TestOne.class);
+		assertTrue(Arrays.asList(indexedKeys).contains(AbstractNode.name));
+
+		for (final PropertyKey key : indexedKeys) {
+			assertTrue(key.isIndexed());
+		}
+
+		// unknown views are empty
+		assertTrue(config.getPropertySet(TestOne.class, "nonexistingView").isEmpty());
+
+		// registering a new view replaces the snapshot
+		config.registerPropertySet(TestOne.class, "metadataTestView", TestOne.anInt);
+
+		assertTrue(config.getPropertyViews().contains("metadataTestView"));
+		assertTrue(config.getPropertySet(TestOne.class, "metadataTestView").contains(TestOne.anInt));
+		assertEquals(publicView, config.getPropertySet(TestOne.class, PropertyView.Public));
+
+		try {
+
+			config.getPropertySet(TestOne.class, PropertyView.Public).clear();
+			fail("Property sets must be read-only");
+
+		} catch (UnsupportedOperationException expected) {
+		}
+	}
+}
@@ -42,6 +42,7 @@ public class TestOne extends AbstractNode {
 	public static final Property<Double>    aDouble   = new DoubleProperty("aDouble").indexed().indexedWhenEmpty();
 	public static final Property<Date>      aDate     = new ISO8601DateProperty("aDate").indexed().indexedWhenEmpty();
 	public static final Property<String>    aString   = new StringProperty("aString").indexed().indexedWhenEmpty();
+	public static final Property<String>    aText     = new StringProperty("aText").substringIndexed();
 	
 	public static final Property<TestTwo>   testTwo   = new EndNode<>("testTwo",   OneTwoOneToOne.class);
 	public static final Property<TestThree> testThree = new EndNode<>("testThree", OneThreeOneToOne.class);
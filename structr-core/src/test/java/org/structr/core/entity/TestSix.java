@@ -19,9 +19,15 @@
 package org.structr.core.entity;
 
 import java.util.List;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.structr.core.property.CollectionSumProperty;
+import org.structr.core.property.ElementCounter;
 import org.structr.core.property.EndNodes;
 import org.structr.core.property.Property;
 import org.structr.core.property.EndNode;
+import org.structr.core.property.TraverserCollectionProperty;
+import org.structr.core.traversal.RandomRelatedNodes;
 
 /**
  *
@@ -40,4 +46,11 @@ public class TestSix extends AbstractNode {
 	public static final Property<List<TestThree>> oneToManyTestThreesCascadeBoth       = new EndNodes<>("oneToManyTestThreesCascadeBoth",      SixThreeOneToManyCascadeBoth.class);
 	
 	public static final Property<List<TestNine>>  oneToManyTestNinesCascadeConstraint  = new EndNodes<>("oneToManyTestNinesCascadeConstraint", SixNineOneToManyCascadeConstraint.class);
+
+	public static final Property<Integer>         manyToManyTestOnesCount              = new ElementCounter("manyToManyTestOnesCount", manyToManyTestOnes).materialized().visibilityDependent();
+	public static final Property<Integer>         manyToManyTestOnesSum                = new CollectionSumProperty<>("manyToManyTestOnesSum", manyToManyTestOnes, TestOne.anInt).materialized().visibilityDependent();
+	public static final Property<Integer>         manyToManyTestOnesTotalCount         = new ElementCounter("manyToManyTestOnesTotalCount", manyToManyTestOnes).materialized();
+	public static final Property<Integer>         manyToManyTestOnesTotalSum           = new CollectionSumProperty<>("manyToManyTestOnesTotalSum", manyToManyTestOnes, TestOne.anInt).materialized();
+
+	public static final Property<List<TestOne>>   randomTestOnes                       = new TraverserCollectionProperty("randomTestOnes", new RandomRelatedNodes(DynamicRelationshipType.withName("ONE_TO_MANY"), Direction.OUTGOING, TestOne.class, 1, 5));
 }
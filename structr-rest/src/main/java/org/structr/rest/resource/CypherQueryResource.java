@@ -21,19 +21,25 @@ package org.structr.rest.resource;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.Result;
+import org.structr.core.cypher.CypherQueryCache;
 import org.structr.core.graph.CypherQueryCommand;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
+import org.structr.rest.exception.NotAllowedException;
 import org.structr.rest.exception.NotFoundException;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.servlet.http.HttpServletRequest;
 import org.structr.core.app.StructrApp;
+import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 
 //~--- classes ----------------------------------------------------------------
@@ -59,7 +65,24 @@ public class CypherQueryResource extends Resource {
 	@Override
 	public Result doGet(PropertyKey sortKey, boolean sortDescending, int pageSize, int page, String offsetId) throws FrameworkException {
 
-		throw new IllegalMethodException();
+		// statistics cover the queries of all users
+		if (securityContext == null || !securityContext.isSuperUser()) {
+
+			throw new NotAllowedException();
+		}
+
+		// return execution and result cache statistics
+		final List<GraphObject> resultList = new LinkedList<>();
+		final GraphObjectMap statistics    = new GraphObjectMap();
+
+		for (final Entry<String, Object> entry : CypherQueryCache.getInstance().getStatistics().entrySet()) {
+
+			statistics.setProperty(new GenericProperty(entry.getKey()), entry.getValue());
+		}
+
+		resultList.add(statistics);
+
+		return new Result(resultList, 1, false, false);
 
 	}
 
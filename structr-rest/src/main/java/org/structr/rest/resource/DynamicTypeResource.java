@@ -31,6 +31,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.Result;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.search.CountEntitiesCommand;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchNodeCommand;
@@ -116,6 +117,38 @@ public class DynamicTypeResource extends TypeResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	@Override
+	public int doCount() throws FrameworkException {
+
+		if (rawType != null && entityClass == null) {
+			throw new NotFoundException();
+		}
+
+		// counters and index hits are not filtered by read permissions
+		if (entityClass != null && securityContext.isSuperUser()) {
+
+			final List<SearchAttribute> searchAttributes = extractSearchableAttributes(securityContext, entityClass, request);
+			final CountEntitiesCommand countCommand      = StructrApp.getInstance(securityContext).command(CountEntitiesCommand.class);
+
+			final boolean includeDeletedAndHidden        = countsDeletedAndHidden();
+
+			if (searchAttributes.isEmpty()) {
+
+				return countCommand.execute(entityClass, false, includeDeletedAndHidden);
+			}
+
+			searchAttributes.add(0, Search.andExactType(entityClass));
+
+			final int count = countCommand.execute(searchAttributes, includeDeletedAndHidden);
+			if (count >= 0) {
+
+				return count;
+			}
+		}
+
+		return countResults();
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -41,7 +41,9 @@ import org.structr.agent.Task;
 import org.structr.core.graph.BulkChangeNodePropertyKeyCommand;
 import org.structr.core.graph.BulkDeleteSoftDeletedNodesCommand;
 import org.structr.core.graph.BulkRebuildIndexCommand;
+import org.structr.core.graph.BulkRefreshMaterializedPropertiesCommand;
 import org.structr.core.graph.BulkSetUuidCommand;
+import org.structr.core.graph.BulkRebuildDegreeCountersCommand;
 import org.structr.core.graph.SyncCommand;
 import org.structr.schema.SchemaHelper;
 
@@ -70,6 +72,8 @@ public class MaintenanceParameterResource extends Resource {
 		maintenanceCommandMap.put("deleteSoftDeletedNodes", BulkDeleteSoftDeletedNodesCommand.class);
 		maintenanceCommandMap.put("setUuid", BulkSetUuidCommand.class);
 		maintenanceCommandMap.put("sync", SyncCommand.class);
+		maintenanceCommandMap.put("refreshMaterializedProperties", BulkRefreshMaterializedPropertiesCommand.class);
+		maintenanceCommandMap.put("rebuildDegreeCounters", BulkRebuildDegreeCountersCommand.class);
 
 	}
 
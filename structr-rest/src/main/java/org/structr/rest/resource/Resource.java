@@ -92,6 +92,18 @@ public abstract class Resource {
 
 	public abstract RestMethodResult doHead() throws FrameworkException;
 
+	/**
+	 * Returns the number of results of this resource. The default
+	 * implementation evaluates the whole result set, subclasses can
+	 * override this method to count results without instantiating them.
+	 *
+	 * @return the number of results
+	 * @throws FrameworkException
+	 */
+	public int doCount() throws FrameworkException {
+		return countResults();
+	}
+
 	public RestMethodResult doOptions() throws FrameworkException {
 		return new RestMethodResult(HttpServletResponse.SC_OK);
 	}
@@ -197,6 +209,17 @@ public abstract class Resource {
 	}
 
 	// ----- protected methods -----
+	protected int countResults() throws FrameworkException {
+
+		try {
+			final Integer count = doGet(null, false, NodeFactory.DEFAULT_PAGE_SIZE, NodeFactory.DEFAULT_PAGE, null).getRawResultCount();
+			return count != null ? count : 0;
+
+		} catch (final NoResultsException nre) {
+			return 0;
+		}
+	}
+
 	protected PropertyKey findPropertyKey(final TypedIdResource typedIdResource, final TypeResource typeResource) {
 
 		Class sourceNodeType = typedIdResource.getTypeResource().getEntityClass();
@@ -319,7 +342,15 @@ public abstract class Resource {
 					}
 				}
 
-				return new DistanceSearchAttribute(street, house, postalCode, city, state, country, dist, Occur.MUST);
+				final DistanceSearchAttribute distanceSearch = new DistanceSearchAttribute(street, house, postalCode, city, state, country, dist, Occur.MUST);
+				final String nearest                         = request.getParameter(Search.NEAREST_SEARCH_KEYWORD);
+
+				// return only the given number of nearest results
+				if (StringUtils.isNotBlank(nearest)) {
+					distanceSearch.setNearest(Integer.parseInt(nearest));
+				}
+
+				return distanceSearch;
 			}
 		}
 
@@ -22,6 +22,7 @@ import org.structr.core.Result;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.search.CountEntitiesCommand;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchNodeCommand;
 import org.structr.rest.RestMethodResult;
@@ -45,6 +46,7 @@ import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.entity.Relation;
+import org.structr.core.entity.SuperUser;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
 import org.structr.core.graph.search.DistanceSearchAttribute;
@@ -202,6 +204,38 @@ public class TypeResource extends SortableResource {
 		return new Result(emptyList, null, isCollectionResource(), isPrimitiveArray());
 	}
 
+	@Override
+	public int doCount() throws FrameworkException {
+
+		if (rawType != null && entityClass == null) {
+			throw new NotFoundException();
+		}
+
+		// counters and index hits are not filtered by read permissions
+		if (entityClass != null && securityContext.isSuperUser() && SearchNodeCommand.class.equals(searchCommandType)) {
+
+			final boolean inexactSearch                  = parseInteger(request.getParameter(JsonRestServlet.REQUEST_PARAMETER_LOOSE_SEARCH)) == 1;
+			final List<SearchAttribute> searchAttributes = collectSearchAttributes(inexactSearch);
+			final CountEntitiesCommand countCommand      = StructrApp.getInstance(securityContext).command(CountEntitiesCommand.class);
+
+			final boolean includeDeletedAndHidden        = countsDeletedAndHidden();
+
+			if (searchAttributes.size() == 1) {
+
+				// type and subtypes only
+				return countCommand.execute(entityClass, true, includeDeletedAndHidden);
+			}
+
+			final int count = countCommand.execute(searchAttributes, includeDeletedAndHidden);
+			if (count >= 0) {
+
+				return count;
+			}
+		}
+
+		return countResults();
+	}
+
 	@Override
 	public RestMethodResult doPost(final Map<String, Object> propertySet) throws FrameworkException {
 
@@ -388,6 +422,18 @@ public class TypeResource extends SortableResource {
 		return searchAttributes;
 	}
 
+	// ----- protected methods -----
+	/**
+	 * Indicates whether the result count of this resource includes nodes
+	 * marked as deleted or hidden. The internal superuser context reads
+	 * them, all other security contexts filter them out in isReadable().
+	 *
+	 * @return whether deleted and hidden nodes are counted
+	 */
+	protected boolean countsDeletedAndHidden() {
+		return securityContext.getUser(false) instanceof SuperUser;
+	}
+
 	// ----- private methods -----
 	private Set<String> keys(final List<SearchAttribute> attrs) {
 
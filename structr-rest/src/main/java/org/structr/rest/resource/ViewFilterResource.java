@@ -88,6 +88,18 @@ public class ViewFilterResource extends WrappingResource {
 		throw new IllegalPathException();
 	}
 
+	@Override
+	public int doCount() throws FrameworkException {
+
+		if (wrappedResource != null) {
+
+			return wrappedResource.doCount();
+
+		}
+
+		throw new IllegalPathException();
+	}
+
 	@Override
 	public RestMethodResult doPost(Map<String, Object> propertySet) throws FrameworkException {
 
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.serialization;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.core.GraphObject;
+import org.structr.core.property.CollectionNotionProperty;
+import org.structr.core.property.EntityNotionProperty;
+import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
+
+/**
+ * Resolves the nested (related node) properties of a whole result page
+ * level by level before serialization, so that the graph reads of one
+ * nesting level run in parallel instead of one after another on the
+ * request thread. The number of prefetched entities is limited by a
+ * budget, everything beyond that budget is resolved lazily as before.
+ *
+ * Instances of this class are not thread-safe, they are meant to be used
+ * by a single {@link StreamingWriter}.
+ *
+ * @author Christian Morgner
+ */
+public class NestedPropertyPrefetcher {
+
+	private static final Logger logger = Logger.getLogger(NestedPropertyPrefetcher.class.getName());
+	private static final int CHUNK_SIZE = 50;
+
+	private final Map<GraphObject, Map<PropertyKey, Object>> values = new IdentityHashMap<>();
+	private ExecutorService executor                                = null;
+	private int budget                                              = 0;
+
+	public NestedPropertyPrefetcher(final ExecutorService executor, final int budget) {
+
+		this.executor = executor;
+		this.budget   = budget;
+	}
+
+	/**
+	 * Prefetches the nested properties of the given entities in the given
+	 * view, descending at most maxDepth levels.
+	 *
+	 * @param roots
+	 * @param view
+	 * @param maxDepth
+	 */
+	public void prefetch(final List<? extends GraphObject> roots, final String view, final int maxDepth) {
+
+		List<GraphObject> level = new ArrayList<>(roots);
+		int remaining           = budget;
+
+		// discard values of a previous, possibly interrupted run
+		values.clear();
+
+		for (int depth = 0; depth <= maxDepth && !level.isEmpty() && remaining > 0; depth++) {
+
+			final List<Future<List<Map<PropertyKey, Object>>>> futures = new ArrayList<>();
+			final List<GraphObject> nextLevel                          = new ArrayList<>();
+			final int size                                             = level.size();
+
+			// submit one task per chunk so that no entity is accessed concurrently
+			for (int i = 0; i < size; i += CHUNK_SIZE) {
+
+				futures.add(executor.submit(new PrefetchTask(level.subList(i, Math.min(size, i + CHUNK_SIZE)), view)));
+			}
+
+			int index = 0;
+
+			for (final Future<List<Map<PropertyKey, Object>>> future : futures) {
+
+				try {
+
+					for (final Map<PropertyKey, Object> properties : future.get()) {
+
+						final GraphObject obj = level.get(index++);
+
+						values.put(obj, properties);
+
+						for (final Object value : properties.values()) {
+							remaining -= collect(value, nextLevel, remaining);
+						}
+					}
+
+				} catch (Throwable t) {
+
+					logger.log(Level.WARNING, "Unable to prefetch nested properties: {0}", t.getMessage());
+
+					// skip the entities of the failed chunk, they will be resolved lazily
+					index = Math.min(size, ((index / CHUNK_SIZE) + 1) * CHUNK_SIZE);
+				}
+			}
+
+			level = nextLevel;
+		}
+	}
+
+	public boolean contains(final GraphObject obj, final PropertyKey key) {
+
+		final Map<PropertyKey, Object> properties = values.get(obj);
+
+		return properties != null && properties.containsKey(key);
+	}
+
+	public Object get(final GraphObject obj, final PropertyKey key) {
+
+		final Map<PropertyKey, Object> properties = values.get(obj);
+		if (properties != null) {
+
+			return properties.get(key);
+		}
+
+		return null;
+	}
+
+	public void clear() {
+		values.clear();
+	}
+
+	/**
+	 * Indicates whether the given property key resolves related entities
+	 * and should therefore be prefetched.
+	 *
+	 * @param key
+	 * @return whether the key should be prefetched
+	 */
+	public static boolean isNestedProperty(final PropertyKey key) {
+		return key instanceof RelationProperty || key instanceof CollectionNotionProperty || key instanceof EntityNotionProperty;
+	}
+
+	// ----- private methods -----
+	private int collect(final Object value, final List<GraphObject> nextLevel, final int limit) {
+
+		int count = 0;
+
+		if (limit <= 0) {
+
+			return 0;
+
+		} else if (value instanceof GraphObject) {
+
+			nextLevel.add((GraphObject)value);
+			count++;
+
+		} else if (value instanceof Iterable) {
+
+			for (final Object element : (Iterable)value) {
+
+				if (count >= limit) {
+					break;
+				}
+
+				if (element instanceof GraphObject) {
+
+					nextLevel.add((GraphObject)element);
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	// ----- nested classes -----
+	private static class PrefetchTask implements Callable<List<Map<PropertyKey, Object>>> {
+
+		private List<GraphObject> entities = null;
+		private String view                = null;
+
+		public PrefetchTask(final List<GraphObject> entities, final String view) {
+
+			this.entities = entities;
+			this.view     = view;
+		}
+
+		@Override
+		public List<Map<PropertyKey, Object>> call() throws Exception {
+
+			final List<Map<PropertyKey, Object>> result = new ArrayList<>(entities.size());
+
+			for (final GraphObject obj : entities) {
+
+				final Map<PropertyKey, Object> properties = new LinkedHashMap<>();
+				final Iterable<PropertyKey> keys          = obj.getPropertyKeys(view);
+
+				if (keys != null) {
+
+					for (final PropertyKey key : keys) {
+
+						if (isNestedProperty(key)) {
+
+							try {
+								properties.put(key, obj.getProperty(key));
+
+							} catch (Throwable t) {
+
+								// ignore, property will be resolved lazily
+							}
+						}
+					}
+				}
+
+				result.add(properties);
+			}
+
+			return result;
+		}
+	}
+}
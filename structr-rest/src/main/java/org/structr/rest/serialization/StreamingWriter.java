@@ -23,11 +23,14 @@ import java.util.List;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,7 +38,10 @@ import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.Value;
+import org.structr.core.app.StructrApp;
 import org.structr.core.converter.PropertyConverter;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.entity.AbstractRelationship;
 import org.structr.core.property.Property;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
@@ -49,7 +55,10 @@ public abstract class StreamingWriter {
 
 	private static final Logger logger                   = Logger.getLogger(StreamingWriter.class.getName());
 	private static final long MAX_SERIALIZATION_TIME     = TimeUnit.SECONDS.toMillis(30);
+	private static final int MAX_CACHED_PROPERTY_PLANS   = 10000;
 
+	private final Map<Class, Map<String, SerializationPlan>> planCache = new LinkedHashMap<>();
+	private final Map<PropertyKey, PropertyPlan> propertyPlans         = new IdentityHashMap<>();
 	private final Map<Class, Serializer> serializerCache = new LinkedHashMap<>();
 	private final Map<Class, Serializer> serializers     = new LinkedHashMap<>();
 	private final Serializer<GraphObject> root           = new RootSerializer();
@@ -59,10 +68,24 @@ public abstract class StreamingWriter {
 	private DecimalFormat decimalFormat                  = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
 	private PropertyKey idProperty                       = GraphObject.id;
 	private SecurityContext securityContext              = null;
+	private NestedPropertyPrefetcher prefetcher          = null;
 	private Value<String> propertyView                   = null;
 	private boolean indent                               = true;
+	private long viewMetadataVersion                     = -1;
 
 	public abstract RestWriter getRestWriter(final Writer writer);
+
+	/**
+	 * Enables prefetching of nested properties for collection results,
+	 * using the given executor to resolve up to budget related entities
+	 * per result in parallel.
+	 *
+	 * @param executor
+	 * @param budget
+	 */
+	public void enablePrefetching(final ExecutorService executor, final int budget) {
+		this.prefetcher = new NestedPropertyPrefetcher(executor, budget);
+	}
 	
 	public StreamingWriter(Value<String> propertyView, boolean indent, final int outputNestingDepth) {
 
@@ -94,6 +117,8 @@ public abstract class StreamingWriter {
 	public void stream(final Writer output, final Result result, final String baseUrl) throws IOException {
 		
 		long t0 = System.nanoTime();
+
+		validatePlans();
 		
 		RestWriter writer = getRestWriter(output);
 
@@ -112,6 +137,7 @@ public abstract class StreamingWriter {
 		String sortKey = result.getSortKey();
 		String sortOrder = result.getSortOrder();
 		GraphObject metaData = result.getMetaData();
+		String nextPageCursor = result.getNextPageCursor();
 		
 		// flush after 20 elements by default
 		int flushSize = pageSize != null ? pageSize.intValue() : 20;
@@ -121,6 +147,10 @@ public abstract class StreamingWriter {
 		// open result set
 		writer.beginObject();
 		
+		if(nextPageCursor != null) {
+			writer.name("next_page_cursor").value(nextPageCursor);
+		}
+
 		if(page != null) {
 			writer.name("page").value(page);
 		}
@@ -176,6 +206,10 @@ public abstract class StreamingWriter {
 
 				if(result.isCollection()) {
 
+					if (prefetcher != null && outputNestingDepth > 0) {
+						prefetcher.prefetch(results, localPropertyView, outputNestingDepth);
+					}
+
 					writer.name("result").beginArray();
 
 					// serialize list of results
@@ -201,6 +235,10 @@ public abstract class StreamingWriter {
 
 					writer.endArray();
 
+					if (prefetcher != null) {
+						prefetcher.clear();
+					}
+
 				} else {
 
 					writer.name("result");
@@ -291,6 +329,92 @@ public abstract class StreamingWriter {
 		}
 	}
 
+	/**
+	 * Returns the cached serialization plan for the given type and view.
+	 * A plan holds the property keys of the given type and view, along
+	 * with their output names, converters and value serializers. Since
+	 * this writer is confined to a single thread, no synchronization is
+	 * needed here.
+	 *
+	 * @param type
+	 * @param view
+	 * @return the serialization plan
+	 */
+	private SerializationPlan getSerializationPlan(final Class type, final String view) {
+
+		Map<String, SerializationPlan> plans = planCache.get(type);
+		if (plans == null) {
+
+			plans = new LinkedHashMap<>();
+			planCache.put(type, plans);
+		}
+
+		SerializationPlan plan = plans.get(view);
+		if (plan == null) {
+
+			plan = new SerializationPlan(type);
+			plans.put(view, plan);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Returns the cached output name and input converter for the given
+	 * property key. The converter can be re-used because the security
+	 * context of this writer never changes.
+	 *
+	 * @param key
+	 * @return the property plan
+	 */
+	private PropertyPlan getPropertyPlan(final PropertyKey key) {
+
+		PropertyPlan plan = propertyPlans.get(key);
+		if (plan == null) {
+
+			// plans are discarded on schema changes, see validatePlans(),
+			// but we limit the size of the cache here as well
+			if (propertyPlans.size() > MAX_CACHED_PROPERTY_PLANS) {
+
+				propertyPlans.clear();
+				planCache.clear();
+			}
+
+			plan = new PropertyPlan(key);
+			propertyPlans.put(key, plan);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Discards all cached plans if the view metadata snapshot has been
+	 * replaced since the plans were built, e.g. by a schema reload. The
+	 * plans would otherwise keep the types and property keys of the old
+	 * schema.
+	 */
+	private void validatePlans() {
+
+		final long version = StructrApp.getConfiguration().getViewMetadataVersion();
+		if (version != viewMetadataVersion) {
+
+			propertyPlans.clear();
+			planCache.clear();
+
+			viewMetadataVersion = version;
+		}
+	}
+
+	private Object getPropertyValue(final GraphObject source, final PropertyKey key) {
+
+		if (prefetcher != null && prefetcher.contains(source, key)) {
+
+			return prefetcher.get(source, key);
+		}
+
+		return source.getProperty(key);
+	}
+
 	private void serializePrimitive(RestWriter writer, final Object value) throws IOException {
 
 		if (value != null) {
@@ -314,12 +438,75 @@ public abstract class StreamingWriter {
 		}
 	}
 	
+	/**
+	 * Writes the given value directly if it is of one of the primitive
+	 * value types, without looking up a serializer.
+	 *
+	 * @param writer
+	 * @param value
+	 * @return whether the value was written
+	 * @throws IOException
+	 */
+	private boolean serializeFastPath(final RestWriter writer, final Object value) throws IOException {
+
+		if (value instanceof String) {
+
+			writer.value((String)value);
+			return true;
+		}
+
+		if (value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float || value instanceof Short || value instanceof Byte) {
+
+			writer.value((Number)value);
+			return true;
+		}
+
+		if (value instanceof Boolean) {
+
+			writer.value((Boolean)value);
+			return true;
+		}
+
+		if (value instanceof Character) {
+
+			writer.value(value.toString());
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether the property keys of the given type only depend on
+	 * the type and the view, i.e. whether the type uses the default
+	 * implementation of getPropertyKeys.
+	 *
+	 * @param type
+	 * @return whether the property keys of the given type can be cached
+	 */
+	private static boolean hasStaticPropertyKeys(final Class type) {
+
+		try {
+
+			final Class declaringClass = type.getMethod("getPropertyKeys", String.class).getDeclaringClass();
+
+			return AbstractNode.class.equals(declaringClass) || AbstractRelationship.class.equals(declaringClass);
+
+		} catch (NoSuchMethodException nsmex) {}
+
+		return false;
+	}
+
 	public abstract class Serializer<T> {
 		
 		public abstract void serialize(RestWriter writer, T value, String localPropertyView, int depth) throws IOException;
 		
 		public void serializeRoot(RestWriter writer, Object value, String localPropertyView, int depth) throws IOException {
 			
+			if (serializeFastPath(writer, value)) {
+				return;
+			}
+
 			if (value != null) {
 				
 				Serializer serializer = getSerializerForType(value.getClass());
@@ -335,9 +522,15 @@ public abstract class StreamingWriter {
 		}
 		
 		public void serializeProperty(RestWriter writer, PropertyKey key, Object value, String localPropertyView, int depth) {
+			serializeProperty(writer, getPropertyPlan(key), value, localPropertyView, depth);
+		}
+
+		public void serializeProperty(RestWriter writer, PropertyPlan plan, Object value, String localPropertyView, int depth) {
+
+			final PropertyKey key = plan.key;
 
 			try {
-				PropertyConverter converter = key.inputConverter(securityContext);
+				PropertyConverter converter = plan.converter;
 
 				if (converter != null) {
 
@@ -346,11 +539,11 @@ public abstract class StreamingWriter {
 					// ignore conversion errors
 					try { convertedValue = converter.revert(value); } catch (Throwable t) {}
 					
-					serializeRoot(writer, convertedValue, localPropertyView, depth);
+					serializeValue(writer, plan, convertedValue, localPropertyView, depth);
 
 				} else {
 
-					serializeRoot(writer, value, localPropertyView, depth);
+					serializeValue(writer, plan, value, localPropertyView, depth);
 				}
 
 			} catch(Throwable t) {
@@ -368,6 +561,26 @@ public abstract class StreamingWriter {
 				});
 			}
 		}
+
+		private void serializeValue(RestWriter writer, PropertyPlan plan, Object value, String localPropertyView, int depth) throws IOException {
+
+			if (serializeFastPath(writer, value)) {
+				return;
+			}
+
+			if (value != null) {
+
+				final Serializer serializer = plan.getSerializer(value.getClass());
+				if (serializer != null) {
+
+					serializer.serialize(writer, value, localPropertyView, depth);
+
+					return;
+				}
+			}
+
+			serializePrimitive(writer, value);
+		}
 	}
 	
 	public class RootSerializer extends Serializer<GraphObject> {
@@ -398,36 +611,181 @@ public abstract class StreamingWriter {
 				}
 				*/
 				
-				// property keys
-				Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
-				if(keys != null) {
+				final SerializationPlan plan = getSerializationPlan(source.getClass(), localPropertyView);
 
-					for (PropertyKey key : keys) {
+				if (plan.isStatic(source)) {
 
-						Object value = source.getProperty(key);
-						PropertyKey localKey = key;
+					// property keys of this type and view are known already
+					for (final PropertyPlan propertyPlan : plan.getProperties(source, localPropertyView)) {
 
-						if (localKey.equals(idProperty)) {
-							localKey = id;
-						}
+						writeProperty(writer, source, propertyPlan, localPropertyView, depth);
+					}
 
-						if (value != null) {
+				} else {
+
+					// property keys depend on the entity itself
+					Iterable<PropertyKey> keys = source.getPropertyKeys(localPropertyView);
+					if(keys != null) {
 
-							writer.name(localKey.jsonName());
-							serializeProperty(writer, key, value, localPropertyView, depth+1);
+						int index = 0;
 
-						} else {
+						for (PropertyKey key : keys) {
 
-							writer.name(localKey.jsonName()).nullValue();
+							writeProperty(writer, source, plan.get(index++, key), localPropertyView, depth);
 						}
+
+						plan.truncate(index);
 					}
 				}
 			}
 			
 			writer.endObject(source);
 		}
+
+		private void writeProperty(RestWriter writer, GraphObject source, PropertyPlan propertyPlan, String localPropertyView, int depth) throws IOException {
+
+			final Object value = getPropertyValue(source, propertyPlan.key);
+
+			if (value != null) {
+
+				writer.name(propertyPlan.jsonName);
+				serializeProperty(writer, propertyPlan, value, localPropertyView, depth+1);
+
+			} else {
+
+				writer.name(propertyPlan.jsonName).nullValue();
+			}
+		}
 	}
 	
+	/**
+	 * The property plans of a given type and view. For types whose property
+	 * keys only depend on the type and the view, the keys are resolved once
+	 * and re-used for every entity. For all other types (and for custom
+	 * views), the plan is validated against the actual property keys of
+	 * each entity while serializing, so instance-specific property sets are
+	 * still serialized correctly, they just benefit less from the cache.
+	 */
+	private class SerializationPlan {
+
+		private final ArrayList<PropertyPlan> entries = new ArrayList<>();
+		private PropertyPlan[] properties             = null;
+		private boolean staticKeys                    = false;
+
+		public SerializationPlan(final Class type) {
+			this.staticKeys = hasStaticPropertyKeys(type);
+		}
+
+		public boolean isStatic(final GraphObject source) {
+
+			if (staticKeys && source instanceof AbstractNode) {
+
+				// custom views are specific to the request
+				final SecurityContext sourceContext = ((AbstractNode)source).getSecurityContext();
+
+				return sourceContext == null || !sourceContext.hasCustomView();
+			}
+
+			return staticKeys;
+		}
+
+		public PropertyPlan[] getProperties(final GraphObject source, final String view) {
+
+			if (properties == null) {
+
+				final Iterable<PropertyKey> keys = source.getPropertyKeys(view);
+				final List<PropertyPlan> list    = new ArrayList<>();
+
+				if (keys != null) {
+
+					for (final PropertyKey key : keys) {
+						list.add(getPropertyPlan(key));
+					}
+				}
+
+				properties = list.toArray(new PropertyPlan[list.size()]);
+			}
+
+			return properties;
+		}
+
+		public PropertyPlan get(final int index, final PropertyKey key) {
+
+			if (index < entries.size()) {
+
+				final PropertyPlan entry = entries.get(index);
+				if (entry.key == key) {
+
+					return entry;
+				}
+
+				final PropertyPlan newEntry = getPropertyPlan(key);
+				entries.set(index, newEntry);
+
+				return newEntry;
+			}
+
+			final PropertyPlan newEntry = getPropertyPlan(key);
+			entries.add(newEntry);
+
+			return newEntry;
+		}
+
+		public void truncate(final int size) {
+
+			while (entries.size() > size) {
+				entries.remove(entries.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Output name, input converter and value serializer of a single
+	 * property key.
+	 */
+	public class PropertyPlan {
+
+		private PropertyKey key             = null;
+		private PropertyConverter converter = null;
+		private String jsonName             = null;
+		private Class valueType             = null;
+		private Serializer serializer       = null;
+
+		public PropertyPlan(final PropertyKey key) {
+
+			this.key       = key;
+			this.converter = key.inputConverter(securityContext);
+
+			if (key.equals(idProperty)) {
+
+				this.jsonName = id.jsonName();
+
+			} else {
+
+				this.jsonName = key.jsonName();
+			}
+		}
+
+		/**
+		 * Returns the serializer for the given value type, which is
+		 * cached here because values of a property are usually of the
+		 * same type.
+		 *
+		 * @param type
+		 * @return the serializer or null
+		 */
+		public Serializer getSerializer(final Class type) {
+
+			if (type != valueType) {
+
+				this.serializer = getSerializerForType(type);
+				this.valueType  = type;
+			}
+
+			return serializer;
+		}
+	}
+
 	public class IterableSerializer extends Serializer<Iterable> {
 
 		@Override
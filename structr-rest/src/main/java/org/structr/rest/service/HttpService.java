@@ -35,6 +35,8 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jetty.server.Authentication.User;
@@ -62,6 +64,7 @@ import org.structr.common.StructrConf;
 import org.structr.core.Command;
 import org.structr.core.RunnableService;
 import org.structr.core.Services;
+import org.structr.core.auth.SessionPrincipalCache;
 import org.structr.core.auth.SuperUserAuthenticator;
 import org.structr.rest.DefaultResourceProvider;
 import org.structr.rest.ResourceProvider;
@@ -239,6 +242,19 @@ public class HttpService implements RunnableService {
 		final ServletContextHandler servletContext = new ServletContextHandler(server, contextPath, true, true);
 		final List<Connector> connectors = new LinkedList<>();
 
+		// remove expired sessions from the session cache
+		servletContext.getSessionHandler().addEventListener(new HttpSessionListener() {
+
+			@Override
+			public void sessionCreated(final HttpSessionEvent event) {
+			}
+
+			@Override
+			public void sessionDestroyed(final HttpSessionEvent event) {
+				SessionPrincipalCache.getInstance().invalidate(event.getSession().getId());
+			}
+		});
+
 		// create resource collection from base path & source JAR
 		try {
 			servletContext.setBaseResource(new ResourceCollection(Resource.newResource(basePath), JarResource.newJarResource(Resource.newResource(sourceJarName))));
@@ -18,6 +18,9 @@
  */
 package org.structr.rest.servlet;
 
+import au.com.bytecode.opencsv.CSVReader;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 
@@ -35,7 +38,10 @@ import org.structr.rest.resource.Resource;
 
 //~--- JDK imports ------------------------------------------------------------
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 
@@ -52,17 +58,31 @@ import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.structr.common.PropertyView;
+import org.structr.common.error.TypeToken;
+import org.structr.core.Services;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.auth.Authenticator;
-import org.structr.core.entity.AbstractNode;
+import org.structr.core.converter.PropertyConverter;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.Property;
+import org.structr.core.property.PropertyMap;
 import org.structr.rest.ResourceProvider;
+import org.structr.rest.adapter.FrameworkExceptionGSONAdapter;
+import org.structr.rest.resource.TypeResource;
 import org.structr.rest.service.HttpServiceServlet;
 
 //~--- classes ----------------------------------------------------------------
 
 /**
  * This servlet produces CSV (comma separated value) lists out of a search result
+ * and imports CSV uploads into the database.
+ *
+ * Unpaged and unsorted collection requests are exported page by page in UUID
+ * order, following the paging cursor of each page, so that large results are
+ * streamed without being loaded into memory at once. A POST request parses the
+ * uploaded CSV document as a stream, maps the columns of its header row to the
+ * property keys of the resource type and commits the created objects in batches.
  *
  * @author Axel Morgner
  */
@@ -72,20 +92,23 @@ public class CsvServlet extends HttpServiceServlet {
 	
 	private static final String DELIMITER = ";";
 	private static final String REMOVE_LINE_BREAK_PARAM = "nolinebreaks";
+	private static final String REQUEST_PARAMETER_BATCH_SIZE = "batchSize";
+	private static final int OUTPUT_BUFFER_SIZE = 65536;
 
 	//~--- fields ---------------------------------------------------------
 
 	private Map<Pattern, Class<? extends Resource>> resourceMap = new LinkedHashMap<>();
 	private Value<String> propertyView                          = null;
-	private String defaultPropertyView                          = PropertyView.Public;
-	private PropertyKey defaultIdProperty                       = AbstractNode.id;
-	private ResourceProvider resourceProvider                   = null;
+	private Gson gson                                           = null;
 
 	private static boolean removeLineBreaks = false;
 
 	//~--- constructors ---------------------------------------------------
 
-	public CsvServlet(final ResourceProvider resourceProvider, final String defaultPropertyView, final PropertyKey<String> idProperty) {
+	public CsvServlet() {
+	}
+
+	public CsvServlet(final ResourceProvider resourceProvider, final String defaultPropertyView, final Property<String> idProperty) {
 
 		this.resourceProvider    = resourceProvider;
 		this.defaultPropertyView = defaultPropertyView;
@@ -104,6 +127,13 @@ public class CsvServlet extends HttpServiceServlet {
 		// initialize variables
 		this.propertyView = new ThreadLocalPropertyView();
 
+		// error output of the import
+		this.gson = new GsonBuilder()
+			.setPrettyPrinting()
+			.serializeNulls()
+			.registerTypeHierarchyAdapter(FrameworkException.class, new FrameworkExceptionGSONAdapter())
+			.create();
+
 	}
 
 	@Override
@@ -141,6 +171,7 @@ public class CsvServlet extends HttpServiceServlet {
 			String sortOrder         = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_SORT_ORDER);
 			String sortKeyName       = request.getParameter(JsonRestServlet.REQUEST_PARAMETER_SORT_KEY);
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
+			boolean paged            = pageSizeParameter != null || pageParameter != null || offsetId != null;
 			int pageSize             = parseInt(pageSizeParameter, NodeFactory.DEFAULT_PAGE_SIZE);
 			int page                 = parseInt(pageParameter, NodeFactory.DEFAULT_PAGE);
 			PropertyKey sortKey      = null;
@@ -157,6 +188,20 @@ public class CsvServlet extends HttpServiceServlet {
 			// Should line breaks be removed?
 			removeLineBreaks = StringUtils.equals(request.getParameter(REMOVE_LINE_BREAK_PARAM), "1");
 			
+			// unpaged and unsorted collections are streamed page by page
+			if (!paged && sortKey == null && resource.isCollectionResource()) {
+
+				Writer writer = new BufferedWriter(response.getWriter(), OUTPUT_BUFFER_SIZE);
+
+				writeUtf8Bom(writer);
+				writePages(resource, sortDescending, writer);
+				response.setStatus(HttpServletResponse.SC_OK);
+				writer.append("\n");    // useful newline
+				writer.flush();
+				writer.close();
+
+				return;
+			}
 			
 			// do action
 			Result result = resource.doGet(sortKey, sortDescending, pageSize, page, offsetId);
@@ -184,7 +229,7 @@ public class CsvServlet extends HttpServiceServlet {
 
 				result.setQueryTime(decimalFormat.format((queryTimeEnd - queryTimeStart) / 1000000000.0));
 
-				Writer writer = response.getWriter();
+				Writer writer = new BufferedWriter(response.getWriter(), OUTPUT_BUFFER_SIZE);
 
 				writeUtf8Bom(writer);
 				
@@ -252,6 +297,80 @@ public class CsvServlet extends HttpServiceServlet {
 
 	}
 
+	@Override
+	protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws UnsupportedEncodingException {
+
+		SecurityContext securityContext = null;
+
+		try {
+
+			Authenticator authenticator     = getAuthenticator();
+			securityContext = authenticator.initializeAndExamineRequest(request, response);
+
+			request.setCharacterEncoding("UTF-8");
+			response.setCharacterEncoding("UTF-8");
+			response.setContentType("text/plain; charset=utf-8");
+
+			if (securityContext != null) {
+
+				// evaluate constraint chain
+				Resource resource        = ResourceHelper.optimizeNestedResourceChain(ResourceHelper.parsePath(securityContext, request, resourceMap, propertyView, defaultIdProperty), defaultIdProperty);
+				String resourceSignature = resource.getResourceSignature();
+
+				// check access rights for this resource
+				authenticator.checkResourceAccess(request, resourceSignature, propertyView.get(securityContext));
+
+				// request parameter overrides configured batch size
+				int defaultBatchSize = parseInt(StructrApp.getConfigurationValue(Services.CSV_IMPORT_BATCH_SIZE, "1000"), 1000);
+				int batchSize        = Math.max(1, parseInt(request.getParameter(REQUEST_PARAMETER_BATCH_SIZE), defaultBatchSize));
+
+				// do action
+				int count = importCsv(securityContext, resource, request.getReader(), batchSize);
+
+				response.setStatus(HttpServletResponse.SC_CREATED);
+				response.getWriter().append(count + " objects imported\n");
+
+			} else {
+
+				response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			}
+
+		} catch (FrameworkException frameworkException) {
+
+			// set status & write JSON output
+			response.setStatus(frameworkException.getStatus());
+			response.setContentType("application/json; charset=utf-8");
+
+			try {
+				gson.toJson(frameworkException, response.getWriter());
+				response.getWriter().println();
+
+			} catch (IOException ioex) {
+
+				logger.log(Level.WARNING, "Unable to write response: {0}", ioex.getMessage());
+			}
+
+		} catch (Throwable t) {
+
+			logger.log(Level.WARNING, "Exception in POST", t);
+
+			int code = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+
+			response.setStatus(code);
+
+		} finally {
+
+			try {
+				response.getWriter().flush();
+				response.getWriter().close();
+				
+			} catch (Throwable t) {
+				
+				logger.log(Level.WARNING, "Unable to flush and close response: {0}", t.getMessage());
+			}
+		}
+	}
+
 	private static String escapeForCsv(final Object value) {
 		
 		String result = StringUtils.replace(value.toString(), "\"", "\\\"");
@@ -272,6 +391,181 @@ public class CsvServlet extends HttpServiceServlet {
 		}
 	}
 	
+	/**
+	 * Write all pages of the given collection resource to output. The
+	 * pages are ordered by UUID, which every object has, and fetched one
+	 * after another using the paging cursor of the previous page, so only
+	 * one page is held in memory at a time. Resources that do not support
+	 * paging cursors are written at once.
+	 *
+	 * @param resource
+	 * @param sortDescending
+	 * @param out
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	private void writePages(final Resource resource, final boolean sortDescending, final Writer out) throws FrameworkException, IOException {
+
+		final int pageSize = Math.max(1, parseInt(StructrApp.getConfigurationValue(Services.CSV_EXPORT_PAGE_SIZE, "10000"), 10000));
+		Result result      = resource.doGet(GraphObject.id, sortDescending, pageSize, 1, null);
+		String cursor      = result.getNextPageCursor();
+
+		if (cursor == null) {
+
+			final Integer rawResultCount = result.getRawResultCount();
+			final List results           = result.getResults();
+
+			// resource can not be paged with a cursor, fetch complete result instead
+			if (rawResultCount != null && results != null && rawResultCount > results.size()) {
+
+				result = resource.doGet(null, sortDescending, NodeFactory.DEFAULT_PAGE_SIZE, NodeFactory.DEFAULT_PAGE, null);
+			}
+		}
+
+		resource.postProcessResultSet(result);
+		writeCsv(result.getResults(), out, defaultPropertyView, true);
+
+		while (cursor != null) {
+
+			result = resource.doGet(GraphObject.id, sortDescending, pageSize, 1, cursor);
+
+			resource.postProcessResultSet(result);
+			writeCsv(result.getResults(), out, defaultPropertyView, false);
+
+			final String nextCursor = result.getNextPageCursor();
+
+			// stop if the resource does not advance
+			cursor = cursor.equals(nextCursor) ? null : nextCursor;
+		}
+	}
+
+	/**
+	 * Import the CSV document from the given reader. The first row of the
+	 * document must contain the property names. For type resources, the
+	 * property keys and input converters are resolved once for each column,
+	 * all other resources create one object per row with their POST method.
+	 * If a row can not be imported, the batches before it stay committed
+	 * and the exception of that row is passed on with its error buffer.
+	 *
+	 * @param securityContext
+	 * @param resource
+	 * @param input
+	 * @param batchSize the number of rows per transaction
+	 * @return the number of imported objects
+	 * @throws FrameworkException
+	 * @throws IOException
+	 */
+	private int importCsv(final SecurityContext securityContext, final Resource resource, final Reader input, final int batchSize) throws FrameworkException, IOException {
+
+		final CSVReader reader = new CSVReader(new BufferedReader(input, OUTPUT_BUFFER_SIZE), DELIMITER.charAt(0), '"', '\\');
+		final String[] header  = reader.readNext();
+
+		if (header == null) {
+			return 0;
+		}
+
+		// remove UTF-8 BOM
+		if (header.length > 0 && header[0].startsWith("\ufeff")) {
+			header[0] = header[0].substring(1);
+		}
+
+		final Class type                      = resource.getEntityClass();
+		final boolean createNodes             = resource instanceof TypeResource && type != null && NodeInterface.class.isAssignableFrom(type);
+		final PropertyKey[] keys              = new PropertyKey[header.length];
+		final PropertyConverter[] converters  = new PropertyConverter[header.length];
+		final App app                         = StructrApp.getInstance(securityContext);
+		String[] values                       = null;
+		int committed                         = 0;
+		int count                             = 0;
+
+		if (createNodes) {
+
+			for (int i=0; i<header.length; i++) {
+
+				keys[i]       = StructrApp.getConfiguration().getPropertyKeyForJSONName(type, header[i].trim());
+				converters[i] = keys[i].inputConverter(securityContext);
+			}
+		}
+
+		try {
+
+			app.beginTx();
+
+			while ((values = reader.readNext()) != null) {
+
+				if (createNodes) {
+
+					app.create(type, convertRow(type, keys, converters, values));
+
+				} else {
+
+					final Map<String, Object> propertySet = new LinkedHashMap<>();
+
+					for (int i=0; i<header.length && i<values.length; i++) {
+
+						if (StringUtils.isNotEmpty(values[i])) {
+							propertySet.put(header[i].trim(), values[i]);
+						}
+					}
+
+					resource.doPost(propertySet);
+				}
+
+				if (++count % batchSize == 0) {
+
+					app.commitTx();
+					app.finishTx();
+
+					committed = count;
+
+					app.beginTx();
+				}
+			}
+
+			app.commitTx();
+
+			committed = count;
+
+		} catch (FrameworkException fex) {
+
+			logger.log(Level.WARNING, "CSV import failed in data row {0} after {1} committed objects: {2}", new Object[] { count + 1, committed, fex.toString() } );
+
+			throw fex;
+
+		} finally {
+
+			app.finishTx();
+		}
+
+		return count;
+	}
+
+	private PropertyMap convertRow(final Class type, final PropertyKey[] keys, final PropertyConverter[] converters, final String[] values) throws FrameworkException {
+
+		final PropertyMap properties = new PropertyMap();
+
+		for (int i=0; i<keys.length && i<values.length; i++) {
+
+			final String value = values[i];
+
+			// empty cells are not imported
+			if (StringUtils.isNotEmpty(value)) {
+
+				final PropertyConverter converter = converters[i];
+
+				try {
+					properties.put(keys[i], converter != null ? converter.convert(value) : value);
+
+				} catch (ClassCastException | NumberFormatException ex) {
+
+					throw new FrameworkException(type.getSimpleName(), new TypeToken(keys[i], keys[i].typeName()));
+				}
+			}
+		}
+
+		return properties;
+	}
+
 	/**
 	 * Write list of objects to output
 	 *
@@ -296,15 +590,31 @@ public class CsvServlet extends HttpServiceServlet {
 	 */
 	public static void writeCsv(final Result result, final Writer out, final String propertyView) throws IOException {
 
-		List<GraphObject> list = result.getResults();
-		boolean headerWritten  = false;
+		writeCsv(result.getResults(), out, propertyView, true);
+
+	}
+
+	/**
+	 * Write list of objects to output, optionally preceded by a header
+	 * row with the property names. The output is not flushed.
+	 *
+	 * @param list
+	 * @param out
+	 * @param propertyView
+	 * @param writeHeader
+	 * @throws IOException
+	 */
+	public static void writeCsv(final List<GraphObject> list, final Writer out, final String propertyView, final boolean writeHeader) throws IOException {
+
+		final StringBuilder row = new StringBuilder();
+		boolean headerWritten   = !writeHeader;
 
 		for (GraphObject obj : list) {
 
 			// Write column headers
 			if (!headerWritten) {
 
-				StringBuilder row = new StringBuilder();
+				row.setLength(0);
 
 				for (PropertyKey key : obj.getPropertyKeys(propertyView)) {
 
@@ -321,14 +631,11 @@ public class CsvServlet extends HttpServiceServlet {
 				// append DOS-style line feed as defined in RFC 4180
 				out.append(row).append("\r\n");
 
-				// flush each line
-				out.flush();
-
 				headerWritten = true;
 
 			}
 
-			StringBuilder row = new StringBuilder();
+			row.setLength(0);
 
 			for (PropertyKey key : obj.getPropertyKeys(propertyView)) {
 
@@ -341,11 +648,13 @@ public class CsvServlet extends HttpServiceServlet {
 			}
 
 			// remove last ,
-			row.deleteCharAt(row.lastIndexOf(DELIMITER));
-			out.append(row).append("\r\n");
+			int pos = row.lastIndexOf(DELIMITER);
+			if (pos >= 0) {
+
+				row.deleteCharAt(pos);
+			}
 
-			// flush each line
-			out.flush();
+			out.append(row).append("\r\n");
 		}
 
 	}
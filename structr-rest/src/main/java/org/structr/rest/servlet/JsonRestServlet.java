@@ -43,6 +43,8 @@ import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -56,6 +58,7 @@ import org.structr.core.Value;
 import org.structr.core.app.StructrApp;
 import org.structr.core.auth.Authenticator;
 import org.structr.core.graph.NodeFactory;
+import org.structr.core.graph.PropertyReadCache;
 import org.structr.core.graph.search.Search;
 import org.structr.rest.serialization.StreamingWriter;
 import org.structr.rest.adapter.FrameworkExceptionGSONAdapter;
@@ -78,9 +81,11 @@ public class JsonRestServlet extends HttpServiceServlet {
 	public static final int DEFAULT_VALUE_PAGE_SIZE                     = 20;
 	public static final String DEFAULT_VALUE_SORT_ORDER                 = "asc";
 	public static final String REQUEST_PARAMETER_LOOSE_SEARCH           = "loose";
+	public static final String REQUEST_PARAMETER_COUNT_ONLY             = "countOnly";
 	public static final String REQUEST_PARAMETER_PAGE_NUMBER            = "page";
 	public static final String REQUEST_PARAMETER_PAGE_SIZE              = "pageSize";
 	public static final String REQUEST_PARAMETER_OFFSET_ID              = "pageStartId";
+	public static final String REQUEST_PARAMETER_PAGE_CURSOR            = "pageCursor";
 	public static final String REQUEST_PARAMETER_SORT_KEY               = "sort";
 	public static final String REQUEST_PARAMETER_SORT_ORDER             = "order";
 	public static final Set<String> commonRequestParameters             = new LinkedHashSet<>();
@@ -89,9 +94,11 @@ public class JsonRestServlet extends HttpServiceServlet {
 	static {
 		
 		commonRequestParameters.add(REQUEST_PARAMETER_LOOSE_SEARCH);
+		commonRequestParameters.add(REQUEST_PARAMETER_COUNT_ONLY);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_NUMBER);
 		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_SIZE);
 		commonRequestParameters.add(REQUEST_PARAMETER_OFFSET_ID);
+		commonRequestParameters.add(REQUEST_PARAMETER_PAGE_CURSOR);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_KEY);
 		commonRequestParameters.add(REQUEST_PARAMETER_SORT_ORDER);
 		
@@ -114,6 +121,8 @@ public class JsonRestServlet extends HttpServiceServlet {
 	private ThreadLocalJsonWriter jsonWriter                    = null;
 	private ThreadLocalHtmlWriter htmlWriter                    = null;
 	private Writer logWriter                                    = null;
+	private ExecutorService prefetchExecutor                    = null;
+	private int prefetchBudget                                  = 0;
 	
 	@Override
 	public void init() {
@@ -129,6 +138,14 @@ public class JsonRestServlet extends HttpServiceServlet {
 		}
 		
 		
+		// nested property prefetching is disabled by default
+		final int prefetchThreads = parseInt(StructrApp.getConfigurationValue(Services.JSON_PREFETCH_THREADS, "0"), 0);
+		if (prefetchThreads > 0) {
+
+			this.prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads);
+			this.prefetchBudget   = parseInt(StructrApp.getConfigurationValue(Services.JSON_PREFETCH_BUDGET, "10000"), 10000);
+		}
+		
 		// inject resources
 		resourceMap.putAll(resourceProvider.getResources());
 
@@ -143,6 +160,10 @@ public class JsonRestServlet extends HttpServiceServlet {
 	@Override
 	public void destroy() {
 
+		if (prefetchExecutor != null) {
+			prefetchExecutor.shutdown();
+		}
+
 		if (logWriter != null) {
 
 			try {
@@ -242,6 +263,9 @@ public class JsonRestServlet extends HttpServiceServlet {
 
 		SecurityContext securityContext = null;
 
+		// cache property values for the duration of this request
+		PropertyReadCache.beginRequest();
+
 		try {
 
 			Authenticator authenticator = getAuthenticator();
@@ -261,11 +285,32 @@ public class JsonRestServlet extends HttpServiceServlet {
 			
 			// check access rights for this resource
 			authenticator.checkResourceAccess(request, resourceSignature, propertyView.get(securityContext));
+
+			// count-only mode: return the number of results without serializing any entities
+			if (parseInt(request.getParameter(REQUEST_PARAMETER_COUNT_ONLY), 0) == 1) {
+
+				final Result countResult  = new Result((List)null, resource.doCount(), true, false);
+				final double countTimeEnd = System.nanoTime();
+
+				DecimalFormat decimalFormat = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+				countResult.setQueryTime(decimalFormat.format((countTimeEnd - queryTimeStart) / 1000000000.0));
+
+				Writer writer = response.getWriter();
+
+				response.setContentType("application/json; charset=utf-8");
+				jsonWriter.get().stream(writer, countResult, request.getRequestURI());
+				response.setStatus(HttpServletResponse.SC_OK);
+
+				writer.append("\n");    // useful newline
+
+				return;
+			}
 			
 			// add sorting & paging
 			String pageSizeParameter = request.getParameter(REQUEST_PARAMETER_PAGE_SIZE);
 			String pageParameter     = request.getParameter(REQUEST_PARAMETER_PAGE_NUMBER);
 			String offsetId          = request.getParameter(REQUEST_PARAMETER_OFFSET_ID);
+			String pageCursor        = request.getParameter(REQUEST_PARAMETER_PAGE_CURSOR);
 			String sortOrder         = request.getParameter(REQUEST_PARAMETER_SORT_ORDER);
 			String sortKeyName       = request.getParameter(REQUEST_PARAMETER_SORT_KEY);
 			boolean sortDescending   = (sortOrder != null && "desc".equals(sortOrder.toLowerCase()));
@@ -274,6 +319,11 @@ public class JsonRestServlet extends HttpServiceServlet {
 			String baseUrl           = request.getRequestURI();
 			PropertyKey sortKey      = null;
 
+			// a paging cursor is passed to the search in place of the offset id
+			if (pageCursor != null) {
+				offsetId = pageCursor;
+			}
+
 			// set sort key
 			if (sortKeyName != null) {
 				
@@ -372,6 +422,8 @@ public class JsonRestServlet extends HttpServiceServlet {
 			}
 			
 			securityContext.cleanUp();
+
+			PropertyReadCache.endRequest();
 		}
 	}
 
@@ -846,7 +898,13 @@ public class JsonRestServlet extends HttpServiceServlet {
 		@Override
 		protected StreamingWriter initialValue() {
 			
-			return new StreamingJsonWriter(this.propertyView, indent, depth);
+			final StreamingWriter writer = new StreamingJsonWriter(this.propertyView, indent, depth);
+
+			if (prefetchExecutor != null) {
+				writer.enablePrefetching(prefetchExecutor, prefetchBudget);
+			}
+
+			return writer;
 		}
 
 	}
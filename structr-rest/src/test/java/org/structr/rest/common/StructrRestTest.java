@@ -52,6 +52,7 @@ import org.structr.module.JarConfigurationProvider;
 import static org.structr.rest.common.StructrRestTest.restUrl;
 import org.structr.rest.entity.TestOne;
 import org.structr.rest.service.HttpService;
+import org.structr.rest.servlet.CsvServlet;
 import org.structr.rest.servlet.JsonRestServlet;
 
 //~--- classes ----------------------------------------------------------------
@@ -75,6 +76,7 @@ public class StructrRestTest extends TestCase {
 	
 	protected static final String contextPath = "/";
 	protected static final String restUrl = "/structr/rest";
+	protected static final String csvUrl = "/structr/csv";
 	protected static final String host = "127.0.0.1";
 	protected static final int httpPort = 8875;
 	
@@ -304,7 +306,7 @@ public class StructrRestTest extends TestCase {
 		config.setProperty(HttpService.APPLICATION_HTTP_PORT, Integer.toString(httpPort));
 
 		// configure JsonRestServlet
-		config.setProperty(HttpService.SERVLETS, "JsonRestServlet");
+		config.setProperty(HttpService.SERVLETS, "JsonRestServlet CsvServlet");
 		config.setProperty("JsonRestServlet.class", JsonRestServlet.class.getName());
 		config.setProperty("JsonRestServlet.path", restUrl);
 		config.setProperty("JsonRestServlet.resourceprovider", TestResourceProvider.class.getName());
@@ -313,6 +315,16 @@ public class StructrRestTest extends TestCase {
 		config.setProperty("JsonRestServlet.user.autocreate", "false");
 		config.setProperty("JsonRestServlet.defaultview", PropertyView.Public);
 		config.setProperty("JsonRestServlet.outputdepth", "3");
+
+		// configure CsvServlet
+		config.setProperty("CsvServlet.class", CsvServlet.class.getName());
+		config.setProperty("CsvServlet.path", csvUrl);
+		config.setProperty("CsvServlet.resourceprovider", TestResourceProvider.class.getName());
+		config.setProperty("CsvServlet.authenticator", SuperUserAuthenticator.class.getName());
+		config.setProperty("CsvServlet.user.class", "");
+		config.setProperty("CsvServlet.user.autocreate", "false");
+		config.setProperty("CsvServlet.defaultview", PropertyView.Public);
+		config.setProperty(Services.CSV_EXPORT_PAGE_SIZE, "1000");
 		
 		final Services services = Services.getInstance(config);
 
@@ -34,11 +34,12 @@ import org.structr.core.property.Property;
  */
 public class TestOne extends AbstractNode {
 	
-	public static final Property<Integer> anInt = new IntProperty("anInt").indexed();
-	public static final Property<Long> aLong    = new LongProperty("aLong").indexed();
-	public static final Property<Date> aDate    = new ISO8601DateProperty("aDate").indexed();
+	public static final Property<Integer> anInt      = new IntProperty("anInt").indexed();
+	public static final Property<Long> aLong         = new LongProperty("aLong").indexed();
+	public static final Property<Date> aDate         = new ISO8601DateProperty("aDate").indexed();
+	public static final Property<Integer> aCursorInt = new IntProperty("aCursorInt").indexed().indexedWhenEmpty();
 	
 	public static final View defaultView = new View(TestOne.class, PropertyView.Public,
-		name, anInt, aLong, aDate
+		name, anInt, aLong, aDate, aCursorInt
 	);
 }
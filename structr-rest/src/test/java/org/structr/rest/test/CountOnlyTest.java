@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import static org.hamcrest.Matchers.*;
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import org.structr.rest.common.StructrRestTest;
+
+/**
+ *
+ * @author Christian Morgner
+ */
+public class CountOnlyTest extends StructrRestTest {
+
+	/**
+	 * Test count-only queries with and without search attributes
+	 */
+	public void test01CountOnly() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 10; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', anInt: " + (i % 2) + " }");
+		}
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(10))
+				.body("result",		nullValue())
+			.when()
+				.get(concat(resource, "?countOnly=1"));
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(1))
+				.body("result",		nullValue())
+			.when()
+				.get(concat(resource, "?name=TestOne-3&countOnly=1"));
+
+		// count must match the result count of the regular query
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(5))
+			.when()
+				.get(concat(resource, "?anInt=1"));
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(5))
+			.when()
+				.get(concat(resource, "?anInt=1&countOnly=1"));
+
+		// delete all objects, count must be updated
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+			.when()
+				.delete(resource);
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(0))
+			.when()
+				.get(concat(resource, "?countOnly=1"));
+	}
+
+	/**
+	 * Test that count-only queries and regular queries return the same
+	 * result count when there are hidden and deleted nodes
+	 */
+	public void test02CountMatchesResultCount() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 10; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', anInt: " + (i % 2) + ", hidden: " + (i < 2) + ", deleted: " + (i == 2) + " }");
+		}
+
+		// the superuser context of the test servlet reads hidden and deleted nodes
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(10))
+			.when()
+				.get(resource);
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(10))
+			.when()
+				.get(concat(resource, "?countOnly=1"));
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(5))
+			.when()
+				.get(concat(resource, "?anInt=0"));
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.expect()
+				.statusCode(200)
+				.body("result_count",	equalTo(5))
+			.when()
+				.get(concat(resource, "?anInt=0&countOnly=1"));
+	}
+}
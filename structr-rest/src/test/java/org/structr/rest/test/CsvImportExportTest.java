@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.search.CountEntitiesCommand;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestOne;
+
+/**
+ * Streams a synthetic CSV document into the CSV servlet and exports it
+ * again, which spans several import batches and export pages. The number
+ * of rows can be raised with the system property structr.test.csv.rows,
+ * e.g. to 1000000 to measure the import and export rates of large files.
+ *
+ * @author Axel Morgner
+ */
+public class CsvImportExportTest extends StructrRestTest {
+
+	private static final Logger logger = Logger.getLogger(CsvImportExportTest.class.getName());
+
+	public void test01ImportAndExport() {
+
+		final int number           = Integer.getInteger("structr.test.csv.rows", 2500);
+		final int batchSize        = Math.max(100, number / 100);
+		final DecimalFormat format = new DecimalFormat("0.000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+
+		try {
+
+			// import synthetic document as a stream
+			final HttpURLConnection upload = openConnection(csvUrl + "/test_one?batchSize=" + batchSize, "POST");
+			final long t0                  = System.nanoTime();
+
+			upload.setDoOutput(true);
+			upload.setChunkedStreamingMode(65536);
+			upload.setRequestProperty("Content-Type", "text/csv; charset=utf-8");
+
+			try (final Writer writer = new BufferedWriter(new OutputStreamWriter(upload.getOutputStream(), "UTF-8"))) {
+
+				writer.write("\"name\";\"anInt\";\"aLong\"\r\n");
+
+				for (int i = 0; i < number; i++) {
+
+					writer.write("\"TestOne-" + i + "\";\"" + i + "\";\"" + (i * 10L) + "\"\r\n");
+				}
+			}
+
+			assertEquals(201, upload.getResponseCode());
+			upload.disconnect();
+
+			final long t1 = System.nanoTime();
+
+			logger.log(Level.INFO, "Imported {0} rows in {1} seconds", new Object[] { number, format.format((t1 - t0) / 1000000000.0) });
+
+			assertEquals(number, app.command(CountEntitiesCommand.class).execute(TestOne.class));
+
+			// export all rows again
+			final HttpURLConnection download = openConnection(csvUrl + "/test_one", "GET");
+			final boolean[] seen             = new boolean[number];
+			int count                        = 0;
+
+			assertEquals(200, download.getResponseCode());
+
+			try (final CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(download.getInputStream(), "UTF-8")), ';', '"', '\\')) {
+
+				final List<String> header = Arrays.asList(reader.readNext());
+				final int nameColumn      = indexOf(header, "name");
+				final int intColumn       = indexOf(header, "anInt");
+				final int longColumn      = indexOf(header, "aLong");
+				String[] row              = null;
+
+				assertTrue(nameColumn >= 0 && intColumn >= 0 && longColumn >= 0);
+
+				while ((row = reader.readNext()) != null) {
+
+					// skip trailing newline
+					if (row.length == 1 && row[0].isEmpty()) {
+						continue;
+					}
+
+					final int i = Integer.parseInt(row[intColumn]);
+
+					assertFalse("Row " + i + " was exported twice", seen[i]);
+					assertEquals("TestOne-" + i, row[nameColumn]);
+					assertEquals(Long.toString(i * 10L), row[longColumn]);
+
+					seen[i] = true;
+					count++;
+				}
+			}
+
+			download.disconnect();
+
+			final long t2 = System.nanoTime();
+
+			logger.log(Level.INFO, "Exported {0} rows in {1} seconds", new Object[] { count, format.format((t2 - t1) / 1000000000.0) });
+
+			assertEquals(number, count);
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02ImportWithInvalidValue() {
+
+		try {
+
+			final HttpURLConnection upload = openConnection(csvUrl + "/test_one?batchSize=2", "POST");
+
+			upload.setDoOutput(true);
+			upload.setRequestProperty("Content-Type", "text/csv; charset=utf-8");
+
+			try (final Writer writer = new OutputStreamWriter(upload.getOutputStream(), "UTF-8")) {
+
+				writer.write("\"name\";\"anInt\"\r\n\"a\";\"1\"\r\n\"b\";\"2\"\r\n\"c\";\"x\"\r\n");
+			}
+
+			assertEquals(422, upload.getResponseCode());
+
+			// error buffer is returned like in the REST servlet
+			try (final Reader reader = new InputStreamReader(upload.getErrorStream(), "UTF-8")) {
+
+				final JsonObject error = new JsonParser().parse(reader).getAsJsonObject();
+
+				assertEquals(422, error.get("code").getAsInt());
+				assertTrue(error.getAsJsonObject("errors").getAsJsonObject("TestOne").has("anInt"));
+			}
+
+			upload.disconnect();
+
+			// the first batch is committed
+			assertEquals(2, app.command(CountEntitiesCommand.class).execute(TestOne.class));
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	private HttpURLConnection openConnection(final String path, final String method) throws IOException {
+
+		final HttpURLConnection connection = (HttpURLConnection)new URL("http://" + host + ":" + httpPort + path).openConnection();
+
+		connection.setRequestMethod(method);
+
+		return connection;
+	}
+
+	private int indexOf(final List<String> header, final String name) {
+
+		for (int i = 0; i < header.size(); i++) {
+
+			// first column starts with a UTF-8 BOM
+			if (name.equals(header.get(i).replace("\ufeff", ""))) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import com.jayway.restassured.path.json.JsonPath;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import org.structr.rest.common.StructrRestTest;
+
+/**
+ *
+ * @author Christian Morgner
+ */
+public class CursorPagingTest extends StructrRestTest {
+
+	/**
+	 * Crawl a collection sorted by a numeric property using cursors
+	 */
+	public void test01CursorPagingByNumber() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 25; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', aCursorInt: " + i + " }");
+		}
+
+		final List<Integer> values = new LinkedList<>();
+		String cursor              = null;
+		int pages                  = 0;
+
+		do {
+
+			final JsonPath json = getPage(concat(resource, "?sort=aCursorInt&pageSize=10", cursor != null ? "&pageCursor=" + cursor : ""));
+			final List<Integer> page = json.getList("result.aCursorInt");
+
+			// with a cursor, the result count is the number of elements after the cursor
+			assertEquals(25 - values.size(), json.getInt("result_count"));
+
+			values.addAll(page);
+			cursor = json.getString("next_page_cursor");
+			pages++;
+
+		} while (cursor != null && pages < 10);
+
+		assertEquals(3, pages);
+		assertEquals(25, values.size());
+
+		for (int i = 0; i < 25; i++) {
+
+			assertEquals(Integer.valueOf(i), values.get(i));
+		}
+	}
+
+	/**
+	 * Crawl a collection sorted by a numeric property with many equal
+	 * values, so that the order relies on the UUID as a secondary key
+	 */
+	public void test02CursorPagingWithEqualValues() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 25; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', aCursorInt: " + (i % 3) + " }");
+		}
+
+		final Set<String> ids = new LinkedHashSet<>();
+		String cursor         = null;
+		int lastValue         = Integer.MIN_VALUE;
+		int count             = 0;
+
+		do {
+
+			final JsonPath json        = getPage(concat(resource, "?sort=aCursorInt&order=desc&pageSize=4", cursor != null ? "&pageCursor=" + cursor : ""));
+			final List<String> page    = json.getList("result.id");
+			final List<Integer> values = json.getList("result.aCursorInt");
+
+			ids.addAll(page);
+			count += page.size();
+
+			for (final Integer value : values) {
+
+				// descending order
+				if (lastValue != Integer.MIN_VALUE) {
+					assertTrue(value <= lastValue);
+				}
+
+				lastValue = value;
+			}
+
+			cursor = json.getString("next_page_cursor");
+
+		} while (cursor != null && count < 100);
+
+		// every element exactly once
+		assertEquals(25, count);
+		assertEquals(25, ids.size());
+	}
+
+	/**
+	 * A cursor must not be used with a different sort order
+	 */
+	public void test03CursorWithDifferentSortOrder() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 5; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', aCursorInt: " + i + " }");
+		}
+
+		final String cursor = getPage(concat(resource, "?sort=aCursorInt&pageSize=2")).getString("next_page_cursor");
+		assertNotNull(cursor);
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(400)
+			.when()
+				.get(concat(resource, "?sort=aCursorInt&order=desc&pageSize=2&pageCursor=", cursor));
+	}
+
+	/**
+	 * Collated string sorts and keys that are not indexed when empty have
+	 * no cursor, and a cursor must not be used with them
+	 */
+	public void test04NoCursorForStringSort() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 5; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', aCursorInt: " + i + " }");
+		}
+
+		assertNull(getPage(concat(resource, "?sort=name&pageSize=2")).getString("next_page_cursor"));
+
+		// numeric keys that are not indexed when empty have no cursor either
+		assertNull(getPage(concat(resource, "?sort=anInt&pageSize=2")).getString("next_page_cursor"));
+
+		final String cursor = getPage(concat(resource, "?sort=aCursorInt&pageSize=2")).getString("next_page_cursor");
+		assertNotNull(cursor);
+
+		RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(400)
+			.when()
+				.get(concat(resource, "?sort=name&pageSize=2&pageCursor=", cursor));
+	}
+
+	/**
+	 * Elements without a value for the sort key are crawled at the end
+	 * of a descending result
+	 */
+	public void test05CursorPagingWithEmptyValues() {
+
+		final String resource = "/test_one";
+
+		for (int i = 0; i < 6; i++) {
+
+			createEntity(resource, "{ name: 'TestOne-" + i + "', aCursorInt: " + i + " }");
+		}
+
+		for (int i = 0; i < 4; i++) {
+
+			createEntity(resource, "{ name: 'Empty-" + i + "' }");
+		}
+
+		final List<String> names = new LinkedList<>();
+		String cursor            = null;
+		int pages                = 0;
+
+		do {
+
+			final JsonPath json = getPage(concat(resource, "?sort=aCursorInt&order=desc&pageSize=3", cursor != null ? "&pageCursor=" + cursor : ""));
+			final List<String> page = json.getList("result.name");
+
+			names.addAll(page);
+			cursor = json.getString("next_page_cursor");
+			pages++;
+
+		} while (cursor != null && pages < 10);
+
+		// every element exactly once
+		assertEquals(10, names.size());
+		assertEquals(10, new LinkedHashSet<>(names).size());
+
+		for (int i = 0; i < 6; i++) {
+
+			assertEquals("TestOne-" + (5 - i), names.get(i));
+		}
+
+		for (int i = 6; i < 10; i++) {
+
+			assertTrue(names.get(i).startsWith("Empty-"));
+		}
+	}
+
+	// ----- private methods -----
+	private JsonPath getPage(final String url) {
+
+		return RestAssured
+			.given()
+				.contentType("application/json; charset=UTF-8")
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+			.when()
+				.get(url)
+				.getBody()
+				.jsonPath();
+	}
+}
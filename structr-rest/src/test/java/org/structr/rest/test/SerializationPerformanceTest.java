@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.rest.test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.structr.common.PropertyView;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.Result;
+import org.structr.core.StaticValue;
+import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.property.PropertyMap;
+import org.structr.rest.common.StructrRestTest;
+import org.structr.rest.entity.TestFive;
+import org.structr.rest.entity.TestOne;
+import org.structr.rest.serialization.StreamingJsonWriter;
+import org.structr.rest.serialization.StreamingWriter;
+
+/**
+ * Streams 10000 nodes through the same JSON writer several times, logging
+ * the rate of each round and checking the output of the last one, and
+ * compares the output of nested collections with and without prefetching.
+ * Also checks that cached serialization plans follow view changes.
+ *
+ * @author Christian Morgner
+ */
+public class SerializationPerformanceTest extends StructrRestTest {
+
+	private static final Logger logger = Logger.getLogger(SerializationPerformanceTest.class.getName());
+
+	public void test01SerializationOfNodes() {
+
+		try {
+
+			final int number                = 10000;
+			final int rounds                = 5;
+			final List<NodeInterface> nodes = new LinkedList<>();
+			final long now                  = System.currentTimeMillis();
+
+			try {
+				app.beginTx();
+
+				for (int i = 0; i < number; i++) {
+
+					final PropertyMap properties = new PropertyMap();
+
+					properties.put(TestOne.name, "TestOne-" + i);
+					properties.put(TestOne.anInt, i);
+					properties.put(TestOne.aLong, (long)i * 10);
+					properties.put(TestOne.aDate, new Date(now + i * 1000));
+
+					nodes.add(app.create(TestOne.class, properties));
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final StreamingWriter writer = new StreamingJsonWriter(new StaticValue<>(PropertyView.Public), false, 3);
+			final Result result          = new Result(nodes, number, true, false);
+			final DecimalFormat format   = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			String output                = null;
+
+			for (int i = 0; i < rounds; i++) {
+
+				final StringWriter buffer = new StringWriter();
+				final long t0             = System.nanoTime();
+
+				writer.stream(buffer, result, "");
+
+				final long t1             = System.nanoTime();
+				final Double time         = (t1 - t0) / 1000000000.0;
+				final Double rate         = number / time;
+
+				logger.log(Level.INFO, "Round {0}: serialized {1} nodes in {2} seconds ({3} per s)", new Object[] { i, number, format.format(time), format.format(rate) });
+
+				output = buffer.toString();
+			}
+
+			// verify output of the last round
+			final JsonObject document = new JsonParser().parse(output).getAsJsonObject();
+			final JsonArray results   = document.getAsJsonArray("result");
+
+			assertEquals(number, document.get("result_count").getAsInt());
+			assertEquals(number, results.size());
+
+			for (int i = 0; i < number; i++) {
+
+				final JsonObject entity = results.get(i).getAsJsonObject();
+
+				assertEquals("TestOne-" + i, entity.get("name").getAsString());
+				assertEquals(i, entity.get("anInt").getAsInt());
+				assertEquals((long)i * 10, entity.get("aLong").getAsLong());
+				assertEquals(nodes.get(i).getUuid(), entity.get("id").getAsString());
+				assertNotNull(entity.get("aDate").getAsString());
+			}
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
+	public void test02PrefetchingOfNestedProperties() {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+
+			final int number                = 200;
+			final List<NodeInterface> nodes = new LinkedList<>();
+
+			try {
+				app.beginTx();
+
+				for (int i = 0; i < number; i++) {
+
+					final PropertyMap properties = new PropertyMap();
+					final List<TestOne> testOnes = new LinkedList<>();
+
+					for (int j = 0; j < 5; j++) {
+						testOnes.add(app.create(TestOne.class, "TestOne-" + i + "-" + j));
+					}
+
+					properties.put(TestFive.name, "TestFive-" + i);
+					properties.put(TestFive.manyToManyTestOnes, testOnes);
+
+					nodes.add(app.create(TestFive.class, properties));
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			final StreamingWriter lazyWriter     = new StreamingJsonWriter(new StaticValue<>(PropertyView.Public), false, 3);
+			final StreamingWriter prefetchWriter = new StreamingJsonWriter(new StaticValue<>(PropertyView.Public), false, 3);
+			final Result result                  = new Result(nodes, number, true, false);
+			final StringWriter lazyBuffer        = new StringWriter();
+			final StringWriter prefetchBuffer    = new StringWriter();
+
+			prefetchWriter.enablePrefetching(executor, 10000);
+
+			lazyWriter.stream(lazyBuffer, result, "");
+			prefetchWriter.stream(prefetchBuffer, result, "");
+
+			final JsonObject lazyDocument     = new JsonParser().parse(lazyBuffer.toString()).getAsJsonObject();
+			final JsonObject prefetchDocument = new JsonParser().parse(prefetchBuffer.toString()).getAsJsonObject();
+
+			lazyDocument.remove("serialization_time");
+			prefetchDocument.remove("serialization_time");
+
+			assertEquals(lazyDocument, prefetchDocument);
+			assertEquals(5, prefetchDocument.getAsJsonArray("result").get(0).getAsJsonObject().getAsJsonArray("manyToManyTestOnes").size());
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+
+		} finally {
+
+			executor.shutdown();
+		}
+	}
+
+	public void test03ViewChangeDiscardsPlans() {
+
+		try {
+
+			final List<NodeInterface> nodes = new LinkedList<>();
+			final String view               = "planTestView";
+
+			try {
+				app.beginTx();
+
+				final PropertyMap properties = new PropertyMap();
+
+				properties.put(TestOne.name, "TestOne");
+				properties.put(TestOne.anInt, 42);
+
+				nodes.add(app.create(TestOne.class, properties));
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			StructrApp.getConfiguration().registerPropertySet(TestOne.class, view, TestOne.name);
+
+			final StreamingWriter writer = new StreamingJsonWriter(new StaticValue<>(view), false, 3);
+			final Result result          = new Result(nodes, 1, true, false);
+			StringWriter buffer          = new StringWriter();
+
+			writer.stream(buffer, result, "");
+
+			JsonObject entity = new JsonParser().parse(buffer.toString()).getAsJsonObject().getAsJsonArray("result").get(0).getAsJsonObject();
+
+			assertEquals("TestOne", entity.get("name").getAsString());
+			assertFalse(entity.has("anInt"));
+
+			// the same writer must pick up the modified view
+			StructrApp.getConfiguration().registerPropertySet(TestOne.class, view, TestOne.anInt);
+
+			buffer = new StringWriter();
+			writer.stream(buffer, result, "");
+
+			entity = new JsonParser().parse(buffer.toString()).getAsJsonObject().getAsJsonArray("result").get(0).getAsJsonObject();
+
+			assertEquals("TestOne", entity.get("name").getAsString());
+			assertEquals(42, entity.get("anInt").getAsInt());
+
+		} catch (FrameworkException | IOException ex) {
+
+			logger.log(Level.SEVERE, ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.web.common;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -26,6 +27,7 @@ import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
+import org.structr.common.SecurityContext;
 import org.structr.core.GraphObject;
 import org.structr.core.Result;
 import org.structr.core.entity.Principal;
@@ -67,6 +69,7 @@ public class RenderContext {
 	private HttpServletResponse response         = null;
 	private ResourceProvider resourceProvider    = null;
 	private Result result                        = null;
+	private Map<DataSourceKey, Object> dataSourceResults = new HashMap<>();
 	
 	public enum EditMode {
 	
@@ -290,4 +293,84 @@ public class RenderContext {
 	public Result getResult() {
 		return result;
 	}
+
+	/**
+	 * Returns the result of the given data source that was memoized for
+	 * the given resolved query, parameters and security context during
+	 * this render, or null.
+	 *
+	 * @param source the name of the data source
+	 * @param query the resolved query
+	 * @param parameters the query parameters, or null
+	 * @param securityContext
+	 * @return the memoized result or null
+	 */
+	public Object getDataSourceResult(final String source, final String query, final Map<String, Object> parameters, final SecurityContext securityContext) {
+		return dataSourceResults.get(new DataSourceKey(source, query, parameters, securityContext));
+	}
+
+	/**
+	 * Memoizes the result of the given data source for the given resolved
+	 * query, parameters and security context, so that the source is only
+	 * evaluated once per render.
+	 *
+	 * @param source the name of the data source
+	 * @param query the resolved query
+	 * @param parameters the query parameters, or null
+	 * @param securityContext
+	 * @param result
+	 */
+	public void putDataSourceResult(final String source, final String query, final Map<String, Object> parameters, final SecurityContext securityContext, final Object result) {
+		dataSourceResults.put(new DataSourceKey(source, query, parameters, securityContext), result);
+	}
+
+	// ----- nested classes -----
+	private static class DataSourceKey {
+
+		private SecurityContext securityContext = null;
+		private Map<String, Object> parameters  = null;
+		private String source                   = null;
+		private String query                    = null;
+
+		public DataSourceKey(final String source, final String query, final Map<String, Object> parameters, final SecurityContext securityContext) {
+
+			this.source          = source;
+			this.query           = query;
+			this.parameters      = parameters != null ? new LinkedHashMap<>(parameters) : null;
+			this.securityContext = securityContext;
+		}
+
+		@Override
+		public int hashCode() {
+
+			int hashCode = source.hashCode();
+
+			if (query != null) {
+				hashCode = 31 * hashCode + query.hashCode();
+			}
+
+			if (parameters != null) {
+				hashCode = 31 * hashCode + parameters.hashCode();
+			}
+
+			return 31 * hashCode + System.identityHashCode(securityContext);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (obj instanceof DataSourceKey) {
+
+				final DataSourceKey other = (DataSourceKey)obj;
+
+				// security contexts are compared by identity
+				return securityContext == other.securityContext
+					&& source.equals(other.source)
+					&& StringUtils.equals(query, other.query)
+					&& (parameters == null ? other.parameters == null : parameters.equals(other.parameters));
+			}
+
+			return false;
+		}
+	}
 }
@@ -994,11 +994,17 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 		@Override
 		public List<GraphObject> getData(SecurityContext securityContext, RenderContext renderContext, AbstractNode referenceNode) throws FrameworkException {
 			
-			List<GraphObject> data = new LinkedList<>();
-			
-			for (RenderNode rel : referenceNode.getOutgoingRelationships(RenderNode.class)) {
-				
-				data.add(rel.getTargetNode());
+			List<GraphObject> data = (List<GraphObject>)renderContext.getDataSourceResult("node", referenceNode.getUuid(), null, securityContext);
+			if (data == null) {
+
+				data = new LinkedList<>();
+
+				for (RenderNode rel : referenceNode.getOutgoingRelationships(RenderNode.class)) {
+
+					data.add(rel.getTargetNode());
+				}
+
+				renderContext.putDataSourceResult("node", referenceNode.getUuid(), null, securityContext, data);
 			}
 			
 			if (!data.isEmpty()) {
@@ -1065,26 +1071,6 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 			final String restQuery = ((DOMElement) referenceNode).getPropertyWithVariableReplacement(securityContext, renderContext, DOMElement.restQuery);
 			if (restQuery != null && !restQuery.isEmpty()) {
 				
-				Map<Pattern, Class<? extends Resource>> resourceMap = new LinkedHashMap<>();
-				
-				ResourceProvider resourceProvider = renderContext.getResourceProvider();
-				if (resourceProvider == null) {
-					try {
-						resourceProvider = UiResourceProvider.class.newInstance();
-					} catch (Throwable t) {
-						logger.log(Level.SEVERE, "Couldn't establish a resource provider", t);
-						return Collections.EMPTY_LIST;
-					}
-				}
-				
-				// inject resources
-				resourceMap.putAll(resourceProvider.getResources());
-				
-				Value<String> propertyView = new ThreadLocalPropertyView();
-				propertyView.set(securityContext, PropertyView.Ui);
-
-				// initialize variables
-				
 				// mimic HTTP request
 				HttpServletRequest request = new HttpServletRequestWrapper(renderContext.getRequest()) {
 
@@ -1131,6 +1117,35 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 				// update request in security context
 				securityContext.setRequest(request);
 
+				// evaluate each distinct query only once per render
+				final Result cachedResult = (Result)renderContext.getDataSourceResult("rest", restQuery, null, securityContext);
+				if (cachedResult != null) {
+
+					final List<GraphObject> res = cachedResult.getResults();
+
+					renderContext.setResult(cachedResult);
+
+					return res != null ? res : Collections.EMPTY_LIST;
+				}
+
+				Map<Pattern, Class<? extends Resource>> resourceMap = new LinkedHashMap<>();
+				
+				ResourceProvider resourceProvider = renderContext.getResourceProvider();
+				if (resourceProvider == null) {
+					try {
+						resourceProvider = UiResourceProvider.class.newInstance();
+					} catch (Throwable t) {
+						logger.log(Level.SEVERE, "Couldn't establish a resource provider", t);
+						return Collections.EMPTY_LIST;
+					}
+				}
+				
+				// inject resources
+				resourceMap.putAll(resourceProvider.getResources());
+				
+				Value<String> propertyView = new ThreadLocalPropertyView();
+				propertyView.set(securityContext, PropertyView.Ui);
+
 				//HttpServletResponse response = renderContext.getResponse();
 				
 				
@@ -1169,6 +1184,7 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 				List<GraphObject> res = result.getResults();
 				
 				renderContext.setResult(result);
+				renderContext.putDataSourceResult("rest", restQuery, null, securityContext, result);
 				
 				return res != null ? res : Collections.EMPTY_LIST;
 				
@@ -1184,10 +1200,18 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 		@Override
 		public List<GraphObject> getData(SecurityContext securityContext, RenderContext renderContext, AbstractNode referenceNode) throws FrameworkException {
 			
-			String cypherQuery = ((DOMElement) referenceNode).getPropertyWithVariableReplacement(securityContext, renderContext, DOMElement.cypherQuery);
+			Map<String, Object> parameters = new LinkedHashMap<>();
+			String cypherQuery             = ((DOMElement) referenceNode).getCypherQueryWithParameters(securityContext, renderContext, DOMElement.cypherQuery, parameters);
 			if (cypherQuery != null && !cypherQuery.isEmpty()) {
 				
-				return StructrApp.getInstance(securityContext).command(CypherQueryCommand.class).execute(cypherQuery);
+				List<GraphObject> results = (List<GraphObject>)renderContext.getDataSourceResult("cypher", cypherQuery, parameters, securityContext);
+				if (results == null) {
+
+					results = StructrApp.getInstance(securityContext).command(CypherQueryCommand.class).execute(cypherQuery, parameters);
+					renderContext.putDataSourceResult("cypher", cypherQuery, parameters, securityContext, results);
+				}
+
+				return results;
 			}
 			
 			return null;
@@ -1202,6 +1226,14 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 			String xpathQuery = referenceNode.getProperty(DOMElement.xpathQuery);
 			if (xpathQuery != null) {
 				
+				// xpath queries are evaluated relative to the reference node
+				final String cacheKey          = referenceNode.getUuid().concat(":").concat(xpathQuery);
+				final List<GraphObject> cached = (List<GraphObject>)renderContext.getDataSourceResult("xpath", cacheKey, null, securityContext);
+
+				if (cached != null) {
+					return cached;
+				}
+
 				XPathFactory factory            = XPathFactory.newInstance();
 				XPath xpath                     = factory.newXPath();
 
@@ -1229,6 +1261,8 @@ public class DOMElement extends DOMNode implements Element, NamedNodeMap {
 						results.add((GraphObject)result);
 					} 
 					
+					renderContext.putDataSourceResult("xpath", cacheKey, null, securityContext, results);
+
 					return results;
 					
 				} catch (Throwable t) {
@@ -26,7 +26,6 @@ import java.text.NumberFormat;
 import java.text.DecimalFormat;
 import java.text.Normalizer;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -49,6 +48,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.jsoup.Jsoup;
+import org.structr.common.DateFormatHelper;
 import org.structr.common.Permission;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
@@ -112,6 +112,11 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 	private static final Logger logger = Logger.getLogger(DOMNode.class.getName());
 	private static final ThreadLocalMatcher threadLocalTemplateMatcher = new ThreadLocalMatcher("\\$\\{[^}]*\\}");
 	private static final ThreadLocalMatcher threadLocalFunctionMatcher = new ThreadLocalMatcher("([a-zA-Z0-9_]+)\\((.+)\\)");
+	private static final ThreadLocalMatcher threadLocalLiteralMatcher  = new ThreadLocalMatcher("(['\"])(\\$\\{[^}]*\\})\\1");
+
+	// prefix of the generated Cypher parameters, see getCypherQueryWithParameters()
+	private static final String CYPHER_PARAMETER_PREFIX                = "_structr_p";
+	private static final ThreadLocalMatcher threadLocalParameterMatcher = new ThreadLocalMatcher("\\{\\s*" + CYPHER_PARAMETER_PREFIX);
 
 	// ----- error messages for DOMExceptions -----
 	protected static final String NO_MODIFICATION_ALLOWED_MESSAGE = "Permission denied.";
@@ -611,10 +616,10 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 					try {
 						// parse with format from IS
-						Date d = new SimpleDateFormat(ISO8601DateProperty.PATTERN).parse(dateString);
+						Date d = DateFormatHelper.parse(dateString, ISO8601DateProperty.PATTERN);
 
 						// format with given pattern
-						result = new SimpleDateFormat(pattern).format(d);
+						result = DateFormatHelper.format(d, pattern);
 
 					} catch (ParseException ex) {
 						logger.log(Level.WARNING, "Could not parse date " + dateString + " and format it to pattern " + pattern, ex);
@@ -874,15 +879,7 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 	@Override
 	public boolean onModification(SecurityContext securityContext, ErrorBuffer errorBuffer) throws FrameworkException {
 
-		try {
-
-			increasePageVersion();
-
-		} catch (FrameworkException ex) {
-
-			logger.log(Level.WARNING, "Updating page version failed", ex);
-
-		}
+		increasePageVersion();
 
 		return true;
 
@@ -890,18 +887,17 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 	// ----- private methods -----
 	/**
-	 * Do necessary updates on all containing pages
-	 *
-	 * @throws FrameworkException
+	 * Do necessary updates on all containing pages. The version of each
+	 * page is increased once at the end of the transaction, no matter how
+	 * many of its nodes were modified.
 	 */
-	private void increasePageVersion() throws FrameworkException {
+	private void increasePageVersion() {
 
 		Page page = (Page) getOwnerDocument();
 
 		if (page != null) {
 
-			page.unlockReadOnlyPropertiesOnce();
-			page.increaseVersion();
+			page.increaseVersionOnCommit();
 
 		}
 
@@ -1372,6 +1368,61 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 	}
 
+	/**
+	 * Returns the value of the given Cypher query property with template
+	 * expressions replaced. Expressions that make up a complete string
+	 * literal, like <code>'${request.name}'</code>, are replaced by a Cypher
+	 * parameter whose value is stored in the given map, so that the query
+	 * text (and with it the execution plan) stays the same across renderings.
+	 * All other expressions are replaced inline.
+	 *
+	 * The generated parameters are named with a reserved prefix, queries
+	 * that use a parameter with this prefix themselves are rejected.
+	 *
+	 * @param securityContext
+	 * @param renderContext
+	 * @param key
+	 * @param parameters the map to store the parameter values in
+	 * @return the query
+	 * @throws FrameworkException
+	 */
+	protected String getCypherQueryWithParameters(SecurityContext securityContext, RenderContext renderContext, PropertyKey<String> key, Map<String, Object> parameters) throws FrameworkException {
+
+		String value = getProperty(key);
+
+		if (value != null && !(EditMode.RAW.equals(renderContext.getEditMode(securityContext.getUser(false))))) {
+
+			// generated parameter names must not collide with the query's own parameters
+			if (threadLocalParameterMatcher.get().reset(value).find()) {
+
+				throw new FrameworkException(422, "Cypher query must not use parameter names starting with " + CYPHER_PARAMETER_PREFIX);
+			}
+
+			// re-use matcher from previous calls
+			Matcher matcher     = threadLocalLiteralMatcher.get();
+			StringBuffer buffer = new StringBuffer();
+
+			matcher.reset(value);
+
+			while (matcher.find()) {
+
+				String group     = matcher.group(2);
+				String source    = group.substring(2, group.length() - 1);
+				String partValue = extractFunctions(securityContext, renderContext, source);
+				String name      = CYPHER_PARAMETER_PREFIX + parameters.size();
+
+				parameters.put(name, partValue != null ? partValue : "");
+				matcher.appendReplacement(buffer, Matcher.quoteReplacement("{" + name + "}"));
+			}
+
+			matcher.appendTail(buffer);
+
+			value = buffer.toString();
+		}
+
+		return replaceVariables(securityContext, renderContext, value);
+	}
+
 	protected String replaceVariables(SecurityContext securityContext, RenderContext renderContext, Object rawValue)
 		throws FrameworkException {
 
@@ -1847,47 +1898,18 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 		checkHierarchy(newChild);
 		checkHierarchy(refChild);
 
-		try {
-
-			if (newChild instanceof DocumentFragment) {
-
-				// When inserting document fragments, we must take
-				// care of the special case that the nodes already
-				// have a NEXT_LIST_ENTRY relationship coming from
-				// the document fragment, so we must first remove
-				// the node from the document fragment and then
-				// add it to the new parent.
-				DocumentFragment fragment = (DocumentFragment) newChild;
-				Node currentChild = fragment.getFirstChild();
-
-				while (currentChild != null) {
-
-					// save next child in fragment list for later use
-					Node savedNextChild = currentChild.getNextSibling();
-
-					// remove child from document fragment
-					fragment.removeChild(currentChild);
-
-					// insert child into new parent
-					insertBefore(currentChild, refChild);
-
-					// next
-					currentChild = savedNextChild;
-				}
-
-			} else {
-
-				Node _parent = newChild.getParentNode();
-				if (_parent != null) {
+		checkIsChild(refChild);
 
-					_parent.removeChild(newChild);
-				}
+		if (newChild.equals(refChild)) {
+			return refChild;
+		}
 
-				treeInsertBefore((DOMNode) newChild, (DOMNode) refChild);
+		try {
 
-				// allow parent to set properties in new child
-				handleNewChild(newChild);
-			}
+			// moving a node within its parent (e.g. sorting) or from
+			// another parent and inserting the contents of a document
+			// fragment (e.g. pasting) is done in a single pass
+			insertChildren(getNewChildren(newChild), (DOMNode) refChild, null);
 
 		} catch (FrameworkException fex) {
 
@@ -1908,52 +1930,17 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 		checkHierarchy(newChild);
 		checkHierarchy(oldChild);
 
-		try {
-
-			if (newChild instanceof DocumentFragment) {
-
-				// When inserting document fragments, we must take
-				// care of the special case that the nodes already
-				// have a NEXT_LIST_ENTRY relationship coming from
-				// the document fragment, so we must first remove
-				// the node from the document fragment and then
-				// add it to the new parent.
-				// replace indirectly using insertBefore and remove
-				DocumentFragment fragment = (DocumentFragment) newChild;
-				Node currentChild = fragment.getFirstChild();
-
-				while (currentChild != null) {
-
-					// save next child in fragment list for later use
-					Node savedNextChild = currentChild.getNextSibling();
-
-					// remove child from document fragment
-					fragment.removeChild(currentChild);
-
-					// add child to new parent
-					insertBefore(currentChild, oldChild);
+		checkIsChild(oldChild);
 
-					// next
-					currentChild = savedNextChild;
-				}
-
-				// finally, remove reference element
-				removeChild(oldChild);
-
-			} else {
-
-				Node _parent = newChild.getParentNode();
-				if (_parent != null && _parent instanceof DOMNode) {
-
-					_parent.removeChild(newChild);
-				}
+		if (newChild.equals(oldChild)) {
+			return oldChild;
+		}
 
-				// replace directly
-				treeReplaceChild((DOMNode) newChild, (DOMNode) oldChild);
+		try {
 
-				// allow parent to set properties in new child
-				handleNewChild(newChild);
-			}
+			// replace old child with the new child or with the
+			// contents of a document fragment in a single pass
+			insertChildren(getNewChildren(newChild), (DOMNode) oldChild, (DOMNode) oldChild);
 
 		} catch (FrameworkException fex) {
 
@@ -1991,41 +1978,15 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 
 		try {
 
-			if (newChild instanceof DocumentFragment) {
-
-				// When inserting document fragments, we must take
-				// care of the special case that the nodes already
-				// have a NEXT_LIST_ENTRY relationship coming from
-				// the document fragment, so we must first remove
-				// the node from the document fragment and then
-				// add it to the new parent.
-				// replace indirectly using insertBefore and remove
-				DocumentFragment fragment = (DocumentFragment) newChild;
-				Node currentChild = fragment.getFirstChild();
-
-				while (currentChild != null) {
-
-					// save next child in fragment list for later use
-					Node savedNextChild = currentChild.getNextSibling();
+			if (newChild instanceof DocumentFragment || newChild.getParentNode() != null) {
 
-					// remove child from document fragment
-					fragment.removeChild(currentChild);
-
-					// append child to new parent
-					appendChild(currentChild);
-
-					// next
-					currentChild = savedNextChild;
-				}
+				// moving a node from its parent and appending the
+				// contents of a document fragment is done in a
+				// single pass
+				insertChildren(getNewChildren(newChild), null, null);
 
 			} else {
 
-				Node _parent = newChild.getParentNode();
-
-				if (_parent != null && _parent instanceof DOMNode) {
-					_parent.removeChild(newChild);
-				}
-
 				treeAppendChild((DOMNode) newChild);
 
 				// allow parent to set properties in new child
@@ -2040,6 +2001,86 @@ public abstract class DOMNode extends LinkedTreeNode<DOMChildren, DOMSiblings, D
 		return newChild;
 	}
 
+	/**
+	 * Returns the nodes to insert for the given new child, which is
+	 * either the new child itself or the children of a document
+	 * fragment, and checks that they can be removed from their current
+	 * parent.
+	 *
+	 * @param newChild
+	 * @return the nodes to insert
+	 */
+	private List<DOMNode> getNewChildren(final Node newChild) throws DOMException {
+
+		final List<DOMNode> newChildren = new ArrayList<>();
+
+		if (newChild instanceof DocumentFragment) {
+
+			final DOMNode fragment = (DOMNode) newChild;
+
+			fragment.checkWriteAccess();
+
+			for (final DOMNode child : fragment.treeGetChildren()) {
+
+				checkSameDocument(child);
+				checkHierarchy(child);
+
+				newChildren.add(child);
+			}
+
+		} else {
+
+			final Node _parent = newChild.getParentNode();
+			if (_parent != null && _parent instanceof DOMNode && !isSameNode(_parent)) {
+
+				((DOMNode) _parent).checkWriteAccess();
+			}
+
+			newChildren.add((DOMNode) newChild);
+		}
+
+		return newChildren;
+	}
+
+	/**
+	 * Inserts the given nodes before the given reference child, or at the
+	 * end if refChild is null, and removes the given old child. The new
+	 * child list is written with a single call to treeSetChildren, so
+	 * that only the child positions and sibling links that actually
+	 * change are updated, and nodes that are moved from another parent
+	 * (or from a document fragment) are removed from it in one pass.
+	 *
+	 * @param newChildren the nodes to insert
+	 * @param refChild the reference child or null
+	 * @param oldChild the child to remove or null
+	 */
+	private void insertChildren(final List<DOMNode> newChildren, final DOMNode refChild, final DOMNode oldChild) throws FrameworkException {
+
+		final List<DOMNode> children = treeGetChildren();
+
+		children.removeAll(newChildren);
+
+		final int index = refChild != null ? children.indexOf(refChild) : children.size();
+		if (index < 0) {
+
+			throw new DOMException(DOMException.NOT_FOUND_ERR, NOT_FOUND_ERR_MESSAGE);
+		}
+
+		children.addAll(index, newChildren);
+
+		if (oldChild != null) {
+			children.remove(oldChild);
+		}
+
+		treeSetChildren(children);
+
+		for (final DOMNode newChild : newChildren) {
+
+			// allow parent to set properties in new child
+			handleNewChild(newChild);
+		}
+	}
+
 	@Override
 	public boolean hasChildNodes() {
 		return !getProperty(children).isEmpty();
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.lang.StringUtils;
+import org.neo4j.graphdb.NotFoundException;
 import org.structr.common.PropertyView;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -62,6 +63,8 @@ import org.structr.core.entity.AbstractNode;
 import static org.structr.core.entity.AbstractNode.owner;
 import org.structr.core.graph.CreateNodeCommand;
 import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.TransactionCommand;
+import org.structr.core.graph.TransactionPostProcess;
 import org.structr.core.property.PropertyMap;
 import org.structr.core.property.RelationProperty;
 import org.structr.core.property.StartNodes;
@@ -213,6 +216,33 @@ public class Page extends DOMNode implements Linkable, Document, DOMImplementati
 		}
 	}
 
+	/**
+	 * Registers a version increase of this page that is applied when the
+	 * current transaction is committed. Multiple registrations in the
+	 * same transaction increase the version only once.
+	 */
+	public void increaseVersionOnCommit() {
+
+		TransactionCommand.postProcess("increasePageVersion:".concat(getUuid()), new TransactionPostProcess() {
+
+			@Override
+			public boolean execute(final SecurityContext securityContext, final ErrorBuffer errorBuffer) throws FrameworkException {
+
+				try {
+
+					unlockReadOnlyPropertiesOnce();
+					increaseVersion();
+
+				} catch (FrameworkException | NotFoundException ex) {
+
+					logger.log(Level.WARNING, "Updating page version failed", ex);
+				}
+
+				return true;
+			}
+		});
+	}
+
 	@Override
 	public Element createElement(final String tag) throws DOMException {
 
@@ -34,6 +34,7 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.*;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.PropertyReadCache;
 import org.structr.core.graph.search.Search;
 import org.structr.core.graph.search.SearchAttribute;
 import org.structr.core.graph.search.SearchAttributeGroup;
@@ -93,6 +94,7 @@ public class HtmlServlet extends HttpServiceServlet {
 	public static final String LOCALE_KEY                       = "locale";
 	
 	private static final ThreadLocalMatcher threadLocalUUIDMatcher = new ThreadLocalMatcher("[a-zA-Z0-9]{32}");
+	private static final String HTTP_DATE_PATTERN                  = "EEE, dd MMM yyyy HH:mm:ss z";
 
 	// non-static fields
 	private DecimalFormat decimalFormat              = new DecimalFormat("0.000000000", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
@@ -114,6 +116,9 @@ public class HtmlServlet extends HttpServiceServlet {
 
 		double start	= System.nanoTime();
 
+		// cache property values for the duration of this request
+		PropertyReadCache.beginRequest();
+
 		try {
 
 			SecurityContext securityContext = getAuthenticator().initializeAndExamineRequest(request, response);
@@ -330,6 +335,10 @@ public class HtmlServlet extends HttpServiceServlet {
 			t.printStackTrace();
 			logger.log(Level.SEVERE, "Exception while processing request", t);
 			HttpAuthenticator.writeInternalServerError(response);
+
+		} finally {
+
+			PropertyReadCache.endRequest();
 		}
 	}
 	
@@ -678,7 +687,7 @@ public class HtmlServlet extends HttpServiceServlet {
 
 		// add some caching directives to header
 		// see http://weblogs.java.net/blog/2007/08/08/expires-http-header-magic-number-yslow
-		DateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+		DateFormat httpDateFormat = DateFormatHelper.getFormat(HTTP_DATE_PATTERN, Locale.US, TimeZone.getDefault());
 		Calendar cal              = new GregorianCalendar();
 		Integer seconds           = node.getProperty(Page.cacheForSeconds);
 
@@ -686,7 +695,7 @@ public class HtmlServlet extends HttpServiceServlet {
 
 			cal.add(Calendar.SECOND, seconds);
 			response.addHeader("Cache-Control", "public, max-age=" + seconds + ", s-maxage=" + seconds + ", must-revalidate, proxy-revalidate");
-			httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+			httpDateFormat = DateFormatHelper.getFormat(HTTP_DATE_PATTERN, Locale.US, TimeZone.getTimeZone("GMT"));
 			response.addHeader("Expires", httpDateFormat.format(cal.getTime()));
 
 		} else {
@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2010-2014 Morgner UG (haftungsbeschränkt)
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import org.jsoup.Jsoup;
+import static org.mockito.Mockito.mock;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.User;
+import org.structr.web.entity.dom.DOMElement;
+import org.structr.web.entity.dom.Page;
+import org.w3c.dom.Element;
+
+/**
+ * Test memoization of data source results in {@link RenderContext}, both
+ * on the context itself and while rendering a page that uses the same
+ * REST query in two places.
+ *
+ * @author Christian Morgner
+ */
+public class RenderContextTest extends DOMTest {
+
+	public void testDataSourceResultMemoization() {
+
+		final RenderContext renderContext     = new RenderContext(null, null, EditMode.NONE, Locale.GERMAN);
+		final SecurityContext securityContext = SecurityContext.getSuperUserInstance();
+		final SecurityContext otherContext    = SecurityContext.getSuperUserInstance();
+		final Map<String, Object> parameters  = new LinkedHashMap<>();
+		final List<String> result             = Collections.singletonList("result");
+
+		parameters.put("id", "123");
+
+		assertNull(renderContext.getDataSourceResult("cypher", "MATCH n RETURN n", parameters, securityContext));
+
+		renderContext.putDataSourceResult("cypher", "MATCH n RETURN n", parameters, securityContext, result);
+
+		// same source, query, parameters and security context
+		assertSame(result, renderContext.getDataSourceResult("cypher", "MATCH n RETURN n", new LinkedHashMap<>(parameters), securityContext));
+
+		// modifying the parameters after storing the result has no effect
+		parameters.put("id", "456");
+		assertNull(renderContext.getDataSourceResult("cypher", "MATCH n RETURN n", parameters, securityContext));
+
+		// different source, query or security context
+		assertNull(renderContext.getDataSourceResult("rest", "MATCH n RETURN n", null, securityContext));
+		assertNull(renderContext.getDataSourceResult("cypher", "MATCH m RETURN m", null, securityContext));
+		assertNull(renderContext.getDataSourceResult("cypher", "MATCH n RETURN n", Collections.<String, Object>singletonMap("id", "123"), otherContext));
+
+		// results are scoped to a single render
+		assertNull(new RenderContext(null, null, EditMode.NONE, Locale.GERMAN).getDataSourceResult("cypher", "MATCH n RETURN n", Collections.<String, Object>singletonMap("id", "123"), securityContext));
+	}
+
+	public void testRenderWithRepeatedDataSource() {
+
+		try {
+
+			final Page doc = (Page)getDocument();
+
+			try {
+				app.beginTx();
+
+				final List<User> users = createTestNodes(User.class, 3);
+
+				assertEquals(3, users.size());
+
+				users.get(0).setProperty(AbstractNode.name, "user1");
+				users.get(1).setProperty(AbstractNode.name, "user2");
+				users.get(2).setProperty(AbstractNode.name, "user3");
+
+				// create dom tree with the same data source in two places
+				final Element html = doc.createElement("html");
+				final Element body = doc.createElement("body");
+				final Element div1 = doc.createElement("div");
+				final Element div2 = doc.createElement("div");
+				final Element p1   = doc.createElement("p");
+				final Element p2   = doc.createElement("p");
+
+				((DOMElement) p1).setProperty(DOMElement.restQuery, "users?sort=name");
+				((DOMElement) p1).setProperty(DOMElement.dataKey, "user");
+
+				((DOMElement) p2).setProperty(DOMElement.restQuery, "users?sort=name");
+				((DOMElement) p2).setProperty(DOMElement.dataKey, "otherUser");
+
+				p1.appendChild(doc.createTextNode("${user.name}"));
+				p2.appendChild(doc.createTextNode("${otherUser.name}"));
+
+				doc.appendChild(html);
+				html.appendChild(body);
+				body.appendChild(div1);
+				body.appendChild(div2);
+				div1.appendChild(p1);
+				div2.appendChild(p2);
+
+				app.commitTx();
+
+			} finally {
+				app.finishTx();
+			}
+
+			final HttpServletRequest request = mock(HttpServletRequest.class);
+			final List<String> evaluations   = new LinkedList<>();
+
+			RenderContext ctx = new CountingRenderContext(request, evaluations);
+			doc.render(securityContext, ctx, 0);
+
+			org.jsoup.nodes.Document parsedDocument = Jsoup.parse(ctx.getBuffer().toString());
+
+			// both elements are rendered from the same result
+			for (int i=0; i<3; i++) {
+
+				assertEquals("user" + (i+1), parsedDocument.select("html > body > div").get(0).select("p").get(i).ownText());
+				assertEquals("user" + (i+1), parsedDocument.select("html > body > div").get(1).select("p").get(i).ownText());
+			}
+
+			// the query was evaluated only once
+			assertEquals(1, Collections.frequency(evaluations, "rest:users?sort=name"));
+
+			// a new render evaluates the query again and sees new data
+			try {
+				app.beginTx();
+
+				createTestNodes(User.class, 1).get(0).setProperty(AbstractNode.name, "user4");
+
+				app.commitTx();
+
+			} finally {
+				app.finishTx();
+			}
+
+			evaluations.clear();
+
+			ctx = new CountingRenderContext(request, evaluations);
+			doc.render(securityContext, ctx, 0);
+
+			parsedDocument = Jsoup.parse(ctx.getBuffer().toString());
+
+			assertEquals(4, parsedDocument.select("html > body > div").get(0).select("p").size());
+			assertEquals(4, parsedDocument.select("html > body > div").get(1).select("p").size());
+			assertEquals("user4", parsedDocument.select("html > body > div").get(1).select("p").get(3).ownText());
+			assertEquals(1, Collections.frequency(evaluations, "rest:users?sort=name"));
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
+	/**
+	 * Records every data source evaluation, i.e. every result that is
+	 * stored in the memo.
+	 */
+	private static class CountingRenderContext extends RenderContext {
+
+		private List<String> evaluations = null;
+
+		public CountingRenderContext(final HttpServletRequest request, final List<String> evaluations) {
+
+			super(request, null, EditMode.NONE, Locale.GERMAN);
+
+			this.evaluations = evaluations;
+		}
+
+		@Override
+		public void putDataSourceResult(final String source, final String query, final Map<String, Object> parameters, final SecurityContext securityContext, final Object result) {
+
+			evaluations.add(source + ":" + query);
+
+			super.putDataSourceResult(source, query, parameters, securityContext, result);
+		}
+	}
+}
@@ -18,7 +18,13 @@
  */
 package org.structr.web.entity.dom;
 
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.structr.common.error.FrameworkException;
 import org.structr.web.common.DOMTest;
+import org.structr.web.common.RenderContext;
+import org.structr.web.common.RenderContext.EditMode;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -118,5 +124,56 @@ public class DOMElementTest extends DOMTest {
 		assertEquals(attr2, attr3.getPreviousSibling());
 		assertEquals(attr1, attr2.getPreviousSibling());
 	}
-	
+
+	public void testCypherQueryParameterNames() {
+
+		final Document doc                = getDocument();
+		final DOMElement elem             = (DOMElement)doc.createElement("div");
+		final RenderContext renderContext = new RenderContext(null, null, EditMode.NONE, Locale.GERMAN);
+
+		try {
+
+			// parameters of the query itself are left untouched
+			setCypherQuery(elem, "MATCH n WHERE n.name = {p0} RETURN n");
+
+			final Map<String, Object> parameters = new LinkedHashMap<>();
+
+			assertEquals("MATCH n WHERE n.name = {p0} RETURN n", elem.getCypherQueryWithParameters(securityContext, renderContext, DOMElement.cypherQuery, parameters));
+			assertTrue(parameters.isEmpty());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		// the prefix of the generated parameters is reserved
+		for (final String query : new String[] { "MATCH n WHERE n.name = {_structr_p0} RETURN n", "MATCH n WHERE n.name = { _structr_p1 } RETURN n" }) {
+
+			try {
+
+				setCypherQuery(elem, query);
+				elem.getCypherQueryWithParameters(securityContext, renderContext, DOMElement.cypherQuery, new LinkedHashMap<String, Object>());
+
+				fail("Query with reserved parameter name should be rejected");
+
+			} catch (FrameworkException fex) {
+
+				assertEquals(422, fex.getStatus());
+			}
+		}
+	}
+
+	private void setCypherQuery(final DOMElement elem, final String query) throws FrameworkException {
+
+		try {
+			app.beginTx();
+			elem.setProperty(DOMElement.cypherQuery, query);
+			app.commitTx();
+
+		} finally {
+
+			app.finishTx();
+		}
+	}
 }
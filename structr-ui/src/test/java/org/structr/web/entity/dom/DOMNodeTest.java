@@ -19,8 +19,13 @@
 package org.structr.web.entity.dom;
 
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.relationship.AbstractChildren;
@@ -39,6 +44,8 @@ import org.w3c.dom.Text;
  */
 public class DOMNodeTest extends DOMTest {
 
+	private static final Logger logger = Logger.getLogger(DOMNodeTest.class.getName());
+
 	public void testAppendChild() {
 		
 		Page document = (Page)getDocument();
@@ -256,6 +263,182 @@ public class DOMNodeTest extends DOMTest {
 		assertNull(test5.getNextSibling());
 	}
 
+	public void testSetChildren() {
+
+		final Document document = getDocument();
+		assertNotNull(document);
+
+		final DOMNode test1 = (DOMNode)document.createTextNode("test1");
+		final DOMNode test2 = (DOMNode)document.createTextNode("test2");
+		final DOMNode test3 = (DOMNode)document.createTextNode("test3");
+		final DOMNode test4 = (DOMNode)document.createTextNode("test4");
+		final DOMNode test5 = (DOMNode)document.createTextNode("test5");
+		final DOMNode test6 = (DOMNode)document.createTextNode("test6");
+
+		final DOMElement div = (DOMElement)document.createElement("div");
+		assertNotNull(div);
+
+		div.appendChild(test1);
+		div.appendChild(test2);
+		div.appendChild(test3);
+		div.appendChild(test4);
+		div.appendChild(test5);
+
+		// position index
+		assertEquals(5, div.treeGetChildCount());
+		assertEquals(test3, div.treeGetChild(2));
+
+		// reorder, remove test4 and add test6 in one pass
+		final List<DOMNode> newChildren = new LinkedList<>();
+		newChildren.add(test5);
+		newChildren.add(test1);
+		newChildren.add(test2);
+		newChildren.add(test3);
+		newChildren.add(test6);
+
+		try {
+
+			div.treeSetChildren(newChildren);
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+
+		final NodeList children = div.getChildNodes();
+		assertEquals(5, children.getLength());
+
+		for (int i=0; i<newChildren.size(); i++) {
+
+			assertEquals(newChildren.get(i), children.item(i));
+			assertEquals(newChildren.get(i), div.treeGetChild(i));
+			assertEquals(i, div.treeGetChildPosition(newChildren.get(i)));
+		}
+
+		// sibling links
+		assertNull(test5.getPreviousSibling());
+		assertEquals(test1, test5.getNextSibling());
+		assertEquals(test3, test2.getNextSibling());
+		assertEquals(test6, test3.getNextSibling());
+		assertNull(test6.getNextSibling());
+
+		// removed child
+		assertNull(test4.getParentNode());
+		assertNull(test4.getPreviousSibling());
+		assertNull(test4.getNextSibling());
+	}
+
+	public void testReorderChildrenInOnePass() {
+
+		final int number        = 100;
+		final Document document = getDocument();
+		assertNotNull(document);
+
+		final DOMElement div1 = (DOMElement)document.createElement("div");
+		final DOMElement div2 = (DOMElement)document.createElement("div");
+		final DOMElement div3 = (DOMElement)document.createElement("div");
+		assertNotNull(div1);
+		assertNotNull(div2);
+		assertNotNull(div3);
+
+		final List<DOMNode> reversed1 = new LinkedList<>();
+		final List<DOMNode> reversed2 = new LinkedList<>();
+
+		for (int i=0; i<number; i++) {
+
+			final DOMNode child1 = (DOMNode)document.createTextNode("test" + i);
+			final DOMNode child2 = (DOMNode)document.createTextNode("test" + i);
+
+			div1.appendChild(child1);
+			div2.appendChild(child2);
+
+			reversed1.add(0, child1);
+			reversed2.add(0, child2);
+		}
+
+		try {
+
+			final Set<String> relIds1 = getChildRelationshipIds(div1);
+			final Set<String> relIds2 = getChildRelationshipIds(div2);
+
+			// reverse the children of div1 one at a time
+			long t0 = System.nanoTime();
+
+			for (final DOMNode child : reversed1) {
+
+				div1.treeRemoveChild(child);
+				div1.treeAppendChild(child);
+			}
+
+			final long perChild = System.nanoTime() - t0;
+
+			// reverse the children of div2 in one pass
+			t0 = System.nanoTime();
+
+			div2.treeSetChildren(reversed2);
+
+			final long onePass = System.nanoTime() - t0;
+
+			logger.log(Level.INFO, "Reversed {0} children in {1} ms one at a time and in {2} ms in one pass", new Object[] {
+				number,
+				TimeUnit.NANOSECONDS.toMillis(perChild),
+				TimeUnit.NANOSECONDS.toMillis(onePass)
+			});
+
+			// both lists must be in the same order
+			for (int i=0; i<number; i++) {
+
+				assertEquals(reversed1.get(i), div1.treeGetChild(i));
+				assertEquals(reversed2.get(i), div2.treeGetChild(i));
+			}
+
+			// one at a time replaces every child relationship
+			final Set<String> newRelIds1 = getChildRelationshipIds(div1);
+			newRelIds1.removeAll(relIds1);
+
+			assertEquals(number, newRelIds1.size());
+
+			// one pass only updates the positions of the existing relationships
+			assertEquals(relIds2, getChildRelationshipIds(div2));
+
+			// positional access uses the cached position index
+			t0 = System.nanoTime();
+
+			for (int i=0; i<number; i++) {
+				assertEquals(reversed2.get(i), div2.treeGetChild(i));
+			}
+
+			logger.log(Level.INFO, "Looked up {0} children by position in {1} ms", new Object[] { number, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) });
+
+			// move half of the children of div2 to div3 before a reference child
+			final DOMNode refChild = (DOMNode)document.createTextNode("ref");
+			div3.appendChild(refChild);
+
+			for (int i=0; i<number/2; i++) {
+				div3.insertBefore(reversed2.get(i), refChild);
+			}
+
+			assertEquals(number/2, div2.treeGetChildCount());
+			assertEquals(number/2 + 1, div3.treeGetChildCount());
+			assertEquals(refChild, div3.getLastChild());
+
+			for (int i=0; i<number/2; i++) {
+
+				assertEquals(reversed2.get(i), div3.treeGetChild(i));
+				assertEquals(reversed2.get(i + number/2), div2.treeGetChild(i));
+			}
+
+			assertNull(reversed2.get(number/2).getPreviousSibling());
+			assertEquals(refChild, reversed2.get(number/2 - 1).getNextSibling());
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception");
+		}
+	}
+
 	public void testAppendChildErrors() {
 		
 		
@@ -742,5 +925,14 @@ public class DOMNodeTest extends DOMTest {
 		return list;
 	}
 
-}
+	private Set<String> getChildRelationshipIds(final DOMElement parent) {
+
+		final Set<String> ids = new HashSet<>();
 
+		for (final DOMChildren rel : parent.getOutgoingRelationships(DOMChildren.class)) {
+			ids.add(rel.getUuid());
+		}
+
+		return ids;
+	}
+}
@@ -23,8 +23,11 @@ import static junit.framework.TestCase.assertNotNull;
 import static junit.framework.TestCase.assertNull;
 import static junit.framework.TestCase.assertTrue;
 import static junit.framework.TestCase.fail;
+import java.util.LinkedList;
+import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.AbstractNode;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.StructrUiTest;
 import org.w3c.dom.DOMException;
@@ -353,4 +356,55 @@ public class PageTest extends StructrUiTest {
 		return isClone;
 	}
 	
+
+	public void testPageVersionIsIncreasedOncePerTransaction() {
+
+		try {
+
+			final Page page          = Page.createNewPage(securityContext, "page-version");
+			final List<DOMNode> divs = new LinkedList<>();
+
+			for (int i = 0; i < 5; i++) {
+				divs.add((DOMNode)page.createElement("div"));
+			}
+
+			final Integer initialVersion = page.getProperty(Page.version);
+			final int version            = initialVersion != null ? initialVersion : 0;
+
+			// modify all elements in a single transaction
+			try {
+				app.beginTx();
+
+				for (int i = 0; i < divs.size(); i++) {
+					divs.get(i).setProperty(AbstractNode.name, "div-" + i);
+				}
+
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(version + 1, (int)page.getProperty(Page.version));
+
+			// modify a single element
+			try {
+				app.beginTx();
+				divs.get(0).setProperty(AbstractNode.name, "first");
+				app.commitTx();
+
+			} finally {
+
+				app.finishTx();
+			}
+
+			assertEquals(version + 2, (int)page.getProperty(Page.version));
+
+		} catch (FrameworkException ex) {
+
+			fail("Unexpected exception");
+
+		}
+	}
 }